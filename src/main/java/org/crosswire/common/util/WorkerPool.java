@@ -0,0 +1,145 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A WorkerPool is a bounded set of daemon threads that work through tasks
+ * handed to it. The threads are only started as work arrives and never keep
+ * the application from exiting.
+ *
+ * <p>
+ * A task running in the pool must not wait on other tasks of the same pool,
+ * as all the threads might end up waiting.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class WorkerPool {
+    /**
+     * Create a pool with a thread for each available processor.
+     *
+     * @param name
+     *            the name given to the threads of this pool
+     */
+    public WorkerPool(String name) {
+        this(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pool with at most the given number of threads.
+     *
+     * @param name
+     *            the name given to the threads of this pool
+     * @param size
+     *            the most threads that will work at once
+     */
+    public WorkerPool(final String name, int size) {
+        this.size = Math.max(1, size);
+        executor = Executors.newFixedThreadPool(this.size, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + '-' + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+            private AtomicInteger count = new AtomicInteger();
+        });
+    }
+
+    /**
+     * @return the most threads that will work at once
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Hand a task to the pool.
+     *
+     * @param task
+     *            the work to do
+     * @return the pending result of the task
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Run all the tasks in the pool, waiting for them to finish. The answers
+     * are in the same order as the tasks. If any of the tasks fails the rest are
+     * abandoned.
+     *
+     * @param tasks
+     *            the work to do
+     * @return the answer of each task
+     * @throws ExecutionException
+     *             wrapping the first failure of a task
+     * @throws InterruptedException
+     *             if the caller is interrupted while waiting
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws ExecutionException, InterruptedException {
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            List<T> results = new ArrayList<T>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Refuse new tasks and let the threads die once the current tasks are
+     * done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The most threads that will work at once.
+     */
+    private int size;
+
+    /**
+     * The threads that do the work.
+     */
+    private ExecutorService executor;
+}
@@ -0,0 +1,562 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.common.xml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.crosswire.common.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * A cache of the output of TransformingSAXEventProviders. Rendering the same
+ * page with the same stylesheet and the same parameters gives the same output,
+ * so it need only be done once.
+ *
+ * <p>
+ * Each entry is known by the source of the XML, for example a book, the name
+ * of what was rendered from it, for example a chapter, and the stylesheet, the
+ * parameters and the output properties of the transformation. When the source
+ * changes, all of its entries should be invalidated.
+ * </p>
+ *
+ * <p>
+ * The output is kept in memory up to a budget of bytes. The least recently used
+ * entries are evicted beyond that, to a directory on disk when one has been
+ * given, until that too is beyond its own budget. Files are read and written
+ * without holding up other threads, and output that was being rendered while
+ * its source was invalidated is not kept.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class RenderedOutputCache {
+    /**
+     * Create a cache that is kept in memory only.
+     *
+     * @param memoryBudget
+     *            the most bytes of output to keep in memory
+     */
+    public RenderedOutputCache(long memoryBudget) {
+        this(memoryBudget, null, 0);
+    }
+
+    /**
+     * Create a cache that is kept in memory and that keeps what does not fit
+     * there in a directory.
+     *
+     * @param memoryBudget
+     *            the most bytes of output to keep in memory
+     * @param directory
+     *            where to keep output that does not fit in memory, or null.
+     *            Output left there by an earlier cache is deleted.
+     * @param diskBudget
+     *            the most bytes of output to keep in the directory
+     */
+    public RenderedOutputCache(long memoryBudget, File directory, long diskBudget) {
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        this.diskBudget = directory == null ? 0 : diskBudget;
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.disk = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.generations = new HashMap<String, Long>();
+        this.rendering = new TreeMap<Long, Integer>();
+        deleteLeftovers();
+    }
+
+    /**
+     * Serialize the output of the transformation, using the cached output when
+     * the same transformation of the same source has been serialized before.
+     * The XML is not read and the stylesheet is not run when the output is
+     * cached.
+     *
+     * @param source
+     *            what the XML came from, for example the initials of a book
+     * @param name
+     *            what was rendered, for example the name of a chapter
+     * @param htmlsep
+     *            the transformation
+     * @return the serialized output
+     * @see XMLUtil#writeToString(SAXEventProvider)
+     */
+    public String writeToString(String source, String name, TransformingSAXEventProvider htmlsep) throws SAXException {
+        String key = getKey(source, name, htmlsep);
+        long stamp = startRendering();
+        try {
+            String output = get(key, stamp);
+            if (output == null) {
+                output = XMLUtil.writeToString(htmlsep);
+                put(key, source, output, stamp);
+            }
+            return output;
+        } finally {
+            stopRendering(stamp);
+        }
+    }
+
+    /**
+     * Forget all the output rendered from the source.
+     *
+     * @param source
+     *            what the XML came from
+     */
+    public void invalidate(String source) {
+        List<Entry> removed = new ArrayList<Entry>();
+        synchronized (this) {
+            generations.put(source, Long.valueOf(++generation));
+            forgetInvalidations();
+            memorySize -= remove(memory, source, removed);
+            diskSize -= remove(disk, source, removed);
+        }
+        delete(removed);
+    }
+
+    /**
+     * Forget all the output.
+     */
+    public void clear() {
+        List<Entry> removed = new ArrayList<Entry>();
+        synchronized (this) {
+            cleared = ++generation;
+            generations.clear();
+            memorySize -= remove(memory, null, removed);
+            diskSize -= remove(disk, null, removed);
+        }
+        delete(removed);
+    }
+
+    /**
+     * @return the number of bytes of output kept in memory
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * @return the number of bytes of output kept on disk
+     */
+    public synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * @return the number of times cached output was used
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of times output had to be rendered
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Build the key of an entry from everything that affects the output.
+     */
+    private String getKey(String source, String name, TransformingSAXEventProvider htmlsep) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(source);
+        buf.append(SEPARATOR);
+        buf.append(name);
+        buf.append(SEPARATOR);
+        buf.append(htmlsep.getXslURI());
+
+        // Sort them so that the order they were set in does not matter
+        Map<String, Object> params = new TreeMap<String, Object>(htmlsep.getParameters());
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            buf.append(SEPARATOR);
+            buf.append(param.getKey());
+            buf.append('=');
+            buf.append(param.getValue());
+        }
+
+        Properties outputs = htmlsep.getOutputProperties();
+        for (Object prop : new TreeMap<Object, Object>(outputs).keySet()) {
+            buf.append(SEPARATOR);
+            buf.append(prop);
+            buf.append(':');
+            buf.append(outputs.getProperty((String) prop));
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Note that a render has started in the current generation.
+     *
+     * @return the stamp of the render
+     */
+    private synchronized long startRendering() {
+        Long stamp = Long.valueOf(generation);
+        Integer count = rendering.get(stamp);
+        rendering.put(stamp, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+        return generation;
+    }
+
+    /**
+     * Note that a render has finished.
+     */
+    private synchronized void stopRendering(long stamp) {
+        Long key = Long.valueOf(stamp);
+        int count = rendering.get(key).intValue() - 1;
+        if (count == 0) {
+            rendering.remove(key);
+        } else {
+            rendering.put(key, Integer.valueOf(count));
+        }
+        forgetInvalidations();
+    }
+
+    /**
+     * Forget the invalidations that no render still going on was stamped
+     * before.
+     */
+    private void forgetInvalidations() {
+        long oldest = rendering.isEmpty() ? generation : rendering.firstKey().longValue();
+        Iterator<Long> iter = generations.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().longValue() <= oldest) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of sources whose invalidation is still remembered
+     */
+    /* package */ synchronized int getInvalidationCount() {
+        return generations.size();
+    }
+
+    /**
+     * Has the source been invalidated since the generation of the stamp?
+     */
+    private boolean isInvalid(String source, long stamp) {
+        if (cleared > stamp) {
+            return true;
+        }
+        Long invalidated = generations.get(source);
+        return invalidated != null && invalidated.longValue() > stamp;
+    }
+
+    private String get(String key, long stamp) {
+        Entry entry = null;
+        synchronized (this) {
+            entry = memory.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.output;
+            }
+
+            // Take it off the disk, so that the file is this thread's alone
+            entry = disk.remove(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            diskSize -= entry.size;
+        }
+
+        // Bring it back into memory
+        try {
+            entry.output = read(entry.file);
+        } catch (IOException ex) {
+            log.warn("Unable to read cached output from {}", entry.file, ex);
+        } finally {
+            delete(entry);
+        }
+
+        synchronized (this) {
+            if (entry.output == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        keep(entry, stamp);
+        return entry.output;
+    }
+
+    private void put(String key, String source, String output, long stamp) {
+        Entry entry = new Entry(key, source, output);
+        if (entry.size > memoryBudget) {
+            // It would evict everything else and then itself
+            return;
+        }
+
+        keep(entry, stamp);
+    }
+
+    /**
+     * Put the entry into memory, unless its source has been invalidated since
+     * the stamp was taken, evicting the least recently used entries beyond the
+     * budget.
+     */
+    private void keep(Entry entry, long stamp) {
+        List<Entry> removed = new ArrayList<Entry>();
+        List<Entry> evicted = new ArrayList<Entry>();
+        long evictedStamp = 0;
+        synchronized (this) {
+            if (isInvalid(entry.source, stamp)) {
+                return;
+            }
+
+            Entry old = memory.remove(entry.key);
+            if (old != null) {
+                memorySize -= old.size;
+            }
+            old = disk.remove(entry.key);
+            if (old != null) {
+                diskSize -= old.size;
+                removed.add(old);
+            }
+
+            memory.put(entry.key, entry);
+            memorySize += entry.size;
+
+            Iterator<Entry> iter = memory.values().iterator();
+            while (memorySize > memoryBudget && iter.hasNext()) {
+                Entry eldest = iter.next();
+                iter.remove();
+                memorySize -= eldest.size;
+                if (eldest.size <= diskBudget) {
+                    eldest.file = new File(directory, Long.toString(++lastFileId) + FILE_EXTENSION);
+                    evicted.add(eldest);
+                }
+            }
+            evictedStamp = generation;
+        }
+
+        delete(removed);
+        spill(evicted, evictedStamp);
+    }
+
+    /**
+     * Write the entries that were evicted from memory to disk, evicting the
+     * least recently used entries beyond the budget.
+     */
+    private void spill(List<Entry> entries, long stamp) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Entry> written = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            try {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Unable to create " + directory);
+                }
+                write(entry.file, entry.output);
+                written.add(entry);
+            } catch (IOException ex) {
+                log.warn("Unable to cache output in {}", directory, ex);
+                delete(entry);
+            }
+        }
+
+        List<Entry> removed = new ArrayList<Entry>();
+        synchronized (this) {
+            for (Entry entry : written) {
+                // It may have been invalidated, or rendered again, meanwhile
+                if (isInvalid(entry.source, stamp) || memory.containsKey(entry.key) || disk.containsKey(entry.key)) {
+                    removed.add(entry);
+                    continue;
+                }
+                entry.output = null;
+                disk.put(entry.key, entry);
+                diskSize += entry.size;
+            }
+
+            Iterator<Entry> iter = disk.values().iterator();
+            while (diskSize > diskBudget && iter.hasNext()) {
+                Entry eldest = iter.next();
+                iter.remove();
+                diskSize -= eldest.size;
+                removed.add(eldest);
+            }
+        }
+        delete(removed);
+    }
+
+    /**
+     * Remove the entries of the source, or all if source is null.
+     *
+     * @return the number of bytes removed
+     */
+    private long remove(Map<String, Entry> entries, String source, List<Entry> removed) {
+        long size = 0;
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (source == null || source.equals(entry.source)) {
+                iter.remove();
+                size += entry.size;
+                removed.add(entry);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Delete the files of entries that are no longer in the cache.
+     */
+    private void delete(List<Entry> entries) {
+        for (Entry entry : entries) {
+            delete(entry);
+        }
+    }
+
+    private void delete(Entry entry) {
+        if (entry.file != null && entry.file.exists() && !entry.file.delete()) {
+            log.warn("Unable to delete cached output {}", entry.file);
+        }
+        entry.file = null;
+    }
+
+    /**
+     * Delete the files left in the directory by an earlier cache, which this
+     * one knows nothing about and would otherwise overwrite.
+     */
+    private void deleteLeftovers() {
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_EXTENSION) && file.isFile() && !file.delete()) {
+                log.warn("Unable to delete cached output {}", file);
+            }
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        Reader in = null;
+        try {
+            in = new InputStreamReader(new FileInputStream(file), ENCODING);
+            // Read it exactly, line ends and all
+            StringBuilder buf = new StringBuilder();
+            char[] chars = new char[4096];
+            int count = in.read(chars);
+            while (count != -1) {
+                buf.append(chars, 0, count);
+                count = in.read(chars);
+            }
+            return buf.toString();
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private static void write(File file, String output) throws IOException {
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(file), ENCODING);
+            out.write(output);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * The output of a transformation, held either in memory or in a file.
+     */
+    private static class Entry {
+        Entry(String key, String source, String output) {
+            this.key = key;
+            this.source = source;
+            this.output = output;
+            // A Java char takes 2 bytes and a String has an overhead of about 40
+            this.size = 2L * output.length() + 40;
+        }
+
+        String key;
+        String source;
+        String output;
+        File file;
+        long size;
+    }
+
+    /**
+     * Separates the parts of a key.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    private static final String ENCODING = "UTF-8";
+    private static final String FILE_EXTENSION = ".cache";
+
+    private long memoryBudget;
+    private long diskBudget;
+    private File directory;
+
+    /**
+     * The entries in memory and on disk, each from least to most recently used
+     */
+    private Map<String, Entry> memory;
+    private Map<String, Entry> disk;
+    private long memorySize;
+    private long diskSize;
+    private long lastFileId;
+    private long hits;
+    private long misses;
+
+    /**
+     * Counts invalidations, so that output rendered from an earlier
+     * generation of its source is not kept. The generation in which each
+     * source was last invalidated, and in which all were cleared.
+     */
+    private long generation;
+    private Map<String, Long> generations;
+    private long cleared;
+
+    /**
+     * The number of renders going on, by the generation they started in. An
+     * invalidation is forgotten once no render started before it.
+     */
+    private TreeMap<Long, Integer> rendering;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(RenderedOutputCache.class);
+}
@@ -262,6 +262,20 @@ public class TransformingSAXEventProvider extends Transformer implements SAXEven
         params.put(name, value);
     }
 
+    /**
+     * @return the URI of the XSL stylesheet
+     */
+    URI getXslURI() {
+        return xsluri;
+    }
+
+    /**
+     * @return the remembered Parameters
+     */
+    Map<String, Object> getParameters() {
+        return params;
+    }
+
     /**
      * @param developmentMode the developmentMode to set
      */
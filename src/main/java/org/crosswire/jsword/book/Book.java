@@ -32,6 +32,8 @@ import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.jdom2.Content;
 import org.jdom2.Document;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * Book is the most basic store of textual data - It can retrieve data either as
@@ -50,6 +52,13 @@ public interface Book extends Activatable, Comparable<Book> {
      * probably include all the verses in the Bible, but a commentary may well
      * miss some out.
      * 
+     * <p>
+     * The Key may be shared by every caller and so must not be changed. The
+     * verses of a Bible are a Passage that throws an IllegalStateException
+     * when it is changed, where they used to ignore the change. Clone it to
+     * get a Key that can be changed.
+     * </p>
+     * 
      * @return A Key that includes all of the known Keys
      */
     Key getGlobalKeyList();
@@ -109,6 +118,24 @@ public interface Book extends Activatable, Comparable<Book> {
      */
     Iterator<Content> getOsisIterator(Key key, boolean allowEmpty) throws BookException;
 
+    /**
+     * Send each key's OSIS to the handler as SAX events, in turn. Only the
+     * content is sent, not startDocument or endDocument, so that the caller
+     * can put it into a framework of its own.
+     * 
+     * @param key
+     *            the Items to locate
+     * @param allowEmpty
+     *            indicates whether empty keys should be present.
+     * @param handler
+     *            The place to send SAX events.
+     * @throws BookException
+     *             If the data can not be read.
+     * @throws SAXException
+     *             If the handler fails.
+     */
+    void provideSAXEvents(Key key, boolean allowEmpty, ContentHandler handler) throws BookException, SAXException;
+
     /**
      * Returns <tt>true</tt> if this book contains the specified element.
      * 
@@ -23,11 +23,14 @@ package org.crosswire.jsword.book;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.crosswire.common.diff.Diff;
 import org.crosswire.common.diff.DiffCleanup;
 import org.crosswire.common.diff.Difference;
 import org.crosswire.common.util.Language;
+import org.crosswire.common.util.WorkerPool;
 import org.crosswire.common.xml.JDOMSAXEventProvider;
 import org.crosswire.common.xml.SAXEventProvider;
 import org.crosswire.jsword.passage.Key;
@@ -36,6 +39,9 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
 import org.jdom2.Text;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * BookData is the assembler of the OSIS that is returned by the filters. As
@@ -104,11 +110,19 @@ public class BookData implements BookProvider {
     }
 
     /**
-     * Output the current data as a SAX stream.
+     * Output the current data as a SAX stream. Unless the OSIS has already been
+     * built, the data for a single book is streamed from the book as the events
+     * are requested, in which case any BookException is reported as a
+     * SAXException by the provider.
      * 
      * @return A way of posting SAX events
      */
     public SAXEventProvider getSAXEventProvider() throws BookException {
+        // Parallel views need the whole table built before it can be output.
+        if (fragment == null && books.length == 1) {
+            return new StreamingSAXEventProvider();
+        }
+
         // If the fragment is already in a document, then use that.
         Element frag = getOsisFragment();
         Document doc = frag.getDocument();
@@ -166,7 +180,6 @@ public class BookData implements BookProvider {
 
             table.addContent(row);
 
-            Iterator<Content>[] iters = new Iterator[books.length];
             boolean[] showDiffs = new boolean[books.length - 1];
             boolean doDiffs = false;
 
@@ -198,76 +211,36 @@ public class BookData implements BookProvider {
 
                 cell.addContent(OSISUtil.factory().createText(book.getInitials()));
                 row.addContent(cell);
-
-                iters[i] = book.getOsisIterator(key, true);
             }
 
-            Content content = null;
-
-            int cellCount = 0;
-            int rowCount = 0;
-            while (true) {
-                cellCount = 0;
+            // Each row has a verse from each book, or null if the book has run out
+            List<List<Content>[]> rows = getRows(getOsisIterators());
+            List<List<Content>[]> diffs = doDiffs ? getDiffs(rows, showDiffs) : null;
 
+            for (int rowCount = 0; rowCount < rows.size(); rowCount++) {
+                List<Content>[] cells = rows.get(rowCount);
                 row = OSISUtil.factory().createRow();
 
-                String firstText = "";
-
-                for (int i = 0; i < iters.length; i++) {
+                for (int i = 0; i < books.length; i++) {
                     Book book = books[i];
-                    cell = OSISUtil.factory().createCell();
-                    Language lang = (Language) book.getProperty(BookMetaData.KEY_XML_LANG);
-                    if (lang != null) {
-                        cell.setAttribute(OSISUtil.OSIS_ATTR_LANG, lang.getCode(), Namespace.XML_NAMESPACE);
-                    }
-
+                    cell = createCell(book);
                     row.addContent(cell);
 
-                    StringBuilder newText = new StringBuilder(doDiffs ? 32 : 0);
-
-                    if (iters[i].hasNext()) {
-                        List<Content> contents = new ArrayList<Content>(1);
-
-                        do {
-                            content = iters[i].next();
-                            contents.add(content);
-                            addText(doDiffs, newText, content);
-                        } while (!isNextVerse(content));
-
-                        if (doDiffs) {
-                            String thisText = newText.toString();
-                            if (unaccenter != null) {
-                                thisText = unaccenter.unaccent(thisText);
-                            }
-
-                            if (i > 0 && showDiffs[i - 1]) {
-                                List<Difference> diffs = new Diff(firstText, thisText, false).compare();
-                                DiffCleanup.cleanupSemantic(diffs);
-                                cell.addContent(OSISUtil.diffToOsis(diffs));
-
-                                // Since we used that cell create another
-                                cell = OSISUtil.factory().createCell();
-                                lang = (Language) book.getProperty(BookMetaData.KEY_XML_LANG);
-                                cell.setAttribute(OSISUtil.OSIS_ATTR_LANG, lang.getCode(), Namespace.XML_NAMESPACE);
-                                row.addContent(cell);
-                            }
-                            if (i == 0) {
-                                firstText = thisText;
-                            }
+                    if (cells[i] != null) {
+                        if (diffs != null && i > 0 && showDiffs[i - 1]) {
+                            cell.addContent(diffs.get(rowCount)[i]);
+
+                            // Since we used that cell create another
+                            cell = createCell(book);
+                            row.addContent(cell);
                         }
-                        cell.addContent(contents);
-                        cellCount++;
+                        cell.addContent(cells[i]);
                     }
                 }
 
-                if (cellCount == 0) {
-                    break;
-                }
-
                 table.addContent(row);
-                rowCount++;
             }
-            if (rowCount > 0) {
+            if (!rows.isEmpty()) {
                 div.addContent(table);
             }
         }
@@ -275,6 +248,142 @@ public class BookData implements BookProvider {
         return div;
     }
 
+    /**
+     * Get the OSIS for each of the books. The books are read at the same time.
+     * 
+     * @return an iterator over the OSIS of each book, in the order of the books
+     */
+    private List<Iterator<Content>> getOsisIterators() throws BookException {
+        List<Callable<Iterator<Content>>> tasks = new ArrayList<Callable<Iterator<Content>>>(books.length);
+        for (final Book book : books) {
+            tasks.add(new Callable<Iterator<Content>>() {
+                public Iterator<Content> call() throws BookException {
+                    return book.getOsisIterator(key, true);
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Split the OSIS of each of the books into rows of verses.
+     * 
+     * @param iters
+     *            the OSIS of each book
+     * @return the rows, each with the content of a verse from each book or
+     *         null if the book has no more content.
+     */
+    private List<List<Content>[]> getRows(List<Iterator<Content>> iters) {
+        List<List<Content>[]> rows = new ArrayList<List<Content>[]>();
+        while (true) {
+            List<Content>[] cells = new List[books.length];
+            int cellCount = 0;
+
+            for (int i = 0; i < books.length; i++) {
+                Iterator<Content> iter = iters.get(i);
+                if (iter.hasNext()) {
+                    List<Content> contents = new ArrayList<Content>(1);
+                    Content content = null;
+                    do {
+                        content = iter.next();
+                        contents.add(content);
+                    } while (!isNextVerse(content));
+
+                    cells[i] = contents;
+                    cellCount++;
+                }
+            }
+
+            if (cellCount == 0) {
+                return rows;
+            }
+
+            rows.add(cells);
+        }
+    }
+
+    /**
+     * Compare the verses of each row against the first book. The rows are
+     * compared at the same time.
+     * 
+     * @param rows
+     *            the verses of each book
+     * @param showDiffs
+     *            whether each book after the first is to be compared.
+     * @return for each row, the OSIS representation of the differences for each
+     *         book that is compared.
+     */
+    private List<List<Content>[]> getDiffs(List<List<Content>[]> rows, final boolean[] showDiffs) throws BookException {
+        List<Callable<List<Content>[]>> tasks = new ArrayList<Callable<List<Content>[]>>(rows.size());
+        for (final List<Content>[] cells : rows) {
+            tasks.add(new Callable<List<Content>[]>() {
+                public List<Content>[] call() {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    List<Content>[] diffs = new List[cells.length];
+                    String firstText = cells[0] == null ? "" : getText(cells[0]);
+                    for (int i = 1; i < cells.length; i++) {
+                        if (showDiffs[i - 1] && cells[i] != null) {
+                            List<Difference> diff = new Diff(firstText, getText(cells[i]), false).compare();
+                            DiffCleanup.cleanupSemantic(diff);
+                            diffs[i] = OSISUtil.diffToOsis(diff);
+                        }
+                    }
+                    return diffs;
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Run the tasks on the worker pool and wait for all of them to finish.
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws BookException {
+        try {
+            return workers.invokeAll(tasks);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BookException) {
+                throw (BookException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BookException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BookException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create an empty cell marked with the language of the book.
+     */
+    private Element createCell(Book book) {
+        Element cell = OSISUtil.factory().createCell();
+        Language lang = (Language) book.getProperty(BookMetaData.KEY_XML_LANG);
+        if (lang != null) {
+            cell.setAttribute(OSISUtil.OSIS_ATTR_LANG, lang.getCode(), Namespace.XML_NAMESPACE);
+        }
+        return cell;
+    }
+
+    /**
+     * Get the text of a verse that is to be compared.
+     */
+    private String getText(List<Content> contents) {
+        StringBuilder newText = new StringBuilder(32);
+        for (Content content : contents) {
+            addText(newText, content);
+        }
+
+        String text = newText.toString();
+        if (unaccenter != null) {
+            text = unaccenter.unaccent(text);
+        }
+        return text;
+    }
+
     private boolean isNextVerse(Content content) {
         if (content instanceof Element) {
             return OSISUtil.OSIS_ELEMENT_VERSE.equals(((Element) content).getName());
@@ -283,18 +392,16 @@ public class BookData implements BookProvider {
         return false;
     }
 
-    private void addText(boolean doDiffs, StringBuilder newText, Content content) {
-        if (doDiffs) {
-            // if we already have content, let's add a space to avoid chaining words together
-            if (newText.length() != 0) {
-                newText.append(' ');
-            }
+    private void addText(StringBuilder newText, Content content) {
+        // if we already have content, let's add a space to avoid chaining words together
+        if (newText.length() != 0) {
+            newText.append(' ');
+        }
 
-            if (content instanceof Element) {
-                newText.append(OSISUtil.getCanonicalText((Element) content));
-            } else if (content instanceof Text) {
-                newText.append(((Text) content).getText());
-            }
+        if (content instanceof Element) {
+            newText.append(OSISUtil.getCanonicalText((Element) content));
+        } else if (content instanceof Text) {
+            newText.append(((Text) content).getText());
         }
     }
 
@@ -305,6 +412,28 @@ public class BookData implements BookProvider {
         this.unaccenter = unaccenter;
     }
 
+    /**
+     * Sends the OSIS of a single book straight from the book, wrapped in the
+     * same div as getOsisFragment() would produce, without building it as JDOM.
+     */
+    private class StreamingSAXEventProvider implements SAXEventProvider {
+        /* (non-Javadoc)
+         * @see org.crosswire.common.xml.SAXEventProvider#provideSAXEvents(org.xml.sax.ContentHandler)
+         */
+        public void provideSAXEvents(ContentHandler handler) throws SAXException {
+            String div = OSISUtil.OSIS_ELEMENT_DIV;
+            handler.startDocument();
+            handler.startElement("", div, div, new AttributesImpl());
+            try {
+                books[0].provideSAXEvents(key, false, handler);
+            } catch (BookException ex) {
+                throw new SAXException(ex);
+            }
+            handler.endElement("", div, div);
+            handler.endDocument();
+        }
+    }
+
     /**
      * What key was used to create this data
      */
@@ -331,4 +460,9 @@ public class BookData implements BookProvider {
     private Element fragment;
 
     private UnAccenter unaccenter;
+
+    /**
+     * The threads that read and compare the books of a parallel view.
+     */
+    private static WorkerPool workers = new WorkerPool("BookData");
 }
@@ -0,0 +1,325 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.book;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.jdom2.Content;
+import org.jdom2.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An OSISFieldCollector gathers the different kinds of text of an OSIS
+ * fragment that are used for searching, walking the fragment once for all of
+ * them. The answers are the same as those of the corresponding methods of
+ * OSISUtil.
+ *
+ * <p>
+ * An OSISFieldCollector is meant to be used over and over again, by one thread,
+ * for one verse after another. The buffers are reused and the parsing of
+ * references is remembered from one verse to the next.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class OSISFieldCollector {
+    /**
+     * Create a collector that gathers the canonical text and, when asked for,
+     * the lexical information, the references, the notes and the headings.
+     *
+     * @param v11n
+     *            the versification of the references
+     * @param includeStrongs
+     *            whether to gather Strong's numbers
+     * @param includeMorphology
+     *            whether to gather Strong's numbers with their morphology
+     * @param includeXrefs
+     *            whether to gather references
+     * @param includeNotes
+     *            whether to gather the text of notes
+     * @param includeHeadings
+     *            whether to gather the text of headings
+     */
+    public OSISFieldCollector(Versification v11n, boolean includeStrongs, boolean includeMorphology, boolean includeXrefs, boolean includeNotes, boolean includeHeadings) {
+        this.v11n = v11n;
+        this.includeStrongs = includeStrongs;
+        this.includeMorphology = includeMorphology;
+        this.includeXrefs = includeXrefs;
+        this.includeNotes = includeNotes;
+        this.includeHeadings = includeHeadings;
+        this.keyf = PassageKeyFactory.instance();
+        if (includeXrefs) {
+            this.references = keyf.createEmptyKeyList(v11n);
+        }
+    }
+
+    /**
+     * Gather the text of the fragment, replacing that of the previous one.
+     *
+     * @param root
+     *            the osis fragment
+     */
+    public void collect(Element root) {
+        reset();
+        OSISUtil.getCanonicalText(root, canonical);
+
+        if (includeStrongs || includeMorphology || includeXrefs || includeNotes || includeHeadings) {
+            visit(root);
+        }
+    }
+
+    /**
+     * Gather the text of a verse that has no markup at all, replacing that of
+     * the previous one. Such text is all canonical, so only headings, which are
+     * not part of the verse, may be added.
+     *
+     * @param text
+     *            the text of the verse
+     */
+    public void collectPlainText(String text) {
+        reset();
+        canonical.append(text);
+    }
+
+    /**
+     * Add a heading to those gathered for the current verse, as if it were a
+     * title element that follows those already seen.
+     *
+     * @param heading
+     *            the text of the heading
+     */
+    public void addHeading(String heading) {
+        if (includeHeadings) {
+            if (headings.length() > 0) {
+                headings.append(' ');
+            }
+            headings.append(heading);
+        }
+    }
+
+    /**
+     * @return the canonical text
+     * @see OSISUtil#getCanonicalText(Element)
+     */
+    public String getCanonicalText() {
+        return canonical.toString().trim();
+    }
+
+    /**
+     * @return the Strong's numbers
+     * @see OSISUtil#getStrongsNumbers(Element)
+     */
+    public String getStrongsNumbers() {
+        return strongs.toString().trim();
+    }
+
+    /**
+     * @return the Strong's numbers with their morphology
+     * @see OSISUtil#getMorphologiesWithStrong(Element)
+     */
+    public String getMorphologiesWithStrong() {
+        return morphology.toString().trim();
+    }
+
+    /**
+     * @return the osisID of the references, or the empty string if references
+     *         are not gathered
+     * @see OSISUtil#getReferences(Versification, Element)
+     */
+    public String getReferences() {
+        return references == null ? "" : references.getOsisID();
+    }
+
+    /**
+     * @return the text of notes that are not cross references
+     * @see OSISUtil#getNotes(Element)
+     */
+    public String getNotes() {
+        return notes.toString();
+    }
+
+    /**
+     * @return the text of headings
+     * @see OSISUtil#getHeadings(Element)
+     */
+    public String getHeadings() {
+        return headings.toString();
+    }
+
+    /**
+     * Forget the text of the previous verse.
+     */
+    private void reset() {
+        canonical.setLength(0);
+        strongs.setLength(0);
+        morphology.setLength(0);
+        notes.setLength(0);
+        headings.setLength(0);
+        if (references != null) {
+            references.clear();
+        }
+    }
+
+    /**
+     * Visit the element and then all the elements below it, in document
+     * order.
+     */
+    private void visit(Element ele) {
+        String name = ele.getName();
+        if (OSISUtil.OSIS_ELEMENT_W.equals(name)) {
+            if (includeStrongs || includeMorphology) {
+                addLexicalInformation(ele);
+            }
+        } else if (OSISUtil.OSIS_ELEMENT_REFERENCE.equals(name)) {
+            if (includeXrefs) {
+                addReference(ele);
+            }
+        } else if (OSISUtil.OSIS_ELEMENT_NOTE.equals(name)) {
+            if (includeNotes && !OSISUtil.NOTETYPE_REFERENCE.equals(ele.getAttributeValue(OSISUtil.OSIS_ATTR_TYPE))) {
+                addText(notes, ele);
+            }
+        } else if (OSISUtil.OSIS_ELEMENT_TITLE.equals(name)) {
+            if (includeHeadings) {
+                addText(headings, ele);
+            }
+        }
+
+        for (Content data : ele.getContent()) {
+            if (data instanceof Element) {
+                visit((Element) data);
+            }
+        }
+    }
+
+    private void addLexicalInformation(Element ele) {
+        String attr = ele.getAttributeValue(OSISUtil.ATTRIBUTE_W_LEMMA);
+        if (attr == null) {
+            return;
+        }
+
+        Matcher matcher = OSISUtil.strongsNumberPattern.matcher(attr);
+        String morph = null;
+        while (matcher.find()) {
+            String strongsNum = matcher.group(1);
+            if (includeStrongs) {
+                if (strongs.length() > 0) {
+                    strongs.append(' ');
+                }
+                strongs.append(strongsNum);
+            }
+
+            if (includeMorphology) {
+                if (morphology.length() > 0) {
+                    morphology.append(' ');
+                }
+                // With morphology, we want 1 big field, separated with '@'
+                morphology.append(strongsNum.replace(' ', MORPH_INFO_SEPARATOR));
+                if (morph == null) {
+                    morph = ele.getAttributeValue(OSISUtil.ATTRIBUTE_W_MORPH);
+                    morph = morph == null ? "" : morph.replace(' ', MORPH_INFO_SEPARATOR);
+                }
+                if (morph.length() != 0) {
+                    morphology.append(MORPH_INFO_SEPARATOR);
+                    morphology.append(morph);
+                }
+            }
+        }
+    }
+
+    private void addReference(Element ele) {
+        String attr = ele.getAttributeValue(OSISUtil.OSIS_ATTR_REF);
+        if (attr == null) {
+            return;
+        }
+
+        Key key = parsedReferences.get(attr);
+        if (key == null) {
+            try {
+                key = keyf.getKey(v11n, attr);
+                parsedReferences.put(attr, key);
+            } catch (NoSuchKeyException e) {
+                log.warn("Unable to parse: {}", attr, e);
+                return;
+            }
+        }
+        references.addAll(key);
+    }
+
+    private void addText(StringBuilder buffer, Element ele) {
+        if (buffer.length() > 0) {
+            buffer.append(' ');
+        }
+        for (Content next : ele.getContent()) {
+            OSISUtil.recurseElement(next, buffer);
+        }
+    }
+
+    /**
+     * The number of parsed references to remember.
+     */
+    private static final int REFERENCE_CACHE_SIZE = 1000;
+
+    private static final char MORPH_INFO_SEPARATOR = '@';
+
+    private Versification v11n;
+    private PassageKeyFactory keyf;
+    private boolean includeStrongs;
+    private boolean includeMorphology;
+    private boolean includeXrefs;
+    private boolean includeNotes;
+    private boolean includeHeadings;
+
+    private StringBuilder canonical = new StringBuilder();
+    private StringBuilder strongs = new StringBuilder();
+    private StringBuilder morphology = new StringBuilder();
+    private StringBuilder notes = new StringBuilder();
+    private StringBuilder headings = new StringBuilder();
+    private Key references;
+
+    /**
+     * The most recently parsed osisRef values. Cross references are often
+     * repeated, in parallel passages and in chains.
+     */
+    private Map<String, Key> parsedReferences = new LinkedHashMap<String, Key>(REFERENCE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Key> eldest) {
+            return size() > REFERENCE_CACHE_SIZE;
+        }
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = 4651282717338129845L;
+    };
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(OSISFieldCollector.class);
+}
@@ -648,7 +648,21 @@ public final class OSISUtil {
      */
     public static String getCanonicalText(Element root) {
         StringBuilder buffer = new StringBuilder();
+        getCanonicalText(root, buffer);
+        return buffer.toString().trim();
+    }
 
+    /**
+     * Get the canonical text from an osis document consisting of a single
+     * fragment, appending it to the buffer without trimming it.
+     * 
+     * @param root
+     *            the whole osis document.
+     * @param buffer
+     *            the place to accumulate the text.
+     * @see #getCanonicalText(Element)
+     */
+    static void getCanonicalText(Element root, StringBuilder buffer) {
         // Dig past osis, osisText, if present, to get to the real content.
         List<Content> frag = OSISUtil.getFragment(root);
 
@@ -690,8 +704,6 @@ public final class OSISUtil {
                 }
             }
         }
-
-        return buffer.toString().trim();
     }
 
     /**
@@ -1162,7 +1174,7 @@ public final class OSISUtil {
      * If we have a String just add it to the buffer, but if we have an Element
      * then try to dig the strings out of it.
      */
-    private static void recurseElement(Object sub, StringBuilder buffer) {
+    static void recurseElement(Object sub, StringBuilder buffer) {
         if (sub instanceof Text) {
             buffer.append(((Text) sub).getText());
         } else if (sub instanceof Element) {
@@ -1188,7 +1200,7 @@ public final class OSISUtil {
     }
 
     private static String strongsNumber = "strong:([GgHh][0-9]+!?[A-Za-z]*)";
-    private static Pattern strongsNumberPattern = Pattern.compile(strongsNumber);
+    static Pattern strongsNumberPattern = Pattern.compile(strongsNumber);
     private static String robinsons = "robinson:([a-zA-Z][-a-zA-Z]*)";
     private static Pattern robinsonsPattern = Pattern.compile(robinsons);
 }
@@ -0,0 +1,64 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.book;
+
+import org.crosswire.common.xml.RenderedOutputCache;
+
+/**
+ * Forgets the rendered output of a book when it is installed or removed, so
+ * that a changed module is never shown from a stale cache. Entries must be
+ * cached with the initials of the book as the source.
+ *
+ * <pre>
+ * Books.installed().addBooksListener(new RenderedOutputInvalidator(cache));
+ * </pre>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class RenderedOutputInvalidator implements BooksListener {
+    /**
+     * @param cache
+     *            the cache to keep up to date
+     */
+    public RenderedOutputInvalidator(RenderedOutputCache cache) {
+        this.cache = cache;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.BooksListener#bookAdded(org.crosswire.jsword.book.BooksEvent)
+     */
+    public void bookAdded(BooksEvent ev) {
+        cache.invalidate(ev.getBook().getInitials());
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.BooksListener#bookRemoved(org.crosswire.jsword.book.BooksEvent)
+     */
+    public void bookRemoved(BooksEvent ev) {
+        cache.invalidate(ev.getBook().getInitials());
+    }
+
+    /**
+     * The cache of rendered output
+     */
+    private RenderedOutputCache cache;
+}
@@ -20,6 +20,7 @@
  */
 package org.crosswire.jsword.book.basic;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -45,6 +46,10 @@ import org.crosswire.jsword.index.search.SearcherFactory;
 import org.crosswire.jsword.passage.Key;
 import org.jdom2.Content;
 import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.jdom2.output.SAXOutputter;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * AbstractBook implements a few of the more generic methods of Book. This class
@@ -305,6 +310,21 @@ public abstract class AbstractBook implements Book {
 
     protected abstract List<Content> getOsis(Key key, RawTextToXmlProcessor noOpRawTextProcessor) throws BookException;
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.Book#provideSAXEvents(org.crosswire.jsword.passage.Key, boolean, org.xml.sax.ContentHandler)
+     */
+    public void provideSAXEvents(Key key, boolean allowEmpty, ContentHandler handler) throws BookException, SAXException {
+        SAXOutputter output = new SAXOutputter(handler);
+        Iterator<Content> iter = getOsisIterator(key, allowEmpty);
+        try {
+            while (iter.hasNext()) {
+                output.outputFragment(iter.next());
+            }
+        } catch (JDOMException ex) {
+            throw new SAXException(ex);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.Book#getUnlockKey()
      */
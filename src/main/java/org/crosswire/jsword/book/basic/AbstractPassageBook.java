@@ -20,6 +20,7 @@
  */
 package org.crosswire.jsword.book.basic;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -40,8 +41,12 @@ import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 import org.jdom2.Content;
 import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.output.SAXOutputter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * An abstract implementation of Book that lets implementors just concentrate on
@@ -64,13 +69,96 @@ public abstract class AbstractPassageBook extends AbstractBook {
     public Iterator<Content> getOsisIterator(Key key, final boolean allowEmpty) throws BookException {
         // Note: allowEmpty indicates parallel view
         // TODO(DMS): make the iterator be demand driven
+        Passage ref = KeyUtil.getPassage(key);
+        return getOsis(ref, createOsisProcessor(ref, allowEmpty)).iterator();
+    }
+
+    /**
+     * Convert the raw text of a verse, as given by {@link #getRawText(Key)},
+     * into OSIS. The answer is the same as the content given by
+     * getOsisIterator(key, false), but the text is not read again.
+     * 
+     * @param key
+     *            The verse whose raw text is given
+     * @param rawText
+     *            The raw text of the verse
+     * @return the OSIS for the verse
+     */
+    public List<Content> toOSIS(Key key, String rawText) {
+        Passage ref = KeyUtil.getPassage(key);
+        RawTextToXmlProcessor processor = createOsisProcessor(ref, false);
+        List<Content> content = new ArrayList<Content>();
+        Iterator<Key> rit = ref.rangeIterator(RestrictionType.CHAPTER);
+        while (rit.hasNext()) {
+            processor.preRange((VerseRange) rit.next(), content);
+        }
+        processor.postVerse(key, content, rawText);
+        return content;
+    }
+
+    /**
+     * Unlike {@link #getOsisIterator(Key, boolean)}, the content of each verse
+     * is handed on as soon as it has been filtered and is then dropped, so the
+     * OSIS for the whole passage is never held at once.
+     * 
+     * @see org.crosswire.jsword.book.Book#provideSAXEvents(org.crosswire.jsword.passage.Key, boolean, org.xml.sax.ContentHandler)
+     */
+    @Override
+    public void provideSAXEvents(Key key, boolean allowEmpty, ContentHandler handler) throws BookException, SAXException {
+        Passage ref = KeyUtil.getPassage(key);
+        final RawTextToXmlProcessor processor = createOsisProcessor(ref, allowEmpty);
+        final SAXOutputter output = new SAXOutputter(handler);
+
+        try {
+            getOsis(ref, new RawTextToXmlProcessor() {
+                public void preRange(VerseRange range, List<Content> partialDom) {
+                    processor.preRange(range, partialDom);
+                    flush(partialDom);
+                }
+
+                public void postVerse(Key verse, List<Content> partialDom, String rawText) {
+                    processor.postVerse(verse, partialDom, rawText);
+                    flush(partialDom);
+                }
+
+                public void init(List<Content> partialDom) {
+                    processor.init(partialDom);
+                }
+
+                private void flush(List<Content> partialDom) {
+                    if (partialDom.isEmpty()) {
+                        return;
+                    }
+                    try {
+                        output.outputFragment(partialDom);
+                    } catch (JDOMException e) {
+                        throw new SAXOutputException(e);
+                    }
+                    partialDom.clear();
+                }
+            });
+        } catch (SAXOutputException e) {
+            throw new SAXException((Exception) e.getCause());
+        }
+    }
+
+    /**
+     * Create the processor that filters each verse read from the backend into
+     * OSIS.
+     * 
+     * @param ref
+     *            The passage being read
+     * @param allowEmpty
+     *            whether empty verses should be marked up (parallel view)
+     * @return the processor
+     */
+    private RawTextToXmlProcessor createOsisProcessor(Passage ref, final boolean allowEmpty) {
         final Filter filter = getFilter();
 
         // For all the ranges in this Passage
-        Passage ref = KeyUtil.getPassage(key);
         final boolean showTitles = ref.hasRanges(RestrictionType.CHAPTER) || !allowEmpty;
 
-        RawTextToXmlProcessor processor = new RawTextToXmlProcessor() {
+        return new RawTextToXmlProcessor() {
             public void preRange(VerseRange range, List<Content> partialDom) {
                 if (showTitles) {
                     Element title = OSISUtil.factory().createGeneratedTitle();
@@ -91,8 +179,6 @@ public abstract class AbstractPassageBook extends AbstractBook {
                 // no-op
             }
         };
-
-        return getOsis(ref, processor).iterator();
     }
 
     /**
@@ -207,6 +293,21 @@ public abstract class AbstractPassageBook extends AbstractBook {
         return versificationSystem;
     }
 
+    /**
+     * Carries a failure to send SAX events out of a RawTextToXmlProcessor,
+     * which is not allowed to throw checked exceptions.
+     */
+    private static final class SAXOutputException extends RuntimeException {
+        SAXOutputException(JDOMException cause) {
+            super(cause);
+        }
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = -2858405139233436712L;
+    }
+
     /**
      * The name of the versification or null
      */
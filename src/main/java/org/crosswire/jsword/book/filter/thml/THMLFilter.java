@@ -60,11 +60,15 @@ public class THMLFilter implements Filter {
      * @see org.crosswire.jsword.book.filter.Filter#toOSIS(org.crosswire.jsword.book.Book, org.crosswire.jsword.passage.Key, java.lang.String)
      */
     public List<Content> toOSIS(Book book, Key key, String plain) {
-        Element ele = cleanParse(book, key, plain);
+        // The filter is shared by the threads that index a book, so what
+        // went wrong is kept for this call alone.
+        ParseState state = new ParseState();
+        Element ele = cleanParse(book, key, plain, state);
 
         if (ele == null) {
-            if (error instanceof SAXParseException) {
-                SAXParseException spe = (SAXParseException) error;
+            String finalInput = state.finalInput;
+            if (state.error instanceof SAXParseException) {
+                SAXParseException spe = (SAXParseException) state.error;
                 int colNumber = spe.getColumnNumber();
                 int start = Math.max(0, colNumber - 40);
                 int stop = Math.min(finalInput.length(), colNumber + 40);
@@ -72,7 +76,7 @@ public class THMLFilter implements Filter {
                 log.warn("Could not fix {}({}) by {}: Error here({},{},{}): {}"
                         , book.getInitials()
                         , key.getName()
-                        , errorMessage
+                        , state.errorMessage
                         , Integer.toString(colNumber)
                         , Integer.toString(finalInput.length())
                         , Integer.toString(here)
@@ -81,8 +85,8 @@ public class THMLFilter implements Filter {
                 log.warn("Could not fix {}({}) by {}: {}"
                         , book.getInitials()
                         , key.getName()
-                        , errorMessage
-                        , error.getMessage());
+                        , state.errorMessage
+                        , state.error.getMessage());
             }
             ele = OSISUtil.factory().createP();
         }
@@ -101,47 +105,48 @@ public class THMLFilter implements Filter {
         return clone;
     }
 
-    private Element cleanParse(Book book, Key key, String plain) {
+    private Element cleanParse(Book book, Key key, String plain, ParseState state) {
         // So just try to strip out all XML looking things
         String clean = XMLUtil.cleanAllEntities(plain);
-        Element ele = parse(book, key, clean, "cleaning entities");
+        Element ele = parse(book, key, clean, "cleaning entities", state);
 
         if (ele == null) {
-            ele = cleanText(book, key, clean);
+            ele = cleanText(book, key, clean, state);
         }
 
         return ele;
     }
 
-    private Element cleanText(Book book, Key key, String plain) {
+    private Element cleanText(Book book, Key key, String plain, ParseState state) {
         // So just try to strip out all XML looking things
         String clean = XMLUtil.cleanAllCharacters(plain);
-        Element ele = parse(book, key, clean, "cleaning text");
+        Element ele = parse(book, key, clean, "cleaning text", state);
 
         if (ele == null) {
-            ele = parse(book, key, XMLUtil.closeEmptyTags(clean), "closing empty tags");
+            ele = parse(book, key, XMLUtil.closeEmptyTags(clean), "closing empty tags", state);
         }
 
         if (ele == null) {
-            ele = cleanTags(book, key, clean);
+            ele = cleanTags(book, key, clean, state);
         }
 
         return ele;
     }
 
-    private Element cleanTags(Book book, Key key, String plain) {
+    private Element cleanTags(Book book, Key key, String plain, ParseState state) {
         // So just try to strip out all XML looking things
         String clean = XMLUtil.cleanAllTags(plain);
-        return parse(book, key, clean, "cleaning tags");
+        return parse(book, key, clean, "cleaning tags", state);
     }
 
-    private Element parse(Book book, Key key, String plain, String failMessage) {
+    private Element parse(Book book, Key key, String plain, String failMessage, ParseState state) {
         Exception ex = null;
         // We need to create a root element to house our document fragment
         // 15 for the tags we add
         StringBuilder buf = new StringBuilder(15 + plain.length());
         buf.append('<').append(RootTag.TAG_ROOT).append('>').append(plain).append("</").append(RootTag.TAG_ROOT).append('>');
-        finalInput = buf.toString();
+        String finalInput = buf.toString();
+        state.finalInput = finalInput;
         try {
             StringReader in = new StringReader(finalInput);
             InputSource is = new InputSource(in);
@@ -164,14 +169,19 @@ public class THMLFilter implements Filter {
             ex = e;
         }
 
-        errorMessage = failMessage;
-        error = ex;
+        state.errorMessage = failMessage;
+        state.error = ex;
         return null;
     }
 
-    private String errorMessage;
-    private Exception error;
-    private String finalInput;
+    /**
+     * What was last parsed in a call to toOSIS, and how it failed.
+     */
+    private static class ParseState {
+        String errorMessage;
+        Exception error;
+        String finalInput;
+    }
 
     /**
      * The log stream
@@ -34,6 +34,7 @@ import org.crosswire.jsword.book.sword.processing.RawTextToXmlProcessor;
 import org.crosswire.jsword.book.sword.state.OpenFileState;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.Passage;
 import org.crosswire.jsword.passage.PassageKeyFactory;
 import org.crosswire.jsword.versification.Versification;
 import org.jdom2.Attribute;
@@ -64,32 +65,47 @@ public class SwordBook extends AbstractPassageBook {
      * @see org.crosswire.jsword.book.Book#getGlobalKeyList()
      */
     public final Key getGlobalKeyList() {
-        if (global == null) {
-            try {
-                global = this.backend.getGlobalKeyList();
-                return global;
-            } catch (UnsupportedOperationException ex) {
-                // fail silently, operation not supported by the backend
-                log.debug(ex.getMessage());
-            } catch (BookException ex) {
-                // failing silently, as previous behaviour was to attempt to
-                // return as much as we can using the slower method
-                log.debug(ex.getMessage());
+        Key keys = global;
+        if (keys == null) {
+            keys = createGlobalKeyList();
+            // Frozen, it can be handed to every caller and every thread
+            if (keys instanceof Passage) {
+                keys = PassageKeyFactory.getFrozenPassage((Passage) keys);
             }
+            global = keys;
+        }
 
-            Versification v11n = super.getVersification();
+        return keys;
+    }
 
-            global = super.createEmptyKeyList();
-            Key all = PassageKeyFactory.instance().getGlobalKeyList(v11n);
+    /**
+     * Work out the keys of the book, from the backend if it knows them and
+     * otherwise by asking about each verse.
+     */
+    private Key createGlobalKeyList() {
+        try {
+            return this.backend.getGlobalKeyList();
+        } catch (UnsupportedOperationException ex) {
+            // fail silently, operation not supported by the backend
+            log.debug(ex.getMessage());
+        } catch (BookException ex) {
+            // failing silently, as previous behaviour was to attempt to
+            // return as much as we can using the slower method
+            log.debug(ex.getMessage());
+        }
 
-            for (Key key : all) {
-                if (contains(key)) {
-                    global.addAll(key);
-                }
+        Versification v11n = super.getVersification();
+
+        Key keys = super.createEmptyKeyList();
+        Key all = PassageKeyFactory.instance().getGlobalKeyList(v11n);
+
+        for (Key key : all) {
+            if (contains(key)) {
+                keys.addAll(key);
             }
         }
 
-        return global;
+        return keys;
     }
 
     /* (non-Javadoc)
@@ -305,7 +321,7 @@ public class SwordBook extends AbstractPassageBook {
     /**
      * A cached representation of the global key list.
      */
-    private Key global;
+    private volatile Key global;
 
     /**
      * The log stream
@@ -21,7 +21,9 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.Key;
 
 /**
  * A simple implementation of an Index that provides the set/get for
@@ -34,6 +36,15 @@ import org.crosswire.jsword.index.search.SearchModifier;
 
 public abstract class AbstractIndex implements Index {
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+     */
+    public Key find(String query) throws BookException {
+        return find(query, getSearchModifier());
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -20,6 +20,8 @@
  */
 package org.crosswire.jsword.index;
 
+import java.util.List;
+
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
@@ -46,6 +48,74 @@ public interface Index {
      */
     Key find(String query) throws BookException;
 
+    /**
+     * Find the set of references that satisfy the query, modified as asked.
+     * Unlike a modifier given to {@link #setSearchModifier(SearchModifier)},
+     * this one only applies to this search, so searches of this index on
+     * different threads do not affect each other.
+     * 
+     * @param query
+     *            The text to search for
+     * @param modifier
+     *            how to modify the search and its results, or null
+     * @return The references to the word
+     */
+    Key find(String query, SearchModifier modifier) throws BookException;
+
+    /**
+     * Find the set of references that satisfy the query and that are within a
+     * range, or outside of it. Only the verses that can be in the results are
+     * searched.
+     * 
+     * @param query
+     *            The text to search for
+     * @param modifier
+     *            how to modify the search and its results, or null
+     * @param range
+     *            the verses to which the search is restricted
+     * @param exclude
+     *            whether to search the verses outside the range instead
+     * @return The references to the word
+     */
+    Key find(String query, SearchModifier modifier, Key range, boolean exclude) throws BookException;
+
+    /**
+     * Estimate how many references satisfy the query, from what the index
+     * knows without searching. The estimate is only good enough to tell which
+     * of several queries is likely to find less.
+     * 
+     * @param query
+     *            The text to search for
+     * @return the estimate, or -1 if there is none
+     */
+    int estimateCount(String query);
+
+    /**
+     * Suggest how a word that is being typed might end, from the words of the
+     * index that begin the same way. The words are as they were indexed, so
+     * for example they might be lower case or stemmed.
+     * 
+     * @param field
+     *            the field of the index, as it is written in a search, for
+     *            example strong, or null for the text
+     * @param prefix
+     *            what has been typed so far, which is written as the words of
+     *            the field were, so that "Lo" finds "love" and "G26" finds
+     *            "G0026", "G0260" and "G2600"
+     * @param count
+     *            the most words to suggest
+     * @return the words, those that are in the most places first
+     */
+    List<String> getSuggestions(String field, String prefix, int count);
+
+    /**
+     * Get the concordance of the Strong's Numbers of the book, which tells
+     * where each number is without searching.
+     * 
+     * @return the concordance, or null if the index does not have one
+     */
+    StrongsConcordance getStrongsConcordance();
+
     /**
      * An index must be able to create KeyLists for users in a similar way to
      * the Book that it is indexing.
@@ -61,7 +131,9 @@ public interface Index {
 
     /**
      * Set any modifier for the current and subsequent search. Using null will
-     * clear the search modifier.
+     * clear the search modifier. The modifier is shared by all users of the
+     * index, so concurrent searches should use
+     * {@link #find(String, SearchModifier)} instead.
      * 
      * @param modifier
      *            how to modify the search and its results.
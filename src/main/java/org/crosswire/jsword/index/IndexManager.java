@@ -93,4 +93,20 @@ public interface IndexManager {
      * @param policy the IndexPolicy to use when creating indexes.
      */
     void setIndexPolicy(IndexPolicy policy);
+
+    /**
+     * Obtain the cache of search results. Defaults to none.
+     * 
+     * @return the cache of search results, or null if results are not cached
+     */
+    SearchResultCache getSearchResultCache();
+
+    /**
+     * Set the cache for the results of searching the indexes of this Index
+     * Manager. It is kept up to date as indexes are created, installed and
+     * deleted. Setting to null stops the caching of results.
+     * 
+     * @param cache the cache of search results
+     */
+    void setSearchResultCache(SearchResultCache cache);
 }
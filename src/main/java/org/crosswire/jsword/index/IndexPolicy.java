@@ -20,6 +20,8 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.Book;
+
 /**
  * An IndexPolicy allows for controlling the overall behavior
  * of Index creation. This class will change from time to time
@@ -88,4 +90,34 @@ public interface IndexPolicy {
      * @return whether there can only be one Book indexed at a time.
      */
     boolean isSerial();
+
+    /**
+     * The number of threads that may read, filter and index the
+     * text of one Book at the same time. Each works through a
+     * different part of the Book. Adapter default: the number of
+     * available processors.
+     * 
+     * @return the number of threads used to create an index.
+     */
+    int getThreadCount();
+
+    /**
+     * How the index of a Book is to be held while it is searched.
+     * Adapter default: IndexStorage.FILE.
+     * 
+     * @param book the Book whose index is opened
+     * @param size the size of the index on disk, in bytes
+     * @return how the index is to be held
+     */
+    IndexStorage getStorage(Book book, long size);
+
+    /**
+     * The most bytes of index that may be held in memory by all
+     * the Books together. An index that is to be held in memory but
+     * that would go beyond this is mapped instead. Adapter default:
+     * a quarter of the most memory the JVM may use.
+     * 
+     * @return the most bytes of index held in memory.
+     */
+    long getMemoryLimit();
 }
@@ -20,6 +20,8 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.Book;
+
 /**
  * The IndexPolicyAdapter provides for application resilience against
  * change to IndexPolicy. It defines a reasonable set of defaults for
@@ -83,4 +85,25 @@ public class IndexPolicyAdapter implements IndexPolicy {
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getThreadCount()
+     */
+    public int getThreadCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getStorage(org.crosswire.jsword.book.Book, long)
+     */
+    public IndexStorage getStorage(Book book, long size) {
+        return IndexStorage.FILE;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getMemoryLimit()
+     */
+    public long getMemoryLimit() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
 }
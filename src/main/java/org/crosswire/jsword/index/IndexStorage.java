@@ -0,0 +1,49 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index;
+
+/**
+ * How the index of a Book is held while it is searched.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public enum IndexStorage {
+    /**
+     * The index is read from disk as it is needed, and so is only as fast as
+     * the disk and the file cache of the operating system.
+     */
+    FILE,
+
+    /**
+     * The index is mapped into memory by the operating system, which reads
+     * the parts that are used and may drop them again when memory is short.
+     * This suits large indexes on 64 bit JVMs.
+     */
+    MAPPED,
+
+    /**
+     * The index is copied into the heap of the JVM, so searches never wait on
+     * the disk. This suits small indexes that are searched often. It counts
+     * against {@link IndexPolicy#getMemoryLimit()}.
+     */
+    MEMORY
+}
@@ -0,0 +1,363 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.OrdinalCursor;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A cache of the results of searching the index of a book. The same searches
+ * are made over and over again, and an answer from the cache costs nothing
+ * more than building a passage from an array of ordinals.
+ *
+ * <p>
+ * Results are kept by book, by query, with its spacing normalized, and by
+ * whether they are ranked and how many there may be. The verses are kept as
+ * their ordinals, with their scores when ranked, up to a budget of bytes.
+ * Beyond that the least recently used results are forgotten, as are those
+ * that have been kept longer than their time to live. Only results that are
+ * passages are kept.
+ * </p>
+ *
+ * <p>
+ * The IndexManager invalidates the results of a book whenever its index is
+ * created, deleted or installed. A search that began before then is not kept.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class SearchResultCache {
+    /**
+     * Create a cache of search results.
+     *
+     * @param budget
+     *            the most bytes of results to keep
+     * @param timeToLive
+     *            the most milliseconds a result is kept, or 0 to keep them
+     *            until they are evicted or invalidated
+     */
+    public SearchResultCache(long budget, long timeToLive) {
+        this.budget = budget;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.generations = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Get the remembered results of a search. A new Key is built for each
+     * call, so the caller is free to change it.
+     *
+     * @param book
+     *            the book that was searched
+     * @param query
+     *            what was searched for
+     * @param modifier
+     *            how the search was modified, or null
+     * @return the results, or null if they are not known
+     */
+    public Key get(Book book, String query, SearchModifier modifier) {
+        String key = getKey(book, query, modifier);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && timeToLive > 0 && System.currentTimeMillis() - entry.created > timeToLive) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        return entry.toKey(book);
+    }
+
+    /**
+     * Get the generation of the index of the book, which is to be passed to
+     * {@link #put(Book, String, SearchModifier, int, Key)} once the search that
+     * is about to begin is done.
+     *
+     * @param book
+     *            the book that is to be searched
+     * @return the current generation of the index of the book
+     */
+    public synchronized int getGeneration(Book book) {
+        Integer generation = generations.get(book.getInitials());
+        return generation == null ? 0 : generation.intValue();
+    }
+
+    /**
+     * Remember the results of a search, unless the index of the book has been
+     * changed since the search began or the results are not a passage.
+     *
+     * @param book
+     *            the book that was searched
+     * @param query
+     *            what was searched for
+     * @param modifier
+     *            how the search was modified, or null
+     * @param generation
+     *            the generation of the index when the search began
+     * @param results
+     *            what was found
+     */
+    public void put(Book book, String query, SearchModifier modifier, int generation, Key results) {
+        if (!(results instanceof Passage)) {
+            return;
+        }
+
+        Entry entry = new Entry((Passage) results);
+        if (entry.size > budget) {
+            return;
+        }
+
+        String key = getKey(book, query, modifier);
+        synchronized (this) {
+            if (generation != getGeneration(book)) {
+                return;
+            }
+
+            remove(key);
+            entries.put(key, entry);
+            size += entry.size;
+
+            Iterator<Entry> iter = entries.values().iterator();
+            while (size > budget && iter.hasNext()) {
+                size -= iter.next().size;
+                iter.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Forget the results of searching the book, and those of searches of it
+     * that are under way.
+     *
+     * @param book
+     *            the book whose index has changed
+     */
+    public synchronized void invalidate(Book book) {
+        String initials = book.getInitials();
+        generations.put(initials, Integer.valueOf(getGeneration(book) + 1));
+
+        String prefix = initials + SEPARATOR;
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, Entry> entry = iter.next();
+            if (entry.getKey().startsWith(prefix)) {
+                size -= entry.getValue().size;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget all results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of bytes of results kept
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of results kept
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of searches answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of searches not answered from the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results forgotten to stay within the budget
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            size -= old.size;
+        }
+    }
+
+    /**
+     * Build the key of the results from what was searched and how. Runs of
+     * white space do not change a query, so they are made a single space.
+     */
+    private static String getKey(Book book, String query, SearchModifier modifier) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(book.getInitials());
+        buf.append(SEPARATOR);
+        boolean space = false;
+        String trimmed = query.trim();
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space) {
+                    buf.append(' ');
+                    space = false;
+                }
+                buf.append(c);
+            }
+        }
+        buf.append(SEPARATOR);
+        if (modifier != null && modifier.isRanked()) {
+            buf.append(modifier.getMaxResults());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * The results of a search, as the ordinals of the verses and, when ranked,
+     * their scores.
+     */
+    private static class Entry {
+        Entry(Passage results) {
+            v11n = results.getVersification();
+            ordinals = new int[results.countVerses()];
+            if (results instanceof PassageTally) {
+                PassageTally tally = (PassageTally) results;
+                scores = new int[ordinals.length];
+                total = tally.getTotal();
+            }
+
+            int i = 0;
+            if (scores == null) {
+                OrdinalCursor cursor = results.ordinalCursor();
+                for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                    ordinals[i++] = ord;
+                }
+            } else {
+                // Keep the ranking order of the tally
+                for (Key key : results) {
+                    Verse verse = (Verse) key;
+                    ordinals[i] = verse.getOrdinal();
+                    scores[i] = ((PassageTally) results).getTallyOf(verse);
+                    i++;
+                }
+            }
+
+            // 4 bytes for each int and about 100 for the rest
+            size = 4L * ordinals.length * (scores == null ? 1 : 2) + 100;
+            created = System.currentTimeMillis();
+        }
+
+        /**
+         * Build the results again.
+         */
+        Key toKey(Book book) {
+            if (scores != null) {
+                PassageTally tally = new PassageTally(v11n);
+                tally.raiseEventSuppresion();
+                tally.raiseNormalizeProtection();
+                for (int i = 0; i < ordinals.length; i++) {
+                    tally.addVersifiedOrdinal(ordinals[i], scores[i]);
+                }
+                tally.setTotal(total);
+                tally.lowerNormalizeProtection();
+                tally.lowerEventSuppressionAndTest();
+                return tally;
+            }
+
+            Key results = book.createEmptyKeyList();
+            if (results instanceof BitwisePassage && ((BitwisePassage) results).getVersification() == v11n) {
+                BitwisePassage passage = (BitwisePassage) results;
+                passage.raiseEventSuppresion();
+                for (int ordinal : ordinals) {
+                    passage.addVersifiedOrdinal(ordinal);
+                }
+                passage.lowerEventSuppressionAndTest();
+            } else {
+                for (int ordinal : ordinals) {
+                    results.addAll(v11n.decodeOrdinal(ordinal));
+                }
+            }
+            return results;
+        }
+
+        Versification v11n;
+        int[] ordinals;
+        int[] scores;
+        int total;
+        long size;
+        long created;
+    }
+
+    /**
+     * Separates the parts of a key.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    private long budget;
+    private long timeToLive;
+
+    /**
+     * The results, from least to most recently used
+     */
+    private Map<String, Entry> entries;
+
+    /**
+     * How many times the index of each book has changed
+     */
+    private Map<String, Integer> generations;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+}
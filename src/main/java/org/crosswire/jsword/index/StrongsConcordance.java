@@ -0,0 +1,418 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.study.StrongsNumber;
+import org.crosswire.jsword.passage.AbstractPassage;
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * A StrongsConcordance knows in which verses each Strong's Number is found,
+ * without searching. It is kept in a file next to the index, which is mapped
+ * into memory when it is opened, so only the numbers that are asked for are
+ * ever read.
+ *
+ * <p>
+ * The verses of each number are held as the ordinals of the verses, either as
+ * a bitmap or as the varint encoded gaps between them, whichever is smaller.
+ * Rare numbers take a few bytes and common ones at most one bit per verse.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public final class StrongsConcordance {
+    /**
+     * Read a concordance that was written by {@link #write(File, Versification, SortedMap)}.
+     *
+     * @param file
+     *            the concordance file
+     * @return the concordance
+     * @throws IOException
+     *             if the file cannot be read or is not a concordance
+     */
+    public static StrongsConcordance open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new StrongsConcordance(buffer);
+        } catch (RuntimeException e) {
+            // A truncated or foreign file shows up as an underflow
+            throw (IOException) new IOException("Not a concordance: " + file).initCause(e);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write a concordance.
+     *
+     * @param file
+     *            where to write it
+     * @param v11n
+     *            the versification of the ordinals
+     * @param ordinals
+     *            the ordinals of the verses of each Strong's Number, in
+     *            ascending order, by the number as it was indexed
+     */
+    public static void write(File file, Versification v11n, SortedMap<String, int[]> ordinals) throws IOException {
+        // Encode them first to know where each will be
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[ordinals.size()];
+        byte[] encodings = new byte[ordinals.size()];
+        int i = 0;
+        for (int[] verses : ordinals.values()) {
+            offsets[i] = data.size();
+            encodings[i] = encode(verses, v11n.maximumOrdinal(), data);
+            i++;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeUTF(v11n.getName());
+            out.writeInt(ordinals.size());
+            i = 0;
+            for (Map.Entry<String, int[]> entry : ordinals.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.writeInt(offsets[i]);
+                out.writeByte(encodings[i]);
+                i++;
+            }
+            out.writeInt(data.size());
+            data.writeTo(out);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * Read the directory of the numbers, leaving the verses to be read when
+     * they are asked for.
+     */
+    private StrongsConcordance(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a concordance");
+        }
+        v11n = Versifications.instance().getVersification(readUTF(buffer));
+        if (v11n == null) {
+            throw new IOException("Unknown versification");
+        }
+
+        int size = buffer.getInt();
+        entries = new HashMap<String, Entry>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String number = readUTF(buffer);
+            Entry entry = new Entry();
+            entry.count = buffer.getInt();
+            entry.offset = buffer.getInt();
+            entry.encoding = buffer.get();
+            entries.put(number, entry);
+        }
+
+        int length = buffer.getInt();
+        buffer.limit(buffer.position() + length);
+        data = buffer.slice();
+    }
+
+    /**
+     * @return the versification of the verses
+     */
+    public Versification getVersification() {
+        return v11n;
+    }
+
+    /**
+     * @param number
+     *            a Strong's Number, for example G26 or H0430
+     * @return the number of verses in which it is found
+     */
+    public int getCount(String number) {
+        Entry entry = entries.get(normalize(number));
+        return entry == null ? 0 : entry.count;
+    }
+
+    /**
+     * @param number
+     *            a Strong's Number, for example G26 or H0430
+     * @return the verses in which it is found
+     */
+    public Passage getPassage(String number) {
+        return toPassage(getOrdinals(number));
+    }
+
+    /**
+     * @param numbers
+     *            Strong's Numbers
+     * @return the verses in which any of them are found
+     */
+    public Passage getAny(String... numbers) {
+        int[] union = EMPTY;
+        for (String number : numbers) {
+            union = union(union, getOrdinals(number));
+        }
+        return toPassage(union);
+    }
+
+    /**
+     * @param numbers
+     *            Strong's Numbers
+     * @return the verses in which all of them are found
+     */
+    public Passage getAll(String... numbers) {
+        if (numbers.length == 0) {
+            return toPassage(EMPTY);
+        }
+        int[] intersection = getOrdinals(numbers[0]);
+        for (int i = 1; i < numbers.length && intersection.length > 0; i++) {
+            intersection = intersect(intersection, getOrdinals(numbers[i]));
+        }
+        return toPassage(intersection);
+    }
+
+    /**
+     * The ordinals of the verses of a number, in ascending order.
+     */
+    private int[] getOrdinals(String number) {
+        Entry entry = entries.get(normalize(number));
+        if (entry == null) {
+            return EMPTY;
+        }
+
+        int[] ordinals = new int[entry.count];
+        int pos = entry.offset;
+        if (entry.encoding == BITMAP) {
+            int found = 0;
+            for (int byteIndex = 0; found < ordinals.length; byteIndex++) {
+                int bits = data.get(pos + byteIndex) & 0xFF;
+                for (int bit = 0; bits != 0; bit++, bits >>>= 1) {
+                    if ((bits & 1) != 0) {
+                        ordinals[found++] = byteIndex * 8 + bit;
+                    }
+                }
+            }
+        } else {
+            int ordinal = 0;
+            for (int i = 0; i < ordinals.length; i++) {
+                int gap = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = data.get(pos++);
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                ordinal += gap;
+                ordinals[i] = ordinal;
+            }
+        }
+        return ordinals;
+    }
+
+    private Passage toPassage(int[] ordinals) {
+        Passage passage = (Passage) PassageKeyFactory.instance().createEmptyKeyList(v11n);
+        AbstractPassage abstractPassage = null;
+        if (passage instanceof AbstractPassage) {
+            abstractPassage = (AbstractPassage) passage;
+            abstractPassage.raiseEventSuppresion();
+            abstractPassage.raiseNormalizeProtection();
+        }
+
+        if (passage instanceof BitwisePassage) {
+            BitwisePassage bitwise = (BitwisePassage) passage;
+            for (int ordinal : ordinals) {
+                bitwise.addVersifiedOrdinal(ordinal);
+            }
+        } else {
+            for (int ordinal : ordinals) {
+                passage.add(v11n.decodeOrdinal(ordinal));
+            }
+        }
+
+        if (abstractPassage != null) {
+            abstractPassage.lowerNormalizeProtection();
+            abstractPassage.lowerEventSuppressionAndTest();
+        }
+        return passage;
+    }
+
+    /**
+     * Write the ordinals in whichever encoding is smaller.
+     *
+     * @return the encoding used
+     */
+    private static byte encode(int[] ordinals, int maximum, ByteArrayOutputStream out) {
+        ByteArrayOutputStream gaps = new ByteArrayOutputStream();
+        int last = 0;
+        for (int ordinal : ordinals) {
+            int gap = ordinal - last;
+            last = ordinal;
+            while ((gap & ~0x7F) != 0) {
+                gaps.write((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            gaps.write(gap);
+        }
+
+        // A bitmap only needs to reach the last verse
+        int bitmapSize = ordinals.length == 0 ? 0 : ordinals[ordinals.length - 1] / 8 + 1;
+        if (bitmapSize >= gaps.size() || bitmapSize > maximum / 8 + 1) {
+            byte[] bytes = gaps.toByteArray();
+            out.write(bytes, 0, bytes.length);
+            return GAPS;
+        }
+
+        byte[] bitmap = new byte[bitmapSize];
+        for (int ordinal : ordinals) {
+            bitmap[ordinal / 8] |= 1 << (ordinal % 8);
+        }
+        out.write(bitmap, 0, bitmap.length);
+        return BITMAP;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+        while (j < b.length) {
+            result[k++] = b[j++];
+        }
+        return trim(result, k);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        return trim(result, k);
+    }
+
+    private static int[] trim(int[] array, int length) {
+        if (length == array.length) {
+            return array;
+        }
+        int[] trimmed = new int[length];
+        System.arraycopy(array, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    /**
+     * Write a Strong's Number as it was indexed. What cannot be understood
+     * is left as it is, and so is not found.
+     */
+    private static String normalize(String number) {
+        StrongsNumber strongs = new StrongsNumber(number);
+        if (!strongs.isValid()) {
+            return number;
+        }
+        return strongs.getFullStrongsNumber();
+    }
+
+    /**
+     * Read a string written by DataOutput.writeUTF. Only the numbers and the
+     * name of the versification are written, which are all ASCII.
+     */
+    private static String readUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Where the verses of a number are and how they are encoded.
+     */
+    private static class Entry {
+        int count;
+        int offset;
+        byte encoding;
+    }
+
+    /**
+     * The name of the concordance file in the directory of an index.
+     */
+    public static final String FILE_NAME = "strongs.dat";
+
+    /**
+     * Identifies the file and the version of its format.
+     */
+    private static final int MAGIC = 0x4A534331;
+
+    private static final byte GAPS = 0;
+    private static final byte BITMAP = 1;
+    private static final int[] EMPTY = new int[0];
+
+    private Versification v11n;
+    private Map<String, Entry> entries;
+    private ByteBuffer data;
+}
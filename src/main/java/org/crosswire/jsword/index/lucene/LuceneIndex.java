@@ -25,44 +25,82 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.ReaderUtil;
 import org.apache.lucene.util.Version;
 import org.crosswire.common.progress.JobManager;
 import org.crosswire.common.progress.Progress;
 import org.crosswire.common.util.FileUtil;
 import org.crosswire.common.util.NetUtil;
 import org.crosswire.common.util.Reporter;
+import org.crosswire.common.util.WorkerPool;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.FeatureType;
+import org.crosswire.jsword.book.OSISFieldCollector;
 import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.book.study.StrongsNumber;
 import org.crosswire.jsword.index.AbstractIndex;
 import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexPolicy;
+import org.crosswire.jsword.index.IndexPolicyAdapter;
+import org.crosswire.jsword.index.IndexStorage;
 import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.SearchResultCache;
+import org.crosswire.jsword.index.StrongsConcordance;
 import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
 import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.AbstractPassage;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.crosswire.jsword.passage.NoSuchVerseException;
 import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.RestrictionType;
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.passage.VerseFactory;
 import org.crosswire.jsword.versification.Versification;
@@ -122,6 +160,12 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      * Combines the strong numbers with the morphology field
      */
     public static final String FIELD_INTRO = "intro";
+
+    /**
+     * The Lucene field for the ordinal of a verse, so that hits can be
+     * turned into verses without loading the stored key
+     */
+    public static final String FIELD_ORDINAL = "ordinal";
     
 
     /**
@@ -130,6 +174,17 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      */
     private static final int WORK_ESTIMATE = 98;
 
+    /**
+     * The number of consecutive keys a thread indexes before taking the
+     * next ones that are yet to be done.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The number of digits of an indexed Strong's Number, without its part.
+     */
+    private static final int STRONGS_DIGITS = 4;
+
     /**
      * Read an existing index and use it.
      * 
@@ -137,7 +192,23 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      *             If we fail to read the index files
      */
     public LuceneIndex(Book book, URI storage) throws BookException {
+        this(book, new IndexPolicyAdapter(), storage);
+    }
+
+    /**
+     * Read an existing index and use it, holding it as the policy says from
+     * the start rather than opening it again once the policy is set.
+     * 
+     * @throws BookException
+     *             If we fail to read the index files
+     */
+    /* package */ static LuceneIndex open(Book book, URI storage, IndexPolicy policy) throws BookException {
+        return new LuceneIndex(book, policy, storage);
+    }
+
+    private LuceneIndex(Book book, IndexPolicy policy, URI storage) throws BookException {
         this.book = book;
+        this.policy = policy;
 
         try {
             this.path = NetUtil.getAsFile(storage).getCanonicalPath();
@@ -157,6 +228,7 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     public LuceneIndex(Book book, URI storage, IndexPolicy policy) throws BookException {
 
         this.book = book;
+        this.policy = policy;
         File finalPath = null;
         try {
             finalPath = NetUtil.getAsFile(storage);
@@ -201,7 +273,7 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                     writer = new IndexWriter(destination, analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
                     writer.setRAMBufferSizeMB(policy.getRAMBufferSize());
 
-                    generateSearchIndexImpl(job, errors, writer, book.getGlobalKeyList(), 0, policy);
+                    generateSearchIndexImpl(job, errors, writer, book.getGlobalKeyList(), policy);
 
                 } finally {
                     if (writer != null) {
@@ -209,6 +281,10 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                     }
                 }
 
+                if (!job.isFinished()) {
+                    writeConcordance(tempPath);
+                }
+
                 job.setCancelable(false);
                 if (!job.isFinished()) {
                     if (!tempPath.renameTo(finalPath)) {
@@ -250,35 +326,258 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     /**
      * Initializes the directory and searcher.
      */
-    private void initDirectoryAndSearcher() {
+    private synchronized void initDirectoryAndSearcher() {
+        concordance = null;
+        File concordanceFile = new File(path, StrongsConcordance.FILE_NAME);
+        if (concordanceFile.exists()) {
+            try {
+                concordance = StrongsConcordance.open(concordanceFile);
+            } catch (IOException ex) {
+                // Strong's Numbers are searched for instead
+                log.warn("Unable to read the concordance of {}", book.getInitials(), ex);
+            }
+        }
+
         try {
-            directory = FSDirectory.open(new File(path));
-            searcher = new IndexSearcher(directory, true);
+            dictionaries = new HashMap<String, TermDictionary>();
+            directory = openDirectory(new File(path));
+            searcher = new IndexSearcher(IndexReader.open(directory, true));
         } catch (IOException ex) {
             log.warn("second load failure", ex);
         }
     }
 
+    /**
+     * Open the directory of the index as the policy asks. An index that is to
+     * be held in memory but that does not fit in what is left of the memory
+     * limit is mapped instead.
+     */
+    private Directory openDirectory(File dir) throws IOException {
+        long size = getSize(dir);
+        storage = policy.getStorage(book, size);
+
+        if (storage == IndexStorage.MEMORY) {
+            if (reserveMemory(size, policy.getMemoryLimit())) {
+                Directory source = FSDirectory.open(dir);
+                try {
+                    Directory copy = new RAMDirectory(source);
+                    residentSize = size;
+                    return copy;
+                } catch (IOException ex) {
+                    RESIDENT_SIZE.addAndGet(-size);
+                    throw ex;
+                } finally {
+                    source.close();
+                }
+            }
+            log.info("The index of {} does not fit in memory and is mapped instead", book.getInitials());
+            storage = IndexStorage.MAPPED;
+        }
+
+        if (storage == IndexStorage.MAPPED) {
+            return new MMapDirectory(dir);
+        }
+        return FSDirectory.open(dir);
+    }
+
+    /**
+     * Write the concordance of the Strong's Numbers of a new index, if it has
+     * any and knows the ordinals of its verses.
+     */
+    private void writeConcordance(File dir) throws IOException {
+        Directory source = FSDirectory.open(dir);
+        IndexReader reader = null;
+        try {
+            reader = IndexReader.open(source, true);
+            int[] ordinals = VerseCollector.getOrdinals(reader);
+            if (ordinals == VerseCollector.NO_ORDINALS) {
+                return;
+            }
+
+            SortedMap<String, int[]> verses = new TreeMap<String, int[]>();
+            TermEnum terms = reader.terms(new Term(FIELD_STRONG, ""));
+            TermDocs docs = reader.termDocs();
+            try {
+                do {
+                    Term term = terms.term();
+                    if (term == null || !FIELD_STRONG.equals(term.field())) {
+                        break;
+                    }
+                    int[] found = new int[terms.docFreq()];
+                    int count = 0;
+                    docs.seek(terms);
+                    while (docs.next() && count < found.length) {
+                        found[count++] = ordinals[docs.doc()];
+                    }
+                    // The verses were not indexed in order
+                    Arrays.sort(found, 0, count);
+                    int[] sorted = new int[count];
+                    System.arraycopy(found, 0, sorted, 0, count);
+                    verses.put(term.text(), sorted);
+                } while (terms.next());
+            } finally {
+                docs.close();
+                terms.close();
+            }
+
+            if (!verses.isEmpty()) {
+                String v11nName = book.getBookMetaData().getProperty("Versification").toString();
+                Versification v11n = Versifications.instance().getVersification(v11nName);
+                StrongsConcordance.write(new File(dir, StrongsConcordance.FILE_NAME), v11n, verses);
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            source.close();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.Index#getStrongsConcordance()
+     */
+    public StrongsConcordance getStrongsConcordance() {
+        return concordance;
+    }
+
+    /**
+     * Count the bytes of an index against the memory limit, unless that would
+     * go beyond it.
+     */
+    private static boolean reserveMemory(long size, long limit) {
+        while (true) {
+            long current = RESIDENT_SIZE.get();
+            if (current + size > limit) {
+                return false;
+            }
+            if (RESIDENT_SIZE.compareAndSet(current, current + size)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The number of bytes of the files of an index.
+     */
+    private static long getSize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Use a policy other than that the index was opened with, opening it
+     * again if the policy would hold it differently.
+     * 
+     * @param newPolicy
+     *            the policy to use
+     */
+    void setIndexPolicy(IndexPolicy newPolicy) {
+        IndexStorage wanted;
+        synchronized (this) {
+            policy = newPolicy;
+            wanted = policy.getStorage(book, getSize(new File(path)));
+            if (wanted == storage || directory == null) {
+                return;
+            }
+        }
+        reopen();
+    }
+
+    /**
+     * @return how the index is held at the moment
+     */
+    synchronized IndexStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Open the index again, for when it has been replaced on disk. Searches
+     * that are under way finish with the index they started with.
+     */
+    public void reopen() {
+        IndexSearcher oldSearcher;
+        Directory oldDirectory;
+        long oldResidentSize;
+        synchronized (this) {
+            oldSearcher = searcher;
+            oldDirectory = directory;
+            oldResidentSize = residentSize;
+            searcher = null;
+            directory = null;
+            residentSize = 0;
+            initDirectoryAndSearcher();
+        }
+        close(oldSearcher, oldDirectory, oldResidentSize);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchModifier)
+     */
+    public Key find(String search, SearchModifier modifier) throws BookException {
+        return find(search, modifier, null, false);
+    }
+
     /* (non-Javadoc)
-     * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchModifier, org.crosswire.jsword.passage.Key, boolean)
      */
-    public Key find(String search) throws BookException {
+    public Key find(String search, SearchModifier modifier, Key range, boolean exclude) throws BookException {
         String v11nName = book.getBookMetaData().getProperty("Versification").toString();
         Versification v11n = Versifications.instance().getVersification(v11nName);
 
-        SearchModifier modifier = getSearchModifier();
         Key results = null;
 
+        // A lookup of one Strong's Number needs no search
+        StrongsConcordance strongs = concordance;
+        if (strongs != null && search != null && strongs.getVersification().equals(v11n) && (modifier == null || !modifier.isRanked())) {
+            Matcher matcher = STRONGS_LOOKUP.matcher(search.trim());
+            if (matcher.matches()) {
+                results = strongs.getPassage(matcher.group(1));
+                if (range != null) {
+                    if (exclude) {
+                        results.removeAll(range);
+                    } else {
+                        results.retainAll(range);
+                    }
+                }
+                return results;
+            }
+        }
+
+        SearchResultCache cache = resultCache;
+        int generation = 0;
+        String cached = search;
+        if (range != null && search != null) {
+            // Written as the user would have written it
+            cached = (exclude ? "-[" : "+[") + range.getOsisRef() + "] " + search;
+        }
+        if (cache != null && search != null) {
+            results = cache.get(book, cached, modifier);
+            if (results != null) {
+                return results;
+            }
+            generation = cache.getGeneration(book);
+        }
+
         if (search != null) {
             Throwable theCause = null;
+            IndexSearcher searcher = acquireSearcher();
             try {
-                Analyzer analyzer = new LuceneAnalyzer(book);
-
-                QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, analyzer);
-                parser.setAllowLeadingWildcard(true);
-                Query query = parser.parse(search);
+                Query query = parse(search);
                 log.info("ParsedQuery- {}", query.toString());
 
+                // Only score and collect the verses of the range,
+                // unless the index is too old to say which verses they are.
+                Filter filter = null;
+                if (range != null && VerseRangeFilter.canFilter(searcher.getIndexReader())) {
+                    filter = new VerseRangeFilter(range, exclude);
+                }
+
                 // For ranking we use a PassageTally
                 if (modifier != null && modifier.isRanked()) {
                     PassageTally tally = new PassageTally(v11n);
@@ -287,17 +586,36 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                     results = tally;
 
                     TopScoreDocCollector collector = TopScoreDocCollector.create(modifier.getMaxResults(), false);
-                    searcher.search(query, collector);
+                    searcher.search(query, filter, collector);
                     tally.setTotal(collector.getTotalHits());
                     ScoreDoc[] hits = collector.topDocs().scoreDocs;
+
+                    // The hits are numbered across all the segments of the index
+                    List<IndexReader> segments = new ArrayList<IndexReader>();
+                    ReaderUtil.gatherSubReaders(segments, searcher.getIndexReader());
+                    int[] docStarts = new int[segments.size()];
+                    int[][] ordinals = new int[segments.size()][];
+                    for (int i = 1; i < docStarts.length; i++) {
+                        docStarts[i] = docStarts[i - 1] + segments.get(i - 1).maxDoc();
+                    }
+
                     for (int i = 0; i < hits.length; i++) {
                         int docId = hits[i].doc;
-                        Document doc = searcher.doc(docId);
-                        Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
+                        int segment = ReaderUtil.subIndex(docId, docStarts);
+                        if (ordinals[segment] == null) {
+                            ordinals[segment] = VerseCollector.getOrdinals(segments.get(segment));
+                        }
+
                         // PassageTally understands a score of 0 as the verse
                         // not participating
                         int score = (int) (hits[i].score * 100 + 1);
-                        tally.add(key, score);
+                        if (ordinals[segment] != VerseCollector.NO_ORDINALS) {
+                            tally.addVersifiedOrdinal(ordinals[segment][docId - docStarts[segment]], score);
+                        } else {
+                            Document doc = searcher.doc(docId);
+                            Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
+                            tally.add(key, score);
+                        }
                     }
                     tally.lowerNormalizeProtection();
                     tally.lowerEventSuppressionAndTest();
@@ -311,12 +629,20 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                         passage.raiseEventSuppresion();
                         passage.raiseNormalizeProtection();
                     }
-                    searcher.search(query, new VerseCollector(v11n, searcher, results));
+                    searcher.search(query, filter, new VerseCollector(v11n, searcher, results));
                     if (passage != null) {
                         passage.lowerNormalizeProtection();
                         passage.lowerEventSuppressionAndTest();
                     }
                 }
+
+                if (range != null && filter == null) {
+                    if (exclude) {
+                        results.removeAll(range);
+                    } else {
+                        results.retainAll(range);
+                    }
+                }
             } catch (IOException e) {
                 // The VerseCollector may throw IOExceptions that merely wrap a NoSuchVerseException
                 Throwable cause = e.getCause();
@@ -325,12 +651,18 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                 theCause = e;
             } catch (ParseException e) {
                 theCause = e;
+            } finally {
+                releaseSearcher(searcher);
             }
 
             if (theCause != null) {
                 // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
                 throw new BookException(JSMsg.gettext("Search failed."), theCause);
             }
+
+            if (cache != null && results != null) {
+                cache.put(book, cached, modifier, generation, results);
+            }
         }
 
         if (results == null) {
@@ -343,6 +675,219 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         return results;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.Index#estimateCount(java.lang.String)
+     */
+    public int estimateCount(String search) {
+        if (search == null) {
+            return 0;
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = acquireSearcher();
+            return estimateCount(parse(search), searcher.getIndexReader());
+        } catch (BookException e) {
+            // The index is closed, so the search will fail anyway
+            return -1;
+        } catch (ParseException e) {
+            return -1;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            if (searcher != null) {
+                releaseSearcher(searcher);
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of documents that match a query from the number of
+     * documents that have each of its terms. A document must have all the
+     * required terms and all the terms of a phrase, so the least of them is
+     * taken. Queries that would have to be expanded against the terms of the
+     * index, such as wildcards, are taken to match every document.
+     */
+    private static int estimateCount(Query query, IndexReader reader) throws IOException {
+        if (query instanceof TermQuery) {
+            return reader.docFreq(((TermQuery) query).getTerm());
+        }
+
+        if (query instanceof PhraseQuery) {
+            int count = reader.maxDoc();
+            for (Term term : ((PhraseQuery) query).getTerms()) {
+                count = Math.min(count, reader.docFreq(term));
+            }
+            return count;
+        }
+
+        if (query instanceof BooleanQuery) {
+            int required = -1;
+            long optional = 0;
+            for (BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+                if (clause.isProhibited()) {
+                    continue;
+                }
+                int count = estimateCount(clause.getQuery(), reader);
+                if (clause.isRequired()) {
+                    required = required < 0 ? count : Math.min(required, count);
+                } else {
+                    optional += count;
+                }
+            }
+            if (required >= 0) {
+                return required;
+            }
+            return (int) Math.min(optional, reader.maxDoc());
+        }
+
+        return reader.maxDoc();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.Index#getSuggestions(java.lang.String, java.lang.String, int)
+     */
+    public List<String> getSuggestions(String field, String prefix, int count) {
+        String name = field == null ? FIELD_BODY : field;
+        IndexSearcher current = null;
+        try {
+            current = acquireSearcher();
+            TermDictionary dictionary = getDictionary(current, name);
+            List<String> prefixes = normalizePrefix(name, prefix);
+            if (prefixes.size() == 1) {
+                return dictionary.suggest(prefixes.get(0), count);
+            }
+
+            // The terms of the first prefix are the closest to what was typed
+            Set<String> suggestions = new LinkedHashSet<String>();
+            for (String each : prefixes) {
+                for (String term : dictionary.suggest(each, count)) {
+                    if (suggestions.size() == count) {
+                        break;
+                    }
+                    suggestions.add(term);
+                }
+            }
+            return new ArrayList<String>(suggestions);
+        } catch (BookException e) {
+            // The index is closed
+            return Collections.emptyList();
+        } catch (IOException e) {
+            log.warn("Unable to read the terms of {}", name, e);
+            return Collections.emptyList();
+        } finally {
+            if (current != null) {
+                releaseSearcher(current);
+            }
+        }
+    }
+
+    /**
+     * Write a prefix as the analyzer wrote the terms of the field, so that it
+     * matches them. The words are lower cased, a character at a time as the
+     * LowerCaseFilter does. Keys and cross references are left as they are.
+     * 
+     * @return the prefixes to look for, the closest first
+     */
+    private static List<String> normalizePrefix(String field, String prefix) {
+        if (prefix == null || prefix.length() == 0) {
+            return Collections.singletonList(prefix);
+        }
+
+        if (FIELD_STRONG.equals(field)) {
+            return normalizeStrongsPrefix(prefix);
+        }
+
+        if (FIELD_KEY.equals(field) || FIELD_XREF.equals(field) || FIELD_ORDINAL.equals(field)) {
+            return Collections.singletonList(prefix);
+        }
+
+        char[] chars = prefix.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return Collections.singletonList(new String(chars));
+    }
+
+    /**
+     * Strong's Numbers are indexed with 4 digits, so the digits typed so far
+     * may be the end of the number or the start of a longer one. G26 is
+     * looked for as G0026, then G026 and then G26.
+     */
+    private static List<String> normalizeStrongsPrefix(String prefix) {
+        String upper = prefix.toUpperCase(Locale.ENGLISH);
+        char language = upper.charAt(0);
+        String digits = upper.substring(1);
+        if ((language == 'G' || language == 'H') && digits.length() <= STRONGS_DIGITS && isDigits(digits)) {
+            if (digits.length() == 0) {
+                return Collections.singletonList(upper);
+            }
+
+            List<String> prefixes = new ArrayList<String>();
+            StringBuilder buf = new StringBuilder(STRONGS_DIGITS + 1);
+            for (int zeros = STRONGS_DIGITS - digits.length(); zeros >= 0; zeros--) {
+                buf.setLength(0);
+                buf.append(language);
+                for (int i = 0; i < zeros; i++) {
+                    buf.append('0');
+                }
+                buf.append(digits);
+                prefixes.add(buf.toString());
+            }
+            return prefixes;
+        }
+
+        // A number with a part, such as G26a, is complete
+        StrongsNumber number = new StrongsNumber(prefix);
+        if (number.isValid()) {
+            return Collections.singletonList(number.getFullStrongsNumber());
+        }
+        return Collections.singletonList(upper);
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the terms of a field of the searcher, reading them the first time
+     * they are asked for. They are kept until the index is reopened.
+     */
+    private TermDictionary getDictionary(IndexSearcher current, String field) throws IOException {
+        synchronized (this) {
+            TermDictionary dictionary = dictionaries.get(field);
+            if (dictionary != null && current == searcher) {
+                return dictionary;
+            }
+        }
+
+        // Others may search while the terms are read
+        TermDictionary dictionary = new TermDictionary(current.getIndexReader(), field);
+        synchronized (this) {
+            if (current == searcher) {
+                dictionaries.put(field, dictionary);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Parse a search into a Lucene query of the text of this book.
+     */
+    private Query parse(String search) throws ParseException {
+        Analyzer analyzer = new LuceneAnalyzer(book);
+
+        QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, analyzer);
+        parser.setAllowLeadingWildcard(true);
+        return parser.parse(search);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.index.Index#getKey(java.lang.String)
      */
@@ -354,72 +899,284 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      * @see org.crosswire.jsword.index.Index#close()
      */
     public final void close() {
-        try {
-            searcher.close();
-        } catch (IOException ex) {
-            Reporter.informUser(this, ex);
+        IndexSearcher oldSearcher;
+        Directory oldDirectory;
+        long oldResidentSize;
+        synchronized (this) {
+            oldSearcher = searcher;
+            oldDirectory = directory;
+            oldResidentSize = residentSize;
+            searcher = null;
+            directory = null;
+            residentSize = 0;
+        }
+        close(oldSearcher, oldDirectory, oldResidentSize);
+    }
+
+    /**
+     * Close a searcher and its directory, giving back the memory that the
+     * directory held. The reader of the searcher is only really closed once
+     * the searches that are using it are done.
+     */
+    private void close(IndexSearcher oldSearcher, Directory oldDirectory, long oldResidentSize) {
+        RESIDENT_SIZE.addAndGet(-oldResidentSize);
+
+        if (oldSearcher != null) {
+            try {
+                oldSearcher.getIndexReader().close();
+            } catch (IOException ex) {
+                Reporter.informUser(this, ex);
+            }
+        }
+
+        if (oldDirectory != null) {
+            try {
+                oldDirectory.close();
+            } catch (IOException ex) {
+                Reporter.informUser(this,  ex);
+            }
+        }
+    }
+
+    /**
+     * Get the current searcher, keeping its reader open until it is released,
+     * even if the index is closed or reopened in the meantime.
+     */
+    private synchronized IndexSearcher acquireSearcher() throws BookException {
+        if (searcher == null) {
+            // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+            throw new BookException(JSMsg.gettext("Search failed."));
         }
+        searcher.getIndexReader().incRef();
+        return searcher;
+    }
 
+    /**
+     * Let go of a searcher gotten from acquireSearcher.
+     */
+    private void releaseSearcher(IndexSearcher released) {
         try {
-            directory.close();
+            released.getIndexReader().decRef();
         } catch (IOException ex) {
-            Reporter.informUser(this,  ex);
+            log.warn("Failed to release the searcher", ex);
         }
-
-        searcher = null;
-        directory = null;
     }
 
     /**
-     * Dig down into a Key indexing as we go.
+     * Index all the leaf keys of the key. When the policy allows more than one
+     * thread, the leaves are handed out in runs of consecutive keys to workers
+     * that each read, filter and extract the fields of their run, all adding
+     * to the one writer.
+     * 
      * @param policy 
      */
-    private void generateSearchIndexImpl(Progress job, List<Key> errors, IndexWriter writer, Key key, int count, IndexPolicy policy) throws BookException, IOException {
-        String v11nName = book.getBookMetaData().getProperty("Versification").toString();
-        Versification v11n = Versifications.instance().getVersification(v11nName);
-        boolean includeStrongs = book.getBookMetaData().hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
-        boolean includeXrefs = book.getBookMetaData().hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
-        boolean includeNotes = book.getBookMetaData().hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
-        boolean includeHeadings = book.getBookMetaData().hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
-        boolean includeMorphology = book.getBookMetaData().hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
-
-        String oldRootName = "";
-        int percent = 0;
-        String rootName = "";
-        BookData data = null;
-        Element osis = null;
+    private void generateSearchIndexImpl(Progress job, List<Key> errors, IndexWriter writer, Key key, IndexPolicy policy) throws BookException, IOException {
+        // Bibles and verse based commentaries don't have keys with children.
+        // However, tree keyed Books do. So we only index the leaf keys.
+        final List<Key> leaves = new ArrayList<Key>();
+        addLeaves(leaves, key);
+        log.debug("Number of keys = {}", Integer.toString(leaves.size()));
+
+        IndexProgress progress = new IndexProgress(job, leaves.size());
+        List<Key> sharedErrors = Collections.synchronizedList(errors);
+        int threads = Math.min(policy.getThreadCount(), (leaves.size() + BATCH_SIZE - 1) / BATCH_SIZE);
+        if (threads <= 1) {
+            Indexer indexer = new Indexer(writer, policy, sharedErrors, progress);
+            for (Key subkey : leaves) {
+                indexer.index(subkey);
+
+                // This could take a long time ...
+                Thread.yield();
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+            return;
+        }
 
-        // Set up for reuse.
-        Document doc = new Document();
-        Field keyField = new Field(FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
-        Field bodyField = new Field(FIELD_BODY, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field introField = new Field(FIELD_INTRO, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field strongField = new Field(FIELD_STRONG, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
-        Field xrefField = new Field(FIELD_XREF, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field noteField = new Field(FIELD_NOTE, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field headingField = new Field(FIELD_HEADING, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field morphologyField  = new Field(FIELD_MORPHOLOGY , "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-
-        int size = key.getCardinality();
-        int subCount = count;
-        log.debug("Number of keys = {}", Integer.toString(size));
+        final AtomicInteger nextBatch = new AtomicInteger();
+        List<Callable<Object>> workers = new ArrayList<Callable<Object>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final Indexer indexer = new Indexer(writer, policy, sharedErrors, progress);
+            workers.add(new Callable<Object>() {
+                public Object call() throws BookException, IOException {
+                    int start = nextBatch.getAndIncrement() * BATCH_SIZE;
+                    while (start < leaves.size()) {
+                        int end = Math.min(start + BATCH_SIZE, leaves.size());
+                        for (Key subkey : leaves.subList(start, end)) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return null;
+                            }
+                            indexer.index(subkey);
+                        }
+                        start = nextBatch.getAndIncrement() * BATCH_SIZE;
+                    }
+                    return null;
+                }
+            });
+        }
+
+        WorkerPool pool = new WorkerPool("Index " + book.getInitials(), threads);
+        try {
+            pool.invokeAll(workers);
+        } catch (InterruptedException e) {
+            // The job was cancelled. The workers have been stopped.
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BookException) {
+                throw (BookException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Dig down into a Key gathering the keys that have no children.
+     */
+    private void addLeaves(List<Key> leaves, Key key) {
         for (Key subkey : key) {
-            // Bibles and verse based commentaries don't have keys with children.
-            // However, tree keyed Books do. So we only index the leaf keys.
             // FIXME(DMS): Should not use recursion!!!!
             if (subkey.canHaveChildren()) {
-                generateSearchIndexImpl(job, errors, writer, subkey, subCount, policy);
-                continue;
+                addLeaves(leaves, subkey);
+            } else {
+                leaves.add(subkey);
             }
+        }
+    }
+
+    /**
+     * Determine whether the raw text is free of markup and of anything that
+     * a filter would change. The OSIS that any of the filters would build for
+     * such text is the text itself.
+     * 
+     * @param rawText the raw text of a verse
+     * @return true if the raw text can be indexed as is
+     */
+    private static boolean isPlainText(String rawText) {
+        int len = rawText.length();
+        for (int i = 0; i < len; i++) {
+            char c = rawText.charAt(i);
+            // Markup, entities and what GBF escapes
+            // Line breaks become lb elements and are normalized by XML parsers
+            // Control characters and surrogates may not be valid XML
+            if (c == '<' || c == '>' || c == '&' || c == '"' || c < ' ' || (c >= '\uD800' && c <= '\uDFFF') || c >= '\uFFFE') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gather the fields for a verse without markup, just as if the OSIS had
+     * been built for it. The only thing added to the text are the titles
+     * generated for the ranges of the verse.
+     * 
+     * @param collector where to gather the fields
+     * @param verse the verse that is being indexed
+     * @param rawText the raw text of the verse
+     */
+    private void collectPlainText(OSISFieldCollector collector, Key verse, String rawText) {
+        collector.collectPlainText(rawText);
+        Iterator<Key> rit = KeyUtil.getPassage(verse).rangeIterator(RestrictionType.CHAPTER);
+        while (rit.hasNext()) {
+            collector.addHeading(rit.next().getName());
+        }
+    }
+
+    /**
+     * Add the text to the Field and put the Field in the document,
+     * ignoring null and empty text.
+     * 
+     * @param doc The Document to which the Field should be added
+     * @param field The Field to add
+     * @param text The text for the field
+     */
+    private void addField(Document doc, Field field, String text) {
+        if (text != null && text.length() > 0) {
+            field.setValue(text);
+            doc.add(field);
+        }
+    }
+
+    /**
+     * Set the cache in which the results of searching this index are kept.
+     * 
+     * @param cache the cache of search results, or null for none
+     */
+    void setSearchResultCache(SearchResultCache cache) {
+        resultCache = cache;
+    }
+
+    /**
+     * Could be null if the index has been closed down. This is helpful to third party applications which wish to have greater control over 
+     * the underlying Lucene functionality.
+     * 
+     * Note: by using this method, you need to ensure you don't close the searcher while it is being used.
+     * See {@link IndexManager#closeAllIndexes()} for more information
+     */
+    public synchronized Searcher getSearcher() {
+        return searcher;
+    }
 
-            data = new BookData(book, subkey);
-            osis = null;
+    /**
+     * Reads, filters and indexes keys of the book, one after another. Each
+     * thread that builds the index has its own Indexer, which reuses its
+     * Document and Fields from one key to the next.
+     */
+    private class Indexer {
+        Indexer(IndexWriter writer, IndexPolicy policy, List<Key> errors, IndexProgress progress) {
+            this.writer = writer;
+            this.errors = errors;
+            this.progress = progress;
+
+            String v11nName = book.getBookMetaData().getProperty("Versification").toString();
+            Versification v11n = Versifications.instance().getVersification(v11nName);
+            includeStrongs = book.getBookMetaData().hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
+            includeXrefs = book.getBookMetaData().hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
+            includeNotes = book.getBookMetaData().hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
+            includeHeadings = book.getBookMetaData().hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
+            includeMorphology = book.getBookMetaData().hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
+            collector = new OSISFieldCollector(v11n, includeStrongs, includeMorphology, includeXrefs, includeNotes, includeHeadings);
+            // Verses of passage books can be indexed from their raw text.
+            passageBook = book instanceof AbstractPassageBook ? (AbstractPassageBook) book : null;
+        }
 
+        /**
+         * Index a key that has no children. A key that cannot be read is
+         * added to the errors.
+         */
+        void index(Key subkey) throws IOException {
             try {
-                osis = data.getOsisFragment();
+                if (passageBook != null && subkey instanceof Verse) {
+                    // Only build the OSIS when the raw text has markup
+                    String rawText = book.getRawText(subkey);
+                    if (isPlainText(rawText)) {
+                        collectPlainText(collector, subkey, rawText);
+                    } else {
+                        Element osis = OSISUtil.factory().createDiv();
+                        osis.addContent(passageBook.toOSIS(subkey, rawText));
+                        collector.collect(osis);
+                    }
+                } else {
+                    BookData data = new BookData(book, subkey);
+                    collector.collect(data.getOsisFragment());
+                }
             } catch (BookException e) {
                 errors.add(subkey);
-                continue;
+                progress.done(subkey);
+                return;
             }
 
             // Remove all fields from the document
@@ -430,39 +1187,83 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
             keyField.setValue(subkey.getOsisRef());
             doc.add(keyField);
 
+            if (subkey instanceof Verse) {
+                ordinalField.setValue(Integer.toString(((Verse) subkey).getOrdinal()));
+                doc.add(ordinalField);
+            }
+
             if(subkey instanceof Verse && ((Verse)subkey).getVerse() == 0) {
-                addField(doc, introField, OSISUtil.getCanonicalText(osis));
+                addField(doc, introField, collector.getCanonicalText());
             }else {
-                addField(doc, bodyField, OSISUtil.getCanonicalText(osis));
+                addField(doc, bodyField, collector.getCanonicalText());
             }
             
             if (includeStrongs) {
-                addField(doc, strongField, OSISUtil.getStrongsNumbers(osis));
+                addField(doc, strongField, collector.getStrongsNumbers());
             }
 
             if (includeXrefs) {
-                addField(doc, xrefField, OSISUtil.getReferences(v11n, osis));
+                addField(doc, xrefField, collector.getReferences());
             }
 
             if (includeNotes) {
-                addField(doc, noteField, OSISUtil.getNotes(osis));
+                addField(doc, noteField, collector.getNotes());
             }
 
             if (includeHeadings) {
-                addField(doc, headingField, OSISUtil.getHeadings(osis));
+                addField(doc, headingField, collector.getHeadings());
             }
 
             if (includeMorphology) {
-                addField(doc, morphologyField, OSISUtil.getMorphologiesWithStrong(osis));
+                addField(doc, morphologyField, collector.getMorphologiesWithStrong());
             }
 
             // Add the document if we added more than just the key.
-            if (doc.getFields().size() > 1) {
+            if (doc.getFields().size() > (subkey instanceof Verse ? 2 : 1)) {
                 writer.addDocument(doc);
             }
 
-            // report progress
-            rootName = subkey.getRootName();
+            progress.done(subkey);
+        }
+
+        private IndexWriter writer;
+        private List<Key> errors;
+        private IndexProgress progress;
+        private boolean includeStrongs;
+        private boolean includeXrefs;
+        private boolean includeNotes;
+        private boolean includeHeadings;
+        private boolean includeMorphology;
+        private OSISFieldCollector collector;
+        private AbstractPassageBook passageBook;
+
+        // Set up for reuse.
+        private Document doc = new Document();
+        private Field keyField = new Field(FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
+        private Field ordinalField = new Field(FIELD_ORDINAL, "", Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS, Field.TermVector.NO);
+        private Field bodyField = new Field(FIELD_BODY, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private Field introField = new Field(FIELD_INTRO, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private Field strongField = new Field(FIELD_STRONG, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
+        private Field xrefField = new Field(FIELD_XREF, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private Field noteField = new Field(FIELD_NOTE, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private Field headingField = new Field(FIELD_HEADING, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private Field morphologyField  = new Field(FIELD_MORPHOLOGY , "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+    }
+
+    /**
+     * Reports the progress of all the threads that build an index to the job.
+     */
+    private static class IndexProgress {
+        IndexProgress(Progress job, int size) {
+            this.job = job;
+            this.size = size;
+        }
+
+        /**
+         * Count another key as indexed.
+         */
+        synchronized void done(Key subkey) {
+            String rootName = subkey.getRootName();
             if (!rootName.equals(oldRootName)) {
                 oldRootName = rootName;
                 // Note, this does not cause progress to be updated
@@ -470,47 +1271,21 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                 job.setSectionName(rootName);
             }
 
-            subCount++;
+            count++;
             int oldPercent = percent;
-            percent = WORK_ESTIMATE * subCount / size;
+            percent = WORK_ESTIMATE * count / size;
 
             // Only send out a max of 95 progress updates
             if (oldPercent != percent) {
                 job.setWork(percent);
             }
-
-            // This could take a long time ...
-            Thread.yield();
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
         }
-    }
 
-    /**
-     * Add the text to the Field and put the Field in the document,
-     * ignoring null and empty text.
-     * 
-     * @param doc The Document to which the Field should be added
-     * @param field The Field to add
-     * @param text The text for the field
-     */
-    private void addField(Document doc, Field field, String text) {
-        if (text != null && text.length() > 0) {
-            field.setValue(text);
-            doc.add(field);
-        }
-    }
-
-    /**
-     * Could be null if the index has been closed down. This is helpful to third party applications which wish to have greater control over 
-     * the underlying Lucene functionality.
-     * 
-     * Note: by using this method, you need to ensure you don't close the searcher while it is being used.
-     * See {@link IndexManager#closeAllIndexes()} for more information
-     */
-    public Searcher getSearcher() {
-        return searcher;
+        private Progress job;
+        private int size;
+        private int count;
+        private int percent;
+        private String oldRootName = "";
     }
 
     /**
@@ -528,10 +1303,36 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      */
     private Directory directory;
 
+    /**
+     * How the directory is held, and how many bytes of memory it counts for.
+     */
+    private IndexStorage storage;
+    private long residentSize;
+
+    /**
+     * How the index is to be held
+     */
+    private IndexPolicy policy;
+
     /**
      * The Lucene search engine
      */
-    private Searcher searcher;
+    private IndexSearcher searcher;
+
+    /**
+     * The terms of each field of the searcher that have been asked for
+     */
+    private Map<String, TermDictionary> dictionaries = new HashMap<String, TermDictionary>();
+
+    /**
+     * The concordance of Strong's Numbers, if the index has one
+     */
+    private volatile StrongsConcordance concordance;
+
+    /**
+     * Where search results are kept, if anywhere
+     */
+    private volatile SearchResultCache resultCache;
 
     /**
      * A synchronization lock point to prevent us from doing 2 index runs at a
@@ -539,6 +1340,16 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      */
     private static final Object CREATING = new Object();
 
+    /**
+     * A search for nothing but one Strong's Number.
+     */
+    private static final Pattern STRONGS_LOOKUP = Pattern.compile(FIELD_STRONG + ":([GgHh][0-9]+)");
+
+    /**
+     * The bytes of index held in memory by all the indexes.
+     */
+    private static final AtomicLong RESIDENT_SIZE = new AtomicLong();
+
     /**
      * The log stream
      */
@@ -23,8 +23,8 @@ package org.crosswire.jsword.index.lucene;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.crosswire.common.util.CWProject;
 import org.crosswire.common.util.FileUtil;
@@ -40,6 +40,7 @@ import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexPolicy;
 import org.crosswire.jsword.index.IndexPolicyAdapter;
 import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.SearchResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,8 +80,15 @@ public class LuceneIndexManager implements IndexManager {
             Index reply = INDEXES.get(book);
             if (reply == null) {
                 URI storage = getStorageArea(book);
-                reply = new LuceneIndex(book, storage);
-                INDEXES.put(book, reply);
+                LuceneIndex index = LuceneIndex.open(book, storage, policy);
+                index.setSearchResultCache(resultCache);
+                reply = index;
+                // Another thread may have opened it at the same time
+                Index other = INDEXES.putIfAbsent(book, reply);
+                if (other != null) {
+                    reply.close();
+                    reply = other;
+                }
             }
 
             return reply;
@@ -109,11 +117,12 @@ public class LuceneIndexManager implements IndexManager {
 
         try {
             URI storage = getStorageArea(book);
-            Index index = new LuceneIndex(book, storage, this.policy);
+            LuceneIndex index = new LuceneIndex(book, storage, this.policy);
+            index.setSearchResultCache(resultCache);
             // We were successful if the directory exists.
             if (NetUtil.getAsFile(storage).exists()) {
                 finalStatus = IndexStatus.DONE;
-                INDEXES.put(book, index);
+                replaceIndex(book, index);
             }
         } catch (IOException e) {
             Reporter.informUser(LuceneIndexManager.this, e);
@@ -132,6 +141,8 @@ public class LuceneIndexManager implements IndexManager {
             URI storage = getStorageArea(book);
             File zip = NetUtil.getAsFile(tempDest);
             IOUtil.unpackZip(zip, NetUtil.getAsFile(storage));
+            reopenIndex(book);
+            invalidateResults(book);
         } catch (IOException ex) {
             // TRANSLATOR: The search index could not be moved to it's final location.
             throw new BookException(JSMsg.gettext("Installation failed."), ex);
@@ -148,8 +159,8 @@ public class LuceneIndexManager implements IndexManager {
         // directory.
         File tempPath = null;
         try {
-            // TODO(joe): This needs some checks that it isn't being used
-            //temporary fix, which closes the index - non-thread safe since someone could theoretically come in and activate this again!
+            // Searches that are under way finish with the closed index.
+            // It stays registered, so that it is reopened when the book is indexed again.
             Index index = INDEXES.get(book);
             if (index != null) {
                 index.close();
@@ -170,6 +181,7 @@ public class LuceneIndexManager implements IndexManager {
                 throw new BookException(JSMsg.gettext("Failed to delete search index."));
             }
             book.setIndexStatus(IndexStatus.UNDONE);
+            invalidateResults(book);
         } catch (IOException ex) {
             // TRANSLATOR: Error condition: The index could not be deleted.
             throw new BookException(JSMsg.gettext("Failed to delete search index."), ex);
@@ -195,6 +207,68 @@ public class LuceneIndexManager implements IndexManager {
             this.policy = new IndexPolicyAdapter();
         }
 
+        // The indexes that are open may now be held differently
+        for (Index index : INDEXES.values()) {
+            if (index instanceof LuceneIndex) {
+                ((LuceneIndex) index).setIndexPolicy(this.policy);
+            }
+        }
+    }
+
+    /**
+     * Use a newly created index for the book. When the book already had an
+     * index, that one is reopened instead, as its users hold on to it.
+     */
+    private void replaceIndex(Book book, Index index) {
+        Index old = INDEXES.putIfAbsent(book, index);
+        if (old != null && old != index) {
+            index.close();
+            reopenIndex(book);
+        }
+        invalidateResults(book);
+    }
+
+    /**
+     * Forget the search results of the book, as its index has changed.
+     */
+    private void invalidateResults(Book book) {
+        SearchResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidate(book);
+        }
+    }
+
+    /**
+     * Have the index of the book, if it has been opened, see the index that is
+     * now on disk. Searches that are under way are not disturbed.
+     */
+    private void reopenIndex(Book book) {
+        Index index = INDEXES.get(book);
+        if (index instanceof LuceneIndex) {
+            ((LuceneIndex) index).reopen();
+        } else if (index != null) {
+            INDEXES.remove(book, index);
+            index.close();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexManager#getSearchResultCache()
+     */
+    public SearchResultCache getSearchResultCache() {
+        return resultCache;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexManager#setSearchResultCache(org.crosswire.jsword.index.SearchResultCache)
+     */
+    public void setSearchResultCache(SearchResultCache cache) {
+        resultCache = cache;
+        for (Index index : INDEXES.values()) {
+            if (index instanceof LuceneIndex) {
+                ((LuceneIndex) index).setSearchResultCache(cache);
+            }
+        }
     }
 
     /**
@@ -222,10 +296,15 @@ public class LuceneIndexManager implements IndexManager {
 
     private IndexPolicy policy;
 
+    /**
+     * The cache of search results, if any
+     */
+    private volatile SearchResultCache resultCache;
+
     /**
      * The created indexes
      */
-    protected static final Map<Book, Index> INDEXES = new HashMap<Book, Index>();
+    protected static final ConcurrentMap<Book, Index> INDEXES = new ConcurrentHashMap<Book, Index>();
 
     /**
      * The lucene search index directory
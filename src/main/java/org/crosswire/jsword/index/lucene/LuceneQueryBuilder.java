@@ -24,14 +24,13 @@ package org.crosswire.jsword.index.lucene;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.crosswire.jsword.index.query.AndNotQuery;
-import org.crosswire.jsword.index.query.AndQuery;
 import org.crosswire.jsword.index.query.BaseQuery;
 import org.crosswire.jsword.index.query.BlurQuery;
 import org.crosswire.jsword.index.query.NullQuery;
 import org.crosswire.jsword.index.query.Query;
 import org.crosswire.jsword.index.query.QueryBuilder;
 import org.crosswire.jsword.index.query.RangeQuery;
+import org.crosswire.jsword.index.query.RestrictedQuery;
 
 /**
  * A query can have a optional range specifier and an optional blur specifier.
@@ -61,7 +60,7 @@ public final class LuceneQueryBuilder implements QueryBuilder {
 
         int i = 0;
 
-        Query range = null;
+        RangeQuery range = null;
         String rangeModifier = "";
         // Look for a range +[...], -[...], or [...]
         Matcher rangeMatcher = RANGE_PATTERN.matcher(sought);
@@ -71,6 +70,9 @@ public final class LuceneQueryBuilder implements QueryBuilder {
             sought = sought.substring(rangeMatcher.end());
         }
 
+        // AndNot excludes the range
+        boolean excluded = rangeModifier.length() > 0 && rangeModifier.charAt(0) == '-';
+
         // Look for a blur ~n
         Matcher blurMatcher = BLUR_PATTERN.matcher(sought);
         if (blurMatcher.find()) {
@@ -80,19 +82,22 @@ public final class LuceneQueryBuilder implements QueryBuilder {
             if (blur.length() > 0) {
                 blurFactor = Integer.parseInt(blur);
             }
-            Query left = new BaseQuery(sought.substring(i, blurMatcher.start()));
+            BaseQuery left = new BaseQuery(sought.substring(i, blurMatcher.start()));
             Query right = new BaseQuery(sought.substring(blurMatcher.end()));
-            query = new BlurQuery(left, right, blurFactor);
+            // Only the left is kept after blurring the right,
+            // so restricting it restricts the whole.
+            if (range != null) {
+                query = new BlurQuery(new RestrictedQuery(range, left, excluded), right, blurFactor);
+            } else {
+                query = new BlurQuery(left, right, blurFactor);
+            }
         } else if (sought.length() > 0) {
-            query = new BaseQuery(sought);
-        }
-
-        if (range != null && !NULL_QUERY.equals(query)) {
-            if (rangeModifier.length() == 0 || rangeModifier.charAt(0) == '+') {
-                query = new AndQuery(range, query);
+            BaseQuery base = new BaseQuery(sought);
+            if (range != null) {
+                // Let the index search only the range
+                query = new RestrictedQuery(range, base, excluded);
             } else {
-                // AndNot needs to be after what it is restricting
-                query = new AndNotQuery(query, range);
+                query = base;
             }
         }
 
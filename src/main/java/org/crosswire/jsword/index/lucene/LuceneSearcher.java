@@ -21,14 +21,19 @@
  */
 package org.crosswire.jsword.index.lucene;
 
+import java.util.List;
+
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.StrongsConcordance;
 import org.crosswire.jsword.index.query.Query;
 import org.crosswire.jsword.index.query.QueryBuilderFactory;
 import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.index.search.SearchRequest;
 import org.crosswire.jsword.index.search.Searcher;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
 
 /**
  * The central interface to all searching.
@@ -82,11 +87,9 @@ public class LuceneSearcher implements Searcher {
      * .index.search.SearchRequest)
      */
     public Key search(SearchRequest request) throws BookException {
-        index.setSearchModifier(request.getSearchModifier());
         Query query = QueryBuilderFactory.getQueryBuilder().parse(request.getRequest());
-        Key results = search(query);
-        index.setSearchModifier(null);
-        return results;
+        // The modifier goes with this search only, not with the shared index
+        return query.find(new ModifiedIndex(index, request.getSearchModifier()));
     }
 
     /*
@@ -100,6 +103,17 @@ public class LuceneSearcher implements Searcher {
         return query.find(index);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.crosswire.jsword.index.search.Searcher#getSuggestions(java.lang.String
+     * , java.lang.String, int)
+     */
+    public List<String> getSuggestions(String field, String prefix, int count) {
+        return index.getSuggestions(field, prefix, count);
+    }
+
     /**
      * Accessor for the Bible to search.
      * 
@@ -109,6 +123,89 @@ public class LuceneSearcher implements Searcher {
         return index;
     }
 
+    /**
+     * A view of an index that always searches it with the same modifier.
+     */
+    private static class ModifiedIndex implements Index {
+        ModifiedIndex(Index index, SearchModifier modifier) {
+            this.index = index;
+            this.modifier = modifier;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+         */
+        public Key find(String query) throws BookException {
+            return index.find(query, modifier);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchModifier)
+         */
+        public Key find(String query, SearchModifier theModifier) throws BookException {
+            return index.find(query, theModifier);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchModifier, org.crosswire.jsword.passage.Key, boolean)
+         */
+        public Key find(String query, SearchModifier theModifier, Key range, boolean exclude) throws BookException {
+            return index.find(query, theModifier, range, exclude);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#estimateCount(java.lang.String)
+         */
+        public int estimateCount(String query) {
+            return index.estimateCount(query);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#getSuggestions(java.lang.String, java.lang.String, int)
+         */
+        public List<String> getSuggestions(String field, String prefix, int count) {
+            return index.getSuggestions(field, prefix, count);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#getStrongsConcordance()
+         */
+        public StrongsConcordance getStrongsConcordance() {
+            return index.getStrongsConcordance();
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#getKey(java.lang.String)
+         */
+        public Key getKey(String name) throws NoSuchKeyException {
+            return index.getKey(name);
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#setSearchModifier(org.crosswire.jsword.index.search.SearchModifier)
+         */
+        public void setSearchModifier(SearchModifier theModifier) {
+            modifier = theModifier;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#getSearchModifier()
+         */
+        public SearchModifier getSearchModifier() {
+            return modifier;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.Index#close()
+         */
+        public void close() {
+            // The index is shared, so it is not this view's to close
+        }
+
+        private Index index;
+        private SearchModifier modifier;
+    }
+
     /**
      * The index
      */
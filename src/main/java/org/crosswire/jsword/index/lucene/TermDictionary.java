@@ -0,0 +1,148 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * The terms of one field of an index with the number of documents that have
+ * each, for suggesting the terms that begin with what has been typed so far.
+ *
+ * <p>
+ * The terms are held in the order of the term dictionary of the index, so the
+ * terms that begin with a prefix are next to each other and are found by a
+ * binary search, as in a flattened trie. Only the most frequent of them are
+ * sorted.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+final class TermDictionary {
+    /**
+     * Read the terms of a field.
+     *
+     * @param reader
+     *            the index
+     * @param field
+     *            the name of the field
+     */
+    TermDictionary(IndexReader reader, String field) throws IOException {
+        List<String> texts = new ArrayList<String>();
+        int[] counts = new int[1024];
+        TermEnum termEnum = reader.terms(new Term(field, ""));
+        try {
+            do {
+                Term term = termEnum.term();
+                if (term == null || !field.equals(term.field())) {
+                    break;
+                }
+                if (texts.size() == counts.length) {
+                    int[] more = new int[counts.length * 2];
+                    System.arraycopy(counts, 0, more, 0, counts.length);
+                    counts = more;
+                }
+                counts[texts.size()] = termEnum.docFreq();
+                texts.add(term.text());
+            } while (termEnum.next());
+        } finally {
+            termEnum.close();
+        }
+
+        terms = texts.toArray(new String[texts.size()]);
+        docFreqs = new int[terms.length];
+        System.arraycopy(counts, 0, docFreqs, 0, terms.length);
+    }
+
+    /**
+     * Find the terms that begin with a prefix.
+     *
+     * @param prefix
+     *            how the terms begin
+     * @param count
+     *            the most terms to find
+     * @return the terms, those in the most documents first
+     */
+    List<String> suggest(String prefix, int count) {
+        int start = find(prefix);
+        int end = find(prefix + Character.MAX_VALUE);
+        if (start >= end || count <= 0) {
+            return Collections.emptyList();
+        }
+
+        Comparator<Integer> byFrequency = new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                int diff = docFreqs[o2.intValue()] - docFreqs[o1.intValue()];
+                return diff != 0 ? diff : o1.intValue() - o2.intValue();
+            }
+        };
+
+        // Keep the most frequent, with the least of them at the head
+        PriorityQueue<Integer> best = new PriorityQueue<Integer>(count + 1, Collections.reverseOrder(byFrequency));
+        for (int i = start; i < end; i++) {
+            if (best.size() < count) {
+                best.add(Integer.valueOf(i));
+            } else if (docFreqs[i] > docFreqs[best.peek().intValue()]) {
+                best.poll();
+                best.add(Integer.valueOf(i));
+            }
+        }
+
+        List<Integer> found = new ArrayList<Integer>(best);
+        Collections.sort(found, byFrequency);
+        List<String> suggestions = new ArrayList<String>(found.size());
+        for (Integer i : found) {
+            suggestions.add(terms[i.intValue()]);
+        }
+        return suggestions;
+    }
+
+    /**
+     * @return the number of terms
+     */
+    int size() {
+        return terms.length;
+    }
+
+    /**
+     * The position of the first term that is not before the text.
+     */
+    private int find(String text) {
+        int pos = Arrays.binarySearch(terms, text);
+        return pos < 0 ? -pos - 1 : pos;
+    }
+
+    /**
+     * The terms in order and the number of documents that have each.
+     */
+    private String[] terms;
+    private int[] docFreqs;
+}
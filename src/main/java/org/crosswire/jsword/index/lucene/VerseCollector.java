@@ -25,8 +25,10 @@ import java.io.IOException;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Searcher;
+import org.crosswire.jsword.passage.BitwisePassage;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchVerseException;
 import org.crosswire.jsword.passage.VerseFactory;
@@ -48,6 +50,37 @@ public class VerseCollector extends Collector {
         this.v11n = refSystem;
         this.searcher = searcher;
         this.results = results;
+        if (results instanceof BitwisePassage && ((BitwisePassage) results).getVersification() == refSystem) {
+            this.passage = (BitwisePassage) results;
+        }
+    }
+
+    /**
+     * Get the ordinal of the verse of each document of a segment of the index.
+     * They are read in bulk, once for each segment, and then shared by all
+     * searches.
+     * 
+     * @param reader
+     *            the segment
+     * @return the ordinals, by document number, or NO_ORDINALS when the index
+     *         was built before the ordinals were indexed
+     */
+    static int[] getOrdinals(IndexReader reader) throws IOException {
+        if (!hasOrdinals(reader)) {
+            return NO_ORDINALS;
+        }
+        return FieldCache.DEFAULT.getInts(reader, LuceneIndex.FIELD_ORDINAL);
+    }
+
+    /**
+     * Determine whether the ordinals of the verses were indexed.
+     * 
+     * @param reader
+     *            the segment
+     * @return true if the ordinals were indexed
+     */
+    static boolean hasOrdinals(IndexReader reader) {
+        return reader.getFieldNames(IndexReader.FieldOption.INDEXED).contains(LuceneIndex.FIELD_ORDINAL);
     }
 
     /*
@@ -68,6 +101,17 @@ public class VerseCollector extends Collector {
      */
     @Override
     public void collect(int docId) throws IOException {
+        if (ordinals != NO_ORDINALS) {
+            int ordinal = ordinals[docId];
+            if (passage != null) {
+                passage.addVersifiedOrdinal(ordinal);
+            } else {
+                results.addAll(v11n.decodeOrdinal(ordinal));
+            }
+            return;
+        }
+
+        // The index predates the ordinal field
         Document doc = searcher.doc(docBase + docId);
         try {
             Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
@@ -93,6 +137,7 @@ public class VerseCollector extends Collector {
     @Override
     public void setNextReader(IndexReader reader, int docBase) throws IOException {
         this.docBase = docBase;
+        this.ordinals = getOrdinals(reader);
     }
 
     /*
@@ -107,7 +152,14 @@ public class VerseCollector extends Collector {
         // This collector does no scoring. It collects all hits.
     }
 
+    /**
+     * Answered by getOrdinals when the index does not have the ordinals.
+     */
+    static final int[] NO_ORDINALS = new int[0];
+
     private int docBase;
+    private int[] ordinals;
+    private BitwisePassage passage;
     private Versification v11n;
     private Searcher searcher;
     private Key results;
@@ -0,0 +1,173 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.OrdinalCursor;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseKey;
+
+/**
+ * A filter that lets through only the verses of a range, or only those that
+ * are not in it, so that a restricted search does not score and collect
+ * verses that would be thrown away.
+ *
+ * <p>
+ * The documents of a verse are found by the ordinal field. For each segment
+ * of the index a table from ordinal to document is built once, so the work
+ * done for a range is in proportion to the size of the range.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class VerseRangeFilter extends Filter {
+    /**
+     * Create a filter for the range.
+     * 
+     * @param range
+     *            the verses of the range, which are best given as a VerseKey.
+     *            Any other Key is walked for the Verses in it.
+     * @param exclude
+     *            whether to let through the verses outside the range, rather
+     *            than those in it
+     */
+    public VerseRangeFilter(Key range, boolean exclude) {
+        this.range = range;
+        this.exclude = exclude;
+    }
+
+    /**
+     * Determine whether the filter can be used with the index. It cannot be
+     * used with an index built before verses had their ordinal indexed.
+     * 
+     * @param reader
+     *            the index
+     * @return true if the filter can be used
+     */
+    public static boolean canFilter(IndexReader reader) {
+        IndexReader[] segments = reader.getSequentialSubReaders();
+        if (segments == null) {
+            return VerseCollector.hasOrdinals(reader);
+        }
+        for (IndexReader segment : segments) {
+            if (!canFilter(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.lucene.search.Filter#getDocIdSet(org.apache.lucene.index.IndexReader)
+     */
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+        int maxDoc = reader.maxDoc();
+        OpenBitSet docs = new OpenBitSet(maxDoc);
+        if (exclude) {
+            docs.set(0, maxDoc);
+        }
+
+        int[] docIds = getDocIds(reader);
+        if (range instanceof VerseKey) {
+            OrdinalCursor cursor = ((VerseKey) range).ordinalCursor();
+            for (int ordinal = cursor.nextOrdinal(); ordinal >= 0; ordinal = cursor.nextOrdinal()) {
+                mark(docs, docIds, ordinal);
+            }
+        } else {
+            for (Key key : range) {
+                if (key instanceof Verse) {
+                    mark(docs, docIds, ((Verse) key).getOrdinal());
+                }
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * Let through, or keep out, the document of the verse, if it has one.
+     */
+    private void mark(OpenBitSet docs, int[] docIds, int ordinal) {
+        int docId = ordinal < docIds.length ? docIds[ordinal] : -1;
+        if (docId >= 0) {
+            if (exclude) {
+                docs.fastClear(docId);
+            } else {
+                docs.fastSet(docId);
+            }
+        }
+    }
+
+    /**
+     * Get the table from ordinal to document for a segment, with -1 for the
+     * ordinals that have no document.
+     */
+    private static int[] getDocIds(IndexReader reader) throws IOException {
+        Object cacheKey = reader.getFieldCacheKey();
+        synchronized (DOC_IDS) {
+            int[] docIds = DOC_IDS.get(cacheKey);
+            if (docIds != null) {
+                return docIds;
+            }
+        }
+
+        int[] ordinals = VerseCollector.getOrdinals(reader);
+        int max = -1;
+        for (int ordinal : ordinals) {
+            max = Math.max(max, ordinal);
+        }
+
+        int[] docIds = new int[max + 1];
+        Arrays.fill(docIds, -1);
+        for (int docId = 0; docId < ordinals.length; docId++) {
+            docIds[ordinals[docId]] = docId;
+        }
+
+        synchronized (DOC_IDS) {
+            DOC_IDS.put(cacheKey, docIds);
+        }
+        return docIds;
+    }
+
+    /**
+     * The tables from ordinal to document, by segment. They are forgotten
+     * along with their segments.
+     */
+    private static final Map<Object, int[]> DOC_IDS = new WeakHashMap<Object, int[]>();
+
+    /**
+     * Serialization ID
+     */
+    private static final long serialVersionUID = -2594155383232573049L;
+
+    private Key range;
+    private boolean exclude;
+}
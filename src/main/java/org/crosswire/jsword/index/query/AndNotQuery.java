@@ -54,13 +54,14 @@ public class AndNotQuery extends AbstractBinaryQuery {
      * .index.search.Index)
      */
     public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
+        Key[] results = QueryPlanner.findBoth(getLeftQuery(), getRightQuery(), index, QueryPlanner.ShortCircuit.LEFT);
+        Key left = results[0];
 
         if (left.isEmpty()) {
             return left;
         }
 
-        Key right = getRightQuery().find(index);
+        Key right = results[1];
 
         if (right.isEmpty()) {
             return left;
@@ -54,14 +54,15 @@ public class AndQuery extends AbstractBinaryQuery {
      * .index.search.Index)
      */
     public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
+        Key[] results = QueryPlanner.findBoth(getLeftQuery(), getRightQuery(), index, QueryPlanner.ShortCircuit.EITHER);
+        Key left = results[0];
+        Key right = results[1];
 
-        if (left.isEmpty()) {
+        // Whichever was searched first may have made the other unnecessary
+        if (left != null && left.isEmpty()) {
             return left;
         }
 
-        Key right = getRightQuery().find(index);
-
         if (right.isEmpty()) {
             return right;
         }
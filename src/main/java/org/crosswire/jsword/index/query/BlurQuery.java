@@ -55,19 +55,29 @@ public class BlurQuery extends AbstractBinaryQuery {
      * .index.search.Index)
      */
     public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
+        Key[] results = QueryPlanner.findBoth(getLeftQuery(), getRightQuery(), index, QueryPlanner.ShortCircuit.EITHER);
+        Key left = results[0];
+        Key right = results[1];
 
-        if (left.isEmpty()) {
+        // Whichever was searched first may have made the other unnecessary
+        if (left != null && left.isEmpty()) {
             return left;
         }
 
-        Key right = getRightQuery().find(index);
-
         if (right.isEmpty()) {
             return right;
         }
 
-        right.blur(factor, RestrictionType.getDefaultBlurRestriction());
+        RestrictionType restriction = RestrictionType.getDefaultBlurRestriction();
+        if (left.getCardinality() < right.getCardinality()) {
+            // Only the verses on the right that are near a verse on the left
+            // can keep a verse on the left, so only they need to be blurred.
+            Key candidates = left.clone();
+            candidates.blur(factor, restriction);
+            right.retainAll(candidates);
+        }
+
+        right.blur(factor, restriction);
 
         left.retainAll(right);
 
@@ -51,8 +51,9 @@ public class OrQuery extends AbstractBinaryQuery {
      * .index.search.Index)
      */
     public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
-        Key right = getRightQuery().find(index);
+        Key[] results = QueryPlanner.findBoth(getLeftQuery(), getRightQuery(), index, QueryPlanner.ShortCircuit.NONE);
+        Key left = results[0];
+        Key right = results[1];
 
         if (left.isEmpty()) {
             return right;
@@ -0,0 +1,280 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.query;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.crosswire.common.util.WorkerPool;
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+
+/**
+ * The QueryPlanner decides in which order the two sides of a binary query are
+ * searched. The side that is expected to find less is searched first, so that
+ * when it finds nothing the other side need not be searched at all. When both
+ * sides are expected to find a lot, they are searched at the same time.
+ *
+ * <p>
+ * The expectations come from {@link Index#estimateCount(String)}, combined as
+ * each kind of query combines its results.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public final class QueryPlanner {
+    /**
+     * Prevent instantiation
+     */
+    private QueryPlanner() {
+    }
+
+    /**
+     * When the search of one side of a query makes the search of the other
+     * unnecessary.
+     */
+    public enum ShortCircuit {
+        /**
+         * Both sides are always needed, as for an OrQuery.
+         */
+        NONE,
+
+        /**
+         * The right side is not needed when the left finds nothing, as for an
+         * AndNotQuery.
+         */
+        LEFT,
+
+        /**
+         * Neither side is needed when the other finds nothing, as for an
+         * AndQuery.
+         */
+        EITHER
+    }
+
+    /**
+     * Estimate how many references a query will find.
+     * 
+     * @param query
+     *            the query
+     * @param index
+     *            the index that the query will search
+     * @return the estimate, or {@link #UNKNOWN} if there is none
+     */
+    public static int estimate(Query query, Index index) {
+        if (query instanceof BaseQuery) {
+            int count = index.estimateCount(((BaseQuery) query).getQuery());
+            return count < 0 ? UNKNOWN : count;
+        }
+
+        if (query instanceof RangeQuery) {
+            try {
+                return index.getKey(((RangeQuery) query).getQuery()).getCardinality();
+            } catch (NoSuchKeyException e) {
+                // The search will say what is wrong
+                return UNKNOWN;
+            }
+        }
+
+        if (query instanceof RestrictedQuery) {
+            RestrictedQuery restricted = (RestrictedQuery) query;
+            int count = estimate(restricted.getQuery(), index);
+            if (restricted.isExcluded()) {
+                return count;
+            }
+            return Math.min(count, estimate(restricted.getRange(), index));
+        }
+
+        if (query instanceof NullQuery) {
+            return 0;
+        }
+
+        if (query instanceof BinaryQuery) {
+            BinaryQuery binary = (BinaryQuery) query;
+            int left = estimate(binary.getLeftQuery(), index);
+            if (query instanceof AndNotQuery) {
+                return left;
+            }
+
+            int right = estimate(binary.getRightQuery(), index);
+            if (query instanceof AndQuery) {
+                return Math.min(left, right);
+            }
+            if (query instanceof OrQuery) {
+                return (int) Math.min((long) left + right, UNKNOWN);
+            }
+            if (query instanceof BlurQuery) {
+                // Each verse on the right keeps at most those around it
+                long around = (long) right * (2 * ((BlurQuery) query).getFactor() + 1);
+                return (int) Math.min(left, Math.min(around, UNKNOWN));
+            }
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * Search both sides of a binary query, in the order that is expected to be
+     * cheapest. When a side that is searched first finds nothing and that
+     * makes the other side unnecessary, the other side is not searched and is
+     * null in the answer.
+     * 
+     * @param left
+     *            the left side of the query
+     * @param right
+     *            the right side of the query
+     * @param index
+     *            the index to search
+     * @param shortCircuit
+     *            when a side that finds nothing makes the other unnecessary
+     * @return the results of the left and of the right side
+     */
+    public static Key[] findBoth(Query left, Query right, Index index, ShortCircuit shortCircuit) throws BookException {
+        Key[] results = new Key[2];
+        if (shortCircuit == ShortCircuit.NONE) {
+            if (isParallel(left, right, index)) {
+                findParallel(left, right, index, results);
+            } else {
+                results[0] = left.find(index);
+                results[1] = right.find(index);
+            }
+            return results;
+        }
+
+        int leftCount = estimate(left, index);
+        int rightCount = estimate(right, index);
+
+        // Which side to search first, when one is searched before the other
+        boolean rightFirst = shortCircuit == ShortCircuit.EITHER && rightCount < leftCount;
+        int firstCount = rightFirst ? rightCount : leftCount;
+
+        // There is no point in searching the other side at the same time
+        // when the first is expected to find nothing.
+        if (firstCount > 0 && Math.min(leftCount, rightCount) >= PARALLEL_THRESHOLD && isParallelAllowed()) {
+            findParallel(left, right, index, results);
+            return results;
+        }
+
+        if (rightFirst) {
+            results[1] = right.find(index);
+            if (!results[1].isEmpty()) {
+                results[0] = left.find(index);
+            }
+        } else {
+            results[0] = left.find(index);
+            if (!results[0].isEmpty()) {
+                results[1] = right.find(index);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Whether both sides are expected to find enough for searching them at
+     * the same time to be worthwhile.
+     */
+    private static boolean isParallel(Query left, Query right, Index index) {
+        return isParallelAllowed() && Math.min(estimate(left, index), estimate(right, index)) >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * A query that is searched in the pool must not wait on the pool for its
+     * own parts, as all the threads of the pool might end up waiting.
+     */
+    private static boolean isParallelAllowed() {
+        return !IN_POOL.get().booleanValue();
+    }
+
+    /**
+     * Search the right side in the pool while the left is searched on the
+     * calling thread.
+     */
+    private static void findParallel(Query left, final Query right, final Index index, Key[] results) throws BookException {
+        Future<Key> pending = POOL.submit(new Callable<Key>() {
+            public Key call() throws BookException {
+                IN_POOL.set(Boolean.TRUE);
+                try {
+                    return right.find(index);
+                } finally {
+                    IN_POOL.set(Boolean.FALSE);
+                }
+            }
+        });
+
+        try {
+            results[0] = left.find(index);
+            results[1] = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+            throw new BookException(JSMsg.gettext("Search failed."), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BookException) {
+                throw (BookException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+            throw new BookException(JSMsg.gettext("Search failed."), cause);
+        } finally {
+            // Nothing is waiting for it any more if the left side failed
+            pending.cancel(true);
+        }
+    }
+
+    /**
+     * The estimate of a query about which nothing is known.
+     */
+    public static final int UNKNOWN = Integer.MAX_VALUE;
+
+    /**
+     * The least that both sides of a query are expected to find for them to
+     * be searched at the same time. Below that the cost of handing the search
+     * to another thread is more than what is saved.
+     */
+    private static final int PARALLEL_THRESHOLD = 1000;
+
+    /**
+     * The threads that search one side of a query while the calling thread
+     * searches the other.
+     */
+    private static final WorkerPool POOL = new WorkerPool("QueryPlanner");
+
+    /**
+     * Whether the current thread is one of those of the pool.
+     */
+    private static final ThreadLocal<Boolean> IN_POOL = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
+}
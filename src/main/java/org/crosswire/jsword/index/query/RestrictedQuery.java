@@ -0,0 +1,94 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.query;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * A restricted query searches only within a range, or only outside of it. It
+ * gives the same results as an AndQuery or an AndNotQuery of a RangeQuery and
+ * a BaseQuery, but the index does not search the verses that would be thrown
+ * away.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class RestrictedQuery implements Query {
+    /**
+     * Create a query that is restricted to a range.
+     * 
+     * @param theRange
+     *            the range
+     * @param theQuery
+     *            what to search for
+     * @param isExcluded
+     *            whether to search outside the range instead
+     */
+    public RestrictedQuery(RangeQuery theRange, BaseQuery theQuery, boolean isExcluded) {
+        range = theRange;
+        query = theQuery;
+        excluded = isExcluded;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index)
+     */
+    public Key find(Index index) throws BookException {
+        Key restriction = range.find(index);
+
+        if (!excluded && restriction.isEmpty()) {
+            return restriction;
+        }
+
+        return index.find(query.getQuery(), index.getSearchModifier(), restriction, excluded);
+    }
+
+    /**
+     * @return the range
+     */
+    public RangeQuery getRange() {
+        return range;
+    }
+
+    /**
+     * @return what to search for
+     */
+    public BaseQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return whether the search is outside the range
+     */
+    public boolean isExcluded() {
+        return excluded;
+    }
+
+    private RangeQuery range;
+    private BaseQuery query;
+    private boolean excluded;
+}
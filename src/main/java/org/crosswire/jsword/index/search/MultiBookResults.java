@@ -0,0 +1,198 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+
+/**
+ * The results of the same search of many books, as made by a
+ * MultiBookSearcher. The search of each book either found something, which may
+ * be nothing, failed or timed out.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class MultiBookResults {
+    /**
+     * Create an empty set of results.
+     *
+     * @param modifier
+     *            how the search was modified, or null
+     */
+    public MultiBookResults(SearchModifier modifier) {
+        this.modifier = modifier;
+        this.results = new LinkedHashMap<Book, Key>();
+        this.failures = new LinkedHashMap<Book, BookException>();
+        this.timeouts = new ArrayList<Book>();
+    }
+
+    /**
+     * @return the books whose search found something, in the order they were
+     *         searched
+     */
+    public List<Book> getBooks() {
+        return new ArrayList<Book>(results.keySet());
+    }
+
+    /**
+     * @param book
+     *            one of the searched books
+     * @return what the search of the book found, or null if it failed or
+     *         timed out
+     */
+    public Key getResults(Book book) {
+        return results.get(book);
+    }
+
+    /**
+     * @param book
+     *            one of the searched books
+     * @return why the search of the book failed, or null if it did not
+     */
+    public BookException getFailure(Book book) {
+        return failures.get(book);
+    }
+
+    /**
+     * @return the books whose search failed
+     */
+    public List<Book> getFailedBooks() {
+        return new ArrayList<Book>(failures.keySet());
+    }
+
+    /**
+     * The search of a book that timed out is not stopped. It goes on using a
+     * thread of the searcher's pool until it finishes, and what it finds is
+     * not added to these results.
+     *
+     * @return the books whose search was given up on
+     */
+    public List<Book> getTimedOutBooks() {
+        return Collections.unmodifiableList(timeouts);
+    }
+
+    /**
+     * Whether every book has results. This is false when the search of a book
+     * failed or timed out. A search that timed out is only no longer waited
+     * for, and may still be running.
+     *
+     * @return whether the search of every book found something
+     */
+    public boolean isComplete() {
+        return failures.isEmpty() && timeouts.isEmpty();
+    }
+
+    /**
+     * Merge the ranked results of all the books into one ranking, best first.
+     * The scores of each book come from its own index, so a word that is rare
+     * in one book and common in another counts for more in the first. Books
+     * that were not searched with ranking are left out.
+     *
+     * @return the best hits of all the books, at most as many as the search
+     *         asked for
+     */
+    public List<Hit> getRankedHits() {
+        List<Hit> hits = new ArrayList<Hit>();
+        for (Map.Entry<Book, Key> entry : results.entrySet()) {
+            Key key = entry.getValue();
+            if (!(key instanceof PassageTally)) {
+                continue;
+            }
+            PassageTally tally = (PassageTally) key;
+            for (Key verse : tally) {
+                hits.add(new Hit(entry.getKey(), (Verse) verse, tally.getTallyOf((Verse) verse)));
+            }
+        }
+
+        Collections.sort(hits, new Comparator<Hit>() {
+            public int compare(Hit o1, Hit o2) {
+                return o2.score - o1.score;
+            }
+        });
+
+        int max = modifier == null ? hits.size() : Math.min(hits.size(), modifier.getMaxResults());
+        return new ArrayList<Hit>(hits.subList(0, max));
+    }
+
+    void add(Book book, Key key) {
+        results.put(book, key);
+    }
+
+    void addFailure(Book book, BookException failure) {
+        failures.put(book, failure);
+    }
+
+    void addTimeout(Book book) {
+        timeouts.add(book);
+    }
+
+    /**
+     * A verse of one of the books, with its score in the search of that book.
+     */
+    public static class Hit {
+        Hit(Book book, Verse verse, int score) {
+            this.book = book;
+            this.verse = verse;
+            this.score = score;
+        }
+
+        /**
+         * @return the book in which the verse was found
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * @return the verse that was found
+         */
+        public Verse getVerse() {
+            return verse;
+        }
+
+        /**
+         * @return how well the verse matched, higher is better
+         */
+        public int getScore() {
+            return score;
+        }
+
+        private Book book;
+        private Verse verse;
+        private int score;
+    }
+
+    private SearchModifier modifier;
+    private Map<Book, Key> results;
+    private Map<Book, BookException> failures;
+    private List<Book> timeouts;
+}
@@ -0,0 +1,216 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.crosswire.common.util.WorkerPool;
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A MultiBookSearcher makes the same search of many books at once, so that it
+ * takes about as long as the search of the slowest book rather than the sum of
+ * them all.
+ *
+ * <p>
+ * Each search is given a time from when it starts. A search that takes longer
+ * is given up on and reported as timed out, but it is left to finish in the
+ * background rather than being interrupted, as interrupting a thread that is
+ * reading an index can close the index files for every other search.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class MultiBookSearcher {
+    /**
+     * Create a searcher that shares a pool of a thread for each available
+     * processor with the other searchers created this way.
+     *
+     * @param timeout
+     *            the most milliseconds to wait for the search of a book, from
+     *            when it starts, or 0 to wait for as long as it takes
+     */
+    public MultiBookSearcher(long timeout) {
+        this(getDefaultPool(), timeout);
+    }
+
+    /**
+     * Create a searcher that searches books in the given pool.
+     *
+     * @param pool
+     *            the threads that search the books
+     * @param timeout
+     *            the most milliseconds to wait for the search of a book, from
+     *            when it starts, or 0 to wait for as long as it takes
+     */
+    public MultiBookSearcher(WorkerPool pool, long timeout) {
+        this.pool = pool;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Search each of the books. This waits until every search has finished,
+     * failed or timed out. A search that timed out keeps its thread of the
+     * pool until it finishes, so it may still be running when this returns.
+     *
+     * @param books
+     *            the books to search
+     * @param request
+     *            what to search for and how
+     * @return the results of each book
+     */
+    public MultiBookResults search(List<Book> books, SearchRequest request) {
+        List<BookSearch> searches = new ArrayList<BookSearch>(books.size());
+        for (Book book : books) {
+            BookSearch search = new BookSearch(book, request);
+            search.future = pool.submit(search);
+            searches.add(search);
+        }
+
+        MultiBookResults results = new MultiBookResults(request.getSearchModifier());
+        boolean interrupted = false;
+        for (BookSearch search : searches) {
+            try {
+                results.add(search.book, await(search));
+            } catch (TimeoutException e) {
+                log.warn("Search of {} timed out", search.book.getInitials());
+                search.future.cancel(false);
+                results.addTimeout(search.book);
+            } catch (ExecutionException e) {
+                results.addFailure(search.book, getBookException(e.getCause()));
+            } catch (CancellationException e) {
+                results.addTimeout(search.book);
+            } catch (InterruptedException e) {
+                // Give up on the rest, but still report on each book
+                interrupted = true;
+                search.future.cancel(false);
+                results.addTimeout(search.book);
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the search of a book until it has been running for longer than
+     * the timeout. A search that is still waiting for a thread has not yet
+     * started.
+     */
+    private Key await(BookSearch search) throws ExecutionException, InterruptedException, TimeoutException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (timeout <= 0) {
+            return search.future.get();
+        }
+
+        long limit = TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            Long started = search.started;
+            long wait = started == null ? limit : started.longValue() + limit - System.nanoTime();
+            if (wait <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return search.future.get(wait, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (started != null) {
+                    throw e;
+                }
+                // It was still waiting for a thread, so see when it started
+            }
+        }
+    }
+
+    private static BookException getBookException(Throwable cause) {
+        if (cause instanceof BookException) {
+            return (BookException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+        return new BookException(JSMsg.gettext("Search failed."), cause);
+    }
+
+    private static synchronized WorkerPool getDefaultPool() {
+        if (defaultPool == null) {
+            defaultPool = new WorkerPool("MultiBookSearcher");
+        }
+        return defaultPool;
+    }
+
+    /**
+     * The search of one book, which knows when it started.
+     */
+    private static class BookSearch implements Callable<Key> {
+        BookSearch(Book book, SearchRequest request) {
+            this.book = book;
+            this.request = request;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Key call() throws BookException {
+            started = Long.valueOf(System.nanoTime());
+            return book.find(request);
+        }
+
+        Book book;
+        SearchRequest request;
+        Future<Key> future;
+        /**
+         * When the search started, or null while it waits for a thread.
+         */
+        volatile Long started;
+    }
+
+    /**
+     * The pool shared by the searchers that were not given one.
+     */
+    private static WorkerPool defaultPool;
+
+    private WorkerPool pool;
+    private long timeout;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(MultiBookSearcher.class);
+}
@@ -20,6 +20,8 @@
  */
 package org.crosswire.jsword.index.search;
 
+import java.util.List;
+
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
 import org.crosswire.jsword.index.query.Query;
@@ -58,4 +60,19 @@ public interface Searcher {
      * @return The matching verses
      */
     Key search(Query request) throws BookException;
+
+    /**
+     * Suggest how a word that is being typed into a search might end.
+     * 
+     * @param field
+     *            the field that is searched, for example strong, or null for
+     *            the text
+     * @param prefix
+     *            what has been typed so far
+     * @param count
+     *            the most words to suggest
+     * @return the words, those that are in the most places first
+     * @see Index#getSuggestions(String, String, int)
+     */
+    List<String> getSuggestions(String field, String prefix, int count);
 }
@@ -83,6 +83,17 @@ public abstract class AbstractPassage implements Passage {
         return v11n;
     }
 
+    /**
+     * Set the versification of a Passage that reads its own state when it is
+     * deserialized, rather than using readObjectSupport.
+     *
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     */
+    /* protected */void setVersification(Versification v11n) {
+        this.v11n = v11n;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Comparable#compareTo(java.lang.Object)
      */
@@ -398,6 +409,21 @@ public abstract class AbstractPassage implements Passage {
         return new VerseRangeIterator(getVersification(), iterator(), restrict);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor()
+     */
+    public OrdinalCursor ordinalCursor() {
+        return ordinalCursor(0, getVersification().maximumOrdinal());
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor(int, int)
+     */
+    public OrdinalCursor ordinalCursor(int start, int end) {
+        // Subclasses that can walk their store directly should
+        return new VerseOrdinalCursor(iterator(), start, end);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Passage#containsAll(org.crosswire.jsword.passage.Passage)
      */
@@ -995,6 +1021,24 @@ public abstract class AbstractPassage implements Passage {
         return suppressEvents == 0;
     }
 
+    /**
+     * Walk the ordinals of the Verses of a Key. A VerseKey gives them without
+     * making a Verse of each, in Biblical order. Any other Key gives them in
+     * the order of its iterator.
+     * 
+     * @param key
+     *            The Key whose Verses are wanted
+     * @return a cursor over the ordinals
+     * @exception java.lang.ClassCastException
+     *                If the Key has members that are not Verses
+     */
+    protected static OrdinalCursor toOrdinalCursor(Key key) throws ClassCastException {
+        if (key instanceof VerseKey) {
+            return ((VerseKey) key).ordinalCursor();
+        }
+        return new VerseOrdinalCursor(key.iterator(), 0, Integer.MAX_VALUE);
+    }
+
     /**
      * Convert the Object to a VerseRange. If base is a Verse then return a
      * VerseRange of zero length.
@@ -1022,6 +1066,38 @@ public abstract class AbstractPassage implements Passage {
         throw new ClassCastException(JSOtherMsg.lookupText("Can only use Verses and VerseRanges in this Collection"));
     }
 
+    /**
+     * An OrdinalCursor over the Verses of an Iterator that are in Biblical
+     * order.
+     */
+    private static final class VerseOrdinalCursor implements OrdinalCursor {
+        protected VerseOrdinalCursor(Iterator<Key> it, int start, int end) {
+            this.it = it;
+            this.start = start;
+            this.end = end;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.passage.OrdinalCursor#nextOrdinal()
+         */
+        public int nextOrdinal() {
+            while (it.hasNext()) {
+                int ordinal = ((Verse) it.next()).getOrdinal();
+                if (ordinal > end) {
+                    break;
+                }
+                if (ordinal >= start) {
+                    return ordinal;
+                }
+            }
+            return -1;
+        }
+
+        private Iterator<Key> it;
+        private int start;
+        private int end;
+    }
+
     /**
      * Skip over verses that are part of a range
      */
@@ -1168,9 +1244,9 @@ public abstract class AbstractPassage implements Passage {
             out.writeInt(BITWISE);
 
             BitSet store = new BitSet(bitwise_size);
-            for (Key aKey : this) {
-                Verse verse = (Verse) aKey;
-                store.set(verse.getOrdinal());
+            OrdinalCursor cursor = ordinalCursor();
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                store.set(ord);
             }
 
             out.writeObject(store);
@@ -1181,9 +1257,9 @@ public abstract class AbstractPassage implements Passage {
             out.writeInt(countVerses());
 
             // write the verse ordinals in a loop
-            for (Key aKey : this) {
-                Verse verse = (Verse) aKey;
-                out.writeInt(verse.getOrdinal());
+            OrdinalCursor cursor = ordinalCursor();
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                out.writeInt(ord);
             }
         } else {
             // otherwise use ranges
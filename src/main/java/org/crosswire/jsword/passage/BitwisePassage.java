@@ -138,11 +138,27 @@ public class BitwisePassage extends AbstractPassage {
         return new VerseIterator();
     }
 
+    @Override
+    public OrdinalCursor ordinalCursor(final int start, final int end) {
+        return new OrdinalCursor() {
+            public int nextOrdinal() {
+                int ordinal = store.nextSetBit(next);
+                if (ordinal < 0 || ordinal > end) {
+                    return -1;
+                }
+                next = ordinal + 1;
+                return ordinal;
+            }
+
+            private int next = Math.max(0, start);
+        };
+    }
+
     @Override
     public boolean contains(Key obj) {
-        for (Key aKey : obj) {
-            Verse verse = (Verse) aKey;
-            if (!store.get(verse.getOrdinal())) {
+        OrdinalCursor cursor = toOrdinalCursor(obj);
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            if (!store.get(ord)) {
                 return false;
             }
         }
@@ -223,7 +239,10 @@ public class BitwisePassage extends AbstractPassage {
             BitwisePassage thatRef = (BitwisePassage) key;
             store.or(thatRef.store);
         } else {
-            super.addAll(key);
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                store.set(ord);
+            }
         }
 
         // we do an extra check here because the cost of calculating the
@@ -251,7 +270,10 @@ public class BitwisePassage extends AbstractPassage {
 
             store.andNot(thatRef.store);
         } else {
-            super.removeAll(key);
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                store.clear(ord);
+            }
         }
 
         // we do an extra check here because the cost of calculating the
@@ -281,8 +303,8 @@ public class BitwisePassage extends AbstractPassage {
             Versification v11n = getVersification();
             thatStore = new BitSet(v11n.maximumOrdinal() + 1);
 
-            for (Key aKey : key) {
-                int ord = ((Verse) aKey).getOrdinal();
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
                 if (store.get(ord)) {
                     thatStore.set(ord);
                 }
@@ -306,33 +328,37 @@ public class BitwisePassage extends AbstractPassage {
     public void blur(int verses, RestrictionType restrict) {
         assert verses >= 0;
         optimizeWrites();
+        raiseEventSuppresion();
         raiseNormalizeProtection();
 
-        if (!restrict.equals(RestrictionType.NONE)) {
-            super.blur(verses, restrict);
-        } else {
-            optimizeWrites();
-            raiseEventSuppresion();
-            raiseNormalizeProtection();
-
-            int maximumOrdinal = getVersification().maximumOrdinal();
-            BitSet newStore = new BitSet(maximumOrdinal + 1);
-
-            for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i + 1)) {
-                int start = Math.max(1, i - verses);
-                int end = Math.min(maximumOrdinal, i + verses);
-
-                for (int j = start; j <= end; j++) {
-                    newStore.set(j);
-                }
+        Versification v11n = getVersification();
+        int maximumOrdinal = v11n.maximumOrdinal();
+        BitSet newStore = new BitSet(maximumOrdinal + 1);
+
+        // Only the ends of a run of verses can be blurred beyond it, so each
+        // run is blurred as a whole and set a word at a time.
+        int start = store.nextSetBit(0);
+        while (start >= 0) {
+            int end = store.nextClearBit(start) - 1;
+            int from;
+            int to;
+            if (restrict.equals(RestrictionType.NONE)) {
+                from = Math.max(1, start - verses);
+                to = Math.min(maximumOrdinal, end + verses);
+            } else {
+                from = Math.max(restrict.getScopeStart(v11n, start), start - verses);
+                to = Math.min(restrict.getScopeEnd(v11n, end), end + verses);
             }
 
-            store = newStore;
+            newStore.set(from, to + 1);
+            start = store.nextSetBit(end + 1);
+        }
+
+        store = newStore;
 
-            lowerNormalizeProtection();
-            if (lowerEventSuppressionAndTest()) {
-                fireIntervalAdded(this, null, null);
-            }
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
         }
     }
 
@@ -0,0 +1,483 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * A Passage that is implemented using a compressed bitmap of verse ordinals.
+ * The attributes of the style are:
+ * <ul>
+ * <li>Fast union, intersection and difference with other CompressedPassages
+ * <li>Fast countVerses() and getVerseAt()
+ * <li>Small for both small and large Passages, very small for whole chapters
+ * and books
+ * <li>Small, quick serialization
+ * </ul>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see OrdinalBitmap
+ */
+public class CompressedPassage extends AbstractPassage {
+    /**
+     * Create an empty CompressedPassage. There are no ctors from either Verse
+     * or VerseRange so you need to do new
+     * <code>CompressedPassage().add(...);</code>
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     */
+    protected CompressedPassage(Versification v11n) {
+        super(v11n);
+        store = new OrdinalBitmap(v11n.maximumOrdinal());
+    }
+
+    /**
+     * Create a CompressedPassage from a human readable string. The opposite of
+     * toString().
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the CompressedPassage
+     * @param basis
+     *            The basis by which to interpret refs
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected CompressedPassage(Versification v11n, String refs, Key basis) throws NoSuchVerseException {
+        super(v11n, refs);
+        store = new OrdinalBitmap(v11n.maximumOrdinal());
+        addVerses(refs, basis);
+    }
+
+    /**
+     * Create a CompressedPassage from a human readable string. The opposite of
+     * toString().
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the CompressedPassage
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected CompressedPassage(Versification v11n, String refs) throws NoSuchVerseException {
+        this(v11n, refs, null);
+    }
+
+    @Override
+    public CompressedPassage clone() {
+        // This gets us a shallow copy
+        CompressedPassage copy = (CompressedPassage) super.clone();
+
+        copy.store = store.copy();
+
+        return copy;
+    }
+
+    @Override
+    public int countVerses() {
+        return store.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return store.isEmpty();
+    }
+
+    @Override
+    public Verse getVerseAt(int offset) throws ArrayIndexOutOfBoundsException {
+        int ordinal = store.select(offset);
+        if (ordinal < 0) {
+            throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(countVerses())));
+        }
+        return getVersification().decodeOrdinal(ordinal);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Key> iterator() {
+        return new VerseIterator();
+    }
+
+    @Override
+    public OrdinalCursor ordinalCursor(final int start, final int end) {
+        return new OrdinalCursor() {
+            public int nextOrdinal() {
+                int ordinal = store.nextSetBit(next);
+                if (ordinal < 0 || ordinal > end) {
+                    return -1;
+                }
+                next = ordinal + 1;
+                return ordinal;
+            }
+
+            private int next = Math.max(0, start);
+        };
+    }
+
+    @Override
+    public boolean contains(Key obj) {
+        if (obj instanceof CompressedPassage) {
+            return store.containsAll(((CompressedPassage) obj).store);
+        }
+
+        OrdinalCursor cursor = toOrdinalCursor(obj);
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            if (!store.contains(ord)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#add(org.crosswire.jsword.passage.Key)
+     */
+    public void add(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        if (obj instanceof VerseRange) {
+            VerseRange range = (VerseRange) obj;
+            firstVerse = range.getStart();
+            lastVerse = range.getEnd();
+            store.addRange(firstVerse.getOrdinal(), lastVerse.getOrdinal());
+        } else {
+            for (Key aKey : obj) {
+                lastVerse = (Verse) aKey;
+                if (firstVerse == null) {
+                    firstVerse = lastVerse;
+                }
+                store.add(lastVerse.getOrdinal());
+            }
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalAdded(this, firstVerse, lastVerse);
+        }
+    }
+
+    /**
+     * A shortcut to adding a key, by ordinal. The ordinal needs to be taken
+     * from the same versification as the passage being created.
+     * 
+     * @param ordinal
+     *            the ordinal
+     */
+    public void addVersifiedOrdinal(int ordinal) {
+        optimizeWrites();
+        store.add(ordinal);
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            Verse verse = getVersification().decodeOrdinal(ordinal);
+            fireIntervalAdded(this, verse, verse);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
+     */
+    public void remove(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        for (Key aKey : obj) {
+            lastVerse = (Verse) aKey;
+            if (firstVerse == null) {
+                firstVerse = lastVerse;
+            }
+            store.remove(lastVerse.getOrdinal());
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalRemoved(this, firstVerse, lastVerse);
+        }
+    }
+
+    @Override
+    public void addAll(Key key) {
+        optimizeWrites();
+
+        if (key instanceof CompressedPassage) {
+            store.or(((CompressedPassage) key).store);
+        } else {
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                store.add(ord);
+            }
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0 && !key.isEmpty()) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalAdded(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalAdded(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalAdded(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Key key) {
+        optimizeWrites();
+
+        if (key instanceof CompressedPassage) {
+            store.andNot(((CompressedPassage) key).store);
+        } else {
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                store.remove(ord);
+            }
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0 && !key.isEmpty()) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalRemoved(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalRemoved(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalRemoved(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void retainAll(Key key) {
+        optimizeWrites();
+
+        OrdinalBitmap thatStore = null;
+        if (key instanceof CompressedPassage) {
+            thatStore = ((CompressedPassage) key).store;
+        } else {
+            thatStore = new OrdinalBitmap(getVersification().maximumOrdinal());
+
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                if (store.contains(ord)) {
+                    thatStore.add(ord);
+                }
+            }
+        }
+        store.and(thatStore);
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    @Override
+    public void clear() {
+        optimizeWrites();
+
+        store.clear();
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    @Override
+    public void blur(int verses, RestrictionType restrict) {
+        assert verses >= 0;
+
+        optimizeWrites();
+        raiseEventSuppresion();
+        raiseNormalizeProtection();
+
+        Versification v11n = getVersification();
+        int maximumOrdinal = v11n.maximumOrdinal();
+        boolean restricted = !restrict.equals(RestrictionType.NONE);
+        OrdinalBitmap newStore = new OrdinalBitmap(maximumOrdinal);
+
+        // Overlapping and touching ranges are joined before they are added
+        int start = -1;
+        int end = -1;
+        for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i + 1)) {
+            int from;
+            int to;
+            if (restricted) {
+                from = Math.max(restrict.getScopeStart(v11n, i), i - verses);
+                to = Math.min(restrict.getScopeEnd(v11n, i), i + verses);
+            } else {
+                from = Math.max(1, i - verses);
+                to = Math.min(maximumOrdinal, i + verses);
+            }
+            if (start >= 0 && from <= end + 1) {
+                end = to;
+            } else {
+                if (start >= 0) {
+                    newStore.addRange(start, end);
+                }
+                start = from;
+                end = to;
+            }
+        }
+        if (start >= 0) {
+            newStore.addRange(start, end);
+        }
+
+        store = newStore;
+
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
+
+    /**
+     * Iterate over the Verses
+     */
+    private final class VerseIterator implements Iterator<Key> {
+        /**
+         * Find the first unused verse
+         */
+        public VerseIterator() {
+            next = -1;
+            calculateNext();
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Key retcode = getVersification().decodeOrdinal(next);
+            last = next;
+            calculateNext();
+
+            return retcode;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            store.remove(last);
+        }
+
+        /**
+         * Find the next bit
+         */
+        private void calculateNext() {
+            next = store.nextSetBit(next + 1);
+        }
+
+        /**
+         * What is the next Verse to be considered
+         */
+        private int next;
+
+        /**
+         * What was the last Verse to be returned
+         */
+        private int last;
+    }
+
+    /**
+     * Write the store in its compressed form.
+     * 
+     * @param out
+     *            The stream to write our state to
+     * @serialData Write the versification name and then the compressed
+     *             bitmap of verse ordinals
+     * @throws IOException
+     *             if the write fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        // Save off the versification by name
+        out.writeUTF(getVersification().getName());
+
+        store.write(out);
+    }
+
+    /**
+     * Read the store in its compressed form.
+     * 
+     * @param in
+     *            The stream to read our state from
+     * @throws IOException
+     *             if the read fails
+     * @throws ClassNotFoundException
+     *             If the read data is incorrect
+     * @serialData Write the versification name and then the compressed
+     *             bitmap of verse ordinals
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        // Read the versification by name
+        String v11nName = in.readUTF();
+        Versification v11n = Versifications.instance().getVersification(v11nName);
+        setVersification(v11n);
+
+        store = OrdinalBitmap.read(in, v11n.maximumOrdinal());
+    }
+
+    /**
+     * To make serialization work across new versions
+     */
+    private static final long serialVersionUID = 3482957217634159301L;
+
+    /**
+     * The place the real data is stored
+     */
+    private transient OrdinalBitmap store;
+}
@@ -0,0 +1,677 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.book.CaseType;
+import org.crosswire.jsword.internationalisation.LocaleProviderManager;
+import org.crosswire.jsword.versification.BookName;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A FrozenPassage is an unchangeable snapshot of the Verses of another Passage.
+ * It is meant to be shared: it needs no locks to be read by many threads at
+ * once, nothing can change it, so it fires no events, and there is no
+ * normalization to be done.
+ * 
+ * <p>
+ * The Verses are held as the runs of consecutive ordinals, with the number of
+ * Verses before each run, so that counting, finding and indexing are done by
+ * searching arrays. The ranges without a restriction, the number of books and the name and hash code
+ * are worked out in advance. The name depends on how book names are being
+ * reported, so the name and hash code are worked out again if that changes.
+ * </p>
+ * 
+ * <p>
+ * Anything that would change a FrozenPassage throws an IllegalStateException.
+ * A clone is a changeable copy, so that code that copies a Key in order to
+ * change it works with a FrozenPassage too. Only the Verses of a PassageTally
+ * are kept, not their tallies nor the order of their ranks.
+ * </p>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see PassageKeyFactory#getFrozenPassage(Passage)
+ */
+/* package */ final class FrozenPassage extends AbstractPassage {
+    /**
+     * Take a snapshot of the Verses of a Passage.
+     * 
+     * @param ref
+     *            The Passage to copy
+     */
+    /* package */FrozenPassage(Passage ref) {
+        super(ref.getVersification(), ref instanceof AbstractPassage ? ((AbstractPassage) ref).originalName : null);
+
+        Versification v11n = getVersification();
+        int[] runStarts = new int[INITIAL_RUNS];
+        int[] runEnds = new int[INITIAL_RUNS];
+        int runs = 0;
+        int verses = 0;
+
+        // The cursor gives the ordinals in Biblical order
+        OrdinalCursor cursor = ref.ordinalCursor();
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            verses++;
+            if (runs > 0 && ord == runEnds[runs - 1] + 1) {
+                runEnds[runs - 1] = ord;
+                continue;
+            }
+
+            if (runs == runStarts.length) {
+                runStarts = grow(runStarts, runs);
+                runEnds = grow(runEnds, runs);
+            }
+            runStarts[runs] = ord;
+            runEnds[runs] = ord;
+            runs++;
+        }
+
+        starts = new int[runs];
+        ends = new int[runs];
+        offsets = new int[runs];
+        System.arraycopy(runStarts, 0, starts, 0, runs);
+        System.arraycopy(runEnds, 0, ends, 0, runs);
+
+        int offset = 0;
+        int bookCount = 0;
+        Verse last = null;
+        for (int i = 0; i < runs; i++) {
+            offsets[i] = offset;
+            offset += ends[i] - starts[i] + 1;
+
+            Verse start = v11n.decodeOrdinal(starts[i]);
+            Verse end = v11n.decodeOrdinal(ends[i]);
+
+            // A run may begin in the book that the one before it ended in
+            bookCount += v11n.getBookCount(start, end);
+            if (last != null && last.getBook() == start.getBook()) {
+                bookCount--;
+            }
+            last = end;
+        }
+
+        count = verses;
+        books = bookCount;
+
+        // The ranges are as any other Passage would give them, which is not
+        // quite the runs, as a range may step over the introduction to a
+        // chapter.
+        List<Key> found = new ArrayList<Key>();
+        Iterator<Key> it = new VerseRangeIterator(v11n, iterator(), RestrictionType.NONE);
+        while (it.hasNext()) {
+            found.add(it.next());
+        }
+        ranges = found.toArray(new VerseRange[found.size()]);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getName()
+     */
+    @Override
+    public String getName() {
+        if (PassageUtil.isPersistentNaming() && originalName != null) {
+            return originalName;
+        }
+
+        return getNaming().name;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        if (PassageUtil.isPersistentNaming() && originalName != null) {
+            return originalName.hashCode();
+        }
+
+        return getNaming().hash;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getOsisRef()
+     */
+    @Override
+    public String getOsisRef() {
+        String ref = osisRef;
+        if (ref == null) {
+            ref = super.getOsisRef();
+            osisRef = ref;
+        }
+        return ref;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getOsisID()
+     */
+    @Override
+    public String getOsisID() {
+        String id = osisID;
+        if (id == null) {
+            id = super.getOsisID();
+            osisID = id;
+        }
+        return id;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#isEmpty()
+     */
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#countVerses()
+     */
+    @Override
+    public int countVerses() {
+        return count;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getCardinality()
+     */
+    @Override
+    public int getCardinality() {
+        return count;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#booksInPassage()
+     */
+    @Override
+    public int booksInPassage() {
+        return books;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#hasRanges(org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public boolean hasRanges(RestrictionType restrict) {
+        if (restrict == RestrictionType.NONE) {
+            return ranges.length > 1;
+        }
+        return super.hasRanges(restrict);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#countRanges(org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public int countRanges(RestrictionType restrict) {
+        if (restrict == RestrictionType.NONE) {
+            return ranges.length;
+        }
+        return super.countRanges(restrict);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getRangeAt(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public VerseRange getRangeAt(int offset, RestrictionType restrict) throws ArrayIndexOutOfBoundsException {
+        if (restrict != RestrictionType.NONE) {
+            return super.getRangeAt(offset, restrict);
+        }
+        if (offset < 0 || offset >= ranges.length) {
+            throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(ranges.length)));
+        }
+        return ranges[offset];
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#getVerseAt(int)
+     */
+    @Override
+    public Verse getVerseAt(int offset) throws ArrayIndexOutOfBoundsException {
+        if (offset < 0 || offset >= count) {
+            throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(count)));
+        }
+
+        // Find the last run that begins at or before the offset
+        int run = Arrays.binarySearch(offsets, offset);
+        if (run < 0) {
+            run = -run - 2;
+        }
+        return getVersification().decodeOrdinal(starts[run] + offset - offsets[run]);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#indexOf(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public int indexOf(Key that) {
+        if (!(that instanceof Verse)) {
+            return super.indexOf(that);
+        }
+
+        Verse verse = (Verse) that;
+        if (!getVersification().equals(verse.getVersification())) {
+            return -1;
+        }
+
+        int ordinal = verse.getOrdinal();
+        int run = findRun(ordinal);
+        if (run < 0) {
+            return -1;
+        }
+        return offsets[run] + ordinal - starts[run];
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#contains(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public boolean contains(Key key) {
+        OrdinalCursor cursor = toOrdinalCursor(key);
+        int run = -1;
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            // The Verses of a Key mostly come in runs too
+            if (run < 0 || ord < starts[run] || ord > ends[run]) {
+                run = findRun(ord);
+                if (run < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Key> iterator() {
+        return new VerseIterator(ordinalCursor());
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#rangeIterator(org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public Iterator<Key> rangeIterator(RestrictionType restrict) {
+        if (restrict == RestrictionType.NONE) {
+            return new RangeIterator();
+        }
+        return super.rangeIterator(restrict);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#ordinalCursor(int, int)
+     */
+    @Override
+    public OrdinalCursor ordinalCursor(final int start, final int end) {
+        // Begin with the first run that does not end before the start
+        int first = Arrays.binarySearch(ends, start);
+        if (first < 0) {
+            first = -first - 1;
+        }
+        final int firstRun = first;
+        final int firstNext = first < starts.length ? Math.max(start, starts[first]) : -1;
+
+        return new OrdinalCursor() {
+            public int nextOrdinal() {
+                if (next < 0 || next > end) {
+                    next = -1;
+                    return -1;
+                }
+
+                int ordinal = next;
+                if (ordinal < ends[run]) {
+                    next = ordinal + 1;
+                } else if (++run < starts.length) {
+                    next = starts[run];
+                } else {
+                    next = -1;
+                }
+                return ordinal;
+            }
+
+            private int run = firstRun;
+            private int next = firstNext;
+        };
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#optimizeReads()
+     */
+    @Override
+    public void optimizeReads() {
+        // Everything is worked out in advance
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#addPassageListener(org.crosswire.jsword.passage.PassageListener)
+     */
+    @Override
+    public void addPassageListener(PassageListener li) {
+        // Nothing can change, so there is nothing to listen for
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#removePassageListener(org.crosswire.jsword.passage.PassageListener)
+     */
+    @Override
+    public void removePassageListener(PassageListener li) {
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#add(org.crosswire.jsword.passage.Key)
+     */
+    public void add(Key that) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
+     */
+    public void remove(Key that) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#addAll(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public void addAll(Key key) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#removeAll(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public void removeAll(Key key) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#retainAll(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public void retainAll(Key key) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#clear()
+     */
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#blur(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public void blur(int verses, RestrictionType restrict) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#trimVerses(int)
+     */
+    @Override
+    public Passage trimVerses(int count) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#trimRanges(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public Passage trimRanges(int count, RestrictionType restrict) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#readDescription(java.io.Reader)
+     */
+    @Override
+    public void readDescription(Reader in) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#setParent(org.crosswire.jsword.passage.Key)
+     */
+    @Override
+    public void setParent(Key parent) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.AbstractPassage#clone()
+     */
+    @Override
+    public AbstractPassage clone() {
+        // A copy is made in order to change it, so it has to be changeable
+        AbstractPassage copy = (AbstractPassage) PassageKeyFactory.instance().createEmptyKeyList(getVersification());
+        copy.addAll(this);
+        copy.originalName = originalName;
+        return copy;
+    }
+
+    /**
+     * A FrozenPassage is serialized as a changeable copy, as the Versification
+     * of a Passage is only serialized by the Passages that can be filled as
+     * they are read.
+     * 
+     * @return the copy to serialize instead
+     */
+    private Object writeReplace() {
+        return clone();
+    }
+
+    /**
+     * Find the run that holds an ordinal.
+     * 
+     * @param ordinal
+     *            the ordinal of a Verse
+     * @return the index of the run, or -1 if there is none
+     */
+    private int findRun(int ordinal) {
+        int run = Arrays.binarySearch(ends, ordinal);
+        if (run < 0) {
+            run = -run - 1;
+        }
+        if (run < ends.length && starts[run] <= ordinal) {
+            return run;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the name and hash code for the way that book names are being
+     * reported, working them out again if that has changed.
+     */
+    private Naming getNaming() {
+        CaseType bookCase = BookName.getDefaultCase();
+        boolean fullName = BookName.isFullBookName();
+        Locale locale = LocaleProviderManager.getLocale();
+
+        Naming current = naming;
+        if (current == null || current.bookCase != bookCase || current.fullName != fullName || !current.locale.equals(locale)) {
+            current = new Naming(bookCase, fullName, locale, super.getName());
+            naming = current;
+        }
+        return current;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] bigger = new int[length * 2];
+        System.arraycopy(array, 0, bigger, 0, length);
+        return bigger;
+    }
+
+    private static IllegalStateException readOnly() {
+        return new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /**
+     * The name and hash code of a FrozenPassage and the way that book names
+     * were being reported when they were worked out.
+     */
+    private static final class Naming {
+        Naming(CaseType bookCase, boolean fullName, Locale locale, String name) {
+            this.bookCase = bookCase;
+            this.fullName = fullName;
+            this.locale = locale;
+            this.name = name;
+            this.hash = name.hashCode();
+        }
+
+        final CaseType bookCase;
+        final boolean fullName;
+        final Locale locale;
+        final String name;
+        final int hash;
+    }
+
+    /**
+     * Iterate over the Verses of the runs.
+     */
+    private final class VerseIterator implements Iterator<Key> {
+        VerseIterator(OrdinalCursor cursor) {
+            this.cursor = cursor;
+            this.next = cursor.nextOrdinal();
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            Verse verse = getVersification().decodeOrdinal(next);
+            next = cursor.nextOrdinal();
+            return verse;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+
+        private OrdinalCursor cursor;
+        private int next;
+    }
+
+    /**
+     * Iterate over the ranges that were worked out in advance.
+     */
+    private final class RangeIterator implements Iterator<Key> {
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next < ranges.length;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            if (next >= ranges.length) {
+                throw new NoSuchElementException();
+            }
+            return ranges[next++];
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+
+        private int next;
+    }
+
+    /**
+     * The number of runs to allow for at first
+     */
+    private static final int INITIAL_RUNS = 16;
+
+    /**
+     * The first and last ordinals of each run of consecutive Verses
+     */
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * The number of Verses before each run
+     */
+    private final int[] offsets;
+
+    /**
+     * The ranges without a restriction
+     */
+    private final VerseRange[] ranges;
+
+    /**
+     * The number of Verses
+     */
+    private final int count;
+
+    /**
+     * The number of books that the Verses are in
+     */
+    private final int books;
+
+    /**
+     * The name and hash code, worked out when first wanted
+     */
+    private transient volatile Naming naming;
+
+    /**
+     * The osisRef and osisID, worked out when first wanted
+     */
+    private transient volatile String osisRef;
+    private transient volatile String osisID;
+
+    /**
+     * Serialization ID
+     */
+    private static final long serialVersionUID = -3316285405125702546L;
+}
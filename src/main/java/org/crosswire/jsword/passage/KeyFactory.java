@@ -35,6 +35,13 @@ public interface KeyFactory {
      * probably include all the verses in the Bible, but a commentary may well
      * miss some out.
      * 
+     * <p>
+     * The Key may be shared by every caller and so must not be changed. The
+     * verses of a Bible are a Passage that throws an IllegalStateException
+     * when it is changed, where they used to ignore the change. Clone it to
+     * get a Key that can be changed.
+     * </p>
+     * 
      * @return A Key that includes all of the known Keys
      */
     Key getGlobalKeyList();
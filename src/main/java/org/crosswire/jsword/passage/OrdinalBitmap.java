@@ -0,0 +1,956 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed set of verse ordinals. The ordinals are split into blocks of
+ * 4096 and each block that has any ordinals at all is held in whichever of
+ * three forms is the smallest:
+ * <ul>
+ * <li>a sorted array, for a few scattered verses
+ * <li>a bitmap, for many scattered verses
+ * <li>a list of runs, for chapters and books
+ * </ul>
+ * 
+ * <p>
+ * Each block knows how many ordinals it has, so the cardinality of the whole
+ * is known without looking at any of the bits. Union, intersection and
+ * difference work a block at a time and the results are compressed again.
+ * </p>
+ * 
+ * <p>
+ * An OrdinalBitmap is not thread safe.
+ * </p>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+final class OrdinalBitmap {
+    /**
+     * Create an empty bitmap that can hold ordinals from 0 to
+     * maximumOrdinal.
+     * 
+     * @param maximumOrdinal
+     *            the largest ordinal that will be held
+     */
+    OrdinalBitmap(int maximumOrdinal) {
+        blocks = new Container[(maximumOrdinal >>> BLOCK_BITS) + 1];
+    }
+
+    /**
+     * @return the number of ordinals held
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return whether no ordinals are held
+     */
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @param ordinal
+     *            the ordinal to look for
+     * @return whether the ordinal is held
+     */
+    boolean contains(int ordinal) {
+        int block = ordinal >>> BLOCK_BITS;
+        if (block >= blocks.length) {
+            return false;
+        }
+        Container container = blocks[block];
+        return container != null && container.contains(ordinal & BLOCK_MASK);
+    }
+
+    /**
+     * @param that
+     *            the ordinals to look for
+     * @return whether all of that's ordinals are held
+     */
+    boolean containsAll(OrdinalBitmap that) {
+        if (that.cardinality > cardinality) {
+            return false;
+        }
+
+        long[] mine = new long[WORDS];
+        long[] theirs = new long[WORDS];
+        for (int i = 0; i < that.blocks.length; i++) {
+            Container other = that.blocks[i];
+            if (other == null) {
+                continue;
+            }
+            Container container = i < blocks.length ? blocks[i] : null;
+            if (container == null || container.cardinality() < other.cardinality()) {
+                return false;
+            }
+            container.toWords(mine);
+            other.toWords(theirs);
+            for (int j = 0; j < WORDS; j++) {
+                if ((theirs[j] & ~mine[j]) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param ordinal
+     *            the ordinal to hold
+     */
+    void add(int ordinal) {
+        int block = ordinal >>> BLOCK_BITS;
+        Container container = blocks[block];
+        if (container == null) {
+            blocks[block] = new ArrayContainer((short) (ordinal & BLOCK_MASK));
+            cardinality++;
+        } else {
+            // The container may change itself, so count it before and after
+            cardinality -= container.cardinality();
+            container = container.add(ordinal & BLOCK_MASK);
+            cardinality += container.cardinality();
+            blocks[block] = container;
+        }
+    }
+
+    /**
+     * Hold all the ordinals from start to end.
+     * 
+     * @param start
+     *            the first ordinal to hold
+     * @param end
+     *            the last ordinal to hold
+     */
+    void addRange(int start, int end) {
+        if (start > end) {
+            return;
+        }
+
+        long[] words = new long[WORDS];
+        int first = start >>> BLOCK_BITS;
+        int last = end >>> BLOCK_BITS;
+        for (int block = first; block <= last; block++) {
+            int low = block == first ? start & BLOCK_MASK : 0;
+            int high = block == last ? end & BLOCK_MASK : BLOCK_MASK;
+            Container container = blocks[block];
+            if (container == null) {
+                Arrays.fill(words, 0L);
+            } else {
+                container.toWords(words);
+            }
+            setRange(words, low, high);
+            set(block, fromWords(words));
+        }
+    }
+
+    /**
+     * @param ordinal
+     *            the ordinal to no longer hold
+     */
+    void remove(int ordinal) {
+        int block = ordinal >>> BLOCK_BITS;
+        if (block >= blocks.length) {
+            return;
+        }
+        Container container = blocks[block];
+        if (container != null) {
+            cardinality -= container.cardinality();
+            container = container.remove(ordinal & BLOCK_MASK);
+            if (container != null) {
+                cardinality += container.cardinality();
+            }
+            blocks[block] = container;
+        }
+    }
+
+    /**
+     * Forget all the ordinals.
+     */
+    void clear() {
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = null;
+        }
+        cardinality = 0;
+    }
+
+    /**
+     * @param from
+     *            the ordinal to start looking at
+     * @return the first ordinal held that is no less than from, or -1 if there
+     *         is none
+     */
+    int nextSetBit(int from) {
+        int block = from >>> BLOCK_BITS;
+        int low = from & BLOCK_MASK;
+        while (block < blocks.length) {
+            Container container = blocks[block];
+            if (container != null) {
+                int found = container.nextSetBit(low);
+                if (found >= 0) {
+                    return (block << BLOCK_BITS) + found;
+                }
+            }
+            block++;
+            low = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * Find an ordinal by its position, skipping whole blocks by their
+     * cardinality.
+     * 
+     * @param index
+     *            the position of the ordinal, counting from 0
+     * @return the ordinal at that position, or -1 if there are not that many
+     */
+    int select(int index) {
+        if (index < 0 || index >= cardinality) {
+            return -1;
+        }
+        int remaining = index;
+        for (int block = 0; block < blocks.length; block++) {
+            Container container = blocks[block];
+            if (container == null) {
+                continue;
+            }
+            int count = container.cardinality();
+            if (remaining < count) {
+                return (block << BLOCK_BITS) + container.select(remaining);
+            }
+            remaining -= count;
+        }
+        return -1;
+    }
+
+    /**
+     * Hold all of that's ordinals as well.
+     * 
+     * @param that
+     *            the ordinals to add
+     */
+    void or(OrdinalBitmap that) {
+        long[] words = new long[WORDS];
+        long[] theirs = new long[WORDS];
+        int length = Math.min(blocks.length, that.blocks.length);
+        for (int i = 0; i < length; i++) {
+            Container other = that.blocks[i];
+            if (other == null) {
+                continue;
+            }
+            Container container = blocks[i];
+            if (container == null) {
+                set(i, other.copy());
+                continue;
+            }
+            container.toWords(words);
+            other.toWords(theirs);
+            for (int j = 0; j < WORDS; j++) {
+                words[j] |= theirs[j];
+            }
+            set(i, fromWords(words));
+        }
+    }
+
+    /**
+     * Hold only those ordinals that are also held by that.
+     * 
+     * @param that
+     *            the ordinals to keep
+     */
+    void and(OrdinalBitmap that) {
+        long[] words = new long[WORDS];
+        long[] theirs = new long[WORDS];
+        for (int i = 0; i < blocks.length; i++) {
+            Container container = blocks[i];
+            if (container == null) {
+                continue;
+            }
+            Container other = i < that.blocks.length ? that.blocks[i] : null;
+            if (other == null) {
+                set(i, null);
+                continue;
+            }
+            container.toWords(words);
+            other.toWords(theirs);
+            for (int j = 0; j < WORDS; j++) {
+                words[j] &= theirs[j];
+            }
+            set(i, fromWords(words));
+        }
+    }
+
+    /**
+     * Hold only those ordinals that are not held by that.
+     * 
+     * @param that
+     *            the ordinals to remove
+     */
+    void andNot(OrdinalBitmap that) {
+        long[] words = new long[WORDS];
+        long[] theirs = new long[WORDS];
+        int length = Math.min(blocks.length, that.blocks.length);
+        for (int i = 0; i < length; i++) {
+            Container container = blocks[i];
+            Container other = that.blocks[i];
+            if (container == null || other == null) {
+                continue;
+            }
+            container.toWords(words);
+            other.toWords(theirs);
+            for (int j = 0; j < WORDS; j++) {
+                words[j] &= ~theirs[j];
+            }
+            set(i, fromWords(words));
+        }
+    }
+
+    /**
+     * @return a copy that can be changed without changing this
+     */
+    OrdinalBitmap copy() {
+        OrdinalBitmap copy = new OrdinalBitmap((blocks.length << BLOCK_BITS) - 1);
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                copy.blocks[i] = blocks[i].copy();
+            }
+        }
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    /**
+     * Write the blocks in their compressed form.
+     * 
+     * @param out
+     *            where to write them
+     * @throws IOException
+     *             if the write fails
+     */
+    void write(DataOutput out) throws IOException {
+        int count = 0;
+        for (Container container : blocks) {
+            if (container != null) {
+                count++;
+            }
+        }
+        out.writeShort(count);
+        for (int i = 0; i < blocks.length; i++) {
+            Container container = blocks[i];
+            if (container != null) {
+                out.writeShort(i);
+                container.write(out);
+            }
+        }
+    }
+
+    /**
+     * Read the blocks written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            where to read them from
+     * @param maximumOrdinal
+     *            the largest ordinal that will be held
+     * @return the bitmap that was written
+     * @throws IOException
+     *             if the read fails or the data is not a bitmap
+     */
+    static OrdinalBitmap read(DataInput in, int maximumOrdinal) throws IOException {
+        OrdinalBitmap bitmap = new OrdinalBitmap(maximumOrdinal);
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int block = in.readUnsignedShort();
+            if (block >= bitmap.blocks.length) {
+                throw new IOException("Block out of range: " + block);
+            }
+            bitmap.set(block, readContainer(in));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Replace a block with a new one, keeping the cardinality up to date.
+     */
+    private void set(int block, Container container) {
+        Container old = blocks[block];
+        if (old != null) {
+            cardinality -= old.cardinality();
+        }
+        if (container != null) {
+            cardinality += container.cardinality();
+        }
+        blocks[block] = container;
+    }
+
+    /**
+     * Compress a block given as 64 words of bits into the smallest form.
+     */
+    static Container fromWords(long[] words) {
+        int card = 0;
+        int runs = 0;
+        long carry = 0;
+        for (int i = 0; i < WORDS; i++) {
+            long word = words[i];
+            card += Long.bitCount(word);
+            // A run starts at each set bit that follows a clear one
+            runs += Long.bitCount(word & ~((word << 1) | carry));
+            carry = word >>> 63;
+        }
+
+        if (card == 0) {
+            return null;
+        }
+        int arrayBytes = 2 * card;
+        int runBytes = 4 * runs;
+        if (runBytes < arrayBytes && runBytes < BITMAP_BYTES) {
+            return new RunContainer(words, runs, card);
+        }
+        if (arrayBytes <= BITMAP_BYTES) {
+            return new ArrayContainer(words, card);
+        }
+        return new BitmapContainer(words.clone(), card);
+    }
+
+    private static Container readContainer(DataInput in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+        case ARRAY:
+            return ArrayContainer.read(in);
+        case BITMAP:
+            return BitmapContainer.read(in);
+        case RUN:
+            return RunContainer.read(in);
+        default:
+            throw new IOException("Unknown block type: " + type);
+        }
+    }
+
+    /**
+     * @return the first set bit of the words no less than from, or -1
+     */
+    static int nextSetBit(long[] words, int from) {
+        if (from >= BLOCK_SIZE) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long word = words[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == WORDS) {
+                return -1;
+            }
+            word = words[index];
+        }
+    }
+
+    /**
+     * @return the first clear bit of the words no less than from, or
+     *         BLOCK_SIZE
+     */
+    static int nextClearBit(long[] words, int from) {
+        if (from >= BLOCK_SIZE) {
+            return BLOCK_SIZE;
+        }
+        int index = from >>> 6;
+        long word = ~words[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == WORDS) {
+                return BLOCK_SIZE;
+            }
+            word = ~words[index];
+        }
+    }
+
+    /**
+     * Set the bits from low to high, inclusive.
+     */
+    static void setRange(long[] words, int low, int high) {
+        int first = low >>> 6;
+        int last = high >>> 6;
+        long firstMask = -1L << low;
+        long lastMask = -1L >>> (63 - (high & 63));
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) {
+            words[i] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    /**
+     * The ordinals of one block, relative to the start of the block.
+     */
+    abstract static class Container {
+        /**
+         * @return the number of ordinals in the block
+         */
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * @return the block with the ordinal added, which may be this
+         */
+        abstract Container add(int low);
+
+        /**
+         * @return the block with the ordinal removed, which may be this, or
+         *         null if it is now empty
+         */
+        abstract Container remove(int low);
+
+        /**
+         * @return the first ordinal no less than low, or -1
+         */
+        abstract int nextSetBit(int low);
+
+        /**
+         * @return the ordinal at the position
+         */
+        abstract int select(int index);
+
+        /**
+         * Replace the content of the 64 words with the bits of the block.
+         */
+        abstract void toWords(long[] words);
+
+        abstract Container copy();
+
+        abstract void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * A block held as a sorted array of ordinals.
+     */
+    static final class ArrayContainer extends Container {
+        ArrayContainer(short low) {
+            values = new short[4];
+            values[0] = low;
+            size = 1;
+        }
+
+        ArrayContainer(long[] words, int card) {
+            values = new short[card];
+            for (int i = OrdinalBitmap.nextSetBit(words, 0); i >= 0; i = OrdinalBitmap.nextSetBit(words, i + 1)) {
+                values[size++] = (short) i;
+            }
+        }
+
+        private ArrayContainer(short[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return search(low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            int index = search(low);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                long[] words = new long[WORDS];
+                toWords(words);
+                words[low >>> 6] |= 1L << low;
+                return new BitmapContainer(words, size + 1);
+            }
+
+            index = -(index + 1);
+            if (size == values.length) {
+                short[] grown = new short[Math.min(ARRAY_MAX, size * 2)];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (short) low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int index = search(low);
+            if (index < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        int nextSetBit(int low) {
+            int index = search(low);
+            if (index >= 0) {
+                return low;
+            }
+            index = -(index + 1);
+            return index < size ? values[index] : -1;
+        }
+
+        @Override
+        int select(int index) {
+            return values[index];
+        }
+
+        @Override
+        void toWords(long[] words) {
+            Arrays.fill(words, 0L);
+            for (int i = 0; i < size; i++) {
+                int low = values[i];
+                words[low >>> 6] |= 1L << low;
+            }
+        }
+
+        @Override
+        Container copy() {
+            short[] copy = new short[size];
+            System.arraycopy(values, 0, copy, 0, size);
+            return new ArrayContainer(copy, size);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(ARRAY);
+            out.writeShort(size);
+            for (int i = 0; i < size; i++) {
+                out.writeShort(values[i]);
+            }
+        }
+
+        static Container read(DataInput in) throws IOException {
+            int size = in.readUnsignedShort();
+            short[] values = new short[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = in.readShort();
+            }
+            return new ArrayContainer(values, size);
+        }
+
+        /**
+         * @return the index of low, or -(insertion point + 1)
+         */
+        private int search(int low) {
+            int from = 0;
+            int to = size - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                int value = values[mid];
+                if (value < low) {
+                    from = mid + 1;
+                } else if (value > low) {
+                    to = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(from + 1);
+        }
+
+        private short[] values;
+        private int size;
+    }
+
+    /**
+     * A block held as 4096 bits.
+     */
+    static final class BitmapContainer extends Container {
+        BitmapContainer(long[] words, int card) {
+            this.words = words;
+            this.card = card;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            if (!contains(low)) {
+                words[low >>> 6] |= 1L << low;
+                card++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            if (contains(low)) {
+                words[low >>> 6] &= ~(1L << low);
+                card--;
+            }
+            return card == 0 ? null : this;
+        }
+
+        @Override
+        int nextSetBit(int low) {
+            return OrdinalBitmap.nextSetBit(words, low);
+        }
+
+        @Override
+        int select(int index) {
+            int remaining = index;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                int count = Long.bitCount(word);
+                if (remaining < count) {
+                    for (int j = 0; j < remaining; j++) {
+                        word &= word - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                remaining -= count;
+            }
+            return -1;
+        }
+
+        @Override
+        void toWords(long[] into) {
+            System.arraycopy(words, 0, into, 0, WORDS);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(BITMAP);
+            for (int i = 0; i < WORDS; i++) {
+                out.writeLong(words[i]);
+            }
+        }
+
+        static Container read(DataInput in) throws IOException {
+            long[] words = new long[WORDS];
+            int card = 0;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] = in.readLong();
+                card += Long.bitCount(words[i]);
+            }
+            return new BitmapContainer(words, card);
+        }
+
+        private long[] words;
+        private int card;
+    }
+
+    /**
+     * A block held as a sorted list of runs, each a start and an end.
+     */
+    static final class RunContainer extends Container {
+        RunContainer(long[] words, int count, int card) {
+            this.runs = new short[2 * count];
+            this.count = count;
+            this.card = card;
+            int run = 0;
+            for (int start = OrdinalBitmap.nextSetBit(words, 0); start >= 0; start = OrdinalBitmap.nextSetBit(words, runs[run - 1] + 1)) {
+                runs[run++] = (short) start;
+                runs[run++] = (short) (nextClearBit(words, start) - 1);
+            }
+        }
+
+        private RunContainer(short[] runs, int count, int card) {
+            this.runs = runs;
+            this.count = count;
+            this.card = card;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int run = find(low);
+            return run >= 0 && low <= runs[2 * run + 1];
+        }
+
+        @Override
+        Container add(int low) {
+            if (contains(low)) {
+                return this;
+            }
+            long[] words = new long[WORDS];
+            toWords(words);
+            words[low >>> 6] |= 1L << low;
+            return fromWords(words);
+        }
+
+        @Override
+        Container remove(int low) {
+            if (!contains(low)) {
+                return this;
+            }
+            long[] words = new long[WORDS];
+            toWords(words);
+            words[low >>> 6] &= ~(1L << low);
+            return fromWords(words);
+        }
+
+        @Override
+        int nextSetBit(int low) {
+            int run = find(low);
+            if (run >= 0 && low <= runs[2 * run + 1]) {
+                return low;
+            }
+            run++;
+            return run < count ? runs[2 * run] : -1;
+        }
+
+        @Override
+        int select(int index) {
+            int remaining = index;
+            for (int run = 0; run < count; run++) {
+                int start = runs[2 * run];
+                int length = runs[2 * run + 1] - start + 1;
+                if (remaining < length) {
+                    return start + remaining;
+                }
+                remaining -= length;
+            }
+            return -1;
+        }
+
+        @Override
+        void toWords(long[] words) {
+            Arrays.fill(words, 0L);
+            for (int run = 0; run < count; run++) {
+                setRange(words, runs[2 * run], runs[2 * run + 1]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(runs.clone(), count, card);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(RUN);
+            out.writeShort(count);
+            for (int i = 0; i < 2 * count; i++) {
+                out.writeShort(runs[i]);
+            }
+        }
+
+        static Container read(DataInput in) throws IOException {
+            int count = in.readUnsignedShort();
+            short[] runs = new short[2 * count];
+            int card = 0;
+            for (int run = 0; run < count; run++) {
+                runs[2 * run] = in.readShort();
+                runs[2 * run + 1] = in.readShort();
+                card += runs[2 * run + 1] - runs[2 * run] + 1;
+            }
+            return new RunContainer(runs, count, card);
+        }
+
+        /**
+         * @return the index of the last run that starts no later than low, or
+         *         -1 if there is none
+         */
+        private int find(int low) {
+            int from = 0;
+            int to = count - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                if (runs[2 * mid] <= low) {
+                    from = mid + 1;
+                } else {
+                    to = mid - 1;
+                }
+            }
+            return to;
+        }
+
+        private short[] runs;
+        private int count;
+        private int card;
+    }
+
+    /**
+     * The number of bits that give the offset of an ordinal in its block.
+     */
+    private static final int BLOCK_BITS = 12;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int WORDS = BLOCK_SIZE / 64;
+    private static final int BITMAP_BYTES = 8 * WORDS;
+
+    /**
+     * Beyond this an array takes more room than a bitmap.
+     */
+    private static final int ARRAY_MAX = BITMAP_BYTES / 2;
+
+    /**
+     * The types of block as they are written.
+     */
+    private static final int ARRAY = 0;
+    private static final int BITMAP = 1;
+    private static final int RUN = 2;
+
+    /**
+     * The blocks, indexed by ordinal / 4096. Empty blocks are null.
+     */
+    private Container[] blocks;
+
+    /**
+     * The sum of the cardinality of the blocks.
+     */
+    private int cardinality;
+}
@@ -0,0 +1,51 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+/**
+ * An OrdinalCursor walks the verses of a VerseKey by their ordinal, in
+ * Biblical order, without creating a Verse for each of them. Use it when only
+ * the ordinals are wanted:
+ * 
+ * <pre>
+ * OrdinalCursor cursor = passage.ordinalCursor();
+ * for (int ordinal = cursor.nextOrdinal(); ordinal &gt;= 0; ordinal = cursor.nextOrdinal()) {
+ *     ...
+ * }
+ * </pre>
+ * 
+ * <p>
+ * As with an Iterator, the VerseKey should not be changed while it is being
+ * walked.
+ * </p>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see VerseKey#ordinalCursor()
+ */
+public interface OrdinalCursor {
+    /**
+     * Move on to the next verse.
+     * 
+     * @return the ordinal of the next verse, or -1 if there are no more
+     */
+    int nextOrdinal();
+}
@@ -0,0 +1,56 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+/**
+ * An OrdinalCursor over every ordinal from a start to an end.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+final class OrdinalRangeCursor implements OrdinalCursor {
+    /**
+     * Walk the ordinals from start to end. If end is less than start, there
+     * are none.
+     * 
+     * @param start
+     *            the first ordinal
+     * @param end
+     *            the last ordinal
+     */
+    OrdinalRangeCursor(int start, int end) {
+        this.next = start;
+        this.end = end;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.OrdinalCursor#nextOrdinal()
+     */
+    public int nextOrdinal() {
+        if (next > end) {
+            return -1;
+        }
+        return next++;
+    }
+
+    private int next;
+    private int end;
+}
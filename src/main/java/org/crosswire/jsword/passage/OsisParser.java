@@ -0,0 +1,426 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A parser of references that are strictly in the form of an osisID or an
+ * osisRef, such as "Gen.1.1", "Matt.5.3-Matt.7.29" or "Gen.1 Exod". These are
+ * what is written by machines: in index fields, in osisRef attributes and in
+ * cross references. They are read a character at a time, without splitting,
+ * tokenizing or the lookup of localized book names, which makes them far
+ * quicker to understand than by the general parser.
+ *
+ * <p>
+ * Each reference gives just what the general parser gives for it. Anything
+ * that is not strict OSIS, or is not in the versification, or might be
+ * understood differently by the general parser, such as "Jude.1" which is
+ * taken there to be a verse, is not understood here and is left to the
+ * general parser, which also explains what is wrong with it. So is a list of
+ * references in which any is a whole book, as the general parser takes
+ * "Gen Exod" to be Genesis alone and "Exod Gen.1" to be Exod.1.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+/* package */ final class OsisParser {
+    /**
+     * Create a parser of some text.
+     *
+     * @param v11n
+     *            the versification of the references
+     * @param text
+     *            the references to parse
+     */
+    private OsisParser(Versification v11n, String text) {
+        this.v11n = v11n;
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Parse a single osisID such as "Gen.1.1". A chapter or a book is
+     * understood to be its first verse, its introduction, just as
+     * {@link VerseFactory#fromString(Versification, String)} does.
+     *
+     * @param v11n
+     *            the versification of the reference
+     * @param osisID
+     *            the text to parse
+     * @return the verse or null if the text is not a strict osisID
+     */
+    public static Verse parseVerse(Versification v11n, String osisID) {
+        if (v11n == null || osisID == null) {
+            return null;
+        }
+
+        OsisParser parser = new OsisParser(v11n, osisID);
+        if (!parser.readReference() || parser.pos != parser.length) {
+            return null;
+        }
+        return parser.getStart(osisID);
+    }
+
+    /**
+     * Parse a single osisRef such as "Gen.1.1-Gen.1.5" or "Gen.1".
+     *
+     * @param v11n
+     *            the versification of the reference
+     * @param osisRef
+     *            the text to parse
+     * @return the range or null if the text is not a strict osisRef
+     */
+    public static VerseRange parseVerseRange(Versification v11n, String osisRef) {
+        if (v11n == null || osisRef == null) {
+            return null;
+        }
+
+        OsisParser parser = new OsisParser(v11n, osisRef);
+        VerseRange range = parser.readRange(osisRef);
+        if (range == null || parser.pos != parser.length) {
+            return null;
+        }
+        return range;
+    }
+
+    /**
+     * Parse a space separated list of osisRefs, such as "Gen.1.1 Gen.1.3-Gen.1.5".
+     * The text is kept as the original name of the Passage.
+     *
+     * @param type
+     *            the type of Passage to create
+     * @param v11n
+     *            the versification of the references
+     * @param osisRefs
+     *            the text to parse
+     * @return the passage or null if the text is not strict osisRefs
+     */
+    public static Passage parsePassage(PassageType type, Versification v11n, String osisRefs) {
+        if (v11n == null || osisRefs == null || osisRefs.length() == 0) {
+            return null;
+        }
+
+        OsisParser parser = new OsisParser(v11n, osisRefs);
+        Passage passage = null;
+        boolean list = false;
+        while (true) {
+            VerseRange range = parser.readRange(null);
+            if (range == null) {
+                return null;
+            }
+
+            // The general parser does not take a whole book to be one of a list
+            if (parser.wholeBook && (list || parser.pos != parser.length)) {
+                return null;
+            }
+
+            if (passage == null) {
+                passage = type.createEmptyPassage(v11n);
+            }
+            passage.add(range);
+
+            if (parser.pos == parser.length) {
+                if (passage instanceof AbstractPassage) {
+                    ((AbstractPassage) passage).originalName = osisRefs;
+                }
+                return passage;
+            }
+
+            if (osisRefs.charAt(parser.pos) != REF_DELIM) {
+                return null;
+            }
+            parser.pos++;
+            list = true;
+        }
+    }
+
+    /**
+     * Read a reference or two references joined by a range delimiter.
+     *
+     * @param original
+     *            the name to give the range
+     * @return the range or null if the text is not strict OSIS
+     */
+    private VerseRange readRange(String original) {
+        if (!readReference()) {
+            return null;
+        }
+        wholeBook = chapter == NONE;
+
+        Verse start = getStart(null);
+        if (start == null) {
+            return null;
+        }
+
+        if (pos < length && text.charAt(pos) == RANGE_DELIM) {
+            pos++;
+            if (!readReference()) {
+                return null;
+            }
+            wholeBook |= chapter == NONE;
+        }
+
+        Verse end = getEnd();
+        if (end == null) {
+            return null;
+        }
+
+        return new VerseRange(v11n, original, start, end);
+    }
+
+    /**
+     * Read a book code optionally followed by a chapter and a verse, leaving
+     * them in book, chapter and verse.
+     *
+     * @return whether a reference was read
+     */
+    private boolean readReference() {
+        // This is the same hash as that of the code as a String
+        int start = pos;
+        int hash = 0;
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == PART_DELIM || c == RANGE_DELIM || c == REF_DELIM) {
+                break;
+            }
+            hash = 31 * hash + c;
+            pos++;
+        }
+
+        book = findBook(start, pos - start, hash);
+        if (book == null || !v11n.containsBook(book)) {
+            return false;
+        }
+
+        chapter = NONE;
+        verse = NONE;
+        if (pos < length && text.charAt(pos) == PART_DELIM) {
+            pos++;
+            chapter = readNumber();
+            if (chapter == NONE) {
+                return false;
+            }
+
+            if (pos < length && text.charAt(pos) == PART_DELIM) {
+                pos++;
+                verse = readNumber();
+                if (verse == NONE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a chapter or verse number of at most MAX_DIGITS digits.
+     *
+     * @return the number or NONE
+     */
+    private int readNumber() {
+        int start = pos;
+        int number = 0;
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            number = 10 * number + c - '0';
+            pos++;
+        }
+
+        int digits = pos - start;
+        if (digits == 0 || digits > MAX_DIGITS) {
+            return NONE;
+        }
+        return number;
+    }
+
+    /**
+     * @param original
+     *            the name to give the verse
+     * @return the first verse of the reference that was read, or null if it
+     *         is not in the versification
+     */
+    private Verse getStart(String original) {
+        if (chapter == NONE) {
+            return new Verse(original, v11n, book, 0, 0);
+        }
+
+        if (!isValidChapter()) {
+            return null;
+        }
+
+        if (verse == NONE) {
+            return new Verse(original, v11n, book, chapter, 0);
+        }
+
+        if (verse > v11n.getLastVerse(book, chapter)) {
+            return null;
+        }
+        return new Verse(original, v11n, book, chapter, verse);
+    }
+
+    /**
+     * @return the last verse of the reference that was read, or null if it is
+     *         not in the versification
+     */
+    private Verse getEnd() {
+        if (chapter == NONE) {
+            int lastChapter = v11n.getLastChapter(book);
+            return new Verse(null, v11n, book, lastChapter, v11n.getLastVerse(book, lastChapter));
+        }
+
+        if (!isValidChapter()) {
+            return null;
+        }
+
+        int lastVerse = v11n.getLastVerse(book, chapter);
+        if (verse == NONE) {
+            return new Verse(null, v11n, book, chapter, lastVerse);
+        }
+
+        if (verse > lastVerse) {
+            return null;
+        }
+        return new Verse(null, v11n, book, chapter, verse);
+    }
+
+    /**
+     * A chapter without a verse in a book of one chapter is understood by the
+     * general parser to be a verse of that chapter, which is not what OSIS
+     * means by it, so it is left alone.
+     *
+     * @return whether the chapter that was read is in the book
+     */
+    private boolean isValidChapter() {
+        int lastChapter = v11n.getLastChapter(book);
+        if (chapter > lastChapter) {
+            return false;
+        }
+        return verse != NONE || lastChapter != 1;
+    }
+
+    /**
+     * Find the book whose OSIS code is the given part of the text.
+     *
+     * @param start
+     *            where the code starts
+     * @param count
+     *            how long the code is
+     * @param hash
+     *            the hash of the code
+     * @return the book or null
+     */
+    private BibleBook findBook(int start, int count, int hash) {
+        int slot = hash & (BOOK_CODES.length - 1);
+        while (BOOK_CODES[slot] != null) {
+            String code = BOOK_CODES[slot];
+            if (code.length() == count && text.regionMatches(start, code, 0, count)) {
+                return BOOKS[slot];
+            }
+            slot = (slot + 1) & (BOOK_CODES.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Separates the book, chapter and verse of a reference
+     */
+    private static final char PART_DELIM = '.';
+
+    /**
+     * Separates the start and end of a range
+     */
+    private static final char RANGE_DELIM = '-';
+
+    /**
+     * Separates the references of a list
+     */
+    private static final char REF_DELIM = ' ';
+
+    /**
+     * No chapter or verse was given
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The most digits in a chapter or verse number, so that they cannot
+     * overflow.
+     */
+    private static final int MAX_DIGITS = 4;
+
+    /**
+     * The OSIS codes of the books and the books they are of, as a hash table
+     * that is at most half full, with linear probing. The codes with a dot in
+     * them, those of the introductions, cannot be told apart from a chapter
+     * and are left out.
+     */
+    private static final String[] BOOK_CODES;
+    private static final BibleBook[] BOOKS;
+
+    static {
+        int size = 1;
+        while (size < 2 * BibleBook.values().length) {
+            size <<= 1;
+        }
+        BOOK_CODES = new String[size];
+        BOOKS = new BibleBook[size];
+
+        for (BibleBook book : BibleBook.values()) {
+            String code = book.getOSIS();
+            if (code.indexOf(PART_DELIM) != -1) {
+                continue;
+            }
+
+            int slot = code.hashCode() & (size - 1);
+            while (BOOK_CODES[slot] != null) {
+                slot = (slot + 1) & (size - 1);
+            }
+            BOOK_CODES[slot] = code;
+            BOOKS[slot] = book;
+        }
+    }
+
+    private Versification v11n;
+    private String text;
+    private int length;
+
+    /**
+     * Where the parser has got to in the text
+     */
+    private int pos;
+
+    /**
+     * The parts of the reference that was read last
+     */
+    private BibleBook book;
+    private int chapter;
+    private int verse;
+
+    /**
+     * Whether either end of the range that was read last is a whole book
+     */
+    private boolean wholeBook;
+}
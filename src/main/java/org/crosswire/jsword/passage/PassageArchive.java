@@ -0,0 +1,218 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A PassageArchive is a file of many Passages, each known by an id, any of
+ * which can be read without reading the others. It is written by a
+ * {@link PassageArchiveWriter}.
+ *
+ * <p>
+ * The Passages are encoded by {@link PassageCodec}, one after another in the
+ * order of their ids, and are followed by an index of the ids and the length
+ * of each, as varint gaps. Opening the archive reads only the index. An
+ * archive may be read by many threads at once.
+ * </p>
+ *
+ * <pre>
+ * int     magic
+ * byte    version
+ * the encoded Passages
+ * varint  the number of Passages
+ * for each Passage:
+ *   varint  its id less the id of the one before
+ *   varint  the length of its encoding
+ * long    where the index starts
+ * int     magic
+ * </pre>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public final class PassageArchive {
+    /**
+     * Open an archive that was written by a {@link PassageArchiveWriter}.
+     *
+     * @param file
+     *            the archive file
+     * @return the archive
+     * @throws IOException
+     *             if the file cannot be read or is not an archive
+     */
+    public static PassageArchive open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new PassageArchive(raf);
+        } catch (EOFException e) {
+            // A truncated or foreign file runs out early
+            raf.close();
+            throw (IOException) new IOException("Not a passage archive: " + file).initCause(e);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the index, leaving the Passages to be read when they are asked for.
+     */
+    private PassageArchive(RandomAccessFile raf) throws IOException {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+
+        long length = raf.length();
+        if (length < HEADER_SIZE + TRAILER_SIZE || raf.readInt() != MAGIC) {
+            throw new IOException("Not a passage archive");
+        }
+        int version = raf.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown passage archive version: " + version);
+        }
+
+        raf.seek(length - TRAILER_SIZE);
+        long indexStart = raf.readLong();
+        if (raf.readInt() != MAGIC || indexStart < HEADER_SIZE || indexStart > length - TRAILER_SIZE) {
+            throw new IOException("Not a passage archive");
+        }
+
+        byte[] index = new byte[(int) (length - TRAILER_SIZE - indexStart)];
+        raf.seek(indexStart);
+        raf.readFully(index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+
+        int size = (int) PassageCodec.readVarint(in);
+        ids = new long[size];
+        offsets = new long[size + 1];
+        long id = 0;
+        long offset = HEADER_SIZE;
+        for (int i = 0; i < size; i++) {
+            id += PassageCodec.readVarint(in);
+            ids[i] = id;
+            offsets[i] = offset;
+            offset += PassageCodec.readVarint(in);
+        }
+        offsets[size] = offset;
+        if (offset != indexStart) {
+            throw new IOException("Not a passage archive");
+        }
+    }
+
+    /**
+     * @return the number of Passages in the archive
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param id
+     *            the id of a Passage
+     * @return whether there is a Passage with the id
+     */
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * @return the ids of the Passages, in ascending order
+     */
+    public long[] getIds() {
+        return ids.clone();
+    }
+
+    /**
+     * Read a Passage.
+     *
+     * @param id
+     *            the id of the Passage
+     * @return the Passage or null if there is none with the id
+     * @throws IOException
+     *             if the Passage cannot be read
+     */
+    public Passage get(long id) throws IOException {
+        int i = Arrays.binarySearch(ids, id);
+        if (i < 0) {
+            return null;
+        }
+
+        // Read by position, which leaves the channel alone for other threads
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[i + 1] - offsets[i]));
+        long position = offsets[i];
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return PassageCodec.read(buffer);
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Marks the start and the end of an archive: "JSPA"
+     */
+    static final int MAGIC = 0x4A535041;
+
+    /**
+     * The version of the archive that is written.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the magic and the version.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * The size of where the index starts and the magic.
+     */
+    static final int TRAILER_SIZE = 12;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    /**
+     * The ids of the Passages, in ascending order, and where each starts. There
+     * is one more offset, where the last one ends.
+     */
+    private long[] ids;
+    private long[] offsets;
+}
@@ -0,0 +1,128 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.IOUtil;
+
+/**
+ * Writes a {@link PassageArchive}. The Passages are written as they are
+ * added, so only their ids and lengths are kept until the archive is closed.
+ * They must be added in ascending order of their ids.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public final class PassageArchiveWriter {
+    /**
+     * Start writing an archive, replacing any file that is already there.
+     *
+     * @param file
+     *            where to write the archive
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public PassageArchiveWriter(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(PassageArchive.MAGIC);
+        out.writeByte(PassageArchive.VERSION);
+        position = PassageArchive.HEADER_SIZE;
+        index = new ByteArrayOutputStream();
+        indexOut = new DataOutputStream(index);
+        record = new ByteArrayOutputStream();
+        recordOut = new DataOutputStream(record);
+    }
+
+    /**
+     * Add a Passage to the archive.
+     *
+     * @param id
+     *            the id of the Passage, which must not be negative and must be
+     *            more than that of the Passage added before it
+     * @param ref
+     *            the Passage
+     * @throws IOException
+     *             if the Passage cannot be written
+     * @throws IllegalArgumentException
+     *             if the id is out of order
+     */
+    public void add(long id, Passage ref) throws IOException {
+        if (id < 0 || (size > 0 && id <= lastId)) {
+            throw new IllegalArgumentException("Passages must be added in ascending order of id: " + id);
+        }
+
+        record.reset();
+        PassageCodec.write(ref, recordOut);
+        record.writeTo(out);
+        position += record.size();
+
+        PassageCodec.writeVarint(indexOut, size == 0 ? id : id - lastId);
+        PassageCodec.writeVarint(indexOut, record.size());
+        lastId = id;
+        size++;
+    }
+
+    /**
+     * Write the index and close the file.
+     *
+     * @throws IOException
+     *             if the index cannot be written
+     */
+    public void close() throws IOException {
+        try {
+            PassageCodec.writeVarint(out, size);
+            index.writeTo(out);
+            out.writeLong(position);
+            out.writeInt(PassageArchive.MAGIC);
+            out.flush();
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    private DataOutputStream out;
+
+    /**
+     * Where the next Passage will be written
+     */
+    private long position;
+
+    /**
+     * The index, as it is written
+     */
+    private ByteArrayOutputStream index;
+    private DataOutputStream indexOut;
+
+    /**
+     * Each Passage is encoded here first, to know its length
+     */
+    private ByteArrayOutputStream record;
+    private DataOutputStream recordOut;
+
+    private long lastId;
+    private int size;
+}
@@ -0,0 +1,404 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * A compact binary encoding of Passages, for keeping many of them, such as
+ * highlights and history, in little space. It is written to and read from a
+ * stream, without making the whole encoding in memory first.
+ *
+ * <p>
+ * The verses are written as runs of consecutive ordinals, each as the gap
+ * from the end of the one before and its length, all as varints. A single
+ * verse has no length, so a verse near the one before it takes a byte and a
+ * chapter takes a few. A
+ * PassageTally also has the tally of each verse, as a varint, after the run
+ * it is in.
+ * </p>
+ *
+ * <pre>
+ * byte    version
+ * byte    flags: whether there are tallies and whether they are ordered by tally
+ * UTF     the name of the versification
+ * varint  the tally that counts as 100%, when there are tallies
+ * varint  the total, when there are tallies
+ * varint  the number of runs
+ * for each run:
+ *   varint  the first ordinal less one more than the last ordinal of the run
+ *           before, shifted left one bit, with the bit set when the run is
+ *           of more than one ordinal
+ *   varint  the number of ordinals less two, when there are more than one
+ *   varint  the tally of each ordinal, when there are tallies
+ * </pre>
+ *
+ * <p>
+ * Unlike {@link PassageKeyFactory#toBinaryRepresentation(Passage)} the
+ * versification is kept with the verses and the encoding has a version, so
+ * that it can be read back long after it was written.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see PassageArchive
+ */
+public final class PassageCodec {
+    /**
+     * Prevent instantiation
+     */
+    private PassageCodec() {
+    }
+
+    /**
+     * Write a Passage.
+     *
+     * @param ref
+     *            the Passage to write
+     * @param out
+     *            where to write it
+     * @throws IOException
+     *             if the write fails
+     */
+    public static void write(Passage ref, DataOutput out) throws IOException {
+        PassageTally tally = ref instanceof PassageTally ? (PassageTally) ref : null;
+        int flags = 0;
+        if (tally != null) {
+            flags |= TALLIED;
+            if (tally.getOrdering() == PassageTally.Order.TALLY) {
+                flags |= TALLY_ORDER;
+            }
+        }
+
+        out.writeByte(VERSION);
+        out.writeByte(flags);
+        out.writeUTF(ref.getVersification().getName());
+        if (tally != null) {
+            writeVarint(out, tally.getMax());
+            writeVarint(out, tally.getTotal());
+        }
+
+        // Count the runs first, so they can be written as they are found
+        int runs = 0;
+        int last = -2;
+        OrdinalCursor cursor = ref.ordinalCursor();
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            if (ord != last + 1) {
+                runs++;
+            }
+            last = ord;
+        }
+        writeVarint(out, runs);
+
+        last = -1;
+        int start = -1;
+        int end = -2;
+        cursor = ref.ordinalCursor();
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            if (ord != end + 1) {
+                if (start >= 0) {
+                    writeRun(out, tally, last, start, end);
+                    last = end;
+                }
+                start = ord;
+            }
+            end = ord;
+        }
+        if (start >= 0) {
+            writeRun(out, tally, last, start, end);
+        }
+    }
+
+    /**
+     * Read a Passage written by {@link #write(Passage, DataOutput)}. It is a
+     * PassageTally if a PassageTally was written, or else of the default
+     * PassageType.
+     *
+     * @param in
+     *            where to read it from
+     * @return the Passage that was written
+     * @throws IOException
+     *             if the read fails or the data is not a Passage
+     */
+    public static Passage read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown passage encoding version: " + version);
+        }
+        int flags = in.readUnsignedByte();
+        String name = in.readUTF();
+        Versification v11n = Versifications.instance().getVersification(name);
+        if (v11n == null) {
+            throw new IOException("Unknown versification: " + name);
+        }
+        int maximum = v11n.maximumOrdinal();
+
+        PassageTally tally = null;
+        int max = 0;
+        Passage ref;
+        if ((flags & TALLIED) != 0) {
+            max = readInt(in);
+            tally = new PassageTally(v11n);
+            tally.setTotal(readInt(in));
+            if ((flags & TALLY_ORDER) != 0) {
+                tally.setOrdering(PassageTally.Order.TALLY);
+            }
+            ref = tally;
+        } else {
+            ref = (Passage) PassageKeyFactory.instance().createEmptyKeyList(v11n);
+        }
+
+        // Some speedups
+        AbstractPassage aref = null;
+        if (ref instanceof AbstractPassage) {
+            aref = (AbstractPassage) ref;
+            aref.raiseEventSuppresion();
+            aref.raiseNormalizeProtection();
+        }
+
+        int runs = readInt(in);
+        int last = -1;
+        for (int i = 0; i < runs; i++) {
+            int gap = readInt(in);
+            int start = last + 1 + (gap >>> 1);
+            int end = start;
+            if ((gap & 1) != 0) {
+                end += readInt(in) + 1;
+            }
+            if (start < 0 || end < start || end > maximum) {
+                throw new IOException("Ordinal out of range: " + end);
+            }
+
+            if (tally == null) {
+                ref.add(new VerseRange(v11n, v11n.decodeOrdinal(start), v11n.decodeOrdinal(end)));
+            } else {
+                for (int ord = start; ord <= end; ord++) {
+                    tally.addVersifiedOrdinal(ord, readInt(in));
+                }
+            }
+            last = end;
+        }
+
+        if (tally != null) {
+            tally.setMax(max);
+        }
+
+        if (aref != null) {
+            aref.lowerNormalizeProtection();
+            aref.lowerEventSuppressionAndTest();
+        }
+        return ref;
+    }
+
+    /**
+     * Write a Passage into a buffer, from its position on.
+     *
+     * @param ref
+     *            the Passage to write
+     * @param buffer
+     *            where to write it
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer is too small
+     */
+    public static void write(Passage ref, ByteBuffer buffer) {
+        try {
+            write(ref, new DataOutputStream(new ByteBufferOutputStream(buffer)));
+        } catch (IOException e) {
+            // Only the buffer is written to, which does not throw these
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read a Passage from a buffer, from its position on, leaving the buffer
+     * just after it.
+     *
+     * @param buffer
+     *            where to read it from
+     * @return the Passage that was written
+     * @throws IOException
+     *             if the data is not a Passage
+     */
+    public static Passage read(ByteBuffer buffer) throws IOException {
+        return read(new DataInputStream(new ByteBufferInputStream(buffer)));
+    }
+
+    /**
+     * @param ref
+     *            the Passage to write
+     * @return the encoding of the Passage
+     */
+    public static byte[] toByteArray(Passage ref) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(ref, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // Only the array is written to, which does not throw these
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a number that is not negative in as few bytes as it needs, 7 bits
+     * to a byte, least significant first, with the top bit set on all but the
+     * last.
+     *
+     * @param out
+     *            where to write it
+     * @param value
+     *            the number to write
+     * @throws IOException
+     *             if the write fails
+     */
+    static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Read a number written by {@link #writeVarint(DataOutput, long)}.
+     *
+     * @param in
+     *            where to read it from
+     * @return the number
+     * @throws IOException
+     *             if the read fails or the number is too long
+     */
+    static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Read a varint that must fit in an int.
+     */
+    private static int readInt(DataInput in) throws IOException {
+        long value = readVarint(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Write a run of ordinals and their tallies.
+     */
+    private static void writeRun(DataOutput out, PassageTally tally, int last, int start, int end) throws IOException {
+        long gap = (long) (start - last - 1) << 1;
+        if (end == start) {
+            writeVarint(out, gap);
+        } else {
+            writeVarint(out, gap | 1);
+            writeVarint(out, end - start - 1);
+        }
+        if (tally != null) {
+            for (int ord = start; ord <= end; ord++) {
+                writeVarint(out, tally.getTallyOf(ord));
+            }
+        }
+    }
+
+    /**
+     * Lets a DataOutputStream write to a ByteBuffer.
+     */
+    private static final class ByteBufferOutputStream extends OutputStream {
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+
+        private ByteBuffer buffer;
+    }
+
+    /**
+     * Lets a DataInputStream read from a ByteBuffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        private ByteBuffer buffer;
+    }
+
+    /**
+     * The version of the encoding that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The flags of the encoding.
+     */
+    private static final int TALLIED = 0x01;
+    private static final int TALLY_ORDER = 0x02;
+}
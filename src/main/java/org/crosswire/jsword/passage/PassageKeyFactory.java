@@ -23,8 +23,12 @@ package org.crosswire.jsword.passage;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.internationalisation.LocaleProviderManager;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 
@@ -99,12 +103,24 @@ public final class PassageKeyFactory {
      * This differs from {@link Book#getGlobalKeyList} which gets the
      * verses in the Book, which may be a small part of the whole.
      * 
+     * <p>
+     * The Passage can not be changed, so it is made only once for each
+     * Versification and may be shared by any number of threads. Any attempt
+     * to change it throws an IllegalStateException, where it used to be
+     * ignored. Clone it to get a Passage that can be changed.
+     * </p>
+     * 
      * @param v11n
      *            The Versification to which this Passage belongs.
      * @return the Passage with all the Verses in the Versification
      */
     public Key getGlobalKeyList(Versification v11n) {
-        return new ReadOnlyPassage(KeyUtil.getPassage(v11n.getAllVerses()), true);
+        Passage all = globals.get(v11n);
+        if (all == null) {
+            all = new FrozenPassage(KeyUtil.getPassage(v11n.getAllVerses()));
+            globals.put(v11n, all);
+        }
+        return all;
     }
 
     /**
@@ -158,18 +174,34 @@ public final class PassageKeyFactory {
      *             If the passageReference has anything that could not be understood as a Verse
      */
     public Key getKey(Versification v11n, String passageReference, Key basis) throws NoSuchKeyException {
-        // since normalization is relatively expensive
-        // don't try it unless it solves a problem.
-        try {
-            return defaultType.createPassage(v11n, passageReference, basis);
-        } catch (NoSuchKeyException e) {
-            try {
-                return defaultType.createPassage(v11n, normalize(passageReference), basis);
-            } catch (NoSuchKeyException e1) {
-                // TODO(DM): Parser should allow valid osisRefs!
-                return defaultType.createPassage(v11n, mungOsisRef(passageReference), basis);
+        // osisRefs, from documents and indexes, are the most common and the
+        // quickest to understand. They are complete in themselves, so the
+        // basis does not matter. They are mostly seen once each, so they are
+        // not worth remembering.
+        Passage passage = OsisParser.parsePassage(defaultType, v11n, passageReference);
+        if (passage != null) {
+            return passage;
+        }
+
+        // Without a basis, the same reference always gives the same Passage
+        // so remember the most recent ones.
+        if (basis != null || passageReference == null) {
+            return parse(v11n, passageReference, basis);
+        }
+
+        String cacheKey = getCacheKey(v11n, passageReference);
+        synchronized (parsed) {
+            Passage cached = parsed.get(cacheKey);
+            if (cached != null) {
+                return (Passage) cached.clone();
             }
         }
+
+        passage = parse(v11n, passageReference, null);
+        synchronized (parsed) {
+            parsed.put(cacheKey, (Passage) passage.clone());
+        }
+        return passage;
     }
 
     /**
@@ -189,6 +221,52 @@ public final class PassageKeyFactory {
         return getKey(v11n, passageReference, null);
     }
 
+    /**
+     * Forget the references that have been parsed. The Passages they give
+     * depend on the default PassageType, the Versification and the locale,
+     * which are all part of what is remembered, but not on anything else.
+     */
+    public static void clearParseCache() {
+        synchronized (parsed) {
+            parsed.clear();
+        }
+    }
+
+    /**
+     * Parse a reference that is not a strict osisRef, trying harder if
+     * needed.
+     */
+    private Passage parse(Versification v11n, String passageReference, Key basis) throws NoSuchKeyException {
+        // since normalization is relatively expensive
+        // don't try it unless it solves a problem.
+        try {
+            return defaultType.createPassage(v11n, passageReference, basis);
+        } catch (NoSuchKeyException e) {
+            try {
+                return defaultType.createPassage(v11n, normalize(passageReference), basis);
+            } catch (NoSuchKeyException e1) {
+                // TODO(DM): Parser should allow valid osisRefs!
+                return defaultType.createPassage(v11n, mungOsisRef(passageReference), basis);
+            }
+        }
+    }
+
+    /**
+     * Build the key of a parsed reference from everything that affects the
+     * Passage it gives.
+     */
+    private static String getCacheKey(Versification v11n, String passageReference) {
+        StringBuilder buf = new StringBuilder(passageReference.length() + 32);
+        buf.append(defaultType.name());
+        buf.append(SEPARATOR);
+        buf.append(v11n.getName());
+        buf.append(SEPARATOR);
+        buf.append(LocaleProviderManager.getLocale());
+        buf.append(SEPARATOR);
+        buf.append(passageReference);
+        return buf.toString();
+    }
+
     /**
      * Set the default PassageType
      * 
@@ -216,6 +294,7 @@ public final class PassageKeyFactory {
      * <li>PassageType.SIZE
      * <li>PassageType.MIX
      * <li>PassageType.TALLY
+     * <li>PassageType.COMPRESSED
      * </ul>
      * 
      * @param newDefaultType
@@ -261,6 +340,24 @@ public final class PassageKeyFactory {
         return new ReadOnlyPassage(ref, ignore);
     }
 
+    /**
+     * Get an unchangeable snapshot of the Verses of a Passage. Unlike a
+     * synchronized or a read-only Passage it does not refer to the original,
+     * so it can be read by many threads at once without locking and handed
+     * out without being copied. Trying to change it throws an
+     * IllegalStateException.
+     * 
+     * @param ref
+     *            The passage to take a snapshot of
+     * @return the snapshot, which is ref itself if that is already one
+     */
+    public static Passage getFrozenPassage(Passage ref) {
+        if (ref instanceof FrozenPassage) {
+            return ref;
+        }
+        return new FrozenPassage(ref);
+    }
+
     /**
      * Convert us to a binary representation. There are some distinctly
      * endianist happenings here, but that is OK because we are reading the
@@ -290,10 +387,8 @@ public final class PassageKeyFactory {
 
             index += toBinary(buffer, index, AbstractPassage.BITWISE, AbstractPassage.METHOD_COUNT);
 
-            for (Key aKey : ref) {
-                Verse verse = (Verse) aKey;
-                int ord = verse.getOrdinal();
-
+            OrdinalCursor cursor = ref.ordinalCursor();
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
                 // Which byte should we be altering
                 int idx0 = (ord / 8) + index;
 
@@ -317,9 +412,8 @@ public final class PassageKeyFactory {
             index += toBinary(buffer, index, verses, maxOrdinal);
 
             // write the verse ordinals in a loop
-            for (Key aKey : ref) {
-                Verse verse = (Verse) aKey;
-                int ord = verse.getOrdinal();
+            OrdinalCursor cursor = ref.ordinalCursor();
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
                 index += toBinary(buffer, index, ord, maxOrdinal);
             }
 
@@ -654,6 +748,38 @@ public final class PassageKeyFactory {
      */
     private static PassageType defaultType = PassageType.SPEED;
 
+    /**
+     * The number of parsed references to remember.
+     */
+    private static final int PARSE_CACHE_SIZE = 1000;
+
+    /**
+     * Separates the parts of the key of a parsed reference.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * The most recently parsed references, without a basis, that are not
+     * strict osisRefs. Cross references in notes are parsed over and over
+     * again.
+     */
+    private static Map<String, Passage> parsed = new LinkedHashMap<String, Passage>(PARSE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Passage> eldest) {
+            return size() > PARSE_CACHE_SIZE;
+        }
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = -2364412829412765310L;
+    };
+
+    /**
+     * The Passage of all the Verses of each Versification.
+     */
+    private static Map<Versification, Passage> globals = new ConcurrentHashMap<Versification, Passage>();
+
     /**
      * How we create Passages
      */
@@ -23,6 +23,7 @@ package org.crosswire.jsword.passage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -30,8 +31,6 @@ import java.util.TreeSet;
 
 import org.crosswire.jsword.JSOtherMsg;
 import org.crosswire.jsword.versification.Versification;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Similar to a Passage, but that stores a ranking for each of the Verses that
@@ -80,13 +79,13 @@ import org.slf4j.LoggerFactory;
  * </p>
  * 
  * <p>
- * Memory considerations: The BitSet approach will always use a
+ * Memory considerations: An array of ranks will always use a
  * <code>int[31000]</code> = 128k of memory.<br />
- * The Distinct approach will be n * int[4] where n is the number of verses
- * stored. I expect most searches to have at least n=1000. Also 128k<br />
- * Given this, (A Distinct style PassageTally will usually use more memory than
- * a BitSet style PassageTally) And the intuitive result that the BitSet will be
- * faster, I'm going to start by implementing the latter only.
+ * A hash of the ranked verses will use about 16 bytes a verse, and a ranked
+ * search often finds only a few dozen verses. So the ranks start out in a hash
+ * and move to an array once enough verses are ranked for it to be no bigger.
+ * Ordering by rank only sorts the verses that are ranked, and only keeps the
+ * best when fewer are wanted.
  * </p>
  * 
  * <p>
@@ -109,7 +108,7 @@ public class PassageTally extends AbstractPassage {
      */
     public PassageTally(Versification v11n) {
         super(v11n);
-        board = new int[v11n.maximumOrdinal() + 1];
+        board = new TallyBoard(v11n.maximumOrdinal());
     }
 
     /**
@@ -126,7 +125,7 @@ public class PassageTally extends AbstractPassage {
      */
     public PassageTally(Versification v11n, String refs, Key basis) throws NoSuchVerseException {
         super(v11n, refs);
-        board = new int[v11n.maximumOrdinal() + 1];
+        board = new TallyBoard(v11n.maximumOrdinal());
         addVerses(refs, basis);
     }
 
@@ -136,12 +135,19 @@ public class PassageTally extends AbstractPassage {
 
     @Override
     public boolean isEmpty() {
-        return size == 0;
+        return board.size() == 0;
     }
 
     @Override
     public int countVerses() {
-        return size;
+        return board.size();
+    }
+
+    /**
+     * @return whether the ranks are held for every verse, for testing
+     */
+    /* package */boolean isDense() {
+        return board.isDense();
     }
 
     /**
@@ -236,7 +242,7 @@ public class PassageTally extends AbstractPassage {
                 max_count = Integer.MAX_VALUE;
             }
 
-            Iterator<Key> it = new OrderedVerseIterator(getVersification(), board);
+            Iterator<Key> it = new OrderedVerseIterator(getVersification(), board, max_count);
             Key current = null;
             int count = 0;
 
@@ -281,7 +287,7 @@ public class PassageTally extends AbstractPassage {
             max_count = Integer.MAX_VALUE;
         }
 
-        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), board);
+        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), board, max_count);
         int count = 0;
 
         while (it.hasNext() && count < max_count) {
@@ -310,7 +316,7 @@ public class PassageTally extends AbstractPassage {
         if (order == Order.BIBLICAL) {
             return new VerseIterator();
         }
-        return new OrderedVerseIterator(getVersification(), board);
+        return new OrderedVerseIterator(getVersification(), board, Integer.MAX_VALUE);
     }
 
     @Override
@@ -321,6 +327,30 @@ public class PassageTally extends AbstractPassage {
         return new OrderedVerseRangeIterator(getVersification(), iterator(), board);
     }
 
+    /**
+     * Walk the verses that have been tallied in Biblical order, whatever the
+     * ordering of this tally.
+     */
+    @Override
+    public OrdinalCursor ordinalCursor(final int start, final int end) {
+        return new OrdinalCursor() {
+            public int nextOrdinal() {
+                if (next < 0 || next > end) {
+                    return -1;
+                }
+                int ordinal = board.nextOrdinal(next);
+                if (ordinal < 0 || ordinal > end) {
+                    next = -1;
+                    return -1;
+                }
+                next = ordinal + 1;
+                return ordinal;
+            }
+
+            private int next = Math.max(0, start);
+        };
+    }
+
     /**
      * Does this tally contain all the specified verses?
      * 
@@ -330,9 +360,9 @@ public class PassageTally extends AbstractPassage {
      */
     @Override
     public boolean contains(Key that) {
-        for (Key aKey : that) {
-            Verse verse = (Verse) aKey;
-            if (board[verse.getOrdinal()] == 0) {
+        OrdinalCursor cursor = toOrdinalCursor(that);
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            if (board.get(ord) == 0) {
                 return false;
             }
         }
@@ -348,7 +378,19 @@ public class PassageTally extends AbstractPassage {
      * @return The rank of the verse in question
      */
     public int getTallyOf(Verse verse) {
-        return board[verse.getOrdinal()];
+        return board.get(verse.getOrdinal());
+    }
+
+    /**
+     * The ranking given to a specific verse, by ordinal. The ordinal needs to
+     * be taken from the same versification as the tally.
+     * 
+     * @param ordinal
+     *            The ordinal of the verse to get the ranking of
+     * @return The rank of the verse in question
+     */
+    public int getTallyOf(int ordinal) {
+        return board.get(ordinal);
     }
 
     /**
@@ -360,7 +402,7 @@ public class PassageTally extends AbstractPassage {
      */
     public int getIndexOf(Verse verse) {
         int pos = verse.getOrdinal();
-        int tally = board[pos];
+        int tally = board.get(pos);
         return tally > 0 ? pos : -1;
     }
 
@@ -395,6 +437,25 @@ public class PassageTally extends AbstractPassage {
         fireIntervalAdded(this, null, null);
     }
 
+    /**
+     * A shortcut to adding a verse to the rankings, by ordinal. The ordinal
+     * needs to be taken from the same versification as the tally.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse to add/increment
+     * @param count
+     *            The amount to increment by
+     */
+    public void addVersifiedOrdinal(int ordinal, int count) {
+        optimizeWrites();
+
+        increment(ordinal, count);
+        if (count > 0) {
+            incrementMax(count);
+        }
+        fireIntervalAdded(this, null, null);
+    }
+
     /**
      * Remove/Decrement this verses in the rankings
      * 
@@ -417,9 +478,9 @@ public class PassageTally extends AbstractPassage {
     public void remove(Key that) {
         optimizeWrites();
 
-        for (Key aKey : that) {
-            Verse verse = (Verse) aKey;
-            kill(verse.getOrdinal());
+        OrdinalCursor cursor = toOrdinalCursor(that);
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            kill(ord);
         }
 
         fireIntervalRemoved(this, null, null);
@@ -432,16 +493,15 @@ public class PassageTally extends AbstractPassage {
         if (that instanceof PassageTally) {
             PassageTally that_rt = (PassageTally) that;
 
-            int vib = getVersification().maximumOrdinal();
-            for (int i = 0; i <= vib; i++) {
-                increment(i, that_rt.board[i]);
+            for (int ord = that_rt.board.nextOrdinal(0); ord >= 0; ord = that_rt.board.nextOrdinal(ord + 1)) {
+                increment(ord, that_rt.board.get(ord));
             }
 
             incrementMax(that_rt.max);
         } else {
-            for (Key aKey : that) {
-                Verse verse = (Verse) aKey;
-                increment(verse.getOrdinal(), 1);
+            OrdinalCursor cursor = toOrdinalCursor(that);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                increment(ord, 1);
             }
 
             incrementMax(1);
@@ -462,14 +522,13 @@ public class PassageTally extends AbstractPassage {
         if (that instanceof PassageTally) {
             PassageTally that_rt = (PassageTally) that;
 
-            int vib = getVersification().maximumOrdinal();
-            for (int i = 0; i <= vib; i++) {
-                increment(i, -that_rt.board[i]);
+            for (int ord = that_rt.board.nextOrdinal(0); ord >= 0; ord = that_rt.board.nextOrdinal(ord + 1)) {
+                increment(ord, -that_rt.board.get(ord));
             }
         } else {
-            for (Key aKey : that) {
-                Verse verse = (Verse) aKey;
-                increment(verse.getOrdinal(), -1);
+            OrdinalCursor cursor = toOrdinalCursor(that);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                increment(ord, -1);
             }
         }
 
@@ -487,16 +546,13 @@ public class PassageTally extends AbstractPassage {
         if (key instanceof PassageTally) {
             PassageTally that_rt = (PassageTally) key;
 
-            int vib = getVersification().maximumOrdinal();
-            for (int i = 0; i <= vib; i++) {
-                if (that_rt.board[i] != 0) {
-                    kill(i);
-                }
+            for (int ord = that_rt.board.nextOrdinal(0); ord >= 0; ord = that_rt.board.nextOrdinal(ord + 1)) {
+                kill(ord);
             }
         } else {
-            for (Key aKey : key) {
-                Verse verse = (Verse) aKey;
-                kill(verse.getOrdinal());
+            OrdinalCursor cursor = toOrdinalCursor(key);
+            for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                kill(ord);
             }
         }
 
@@ -511,11 +567,7 @@ public class PassageTally extends AbstractPassage {
     public void clear() {
         optimizeWrites();
 
-        for (int i = 0; i < board.length; i++) {
-            board[i] = 0;
-        }
-
-        size = 0;
+        board.clear();
 
         fireIntervalRemoved(this, null, null);
     }
@@ -536,26 +588,32 @@ public class PassageTally extends AbstractPassage {
     public Passage trimVerses(int count) {
         optimizeWrites();
 
-        int i = 0;
-        boolean overflow = false;
-
-        Passage remainder = this.clone();
+        if (board.size() <= count) {
+            return null;
+        }
 
-        for (Key verse : this) {
-            i++;
-            if (i > count) {
-                remove(verse);
-                overflow = true;
-            } else {
-                remainder.remove(verse);
+        // Move the verses that are kept out of the remainder
+        PassageTally remainder = this.clone();
+        TallyBoard kept = new TallyBoard(getVersification().maximumOrdinal());
+        if (order == Order.BIBLICAL) {
+            int ord = board.nextOrdinal(0);
+            for (int i = 0; i < count && ord >= 0; i++) {
+                kept.set(ord, board.get(ord));
+                remainder.board.set(ord, 0);
+                ord = board.nextOrdinal(ord + 1);
+            }
+        } else {
+            for (long ranked : board.rank(count)) {
+                int ord = TallyBoard.ordinalOf(ranked);
+                kept.set(ord, TallyBoard.tallyOf(ranked));
+                remainder.board.set(ord, 0);
             }
-
         }
+        board = kept;
 
-        if (overflow) {
-            return remainder;
-        }
-        return null;
+        fireIntervalRemoved(this, null, null);
+
+        return remainder;
     }
 
     /**
@@ -565,11 +623,7 @@ public class PassageTally extends AbstractPassage {
     public void flatten() {
         optimizeWrites();
 
-        for (int i = 0; i < board.length; i++) {
-            if (board[i] != 0) {
-                board[i] = 1;
-            }
-        }
+        board.flatten();
 
         max = 1;
     }
@@ -582,55 +636,37 @@ public class PassageTally extends AbstractPassage {
         raiseEventSuppresion();
         raiseNormalizeProtection();
 
-        if (!restrict.equals(RestrictionType.NONE)) {
-            log.warn("Restrict={} is not properly supported.", restrict);
-
-            // This is a bit of a cheat, but there is no way I'm going
-            // to do the math to speed up the restricted version
-            PassageTally temp = this.clone();
-            Iterator<Key> it = temp.rangeIterator(RestrictionType.NONE);
+        Versification v11n = getVersification();
+        int maximumOrdinal = v11n.maximumOrdinal();
+        boolean restricted = !restrict.equals(RestrictionType.NONE);
+        TallyBoard new_board = new TallyBoard(maximumOrdinal);
+
+        for (int i = board.nextOrdinal(0); i >= 0; i = board.nextOrdinal(i + 1)) {
+            int tally = board.get(i);
+            int low = 0;
+            int high = maximumOrdinal;
+            if (restricted) {
+                low = restrict.getScopeStart(v11n, i);
+                high = restrict.getScopeEnd(v11n, i);
+            }
 
-            while (it.hasNext()) {
-                VerseRange range = (VerseRange) it.next();
-                for (int i = 0; i <= verses; i++) {
-                    add(restrict.blur(getVersification(), range, i, i));
-                }
+            // Each verse within the blur gets the rank of this one, plus
+            // however much nearer it is than the furthest blurred verse:
+            // new_board[k] += board[i] + verses - |i - k|
+            for (int k = Math.max(low, i - verses); k < i; k++) {
+                new_board.set(k, new_board.get(k) + tally + verses - (i - k));
             }
-        } else {
-            int[] new_board = new int[board.length];
-
-            for (int i = 0; i < board.length; i++) {
-                if (board[i] != 0) {
-                    // This could be re-written more simply:
-                    // for (int j = -verses; j <= verses; j++) {
-                    //     int k = i + j;
-                    //     if (k >= 0 && k <= BibleInfo.maximumOrdinal()) {
-                    //         new_board[k] += board[i] + verses - mod(j);
-                    //     }
-                    // }
-                    // However splitting the loop in 2 will speed it up quite a bit.
-
-                    for (int j = -verses; j < 0; j++) {
-                        int k = i + j;
-                        if (k >= 0) {
-                            new_board[k] += board[i] + verses + j;
-                        }
-                    }
 
-                    new_board[i] += board[i] + verses;
+            new_board.set(i, new_board.get(i) + tally + verses);
 
-                    for (int j = 1; j <= verses; j++) {
-                        int k = i + j;
-                        if (k < board.length - 1) {
-                            new_board[k] += board[i] + verses - j;
-                        }
-                    }
-                }
+            int last = (int) Math.min(high, (long) i + verses);
+            for (int k = i + 1; k <= last; k++) {
+                new_board.set(k, new_board.get(k) + tally + verses - (k - i));
             }
-
-            board = new_board;
         }
 
+        board = new_board;
+
         resetMax();
 
         lowerNormalizeProtection();
@@ -641,21 +677,27 @@ public class PassageTally extends AbstractPassage {
 
     /**
      * Sometimes we end up not knowing what the max is - this makes sure we know
-     * accurately. Same with size.
+     * accurately.
      */
     private void resetMax() {
         optimizeWrites();
 
-        max = 0;
-        size = 0;
-        for (int i = 0; i < board.length; i++) {
-            if (board[i] > 0) {
-                size++;
-            }
-            if (board[i] > max) {
-                max = board[i];
-            }
-        }
+        max = board.max();
+    }
+
+    /**
+     * @return the tally that counts as 100%, which is not always the largest
+     */
+    /* package */int getMax() {
+        return max;
+    }
+
+    /**
+     * @param max
+     *            the tally that counts as 100%
+     */
+    /* package */void setMax(int max) {
+        this.max = max;
     }
 
     /**
@@ -667,9 +709,9 @@ public class PassageTally extends AbstractPassage {
      *            The amount to increment/decrement by
      */
     private void alterVerseBase(Key that, int tally) {
-        for (Key aKey : that) {
-            Verse verse = (Verse) aKey;
-            increment(verse.getOrdinal(), tally);
+        OrdinalCursor cursor = toOrdinalCursor(that);
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            increment(ord, tally);
         }
 
         if (tally > 0) {
@@ -686,21 +728,16 @@ public class PassageTally extends AbstractPassage {
      *            The amount to increase by
      */
     private void increment(int ord, int tally) {
-        boolean exists = board[ord] > 0;
-        board[ord] += tally;
-        if (board[ord] > MAX_TALLY) {
-            board[ord] = MAX_TALLY;
-        }
-        if (board[ord] < 0) {
-            board[ord] = 0;
+        if (tally == 0) {
+            return;
         }
 
-        // Recompute the size
-        if (exists && board[ord] == 0) {
-            size--;
-        } else if (!exists && board[ord] > 0) {
-            size++;
+        // The board drops verses whose rank falls to zero
+        int value = board.get(ord) + tally;
+        if (value > MAX_TALLY) {
+            value = MAX_TALLY;
         }
+        board.set(ord, value);
     }
 
     /**
@@ -726,11 +763,7 @@ public class PassageTally extends AbstractPassage {
      *            The verse to increment
      */
     private void kill(int ord) {
-        if (board[ord] > 0) {
-            size--;
-        }
-
-        board[ord] = 0;
+        board.set(ord, 0);
     }
 
     /**
@@ -744,7 +777,12 @@ public class PassageTally extends AbstractPassage {
      *             if the read fails
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("total", total);
+        fields.put("board", board.toArray());
+        fields.put("max", max);
+        fields.put("order", order);
+        out.writeFields();
 
         writeObjectSupport(out);
     }
@@ -764,7 +802,17 @@ public class PassageTally extends AbstractPassage {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         optimizeWrites();
 
-        in.defaultReadObject();
+        ObjectInputStream.GetField fields = in.readFields();
+        total = fields.get("total", 0);
+        max = fields.get("max", 0);
+        order = (Order) fields.get("order", Order.BIBLICAL);
+        int[] ranks = (int[]) fields.get("board", null);
+        board = new TallyBoard(ranks.length - 1);
+        for (int ord = 0; ord < ranks.length; ord++) {
+            if (ranks[ord] != 0) {
+                board.set(ord, ranks[ord]);
+            }
+        }
 
         readObjectSupport(in);
     }
@@ -789,20 +837,16 @@ public class PassageTally extends AbstractPassage {
      */
     public static final int MAX_TALLY = 20000;
 
-    /*
-     * The number of verses in the tally.
-     */
-    private int size;
-
     /*
      * The total number of verses that this tally represents.
      */
     private int total;
 
     /**
-     * The tally board itself
+     * The tally board itself. It is serialized as the array of ranks that it
+     * once was.
      */
-    protected int[] board;
+    private transient TallyBoard board;
 
     /**
      * The maximum tally possible
@@ -815,14 +859,20 @@ public class PassageTally extends AbstractPassage {
     private Order order = Order.BIBLICAL;
 
     /**
-     * The log stream
+     * Serialization ID
      */
-    private static final Logger log = LoggerFactory.getLogger(PassageTally.class);
+    private static final long serialVersionUID = 3761128240928274229L;
 
     /**
-     * Serialization ID
+     * The serialized form, which is that from before the board kept only the
+     * verses with a rank.
      */
-    private static final long serialVersionUID = 3761128240928274229L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("total", Integer.TYPE),
+            new ObjectStreamField("board", int[].class),
+            new ObjectStreamField("max", Integer.TYPE),
+            new ObjectStreamField("order", Order.class),
+    };
 
     /**
      * Iterate over the Verses in normal verse order
@@ -841,14 +891,14 @@ public class PassageTally extends AbstractPassage {
          * @see java.util.Iterator#hasNext()
          */
         public boolean hasNext() {
-            return next <= board.length - 1;
+            return next >= 0;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#next()
          */
         public Key next() throws NoSuchElementException {
-            if (next >= board.length) {
+            if (next < 0) {
                 throw new NoSuchElementException();
             }
 
@@ -869,13 +919,11 @@ public class PassageTally extends AbstractPassage {
          * Find the next bit
          */
         private void calculateNext() {
-            do {
-                next++;
-            } while (next < board.length && board[next] == 0);
+            next = board.nextOrdinal(next + 1);
         }
 
-        /** What is the next Verse to be considered */
-        private int next;
+        /** What is the next Verse to be considered, or -1 at the end */
+        private int next = -1;
     }
 
     /**
@@ -885,36 +933,32 @@ public class PassageTally extends AbstractPassage {
      */
     private static final class OrderedVerseIterator implements Iterator<Key> {
         /**
-         * Find the first unused verse
+         * Rank the best verses on the board
+         *
+         * @param limit
+         *            the most verses to iterate over
          */
-        protected OrderedVerseIterator(Versification v11n, int[] board) {
+        protected OrderedVerseIterator(Versification v11n, TallyBoard board, int limit) {
             referenceSystem = v11n;
-            TreeSet<TalliedVerse> output = new TreeSet<TalliedVerse>();
-
-            int vib = board.length - 1;
-            for (int i = 0; i <= vib; i++) {
-                if (board[i] != 0) {
-                    output.add(new TalliedVerse(i, board[i]));
-                }
-            }
-
-            it = output.iterator();
-            last = null;
+            ranked = board.rank(limit);
+            next = 0;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#hasNext()
          */
         public boolean hasNext() {
-            return it.hasNext();
+            return next < ranked.length;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#next()
          */
         public Key next() throws NoSuchElementException {
-            last = it.next();
-            return referenceSystem.decodeOrdinal(last.ord);
+            if (next >= ranked.length) {
+                throw new NoSuchElementException();
+            }
+            return referenceSystem.decodeOrdinal(TallyBoard.ordinalOf(ranked[next++]));
         }
 
         /* (non-Javadoc)
@@ -930,8 +974,8 @@ public class PassageTally extends AbstractPassage {
          *             if hasNext() == false
          */
         public int lastRank() throws NoSuchElementException {
-            if (last != null) {
-                return last.tally;
+            if (next > 0) {
+                return TallyBoard.tallyOf(ranked[next - 1]);
             }
             throw new NoSuchElementException(JSOtherMsg.lookupText("nextElement() has not been called yet."));
         }
@@ -940,82 +984,16 @@ public class PassageTally extends AbstractPassage {
          * The Versification is needed to decode board positions.
          */
         private Versification referenceSystem;
-        /**
-         * So that we can get at the ranking of the given verse
-         */
-        private TalliedVerse last;
 
         /**
-         * The Iterator we are converting
+         * The verses with their ranks, in rank order
          */
-        private Iterator<TalliedVerse> it;
-    }
+        private long[] ranked;
 
-    /**
-     * Hack to make this work with J2SE 1.1 as well as J2SE 1.2 This compared 2
-     * Integers
-     */
-    private static class TalliedVerse implements Comparable<TalliedVerse> {
         /**
-         * Convenience ctor to set the public variables
-         * 
-         * @param ord
-         *            the verse id
-         * @param tally
-         *            the rank of the verse
+         * The index of the next verse in ranked
          */
-        public TalliedVerse(int ord, int tally) {
-            this.ord = ord;
-            this.tally = tally;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = 31 + ord;
-            return 31 * result + tally;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TalliedVerse other = (TalliedVerse) obj;
-            if (tally != other.tally) {
-                return false;
-            }
-            if (ord != other.ord) {
-                return false;
-            }
-            return true;
-        }
-
-        /* (non-Javadoc)
-         * @see java.lang.Comparable#compareTo(java.lang.Object)
-         */
-        public int compareTo(TalliedVerse that) {
-            if (that.tally == this.tally) {
-                return this.ord - that.ord;
-            }
-
-            return that.tally - this.tally;
-        }
-
-        /**
-         * The verse id
-         */
-        protected int ord;
-
-        /**
-         * The rank of the verse
-         */
-        protected int tally;
+        private int next;
     }
 
     /**
@@ -1027,7 +1005,7 @@ public class PassageTally extends AbstractPassage {
         /**
          * Find the first unused verse
          */
-        public OrderedVerseRangeIterator(Versification v11n, Iterator<Key> vit, int[] board) {
+        public OrderedVerseRangeIterator(Versification v11n, Iterator<Key> vit, TallyBoard board) {
             Set<TalliedVerseRange> output = new TreeSet<TalliedVerseRange>();
 
             Iterator<Key> rit = new VerseRangeIterator(v11n, vit, RestrictionType.NONE);
@@ -1036,9 +1014,9 @@ public class PassageTally extends AbstractPassage {
 
                 // Calculate the maximum rank for a verse
                 int rank = 0;
-                for (Key aKey : range) {
-                    Verse verse = (Verse) aKey;
-                    int temp = board[verse.getOrdinal()];
+                OrdinalCursor cursor = range.ordinalCursor();
+                for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+                    int temp = board.get(ord);
                     if (temp > rank) {
                         rank = temp;
                     }
@@ -123,6 +123,25 @@ public enum PassageType {
         public Passage createEmptyPassage(Versification v11n) {
             return new PassageTally(v11n);
         }
+    },
+
+    /**
+     * Optimize the Passage for set operations and size, using a compressed
+     * bitmap
+     */
+    COMPRESSED {
+        @Override
+        public Passage createPassage(Versification v11n, String passage, Key basis) throws NoSuchVerseException {
+            if (passage == null || passage.length() == 0) {
+                return createEmptyPassage(v11n);
+            }
+            return new CompressedPassage(v11n, passage, basis);
+        }
+
+        @Override
+        public Passage createEmptyPassage(Versification v11n) {
+            return new CompressedPassage(v11n);
+        }
     };
 
     /**
@@ -153,6 +153,11 @@ public class RangedPassage extends AbstractPassage {
         return new VerseRangeIterator(store.iterator(), restrict);
     }
 
+    @Override
+    public OrdinalCursor ordinalCursor(int start, int end) {
+        return new RangeOrdinalCursor(store.iterator(), start, end);
+    }
+
     @Override
     public boolean isEmpty() {
         return store.isEmpty();
@@ -378,6 +383,44 @@ public class RangedPassage extends AbstractPassage {
         private Iterator<Key> real;
     }
 
+    /**
+     * Walk the ordinals of the VerseRanges without making a Verse of each.
+     * While normalization is held off the ranges might overlap, so no ordinal
+     * is given twice.
+     */
+    private static final class RangeOrdinalCursor implements OrdinalCursor {
+        protected RangeOrdinalCursor(Iterator<Key> it, int start, int end) {
+            this.it = it;
+            this.next = start;
+            this.end = end;
+            this.rangeEnd = -1;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.passage.OrdinalCursor#nextOrdinal()
+         */
+        public int nextOrdinal() {
+            while (next > rangeEnd) {
+                if (!it.hasNext()) {
+                    return -1;
+                }
+                VerseRange range = (VerseRange) it.next();
+                int rangeStart = range.getStart().getOrdinal();
+                if (rangeStart > end) {
+                    return -1;
+                }
+                next = Math.max(next, rangeStart);
+                rangeEnd = Math.min(end, rangeStart + range.getCardinality() - 1);
+            }
+            return next++;
+        }
+
+        private Iterator<Key> it;
+        private int next;
+        private int end;
+        private int rangeEnd;
+    }
+
     /**
      * Loop over the VerseRanges and check that they do not require digging into
      */
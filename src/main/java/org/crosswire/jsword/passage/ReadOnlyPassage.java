@@ -128,6 +128,20 @@ final class ReadOnlyPassage implements Passage {
         return ref.iterator();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor()
+     */
+    public OrdinalCursor ordinalCursor() {
+        return ref.ordinalCursor();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor(int, int)
+     */
+    public OrdinalCursor ordinalCursor(int start, int end) {
+        return ref.ordinalCursor(start, end);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#get(int)
      */
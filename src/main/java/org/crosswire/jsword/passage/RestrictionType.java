@@ -63,6 +63,16 @@ public enum RestrictionType {
             }
             return new VerseRange(v11n, verse, end);
         }
+
+        @Override
+        public int getScopeStart(Versification v11n, int ordinal) {
+            return 0;
+        }
+
+        @Override
+        public int getScopeEnd(Versification v11n, int ordinal) {
+            return v11n.maximumOrdinal();
+        }
     },
 
     /**
@@ -114,6 +124,16 @@ public enum RestrictionType {
             Verse end = v11n.add(verse, count - 1);
             return new VerseRange(v11n, verse, end);
         }
+
+        @Override
+        public int getScopeStart(Versification v11n, int ordinal) {
+            return v11n.getChapterStartOrdinal(ordinal);
+        }
+
+        @Override
+        public int getScopeEnd(Versification v11n, int ordinal) {
+            return v11n.getChapterEndOrdinal(ordinal);
+        }
     };
 
     /**
@@ -158,6 +178,30 @@ public enum RestrictionType {
      */
     public abstract VerseRange toRange(Versification v11n, Verse verse, int count);
 
+    /**
+     * The first ordinal that a verse may be blurred to. This allows blurring
+     * of whole passages by ordinal, without making a VerseRange for each part.
+     * 
+     * @param v11n
+     *            the versification of the ordinal
+     * @param ordinal
+     *            the ordinal of the verse
+     * @return the first ordinal in the same scope
+     */
+    public abstract int getScopeStart(Versification v11n, int ordinal);
+
+    /**
+     * The last ordinal that a verse may be blurred to.
+     * 
+     * @param v11n
+     *            the versification of the ordinal
+     * @param ordinal
+     *            the ordinal of the verse
+     * @return the last ordinal in the same scope
+     * @see #getScopeStart(Versification, int)
+     */
+    public abstract int getScopeEnd(Versification v11n, int ordinal);
+
     /**
      * Get an integer representation for this RestrictionType
      */
@@ -110,6 +110,20 @@ final class SynchronizedPassage implements Passage {
         return ref.iterator();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor()
+     */
+    public synchronized OrdinalCursor ordinalCursor() {
+        return ref.ordinalCursor();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor(int, int)
+     */
+    public synchronized OrdinalCursor ordinalCursor(int start, int end) {
+        return ref.ordinalCursor(start, end);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#get(int)
      */
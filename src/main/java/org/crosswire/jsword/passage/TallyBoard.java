@@ -0,0 +1,442 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The ranks of the verses in a PassageTally, by ordinal. Most tallies rank a
+ * few dozen or a few hundred verses out of a whole versification, so the ranks
+ * start out in an open addressing hash of ordinal to rank. Once so many verses
+ * are ranked that an array the size of the versification would be no bigger,
+ * the ranks move to such an array and stay there until cleared.
+ *
+ * <p>
+ * Only ranks greater than zero are kept; setting a rank of zero or less
+ * removes the verse.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+final class TallyBoard implements Serializable, Cloneable {
+    /**
+     * Create an empty board.
+     *
+     * @param maximumOrdinal
+     *            the largest ordinal that may be ranked
+     */
+    TallyBoard(int maximumOrdinal) {
+        this.maximumOrdinal = maximumOrdinal;
+        this.denseThreshold = (maximumOrdinal + 1) / DENSE_RATIO;
+        clear();
+    }
+
+    /**
+     * @return the number of verses with a rank
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @param ordinal
+     *            the verse
+     * @return the rank of the verse, or 0 if it has none
+     */
+    int get(int ordinal) {
+        if (dense != null) {
+            return dense[ordinal];
+        }
+
+        int slot = find(ordinal);
+        return keys[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    /**
+     * Give a verse a rank, removing it when the rank is not positive.
+     *
+     * @param ordinal
+     *            the verse
+     * @param tally
+     *            the new rank
+     */
+    void set(int ordinal, int tally) {
+        if (dense != null) {
+            if (dense[ordinal] > 0) {
+                if (tally <= 0) {
+                    count--;
+                }
+            } else if (tally > 0) {
+                count++;
+            }
+            dense[ordinal] = tally > 0 ? tally : 0;
+            return;
+        }
+
+        int slot = find(ordinal);
+        if (keys[slot] != EMPTY) {
+            if (tally > 0) {
+                values[slot] = tally;
+            } else {
+                removeSlot(slot);
+                count--;
+                sorted = null;
+            }
+        } else if (tally > 0) {
+            keys[slot] = ordinal;
+            values[slot] = tally;
+            count++;
+            sorted = null;
+            if (count > denseThreshold) {
+                toDense();
+            } else if (2 * count > keys.length) {
+                rehash(2 * keys.length);
+            }
+        }
+    }
+
+    /**
+     * Remove all the ranks, going back to the sparse representation.
+     */
+    void clear() {
+        dense = null;
+        keys = new int[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        count = 0;
+        sorted = null;
+    }
+
+    /**
+     * @return the highest rank of any verse, or 0 if there are none
+     */
+    int max() {
+        int max = 0;
+        for (int slot = 0; slot < slots(); slot++) {
+            if (ordinalAt(slot) != EMPTY && tallyAt(slot) > max) {
+                max = tallyAt(slot);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Give every ranked verse a rank of 1.
+     */
+    void flatten() {
+        for (int slot = 0; slot < slots(); slot++) {
+            if (ordinalAt(slot) != EMPTY) {
+                if (dense != null) {
+                    dense[slot] = 1;
+                } else {
+                    values[slot] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the first ranked verse at or after an ordinal.
+     *
+     * @param from
+     *            the ordinal to start looking at
+     * @return the ordinal of the verse, or -1 if there is none
+     */
+    int nextOrdinal(int from) {
+        int start = Math.max(0, from);
+        if (dense != null) {
+            for (int ordinal = start; ordinal < dense.length; ordinal++) {
+                if (dense[ordinal] != 0) {
+                    return ordinal;
+                }
+            }
+            return -1;
+        }
+
+        int[] ordinals = getSorted();
+        int index = Arrays.binarySearch(ordinals, start);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < ordinals.length ? ordinals[index] : -1;
+    }
+
+    /**
+     * The best ranked verses, highest rank first and in Biblical order among
+     * equal ranks. Each is encoded as a long that gives that order when
+     * sorted; use {@link #ordinalOf(long)} and {@link #tallyOf(long)} to decode
+     * them. When fewer verses than are ranked are wanted, only those are kept
+     * while looking, in a heap, rather than sorting them all.
+     *
+     * @param limit
+     *            the most verses to return
+     * @return the encoded verses, in rank order
+     */
+    long[] rank(int limit) {
+        int wanted = Math.min(Math.max(limit, 0), count);
+        long[] heap = new long[wanted];
+        if (wanted == 0) {
+            return heap;
+        }
+
+        int filled = 0;
+        for (int slot = 0; slot < slots(); slot++) {
+            int ordinal = ordinalAt(slot);
+            if (ordinal == EMPTY) {
+                continue;
+            }
+
+            long ranked = ((long) -tallyAt(slot) << 32) | ordinal;
+            if (wanted == count) {
+                heap[filled++] = ranked;
+            } else if (filled < wanted) {
+                // Keep the worst of the best at the root
+                int child = filled++;
+                while (child > 0) {
+                    int parent = (child - 1) >> 1;
+                    if (heap[parent] >= ranked) {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    child = parent;
+                }
+                heap[child] = ranked;
+            } else if (ranked < heap[0]) {
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= wanted) {
+                        break;
+                    }
+                    if (child + 1 < wanted && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= ranked) {
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = ranked;
+            }
+        }
+
+        Arrays.sort(heap);
+        return heap;
+    }
+
+    /**
+     * @param ranked
+     *            a verse as returned by {@link #rank(int)}
+     * @return the ordinal of the verse
+     */
+    static int ordinalOf(long ranked) {
+        return (int) ranked;
+    }
+
+    /**
+     * @param ranked
+     *            a verse as returned by {@link #rank(int)}
+     * @return the rank of the verse
+     */
+    static int tallyOf(long ranked) {
+        return (int) -(ranked >> 32);
+    }
+
+    /**
+     * @return the rank of every ordinal, as an array the size of the
+     *         versification
+     */
+    int[] toArray() {
+        int[] ranks = new int[maximumOrdinal + 1];
+        for (int ord = nextOrdinal(0); ord >= 0; ord = nextOrdinal(ord + 1)) {
+            ranks[ord] = get(ord);
+        }
+        return ranks;
+    }
+
+    /**
+     * @return whether the ranks are kept in an array the size of the
+     *         versification
+     */
+    boolean isDense() {
+        return dense != null;
+    }
+
+    @Override
+    public TallyBoard clone() {
+        try {
+            TallyBoard copy = (TallyBoard) super.clone();
+            if (dense != null) {
+                copy.dense = dense.clone();
+            } else {
+                copy.keys = keys.clone();
+                copy.values = values.clone();
+            }
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private int slots() {
+        return dense != null ? dense.length : keys.length;
+    }
+
+    private int ordinalAt(int slot) {
+        if (dense != null) {
+            return dense[slot] != 0 ? slot : EMPTY;
+        }
+        return keys[slot];
+    }
+
+    private int tallyAt(int slot) {
+        return dense != null ? dense[slot] : values[slot];
+    }
+
+    /**
+     * @return the ranked ordinals in order, while sparse
+     */
+    private int[] getSorted() {
+        if (sorted == null) {
+            int[] ordinals = new int[count];
+            int i = 0;
+            for (int key : keys) {
+                if (key != EMPTY) {
+                    ordinals[i++] = key;
+                }
+            }
+            Arrays.sort(ordinals);
+            sorted = ordinals;
+        }
+        return sorted;
+    }
+
+    /**
+     * Where the ordinal is, or the empty slot where it would go.
+     */
+    private int find(int ordinal) {
+        int mask = keys.length - 1;
+        int slot = home(ordinal, mask);
+        while (keys[slot] != EMPTY && keys[slot] != ordinal) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int home(int ordinal, int mask) {
+        int hash = ordinal * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Empty a slot, moving back the entries that follow it so that none is
+     * left beyond a gap from where it belongs.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void toDense() {
+        dense = new int[maximumOrdinal + 1];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                dense[keys[i]] = values[i];
+            }
+        }
+        keys = null;
+        values = null;
+        sorted = null;
+    }
+
+    /**
+     * An open addressing hash takes about 16 bytes a verse, at half full, and
+     * an array takes 4 bytes for every verse in the versification. Going dense
+     * a little before they are the same size keeps the hash short of probes.
+     */
+    private static final int DENSE_RATIO = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Marks an unused slot of the hash.
+     */
+    private static final int EMPTY = -1;
+
+    private int maximumOrdinal;
+    private int denseThreshold;
+
+    /**
+     * The rank of every ordinal, once dense, otherwise null.
+     */
+    private int[] dense;
+
+    /**
+     * The ordinals and their ranks, while sparse.
+     */
+    private int[] keys;
+    private int[] values;
+
+    /**
+     * The number of ranked verses.
+     */
+    private int count;
+
+    /**
+     * The ranked ordinals in order, while sparse, built as needed.
+     */
+    private transient int[] sorted;
+
+    /**
+     * Serialization ID
+     */
+    private static final long serialVersionUID = -3093174461289740377L;
+}
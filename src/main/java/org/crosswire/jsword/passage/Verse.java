@@ -237,6 +237,7 @@ public final class Verse implements VerseKey {
     public Verse(Versification v11n, int ordinal) {
         Verse decoded = v11n.decodeOrdinal(ordinal);
         this.originalName = null;
+        this.v11n = v11n;
         this.book = decoded.book;
         this.chapter = decoded.chapter;
         this.verse = decoded.verse;
@@ -733,6 +734,23 @@ public final class Verse implements VerseKey {
         return new ItemIterator<Key>(this);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor()
+     */
+    public OrdinalCursor ordinalCursor() {
+        return new OrdinalRangeCursor(ordinal, ordinal);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor(int, int)
+     */
+    public OrdinalCursor ordinalCursor(int start, int end) {
+        if (ordinal < start || ordinal > end) {
+            return new OrdinalRangeCursor(0, -1);
+        }
+        return ordinalCursor();
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
      */
@@ -58,6 +58,13 @@ public final class VerseFactory {
         if ("".equals(original)) {
             return null;
         }
+
+        // Most verses are osisIDs from an index or a document
+        Verse verse = OsisParser.parseVerse(v11n, original);
+        if (verse != null) {
+            return verse;
+        }
+
         String[] parts = AccuracyType.tokenize(original);
         AccuracyType accuracy = AccuracyType.fromText(v11n, original, parts);
         assert accuracy != null;
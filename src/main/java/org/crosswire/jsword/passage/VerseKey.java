@@ -31,4 +31,24 @@ import org.crosswire.jsword.versification.Versification;
  */
 public interface VerseKey extends Key {
     Versification getVersification();
+
+    /**
+     * Walk the ordinals of the verses of this key, in Biblical order, whatever
+     * order the key's iterator uses.
+     * 
+     * @return a cursor over the ordinals
+     */
+    OrdinalCursor ordinalCursor();
+
+    /**
+     * Walk the ordinals of the verses of this key that are from start to end,
+     * in Biblical order.
+     * 
+     * @param start
+     *            the smallest ordinal to give
+     * @param end
+     *            the largest ordinal to give
+     * @return a cursor over the ordinals
+     */
+    OrdinalCursor ordinalCursor(int start, int end);
 }
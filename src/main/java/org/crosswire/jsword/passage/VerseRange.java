@@ -949,6 +949,21 @@ public final class VerseRange implements VerseKey {
         return new VerseIterator(this);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor()
+     */
+    public OrdinalCursor ordinalCursor() {
+        return new OrdinalRangeCursor(start.getOrdinal(), start.getOrdinal() + verseCount - 1);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalCursor(int, int)
+     */
+    public OrdinalCursor ordinalCursor(int from, int to) {
+        int first = start.getOrdinal();
+        return new OrdinalRangeCursor(Math.max(first, from), Math.min(first + verseCount - 1, to));
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
      */
@@ -124,6 +124,12 @@ public final class VerseRangeFactory {
      *                If the reference is illegal
      */
     public static VerseRange fromString(Versification v11n, String original, VerseRange basis) throws NoSuchVerseException {
+        // An osisRef is complete in itself, so the basis does not matter
+        VerseRange range = OsisParser.parseVerseRange(v11n, original);
+        if (range != null) {
+            return range;
+        }
+
         String[] parts = StringUtil.split(original, VerseRange.RANGE_ALLOWED_DELIMS);
 
         switch (parts.length) {
@@ -20,10 +20,8 @@
  */
 package org.crosswire.jsword.versification;
 
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
@@ -89,67 +87,16 @@ import org.crosswire.common.util.StringUtil;
     }
 
     /**
-     * Get number of a book from its name.
+     * Get number of a book from its name. A name that is not exactly that of a
+     * book may be the beginning of a name, or begin with a short or alternate
+     * name.
      *
      * @param find
      *            The string to identify
      * @return The BibleBook, On error null
      */
     /* package */ BibleBook getBook(String find) {
-        String match = BookName.normalize(find, locale);
-
-        BookName bookName = fullNT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = shortNT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = altNT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = fullOT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = shortOT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = altOT.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = fullNC.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = shortNC.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        bookName = altNC.get(match);
-        if (bookName != null) {
-            return bookName.getBook();
-        }
-
-        for (BookName aBook: books.values()) {
-            if (aBook.match(match)) {
-                return aBook.getBook();
-            }
-        }
-
-        return null;
+        return trie.find(BookName.normalize(find, locale));
     }
 
     /**
@@ -188,54 +135,46 @@ import org.crosswire.common.util.StringUtil;
             }
         }
 
-        // Create the book name maps
+        // Create the book names and the trie to find them
         books = new LinkedHashMap<BibleBook, BookName>(ntCount + otCount + ncCount);
+        trie = new BookNameTrie();
 
         String className = BibleNames.class.getName();
         String shortClassName = ClassUtil.getShortClassName(className);
         ResourceBundle resources = ResourceBundle.getBundle(shortClassName, locale, CWClassLoader.instance(BibleNames.class));
 
-        fullNT = new HashMap<String, BookName>(ntCount);
-        shortNT = new HashMap<String, BookName>(ntCount);
-        altNT = new HashMap<String, BookName>(ntCount);
         for (int i = BibleBook.MATT.ordinal(); i <= BibleBook.REV.ordinal(); ++i) {
             BibleBook book = bibleBooks[i];
             if (v11n.containsBook(book)) {
-                store(resources, book, fullNT, shortNT, altNT);
+                store(resources, book, NT_NAMES);
             }
         }
 
-        fullOT = new HashMap<String, BookName>(otCount);
-        shortOT = new HashMap<String, BookName>(otCount);
-        altOT = new HashMap<String, BookName>(otCount);
         for (int i = BibleBook.GEN.ordinal(); i <= BibleBook.MAL.ordinal(); ++i) {
             BibleBook book = bibleBooks[i];
             if (v11n.containsBook(book)) {
-                store(resources, book, fullOT, shortOT, altOT);
+                store(resources, book, OT_NAMES);
             }
         }
 
-        fullNC = new HashMap<String, BookName>(ncCount);
-        shortNC = new HashMap<String, BookName>(ncCount);
-        altNC = new HashMap<String, BookName>(ncCount);
         if (v11n.containsBook(BibleBook.INTRO_BIBLE)) {
-            store(resources, BibleBook.INTRO_BIBLE, fullNC, shortNC, altNC);
+            store(resources, BibleBook.INTRO_BIBLE, NC_NAMES);
         }
         if (v11n.containsBook(BibleBook.INTRO_OT)) {
-            store(resources, BibleBook.INTRO_OT, fullNC, shortNC, altNC);
+            store(resources, BibleBook.INTRO_OT, NC_NAMES);
         }
         if (v11n.containsBook(BibleBook.INTRO_NT)) {
-            store(resources, BibleBook.INTRO_NT, fullNC, shortNC, altNC);
+            store(resources, BibleBook.INTRO_NT, NC_NAMES);
         }
         for (int i = BibleBook.REV.ordinal() + 1; i < bibleBooks.length; ++i) {
             BibleBook book = bibleBooks[i];
             if (v11n.containsBook(book)) {
-                store(resources, book, fullNC, shortNC, altNC);
+                store(resources, book, NC_NAMES);
             }
         }
     }
 
-    private void store(ResourceBundle resources, BibleBook book, Map fullMap, Map shortMap, Map altMap) {
+    private void store(ResourceBundle resources, BibleBook book, int group) {
         String osisName = book.getOSIS();
 
         String fullBook = getString(resources, osisName + FULL_KEY);
@@ -250,14 +189,17 @@ import org.crosswire.common.util.StringUtil;
         BookName bookName = new BookName(locale, BibleBook.fromOSIS(osisName), fullBook, shortBook, altBook);
         books.put(book, bookName);
 
-        fullMap.put(bookName.getNormalizedLongName(), bookName);
-
-        shortMap.put(bookName.getNormalizedShortName(), bookName);
+        // Exact names are preferred: full, then short, then alternate,
+        // for the New Testament, then the Old, then the rest.
+        String normalizedShortName = bookName.getNormalizedShortName();
+        trie.addBook(book);
+        trie.addName(bookName.getNormalizedLongName(), group + FULL_RANK, false);
+        trie.addName(normalizedShortName, group + SHORT_RANK, normalizedShortName.length() > 0);
 
         String[] alternates = StringUtil.split(BookName.normalize(altBook, locale), ',');
 
         for (int j = 0; j < alternates.length; j++) {
-            altMap.put(alternates[j], bookName);
+            trie.addName(alternates[j], group + ALT_RANK, true);
         }
     }
 
@@ -277,6 +219,16 @@ import org.crosswire.common.util.StringUtil;
     private static final String SHORT_KEY = ".Short";
     private static final String ALT_KEY = ".Alt";
 
+    /**
+     * The preference given to exact names, lowest first, by group and kind.
+     */
+    private static final int NT_NAMES = 0;
+    private static final int OT_NAMES = 3;
+    private static final int NC_NAMES = 6;
+    private static final int FULL_RANK = 0;
+    private static final int SHORT_RANK = 1;
+    private static final int ALT_RANK = 2;
+
     /** The locale for the Bible Names */
     private Locale locale;
 
@@ -286,56 +238,7 @@ import org.crosswire.common.util.StringUtil;
     private LinkedHashMap<BibleBook, BookName> books;
 
     /**
-     * The full names of the New Testament books of the Bible
-     * normalized, generated at runtime
-     */
-    private Map<String, BookName> fullNT;
-
-    /**
-     * The full names of the Old Testament books of the Bible
-     * normalized, generated at runtime
-     */
-    private Map<String, BookName> fullOT;
-
-    /**
-     * The full names of the Deuterocanonical books of the Bible
-     * normalized, generated at runtime
-     */
-    private Map<String, BookName> fullNC;
-
-    /**
-     * Standard shortened names for the New Testament books of the Bible,
-     * normalized, generated at runtime.
-     */
-    private Map<String, BookName> shortNT;
-
-    /**
-     * Standard shortened names for the Old Testament books of the Bible
-     * normalized, generated at runtime.
-     */
-    private Map<String, BookName> shortOT;
-
-    /**
-     * Standard shortened names for the Deuterocanonical books of the Bible
-     * normalized, generated at runtime.
-     */
-    private Map<String, BookName> shortNC;
-
-    /**
-     * Alternative shortened names for the New Testament books of the Bible
-     * normalized, generated at runtime.
-     */
-    private Map<String, BookName> altNT;
-
-    /**
-     * Alternative shortened names for the Old Testament books of the Bible
-     * normalized, generated at runtime.
-     */
-    private Map<String, BookName> altOT;
-
-    /**
-     * Alternative shortened names for the Deuterocanonical books of the Bible
-     * normalized, generated at runtime.
+     * All the names of the books, normalized, generated at runtime.
      */
-    private Map<String, BookName> altNC;
+    private BookNameTrie trie;
 }
@@ -21,7 +21,6 @@
 package org.crosswire.jsword.versification;
 
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 import org.crosswire.common.util.StringUtil;
 import org.crosswire.jsword.book.CaseType;
@@ -223,7 +222,22 @@ public final class BookName {
      * @return the normalized string
      */
     public static String normalize(String str, Locale locale) {
-        return normPattern.matcher(str).replaceAll("").toLowerCase(locale);
+        // This is done for every book name that is looked up,
+        // so a regular expression is too slow
+        int length = str.length();
+        StringBuilder buf = null;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c == '.' || c == ' ') {
+                if (buf == null) {
+                    buf = new StringBuilder(length);
+                    buf.append(str, 0, i);
+                }
+            } else if (buf != null) {
+                buf.append(c);
+            }
+        }
+        return (buf == null ? str : buf.toString()).toLowerCase(locale);
     }
 
     /**
@@ -297,8 +311,6 @@ public final class BookName {
         return BookName.bookCase;
     }
 
-    /** remove spaces and some punctuation in Book Name (make sure , is allowed) */
-    private static Pattern normPattern = Pattern.compile("[. ]");
 
     private BibleBook book;
     private String longName;
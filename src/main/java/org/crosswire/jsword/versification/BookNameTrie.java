@@ -0,0 +1,189 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.versification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A BookNameTrie finds a BibleBook from a normalized name, or the beginning of
+ * one, by walking the name a character at a time. It gives the same answers as
+ * looking the name up in maps of the full, short and alternate names and then
+ * matching it against each BookName in turn, but it looks at each character
+ * of the name only once.
+ *
+ * <p>
+ * Names are added in order of preference. When a name is exactly that of more
+ * than one book, the one added with the lowest rank wins, or the last one added
+ * if they have the same rank. When a name is only the beginning of a name, or
+ * begins with a short or alternate name, the book that was added first wins.
+ * </p>
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+/* package */ final class BookNameTrie {
+    /**
+     * Create an empty trie.
+     */
+    /* package */ BookNameTrie() {
+        root = new Node();
+        books = new ArrayList<BibleBook>();
+    }
+
+    /**
+     * Add a book, which is then preferred over those added after it when a
+     * name is matched in part. All its names must be added before those of the
+     * next book.
+     *
+     * @param book
+     *            the book to add
+     */
+    /* package */ void addBook(BibleBook book) {
+        books.add(book);
+    }
+
+    /**
+     * Add a normalized name of the book that was added last.
+     *
+     * @param name
+     *            the normalized name
+     * @param rank
+     *            the preference given to this name when it is matched exactly,
+     *            lowest first
+     * @param isPrefix
+     *            whether a longer name that begins with this one is a match
+     */
+    /* package */ void addName(String name, int rank, boolean isPrefix) {
+        int order = books.size() - 1;
+        Node node = root;
+        node.first = Math.min(node.first, order);
+        for (int i = 0; i < name.length(); i++) {
+            node = node.getOrAdd(name.charAt(i));
+            node.first = Math.min(node.first, order);
+        }
+
+        if (node.exact < 0 || rank <= node.exactRank) {
+            node.exact = order;
+            node.exactRank = rank;
+        }
+
+        if (isPrefix) {
+            node.prefixOf = Math.min(node.prefixOf, order);
+        }
+    }
+
+    /**
+     * Find the book that the normalized name belongs to.
+     *
+     * @param name
+     *            the normalized name
+     * @return the book or null if none matches
+     */
+    /* package */ BibleBook find(String name) {
+        int best = root.prefixOf;
+        Node node = root;
+        for (int i = 0; i < name.length() && node != null; i++) {
+            node = node.get(name.charAt(i));
+            if (node != null) {
+                best = Math.min(best, node.prefixOf);
+            }
+        }
+
+        if (node != null) {
+            if (node.exact >= 0) {
+                return books.get(node.exact);
+            }
+            best = Math.min(best, node.first);
+        }
+
+        return best < NONE ? books.get(best) : null;
+    }
+
+    /**
+     * Larger than the order of any book.
+     */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * A character of a name, with what is known of the names that pass
+     * through it.
+     */
+    private static final class Node {
+        Node get(char c) {
+            for (int i = 0; i < count; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAdd(char c) {
+            Node child = get(c);
+            if (child == null) {
+                if (count == keys.length) {
+                    char[] newKeys = new char[count * 2];
+                    System.arraycopy(keys, 0, newKeys, 0, count);
+                    keys = newKeys;
+                    Node[] newChildren = new Node[count * 2];
+                    System.arraycopy(children, 0, newChildren, 0, count);
+                    children = newChildren;
+                }
+                child = new Node();
+                keys[count] = c;
+                children[count++] = child;
+            }
+            return child;
+        }
+
+        /**
+         * The characters that follow this one, and where they lead
+         */
+        private char[] keys = new char[2];
+        private Node[] children = new Node[2];
+        private int count;
+
+        /**
+         * The first book with a name that passes through here
+         */
+        int first = NONE;
+
+        /**
+         * The book with a name that ends here, or -1
+         */
+        int exact = -1;
+        int exactRank;
+
+        /**
+         * The first book with a name ending here that longer names may begin
+         * with
+         */
+        int prefixOf = NONE;
+    }
+
+    private Node root;
+
+    /**
+     * The books, in the order they were added
+     */
+    private List<BibleBook> books;
+}
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.JSOtherMsg;
@@ -706,11 +707,6 @@ public class Versification implements ReferenceSystem, Serializable {
      * @return The new Verse
      */
     public Verse subtract(Verse verse, int n) {
-        int newVerse = verse.getVerse() - n;
-        // Try the simple case of the verse being in the same chapter
-        if (newVerse >= 0) {
-            return new Verse(verse.getVersification(), verse.getBook(), verse.getChapter(), newVerse);
-        }
         return decodeOrdinal(verse.getOrdinal() - n);
     }
 
@@ -729,31 +725,7 @@ public class Versification implements ReferenceSystem, Serializable {
             return null;
         }
 
-        BibleBook nextBook = verse.getBook();
-        int nextChapter = verse.getChapter();
-        int nextVerse = verse.getVerse() + 1;
-        if (nextVerse > getLastVerse(nextBook, nextChapter)) {
-            // Go to an introduction.
-            nextVerse = 0;
-            // of the next chapter
-            nextChapter += 1;
-            // check to see that the chapter is valid for the book
-            if (nextChapter > getLastChapter(nextBook)) {
-                // To to an introduction
-                nextChapter = 0;
-                // of the next book
-                nextBook = bookList.getNextBook(verse.getBook());
-            }
-        }
-
-        // nextBook is null when we try to increment past the last verse
-        // The test at the beginning is designed to prevent that
-        if (nextBook == null) {
-            assert false;
-            return null;
-        }
-
-        return new Verse(this, nextBook, nextChapter, nextVerse);
+        return decodeOrdinal(verse.getOrdinal() + 1);
     }
 
     /**
@@ -766,11 +738,6 @@ public class Versification implements ReferenceSystem, Serializable {
      * @return The new verse
      */
     public Verse add(Verse verse, int n) {
-        int newVerse = verse.getVerse() + n;
-        // Try the simple case of the verse being in the same chapter
-        if (newVerse <= getLastVerse(verse.getBook(), verse.getChapter())) {
-            return new Verse(verse.getVersification(), verse.getBook(), verse.getChapter(), newVerse);
-        }
         return decodeOrdinal(verse.getOrdinal() + n);
     }
 
@@ -952,14 +919,54 @@ public class Versification implements ReferenceSystem, Serializable {
         return total - otCount;
     }
 
+    /**
+     * The first ordinal of the chapter of an ordinal, which is that of its
+     * introduction, verse 0. For a book introduction, chapter 0, this is the
+     * book introduction itself. The chapter is looked up in a table rather than
+     * searched for.
+     *
+     * @param ordinal
+     *            the ordinal of a verse in this Versification
+     * @return the first ordinal of its chapter
+     */
+    public int getChapterStartOrdinal(int ordinal) {
+        OrdinalTable table = getOrdinalTable();
+        return chapterStarts[table.books[ordinal] & 0xFF][table.chapters[ordinal]];
+    }
+
+    /**
+     * The last ordinal of the chapter of an ordinal.
+     *
+     * @param ordinal
+     *            the ordinal of a verse in this Versification
+     * @return the last ordinal of its chapter
+     * @see #getChapterStartOrdinal(int)
+     */
+    public int getChapterEndOrdinal(int ordinal) {
+        OrdinalTable table = getOrdinalTable();
+        int bookIndex = table.books[ordinal] & 0xFF;
+        int chapter = table.chapters[ordinal];
+        int[] starts = chapterStarts[bookIndex];
+        if (chapter + 1 < starts.length) {
+            return starts[chapter + 1] - 1;
+        }
+        if (bookIndex + 1 < chapterStarts.length) {
+            return chapterStarts[bookIndex + 1][0] - 1;
+        }
+        return ntMaxOrdinal;
+    }
+
     /**
      * Where does this verse come in the Bible. This will unwind the value returned by getOrdinal(Verse).
      * If the ordinal value is less than 0 or greater than the last verse in this Versification,
      * then constrain it to the first or last verse in this Versification.
+     * The book and chapter of each ordinal are looked up in a table rather
+     * than searched for.
      *
      * @param ordinal
      *            The ordinal number of the verse
-     * @return A Verse
+     * @return A Verse, which is shared by all callers when verse sharing is on
+     * @see #isVerseSharing()
      */
     public Verse decodeOrdinal(int ordinal) {
         int ord = ordinal;
@@ -970,72 +977,112 @@ public class Versification implements ReferenceSystem, Serializable {
             ord = ntMaxOrdinal;
         }
 
-        // Handle three special cases
-        // Book/Module introduction
-        if (ord == 0) {
-            return new Verse(this, BibleBook.INTRO_BIBLE, 0, 0);
+        OrdinalTable table = getOrdinalTable();
+        if (verseSharing) {
+            Verse shared = table.verses.get(ord);
+            if (shared == null) {
+                // Whoever gets there first decides which Verse is shared
+                table.verses.compareAndSet(ord, null, table.decode(this, ord));
+                shared = table.verses.get(ord);
+            }
+            return shared;
         }
 
-        // OT introduction
-        if (ord == 1) {
-            return new Verse(this, BibleBook.INTRO_OT, 0, 0);
-        }
+        return table.decode(this, ord);
+    }
 
-        // NT introduction
-        if (ord == otMaxOrdinal + 1) {
-            return new Verse(this, BibleBook.INTRO_NT, 0, 0);
-        }
+    /**
+     * Are the Verses given by decodeOrdinal shared, so that decoding the same
+     * ordinal twice gives the same Verse? A Verse cannot be changed, so this
+     * is safe and saves making a new Verse for each ordinal. It costs a
+     * reference for each verse of each Versification that is used, and the
+     * Verses that have been decoded.
+     *
+     * @return whether decoded Verses are shared
+     */
+    public static boolean isVerseSharing() {
+        return verseSharing;
+    }
 
-        // To find the book, do a binary search in chapterStarts against chapter 0
-        int low = 0;
-        int high = chapterStarts.length;
-        int match = -1;
-
-        while (high - low > 1) {
-            // use >>> to keep mid always in range
-            int mid = (low + high) >>> 1;
-
-            // Compare the for the item at "mid"
-            int cmp = chapterStarts[mid][0] - ord;
-            if (cmp < 0) {
-                low = mid;
-            } else if (cmp > 0) {
-                high = mid;
-            } else {
-                match = mid;
-                break;
+    /**
+     * Set whether the Verses given by decodeOrdinal are shared.
+     *
+     * @param sharing
+     *            whether decoded Verses are shared
+     * @see #isVerseSharing()
+     */
+    public static void setVerseSharing(boolean sharing) {
+        verseSharing = sharing;
+    }
+
+    /**
+     * Get the lookup tables for ordinals, building them the first time.
+     * They are not serialized, so they are built lazily rather than in the
+     * constructor.
+     *
+     * @return the tables
+     */
+    private OrdinalTable getOrdinalTable() {
+        OrdinalTable table = ordinalTable;
+        if (table == null) {
+            synchronized (this) {
+                table = ordinalTable;
+                if (table == null) {
+                    table = new OrdinalTable(chapterStarts, ntMaxOrdinal);
+                    ordinalTable = table;
+                }
             }
         }
+        return table;
+    }
 
-        // If we didn't have an exact match then use the low value
-        int bookIndex = match >= 0 ? match : low;
-        BibleBook book = bookList.getBook(bookIndex);
-
-        // To find the chapter, do a binary search in chapterStarts against bookIndex
-        low = 0;
-        high = chapterStarts[bookIndex].length;
-        match = -1;
-
-        while (high - low > 1) {
-            // use >>> to keep mid always in range
-            int mid = (low + high) >>> 1;
-
-            // Compare the for the item at "mid"
-            int cmp = chapterStarts[bookIndex][mid] - ord;
-            if (cmp < 0) {
-                low = mid;
-            } else if (cmp > 0) {
-                high = mid;
-            } else {
-                match = mid;
-                break;
+    /**
+     * For each ordinal, the index of its book and its chapter, so that an
+     * ordinal can be decoded without searching chapterStarts, and the Verses
+     * that have been decoded so far.
+     */
+    private static final class OrdinalTable {
+        OrdinalTable(int[][] chapterStarts, int maxOrdinal) {
+            books = new byte[maxOrdinal + 1];
+            chapters = new short[maxOrdinal + 1];
+            verses = new AtomicReferenceArray<Verse>(maxOrdinal + 1);
+            for (int bookIndex = 0; bookIndex < chapterStarts.length; bookIndex++) {
+                int[] starts = chapterStarts[bookIndex];
+                int bookEnd = bookIndex + 1 < chapterStarts.length ? chapterStarts[bookIndex + 1][0] : maxOrdinal + 1;
+                for (int chapter = 0; chapter < starts.length; chapter++) {
+                    int chapterEnd = chapter + 1 < starts.length ? starts[chapter + 1] : bookEnd;
+                    for (int ord = starts[chapter]; ord < chapterEnd; ord++) {
+                        books[ord] = (byte) bookIndex;
+                        chapters[ord] = (short) chapter;
+                    }
+                }
             }
         }
 
-        // If we didn't have an exact match then use the low value
-        int chapterIndex = match >= 0 ? match : low;
-        int verse = chapterIndex == 0 ? 0 : ord - chapterStarts[bookIndex][chapterIndex];
-        return new Verse(this, book, chapterIndex, verse);
+        /**
+         * Make a new Verse for the ordinal, which must be in range.
+         */
+        Verse decode(Versification v11n, int ord) {
+            int bookIndex = books[ord] & 0xFF;
+            int chapter = chapters[ord];
+            int verse = ord - v11n.chapterStarts[bookIndex][chapter];
+            return new Verse(v11n, v11n.bookList.getBook(bookIndex), chapter, verse);
+        }
+
+        /**
+         * The index of the book of each ordinal in the BibleBookList
+         */
+        private byte[] books;
+
+        /**
+         * The chapter of each ordinal
+         */
+        private short[] chapters;
+
+        /**
+         * The shared Verse of each ordinal, once it has been decoded
+         */
+        private AtomicReferenceArray<Verse> verses;
     }
 
     /**
@@ -1346,6 +1393,12 @@ public class Versification implements ReferenceSystem, Serializable {
      */
     private int[][] chapterStarts;
 
+    /** The lookup tables for decoding ordinals, built when first needed */
+    private transient volatile OrdinalTable ordinalTable;
+
+    /** Whether decodeOrdinal shares Verses */
+    private static volatile boolean verseSharing = true;
+
     /** we cache the Localized Bible Names because there is quite a bit of processing going on for each individual Locale */
     private transient Map<Locale, BibleNames> localizedBibleNames = new HashMap<Locale, BibleNames>();
 
@@ -0,0 +1,162 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.versification.system;
+
+import java.util.Arrays;
+
+/**
+ * A MappingTable holds, for each of a range of indexes, a small set of int
+ * values, mostly none or one. A single value is kept in place, and only the
+ * indexes with more than one have an array of their own, in ascending order.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+/* package */ final class MappingTable {
+    /**
+     * Create a table in which no index has a value.
+     * 
+     * @param size
+     *            the number of indexes
+     */
+    /* package */MappingTable(int size) {
+        values = new int[size];
+        Arrays.fill(values, NONE);
+        multiple = new int[INITIAL_MULTIPLE][];
+    }
+
+    /**
+     * @return the number of indexes
+     */
+    /* package */int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index
+     *            the index
+     * @return the number of values of the index
+     */
+    /* package */int count(int index) {
+        int value = values[index];
+        if (value >= 0) {
+            return 1;
+        }
+        if (value == NONE) {
+            return 0;
+        }
+        return multiple[-value - 2].length;
+    }
+
+    /**
+     * @param index
+     *            the index
+     * @param n
+     *            which of its values, from 0 for the lowest
+     * @return the value
+     */
+    /* package */int get(int index, int n) {
+        int value = values[index];
+        if (value >= 0) {
+            return value;
+        }
+        return multiple[-value - 2][n];
+    }
+
+    /**
+     * Give an index another value. A value that it already has is not added
+     * again.
+     * 
+     * @param index
+     *            the index
+     * @param value
+     *            the value, which is not negative
+     */
+    /* package */void add(int index, int value) {
+        int current = values[index];
+        if (current == NONE) {
+            values[index] = value;
+            return;
+        }
+
+        if (current >= 0) {
+            if (current == value) {
+                return;
+            }
+            if (multipleCount == multiple.length) {
+                int[][] bigger = new int[multipleCount * 2][];
+                System.arraycopy(multiple, 0, bigger, 0, multipleCount);
+                multiple = bigger;
+            }
+            multiple[multipleCount] = new int[] {
+                    Math.min(current, value), Math.max(current, value)
+            };
+            values[index] = -2 - multipleCount;
+            multipleCount++;
+            return;
+        }
+
+        int[] old = multiple[-current - 2];
+        int at = Arrays.binarySearch(old, value);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        int[] more = new int[old.length + 1];
+        System.arraycopy(old, 0, more, 0, at);
+        more[at] = value;
+        System.arraycopy(old, at, more, at + 1, old.length - at);
+        multiple[-current - 2] = more;
+    }
+
+    /**
+     * Take away all the values of an index.
+     * 
+     * @param index
+     *            the index
+     */
+    /* package */void clear(int index) {
+        // An array of several values is left unused
+        values[index] = NONE;
+    }
+
+    /**
+     * Marks an index without a value.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The number of indexes with several values to allow for at first
+     */
+    private static final int INITIAL_MULTIPLE = 16;
+
+    /**
+     * The value of each index, NONE or, for several values, -2 less the
+     * position of their array in multiple.
+     */
+    private int[] values;
+
+    /**
+     * The values of the indexes that have several
+     */
+    private int[][] multiple;
+    private int multipleCount;
+}
@@ -0,0 +1,230 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.versification.system;
+
+import java.util.BitSet;
+
+import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.passage.AbstractPassage;
+import org.crosswire.jsword.passage.OrdinalCursor;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A VersificationMapping gives the verses of one Versification that are the
+ * same as a verse of another, by a table from the ordinal of each verse to the
+ * ordinals of its counterparts. A verse may have none, as when a book is
+ * missing, one, or several, as when one Versification splits a verse that the
+ * other does not.
+ * 
+ * <p>
+ * Nothing is parsed or worked out when mapping, so a Passage is mapped in time
+ * proportional to the number of its verses. A VersificationMapping does not
+ * change, so it may be used by any number of threads at once.
+ * </p>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see VersificationMappings#getMapping(Versification, Versification)
+ */
+public final class VersificationMapping {
+    /**
+     * Create a mapping from a table of ordinals.
+     * 
+     * @param from
+     *            the Versification of the verses to map
+     * @param to
+     *            the Versification they are mapped to
+     * @param table
+     *            the ordinals in to of each ordinal in from
+     * @param exact
+     *            whether the table is known to be right
+     */
+    /* package */VersificationMapping(Versification from, Versification to, MappingTable table, boolean exact) {
+        this.from = from;
+        this.to = to;
+        this.table = table;
+        this.exact = exact;
+    }
+
+    /**
+     * @return the Versification of the verses that are mapped
+     */
+    public Versification getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the Versification that verses are mapped to
+     */
+    public Versification getTo() {
+        return to;
+    }
+
+    /**
+     * Is the mapping known to be right? It is not when either Versification
+     * has no data relating it to the common numbering, and so its verses were
+     * taken to be those with the same reference. For example, Ps.10 of the
+     * Vulgate is then mapped to Ps.10 of the KJV, rather than to Ps.11 where
+     * it belongs.
+     * 
+     * @return true if every verse is mapped by what is known of both
+     *         Versifications
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Does a verse have a counterpart?
+     * 
+     * @param ordinal
+     *            the ordinal of the verse in the Versification mapped from
+     * @return true if there is at least one verse that it maps to
+     */
+    public boolean isMapped(int ordinal) {
+        return table.count(ordinal) > 0;
+    }
+
+    /**
+     * Map the ordinal of a verse.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse in the Versification mapped from
+     * @return the first ordinal that it maps to, or -1 if there is none
+     */
+    public int map(int ordinal) {
+        if (table.count(ordinal) == 0) {
+            return -1;
+        }
+        return table.get(ordinal, 0);
+    }
+
+    /**
+     * Map the ordinal of a verse to all of its counterparts.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse in the Versification mapped from
+     * @return the ordinals that it maps to in Biblical order, perhaps none
+     */
+    public int[] mapAll(int ordinal) {
+        int count = table.count(ordinal);
+        int[] ordinals = new int[count];
+        for (int i = 0; i < count; i++) {
+            ordinals[i] = table.get(ordinal, i);
+        }
+        return ordinals;
+    }
+
+    /**
+     * Map a verse.
+     * 
+     * @param verse
+     *            a verse of the Versification mapped from
+     * @return the first verse that it maps to, or null if there is none
+     * @throws IllegalArgumentException
+     *             if the verse is of another Versification
+     */
+    public Verse map(Verse verse) {
+        checkVersification(verse.getVersification());
+        int ordinal = map(verse.getOrdinal());
+        if (ordinal < 0) {
+            return null;
+        }
+        return to.decodeOrdinal(ordinal);
+    }
+
+    /**
+     * Map all the verses of a Passage.
+     * 
+     * @param ref
+     *            a Passage of the Versification mapped from
+     * @return a new Passage of the verses that they map to, which is empty if
+     *         none of them has a counterpart
+     * @throws IllegalArgumentException
+     *             if the Passage is of another Versification
+     */
+    public Passage map(Passage ref) {
+        checkVersification(ref.getVersification());
+
+        BitSet mapped = new BitSet(to.maximumOrdinal() + 1);
+        OrdinalCursor cursor = ref.ordinalCursor();
+        for (int ord = cursor.nextOrdinal(); ord >= 0; ord = cursor.nextOrdinal()) {
+            int count = table.count(ord);
+            for (int i = 0; i < count; i++) {
+                mapped.set(table.get(ord, i));
+            }
+        }
+
+        Passage result = (Passage) PassageKeyFactory.instance().createEmptyKeyList(to);
+
+        // Some speedups
+        AbstractPassage aresult = null;
+        if (result instanceof AbstractPassage) {
+            aresult = (AbstractPassage) result;
+            aresult.raiseEventSuppresion();
+            aresult.raiseNormalizeProtection();
+        }
+
+        // Add the runs of consecutive verses
+        int start = mapped.nextSetBit(0);
+        while (start >= 0) {
+            int end = mapped.nextClearBit(start) - 1;
+            result.add(new VerseRange(to, to.decodeOrdinal(start), to.decodeOrdinal(end)));
+            start = mapped.nextSetBit(end + 1);
+        }
+
+        if (aresult != null) {
+            aresult.lowerNormalizeProtection();
+            aresult.lowerEventSuppressionAndTest();
+        }
+        return result;
+    }
+
+    private void checkVersification(Versification v11n) {
+        if (!from.getName().equals(v11n.getName())) {
+            throw new IllegalArgumentException(JSOtherMsg.lookupText("Cannot map from {0}, only from {1}", v11n.getName(), from.getName()));
+        }
+    }
+
+    /**
+     * The Versification of the verses that are mapped
+     */
+    private Versification from;
+
+    /**
+     * The Versification that verses are mapped to
+     */
+    private Versification to;
+
+    /**
+     * The ordinals in to of each ordinal in from
+     */
+    private MappingTable table;
+
+    /**
+     * Whether the table is known to be right
+     */
+    private boolean exact;
+}
@@ -0,0 +1,409 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.versification.system;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.crosswire.common.util.PropertyMap;
+import org.crosswire.common.util.ResourceUtil;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The VersificationMappings class manages the mapping of verses from one
+ * Versification to another. It delays the construction of a mapping until
+ * getMapping(from, to) is called, and keeps it from then on.
+ * 
+ * <p>
+ * Each Versification is related to a common numbering of verses, which is that
+ * of the KJV extended by the books that the KJV does not have. Most verses
+ * have the same reference in the common numbering. Those that do not are
+ * listed in a resource named after the Versification, such as
+ * Synodal.mapping.properties, which is read when first needed. Two
+ * Versifications are mapped through the common numbering, into a table from
+ * each verse of the one to its verses in the other.
+ * </p>
+ * 
+ * <p>
+ * A Versification that is neither the common numbering nor listed in a
+ * resource is taken to have every verse at its own reference. That is often
+ * wrong, as with the Psalms of the Vulgate, so a mapping to or from it is not
+ * exact. See {@link VersificationMapping#isExact()}.
+ * </p>
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ * @see VersificationMapping
+ */
+public final class VersificationMappings {
+    /**
+     * Get the singleton instance of VersificationMappings.
+     * 
+     * @return the singleton
+     */
+    public static VersificationMappings instance() {
+        return instance;
+    }
+
+    /**
+     * Get the mapping of the verses of one Versification to another.
+     * 
+     * @param from
+     *            the Versification of the verses to map
+     * @param to
+     *            the Versification to map them to
+     * @return the mapping, which is not exact if either Versification is not
+     *         known to the common numbering
+     */
+    public VersificationMapping getMapping(Versification from, Versification to) {
+        String key = from.getName() + SEPARATOR + to.getName();
+        VersificationMapping mapping = mappings.get(key);
+        if (mapping == null) {
+            mapping = createMapping(from, to);
+            mappings.put(key, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * Map a verse to another Versification.
+     * 
+     * @param verse
+     *            the verse to map
+     * @param to
+     *            the Versification to map it to
+     * @return the first verse that it maps to, or null if there is none
+     */
+    public Verse map(Verse verse, Versification to) {
+        return getMapping(verse.getVersification(), to).map(verse);
+    }
+
+    /**
+     * Map the verses of a Passage to another Versification.
+     * 
+     * @param ref
+     *            the Passage to map
+     * @param to
+     *            the Versification to map it to
+     * @return a new Passage of the verses that they map to
+     */
+    public Passage map(Passage ref, Versification to) {
+        return getMapping(ref.getVersification(), to).map(ref);
+    }
+
+    /**
+     * Join the tables of the two Versifications to the common numbering, by
+     * way of the verses of the target that have each place in it.
+     */
+    private VersificationMapping createMapping(Versification from, Versification to) {
+        MappingTable fromPlaces = null;
+        MappingTable toPlaces = null;
+        boolean exact = true;
+        if (getResourceName(from).equals(getResourceName(to))) {
+            // They differ from the common numbering in the same way, so each
+            // verse is the one with the same reference. Going through the
+            // common numbering would muddle verses that share a place in it.
+            fromPlaces = createReferencePlaces(from);
+            toPlaces = createReferencePlaces(to);
+        } else {
+            fromPlaces = getPlaces(from);
+            toPlaces = getPlaces(to);
+            exact = !guessed.contains(from.getName()) && !guessed.contains(to.getName());
+        }
+
+        // Number the places of the target and list the verses at each
+        Map<Integer, Integer> numbers = new HashMap<Integer, Integer>();
+        int count = 0;
+        for (int ord = 0; ord < toPlaces.size(); ord++) {
+            count += toPlaces.count(ord);
+        }
+        MappingTable verses = new MappingTable(count);
+        for (int ord = 0; ord < toPlaces.size(); ord++) {
+            for (int i = 0; i < toPlaces.count(ord); i++) {
+                Integer place = Integer.valueOf(toPlaces.get(ord, i));
+                Integer number = numbers.get(place);
+                if (number == null) {
+                    number = Integer.valueOf(numbers.size());
+                    numbers.put(place, number);
+                }
+                verses.add(number.intValue(), ord);
+            }
+        }
+
+        MappingTable table = new MappingTable(fromPlaces.size());
+        for (int ord = 0; ord < fromPlaces.size(); ord++) {
+            for (int i = 0; i < fromPlaces.count(ord); i++) {
+                Integer number = numbers.get(Integer.valueOf(fromPlaces.get(ord, i)));
+                if (number == null) {
+                    continue;
+                }
+                int n = number.intValue();
+                for (int j = 0; j < verses.count(n); j++) {
+                    table.add(ord, verses.get(n, j));
+                }
+            }
+        }
+
+        return new VersificationMapping(from, to, table, exact);
+    }
+
+    /**
+     * Get the places in the common numbering of each verse of a
+     * Versification.
+     */
+    private MappingTable getPlaces(Versification v11n) {
+        MappingTable places = numberings.get(v11n.getName());
+        if (places == null) {
+            places = createPlaces(v11n);
+            numberings.put(v11n.getName(), places);
+        }
+        return places;
+    }
+
+    private MappingTable createPlaces(Versification v11n) {
+        int maximum = v11n.maximumOrdinal();
+        MappingTable places = createReferencePlaces(v11n);
+        if (isCommon(v11n)) {
+            return places;
+        }
+
+        PropertyMap differences = null;
+        try {
+            differences = ResourceUtil.getProperties(getResourceName(v11n));
+        } catch (IOException ex) {
+            log.warn("Unable to read the mapping of {}", v11n.getName(), ex);
+            guessed.add(v11n.getName());
+            return places;
+        }
+
+        if (differences.isEmpty()) {
+            log.debug("There is no mapping of {}, so its verses are taken to be at their own references", v11n.getName());
+            guessed.add(v11n.getName());
+            return places;
+        }
+
+        // The verses that have been given their places, which replace the
+        // place of the same reference
+        BitSet given = new BitSet(maximum + 1);
+        for (Map.Entry<String, String> entry : differences.entrySet()) {
+            int[] range = parseRange(entry.getKey());
+            int[] others = entry.getValue().length() == 0 ? NO_RANGE : parseRange(entry.getValue());
+            if (range == null || others == null || !isValid(v11n, range)) {
+                log.warn("Ignoring the mapping {}={} of {}", entry.getKey(), entry.getValue(), v11n.getName());
+                continue;
+            }
+
+            int first = v11n.getOrdinal(new Verse(v11n, BibleBook.values()[range[BOOK]], range[CHAPTER], range[START]));
+            int count = range[END] - range[START] + 1;
+            int otherCount = others == NO_RANGE ? 0 : others[END] - others[START] + 1;
+            if (count != otherCount && count != 1 && otherCount > 1) {
+                log.warn("Ignoring the mapping {}={} of {}", entry.getKey(), entry.getValue(), v11n.getName());
+                continue;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int ord = first + i;
+                if (!given.get(ord)) {
+                    places.clear(ord);
+                    given.set(ord);
+                }
+
+                if (count == otherCount) {
+                    // Verse by verse
+                    places.add(ord, getPlace(others, others[START] + i));
+                } else {
+                    // All of the one to each of the other
+                    for (int j = 0; j < otherCount; j++) {
+                        places.add(ord, getPlace(others, others[START] + j));
+                    }
+                }
+            }
+        }
+
+        return places;
+    }
+
+    /**
+     * Give each verse of a Versification the place of its own reference.
+     */
+    private static MappingTable createReferencePlaces(Versification v11n) {
+        int maximum = v11n.maximumOrdinal();
+        MappingTable places = new MappingTable(maximum + 1);
+        for (int ord = 0; ord <= maximum; ord++) {
+            Verse verse = v11n.decodeOrdinal(ord);
+            places.add(ord, getPlace(verse.getBook(), verse.getChapter(), verse.getVerse()));
+        }
+        return places;
+    }
+
+    /**
+     * Is a Versification the common numbering for all the books it has?
+     */
+    private static boolean isCommon(Versification v11n) {
+        String name = v11n.getName();
+        return SystemKJV.V11N_NAME.equals(name) || SystemKJVA.V11N_NAME.equals(name);
+    }
+
+    /**
+     * Get the name of the resource that lists the verses of a Versification
+     * that are not at the same reference in the common numbering.
+     */
+    private static String getResourceName(Versification v11n) {
+        String name = v11n.getName();
+        // SynodalP is Synodal without the Deuterocanon
+        if (SystemSynodalP.V11N_NAME.equals(name)) {
+            name = SystemSynodal.V11N_NAME;
+        }
+        return name + MAPPING_SUFFIX;
+    }
+
+    /**
+     * Parse an osisRef to a verse, or to a range of verses in one chapter.
+     * 
+     * @return the book, chapter and first and last verses, or null if it is not
+     *         valid
+     */
+    private static int[] parseRange(String osisRef) {
+        String ref = osisRef.trim();
+        int dash = ref.indexOf('-');
+        int[] start = parseVerse(dash < 0 ? ref : ref.substring(0, dash));
+        int[] end = dash < 0 ? start : parseVerse(ref.substring(dash + 1));
+        if (start == null || end == null || start[BOOK] != end[BOOK] || start[CHAPTER] != end[CHAPTER] || start[START] > end[START]) {
+            return null;
+        }
+        return new int[] {
+                start[BOOK], start[CHAPTER], start[START], end[START]
+        };
+    }
+
+    private static int[] parseVerse(String osisID) {
+        String[] parts = osisID.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        BibleBook book = BibleBook.fromOSIS(parts[0]);
+        if (book == null) {
+            return null;
+        }
+        try {
+            int chapter = Integer.parseInt(parts[1]);
+            int verse = Integer.parseInt(parts[2]);
+            if (chapter < 0 || chapter > MAX_NUMBER || verse < 0 || verse > MAX_NUMBER) {
+                return null;
+            }
+            return new int[] {
+                    book.ordinal(), chapter, verse
+            };
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isValid(Versification v11n, int[] range) {
+        BibleBook book = BibleBook.values()[range[BOOK]];
+        return v11n.containsBook(book) && range[CHAPTER] <= v11n.getLastChapter(book) && range[END] <= v11n.getLastVerse(book, range[CHAPTER]);
+    }
+
+    private static int getPlace(int[] range, int verse) {
+        return getPlace(BibleBook.values()[range[BOOK]], range[CHAPTER], verse);
+    }
+
+    /**
+     * Get the place of a reference in the common numbering. No chapter and no
+     * verse number is more than a byte.
+     */
+    private static int getPlace(BibleBook book, int chapter, int verse) {
+        return book.ordinal() << 16 | chapter << 8 | verse;
+    }
+
+    /**
+     * This class is a singleton, enforced by a private constructor.
+     */
+    private VersificationMappings() {
+        mappings = new ConcurrentHashMap<String, VersificationMapping>();
+        numberings = new ConcurrentHashMap<String, MappingTable>();
+        guessed = Collections.synchronizedSet(new HashSet<String>());
+    }
+
+    /**
+     * The parts of a parsed range
+     */
+    private static final int BOOK = 0;
+    private static final int CHAPTER = 1;
+    private static final int START = 2;
+    private static final int END = 3;
+
+    /**
+     * A parsed range that stands for no verses
+     */
+    private static final int[] NO_RANGE = new int[0];
+
+    /**
+     * The largest chapter or verse number
+     */
+    private static final int MAX_NUMBER = 255;
+
+    /**
+     * Separates the names of the Versifications in the key of a mapping.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * Ends the name of the resource of a Versification.
+     */
+    private static final String MAPPING_SUFFIX = ".mapping";
+
+    /**
+     * The mappings that have been made, given by the names of their
+     * Versifications.
+     */
+    private Map<String, VersificationMapping> mappings;
+
+    /**
+     * The places in the common numbering of the verses of each Versification,
+     * given by its name.
+     */
+    private Map<String, MappingTable> numberings;
+
+    /**
+     * The names of the Versifications whose places in the common numbering
+     * are only those of their own references, for want of a resource.
+     */
+    private Set<String> guessed;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(VersificationMappings.class);
+
+    private static final VersificationMappings instance = new VersificationMappings();
+}
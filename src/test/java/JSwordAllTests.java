@@ -41,7 +41,11 @@ public class JSwordAllTests extends TestCase {
         suite.addTest(org.crosswire.jsword.book.sword.AllTests.suite());
         suite.addTest(org.crosswire.jsword.passage.AllTests.suite());
         suite.addTest(org.crosswire.jsword.bridge.AllTests.suite());
+        suite.addTest(org.crosswire.jsword.index.AllTests.suite());
+        suite.addTest(org.crosswire.jsword.index.lucene.AllTests.suite());
         suite.addTest(org.crosswire.jsword.index.lucene.analysis.AllTests.suite());
+        suite.addTest(org.crosswire.jsword.index.query.AllTests.suite());
+        suite.addTest(org.crosswire.jsword.index.search.AllTests.suite());
         suite.addTest(org.crosswire.jsword.versification.AllTests.suite());
         return suite;
     }
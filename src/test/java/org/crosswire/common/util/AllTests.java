@@ -39,6 +39,7 @@ public class AllTests {
         suite.addTest(new TestSuite(LoggerTest.class));
         suite.addTest(new TestSuite(LanguageTest.class));
         suite.addTest(new TestSuite(LanguagesTest.class));
+        suite.addTest(new TestSuite(WorkerPoolTest.class));
         // $JUnit-END$
         return suite;
     }
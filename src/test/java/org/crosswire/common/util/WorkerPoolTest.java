@@ -0,0 +1,89 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.common.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class WorkerPoolTest extends TestCase {
+    public WorkerPoolTest(String s) {
+        super(s);
+    }
+
+    @Override
+    protected void setUp() {
+        pool = new WorkerPool("WorkerPoolTest", 3);
+    }
+
+    @Override
+    protected void tearDown() {
+        pool.shutdown();
+    }
+
+    public void testInvokeAllKeepsOrder() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                public Integer call() throws InterruptedException {
+                    // finish the early tasks last
+                    Thread.sleep(20 - value);
+                    return Integer.valueOf(value);
+                }
+            });
+        }
+
+        List<Integer> results = pool.invokeAll(tasks);
+        assertEquals(20, results.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, results.get(i).intValue());
+        }
+    }
+
+    public void testInvokeAllFailure() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        tasks.add(new Callable<Integer>() {
+            public Integer call() throws IOException {
+                throw new IOException("failed");
+            }
+        });
+
+        try {
+            pool.invokeAll(tasks);
+            fail("The failure of the task should have been reported");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    private WorkerPool pool;
+}
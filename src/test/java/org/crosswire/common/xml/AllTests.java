@@ -36,6 +36,7 @@ public class AllTests {
         TestSuite suite = new TestSuite("Test for org.crosswire.common.xml");
         // $JUnit-BEGIN$
         suite.addTestSuite(XMLUtilTest.class);
+        suite.addTestSuite(RenderedOutputCacheTest.class);
         // $JUnit-END$
         return suite;
     }
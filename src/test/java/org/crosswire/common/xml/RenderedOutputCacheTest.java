@@ -0,0 +1,200 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.common.xml;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class RenderedOutputCacheTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        xsl = File.createTempFile("rendered", ".xsl");
+        Writer out = new FileWriter(xsl);
+        out.write("<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+                + "<xsl:param name='p' select='0'/>"
+                + "<xsl:template match='/'><out><xsl:value-of select='$p'/>:<xsl:value-of select='.'/></out></xsl:template>"
+                + "</xsl:stylesheet>");
+        out.close();
+        dir = new File(xsl.getParentFile(), xsl.getName() + ".dir");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+        xsl.delete();
+    }
+
+    public void testHit() throws Exception {
+        RenderedOutputCache cache = new RenderedOutputCache(100000);
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        String first = cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        String second = cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        assertEquals(first, second);
+        assertTrue(first.indexOf("1:text") >= 0);
+        assertEquals(1, xml.count);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testParameterChangesKey() throws Exception {
+        RenderedOutputCache cache = new RenderedOutputCache(100000);
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        String first = cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        String second = cache.writeToString("KJV", "Gen 1", htmlsep(xml, "2"));
+        assertFalse(first.equals(second));
+        assertEquals(2, xml.count);
+    }
+
+    public void testInvalidate() throws Exception {
+        RenderedOutputCache cache = new RenderedOutputCache(100000);
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        cache.writeToString("ESV", "Gen 1", htmlsep(xml, "1"));
+        cache.invalidate("KJV");
+        cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        cache.writeToString("ESV", "Gen 1", htmlsep(xml, "1"));
+        assertEquals(3, xml.count);
+
+        cache.clear();
+        assertEquals(0, cache.getMemorySize());
+    }
+
+    public void testInvalidateWhileRendering() throws Exception {
+        final RenderedOutputCache cache = new RenderedOutputCache(100000);
+        CountingProvider xml = new CountingProvider("<a>text</a>") {
+            @Override
+            public void provideSAXEvents(ContentHandler handler) throws SAXException {
+                // As if the book changed while the chapter was being rendered
+                if (count == 0) {
+                    cache.invalidate("KJV");
+                }
+                super.provideSAXEvents(handler);
+            }
+        };
+        cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        assertEquals(0, cache.getMemorySize());
+        // Nothing is rendering any more, so the invalidation is not needed
+        assertEquals(0, cache.getInvalidationCount());
+        cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        assertEquals(2, xml.count);
+        assertEquals(1, cache.getHits());
+
+        // Other sources are kept as ever
+        cache.writeToString("ESV", "Gen 1", htmlsep(xml, "1"));
+        cache.writeToString("ESV", "Gen 1", htmlsep(xml, "1"));
+        assertEquals(3, xml.count);
+    }
+
+    public void testSpillToDisk() throws Exception {
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        long size = new RenderedOutputCache(100000).writeToString("KJV", "Gen 1", htmlsep(xml, "1")).length() * 2L + 40;
+        xml.count = 0;
+
+        // Room in memory for only one of them
+        RenderedOutputCache cache = new RenderedOutputCache(size, dir, 100000);
+        String first = cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        cache.writeToString("KJV", "Gen 2", htmlsep(xml, "1"));
+        assertEquals(size, cache.getDiskSize());
+        assertEquals(size, cache.getMemorySize());
+
+        assertEquals(first, cache.writeToString("KJV", "Gen 1", htmlsep(xml, "1")));
+        assertEquals(2, xml.count);
+
+        cache.invalidate("KJV");
+        assertEquals(0, cache.getMemorySize());
+        assertEquals(0, cache.getDiskSize());
+        assertEquals(0, dir.list().length);
+    }
+
+    public void testInvalidationsForgotten() throws Exception {
+        RenderedOutputCache cache = new RenderedOutputCache(100000);
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        for (int i = 0; i < 100; i++) {
+            String source = "Book" + i;
+            cache.writeToString(source, "Gen 1", htmlsep(xml, "1"));
+            cache.invalidate(source);
+        }
+        assertEquals(0, cache.getInvalidationCount());
+    }
+
+    public void testLeftoversDeleted() throws Exception {
+        CountingProvider xml = new CountingProvider("<a>text</a>");
+        long size = new RenderedOutputCache(100000).writeToString("KJV", "Gen 1", htmlsep(xml, "1")).length() * 2L + 40;
+
+        // As if an earlier run had spilled to disk and then stopped
+        RenderedOutputCache earlier = new RenderedOutputCache(size, dir, 100000);
+        earlier.writeToString("KJV", "Gen 1", htmlsep(xml, "1"));
+        earlier.writeToString("KJV", "Gen 2", htmlsep(xml, "1"));
+        assertEquals(1, dir.list().length);
+
+        RenderedOutputCache cache = new RenderedOutputCache(size, dir, 100000);
+        assertEquals(0, dir.list().length);
+        cache.writeToString("KJV", "Gen 3", htmlsep(xml, "1"));
+        cache.writeToString("KJV", "Gen 4", htmlsep(xml, "1"));
+        assertEquals(size, cache.getDiskSize());
+        assertEquals(1, dir.list().length);
+    }
+
+    private TransformingSAXEventProvider htmlsep(SAXEventProvider xml, String param) {
+        TransformingSAXEventProvider htmlsep = new TransformingSAXEventProvider(xsl.toURI(), xml);
+        htmlsep.setParameter("p", param);
+        return htmlsep;
+    }
+
+    /**
+     * Counts how often the XML is read.
+     */
+    private static class CountingProvider extends StringSAXEventProvider {
+        CountingProvider(String xmlstr) throws Exception {
+            super(xmlstr);
+        }
+
+        @Override
+        public void provideSAXEvents(ContentHandler handler) throws SAXException {
+            count++;
+            super.provideSAXEvents(handler);
+        }
+
+        int count;
+    }
+
+    private File xsl;
+    private File dir;
+}
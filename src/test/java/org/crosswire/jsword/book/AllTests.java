@@ -37,6 +37,7 @@ public class AllTests {
         suite.addTestSuite(BooksTest.class);
         suite.addTestSuite(BookMetaDataTest.class);
         suite.addTestSuite(SentenceUtilTest.class);
+        suite.addTestSuite(OSISFieldCollectorTest.class);
 
         // run independently:
         // suite.addTestSuite(ReadEverything.class);
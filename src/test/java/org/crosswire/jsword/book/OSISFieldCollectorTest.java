@@ -0,0 +1,90 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.book;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class OSISFieldCollectorTest extends TestCase {
+    public OSISFieldCollectorTest(String s) {
+        super(s);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        osis = new SAXBuilder().build(new StringReader(VERSE)).getRootElement();
+    }
+
+    public void testSameAsOSISUtil() {
+        OSISFieldCollector collector = new OSISFieldCollector(v11n, true, true, true, true, true);
+        collector.collect(osis);
+        assertEquals(OSISUtil.getCanonicalText(osis), collector.getCanonicalText());
+        assertEquals(OSISUtil.getStrongsNumbers(osis), collector.getStrongsNumbers());
+        assertEquals(OSISUtil.getMorphologiesWithStrong(osis), collector.getMorphologiesWithStrong());
+        assertEquals(OSISUtil.getReferences(v11n, osis), collector.getReferences());
+        assertEquals(OSISUtil.getNotes(osis), collector.getNotes());
+        assertEquals(OSISUtil.getHeadings(osis), collector.getHeadings());
+
+        assertEquals("G3588 G3056 G2258", collector.getStrongsNumbers());
+        assertEquals("G3588@T-NSM G3056@N-NSM G2258@N-NSM", collector.getMorphologiesWithStrong());
+        assertEquals("In the beginning was the Word", collector.getCanonicalText());
+    }
+
+    public void testReuse() {
+        OSISFieldCollector collector = new OSISFieldCollector(v11n, true, true, true, true, true);
+        collector.collect(osis);
+        collector.collect(osis);
+        assertEquals(OSISUtil.getStrongsNumbers(osis), collector.getStrongsNumbers());
+        assertEquals(OSISUtil.getReferences(v11n, osis), collector.getReferences());
+        assertEquals(OSISUtil.getNotes(osis), collector.getNotes());
+    }
+
+    public void testExcluded() {
+        OSISFieldCollector collector = new OSISFieldCollector(v11n, false, false, false, false, false);
+        collector.collect(osis);
+        assertEquals("In the beginning was the Word", collector.getCanonicalText());
+        assertEquals("", collector.getStrongsNumbers());
+        assertEquals("", collector.getReferences());
+        assertEquals("", collector.getNotes());
+    }
+
+    private static final String VERSE = "<div><title>The Word</title><verse osisID=\"John.1.1\">In the beginning "
+            + "<w lemma=\"strong:G3588\" morph=\"T-NSM\">was</w> <w lemma=\"strong:G3056 strong:G2258\" morph=\"N-NSM\">the Word</w>"
+            + "<note type=\"crossReference\"><reference osisRef=\"Gen.1.1\">Gen 1:1</reference></note>"
+            + "<note type=\"x-StudyNote\">See <reference osisRef=\"1John.1.1\">1John 1:1</reference> and "
+            + "<reference osisRef=\"Gen.1.1\">Gen 1:1</reference></note></verse></div>";
+
+    private Versification v11n;
+    private Element osis;
+}
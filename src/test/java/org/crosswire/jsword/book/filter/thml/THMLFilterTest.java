@@ -0,0 +1,98 @@
+package org.crosswire.jsword.book.filter.thml;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.sword.ConfigEntryTable;
+import org.crosswire.jsword.book.sword.ConfigEntryType;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Content;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class THMLFilterTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        configFile = File.createTempFile("thmltest", ".conf");
+        ConfigEntryTable table = new ConfigEntryTable("ThMLTest");
+        table.add(ConfigEntryType.LANG, "en");
+        table.add(ConfigEntryType.INITIALS, "ThMLTest");
+        table.add(ConfigEntryType.DESCRIPTION, "ThML Test");
+        table.add(ConfigEntryType.MOD_DRV, "RawText");
+        table.save(configFile);
+        book = new SwordBook(new SwordBookMetaData(configFile, "ThMLTest", new URI("")), null);
+        key = VerseFactory.fromString(Versifications.instance().getVersification("KJV"), "Gen.1.1");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        configFile.delete();
+    }
+
+    public void testMalformed() {
+        List<Content> out = new THMLFilter().toOSIS(book, key, "In the beginning ]]> God");
+        // Nothing can be made of it
+        assertTrue(out.isEmpty());
+    }
+
+    /**
+     * The threads that index a book share its filter, so what went wrong
+     * with one text must not be mixed up with another.
+     */
+    public void testConcurrentMalformed() throws Exception {
+        final THMLFilter filter = new THMLFilter();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final int length = 10 + 200 * i;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        StringBuilder buf = new StringBuilder();
+                        while (buf.length() < length) {
+                            buf.append("In the beginning <b>God</i> created ");
+                        }
+                        // Where the error is differs from thread to thread
+                        buf.append("]]>");
+                        String text = buf.toString();
+                        for (int j = 0; j < RUNS; j++) {
+                            assertTrue(filter.toOSIS(book, key, text).isEmpty());
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(failures.toString(), 0, failures.size());
+    }
+
+    private static final int THREADS = 8;
+    private static final int RUNS = 50;
+
+    private File configFile;
+    private Book book;
+    private Key key;
+}
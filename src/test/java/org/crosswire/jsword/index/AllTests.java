@@ -0,0 +1,21 @@
+package org.crosswire.jsword.index;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class AllTests {
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for org.crosswire.jsword.index");
+        // $JUnit-BEGIN$
+        suite.addTestSuite(SearchResultCacheTest.class);
+        suite.addTestSuite(StrongsConcordanceTest.class);
+        // $JUnit-END$
+        return suite;
+    }
+}
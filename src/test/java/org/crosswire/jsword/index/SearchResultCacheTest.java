@@ -0,0 +1,148 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index;
+
+import java.io.File;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.sword.ConfigEntryTable;
+import org.crosswire.jsword.book.sword.ConfigEntryType;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.index.search.DefaultSearchModifier;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class SearchResultCacheTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+
+        configFile = File.createTempFile("cachetest", ".conf");
+        ConfigEntryTable table = new ConfigEntryTable("CacheTest");
+        table.add(ConfigEntryType.INITIALS, "CacheTest");
+        table.add(ConfigEntryType.MOD_DRV, "RawText");
+        table.save(configFile);
+        book = new SwordBook(new SwordBookMetaData(configFile, "CacheTest", new URI("")), null);
+
+        results = book.getKey("Gen 1:3, 5, Exo 10:23");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        configFile.delete();
+    }
+
+    public void testHit() throws Exception {
+        SearchResultCache cache = new SearchResultCache(100000, 0);
+        assertNull(cache.get(book, "light", null));
+        cache.put(book, "light", null, cache.getGeneration(book), results);
+
+        Key cached = cache.get(book, " light ", null);
+        assertEquals(results, cached);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Each answer is a copy
+        cached.clear();
+        assertEquals(results, cache.get(book, "light", null));
+    }
+
+    public void testNormalizedSpacing() throws Exception {
+        SearchResultCache cache = new SearchResultCache(100000, 0);
+        cache.put(book, "let  there\tbe light", null, 0, results);
+        assertEquals(results, cache.get(book, "let there be light", null));
+        assertNull(cache.get(book, "Let there be light", null));
+    }
+
+    public void testRanked() throws Exception {
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(VerseFactory.fromString(v11n, "Gen.1.3"), 50);
+        tally.add(VerseFactory.fromString(v11n, "Gen.1.5"), 20);
+        tally.setTotal(7);
+
+        SearchResultCache cache = new SearchResultCache(100000, 0);
+        cache.put(book, "light", ranked(2), 0, tally);
+        assertNull(cache.get(book, "light", null));
+        assertNull(cache.get(book, "light", ranked(3)));
+
+        PassageTally cached = (PassageTally) cache.get(book, "light", ranked(2));
+        assertEquals(7, cached.getTotal());
+        assertEquals(50, cached.getTallyOf(VerseFactory.fromString(v11n, "Gen.1.3")));
+        assertEquals(20, cached.getTallyOf(VerseFactory.fromString(v11n, "Gen.1.5")));
+        assertEquals(tally.getNameAndTally(), cached.getNameAndTally());
+    }
+
+    public void testInvalidate() throws Exception {
+        SearchResultCache cache = new SearchResultCache(100000, 0);
+        int generation = cache.getGeneration(book);
+        cache.put(book, "light", null, generation, results);
+        cache.invalidate(book);
+        assertNull(cache.get(book, "light", null));
+        assertEquals(0, cache.getSize());
+
+        // A search that began before the index changed is not kept
+        cache.put(book, "light", null, generation, results);
+        assertNull(cache.get(book, "light", null));
+    }
+
+    public void testBudget() throws Exception {
+        SearchResultCache cache = new SearchResultCache(200, 0);
+        cache.put(book, "light", null, 0, results);
+        cache.put(book, "day", null, 0, results);
+        assertEquals(1, cache.getCount());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(book, "light", null));
+        assertNotNull(cache.get(book, "day", null));
+    }
+
+    public void testTimeToLive() throws Exception {
+        SearchResultCache cache = new SearchResultCache(100000, 1);
+        cache.put(book, "light", null, 0, results);
+        Thread.sleep(10);
+        assertNull(cache.get(book, "light", null));
+        assertEquals(0, cache.getCount());
+    }
+
+    private static DefaultSearchModifier ranked(int maxResults) {
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        modifier.setMaxResults(maxResults);
+        return modifier;
+    }
+
+    private Versification v11n;
+    private File configFile;
+    private Book book;
+    private Key results;
+}
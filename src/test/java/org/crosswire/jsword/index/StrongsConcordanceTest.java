@@ -0,0 +1,89 @@
+package org.crosswire.jsword.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class StrongsConcordanceTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+
+        // One rare number, and one in every other verse of Genesis
+        int[] common = new int[700];
+        int first = v11n.getOrdinal(v11n.decodeOrdinal(0));
+        for (int i = 0; i < common.length; i++) {
+            common[i] = first + 10 + 2 * i;
+        }
+        int[] rare = {
+                common[0], common[5], 20000, 31000
+        };
+
+        SortedMap<String, int[]> verses = new TreeMap<String, int[]>();
+        verses.put("G0026", rare);
+        verses.put("H0430", common);
+
+        file = File.createTempFile("concordance", ".dat");
+        StrongsConcordance.write(file, v11n, verses);
+        concordance = StrongsConcordance.open(file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testPassage() throws Exception {
+        assertEquals(v11n, concordance.getVersification());
+        assertEquals(4, concordance.getCount("G26"));
+        assertEquals(700, concordance.getCount("H430"));
+        assertEquals(0, concordance.getCount("G27"));
+        assertEquals(0, concordance.getCount("nonsense"));
+
+        Passage rare = concordance.getPassage("g0026");
+        assertEquals(4, rare.countVerses());
+        assertTrue(rare.contains(v11n.decodeOrdinal(20000)));
+        assertTrue(rare.contains(v11n.decodeOrdinal(31000)));
+
+        Passage common = concordance.getPassage("H430");
+        assertEquals(700, common.countVerses());
+        assertTrue(concordance.getPassage("G27").isEmpty());
+    }
+
+    public void testCombined() throws Exception {
+        assertEquals(702, concordance.getAny("G26", "H430").countVerses());
+        assertEquals(2, concordance.getAll("G26", "H430").countVerses());
+        assertEquals(concordance.getPassage("G26"), concordance.getAny("G26"));
+        assertTrue(concordance.getAll("G26", "G27").isEmpty());
+        assertTrue(concordance.getAll().isEmpty());
+    }
+
+    public void testNotConcordance() throws Exception {
+        File other = File.createTempFile("concordance", ".dat");
+        try {
+            StrongsConcordance.open(other);
+            fail();
+        } catch (IOException e) {
+            // expected
+        } finally {
+            other.delete();
+        }
+    }
+
+    private Versification v11n;
+    private File file;
+    private StrongsConcordance concordance;
+}
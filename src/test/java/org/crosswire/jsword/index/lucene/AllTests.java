@@ -0,0 +1,22 @@
+package org.crosswire.jsword.index.lucene;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class AllTests {
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for org.crosswire.jsword.index.lucene");
+        // $JUnit-BEGIN$
+        suite.addTestSuite(LuceneSearcherTest.class);
+        suite.addTestSuite(VerseCollectorTest.class);
+        suite.addTestSuite(VerseRangeFilterTest.class);
+        // $JUnit-END$
+        return suite;
+    }
+}
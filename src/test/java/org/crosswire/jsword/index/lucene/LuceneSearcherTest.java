@@ -0,0 +1,419 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.sword.AbstractBackend;
+import org.crosswire.jsword.book.sword.ConfigEntryTable;
+import org.crosswire.jsword.book.sword.ConfigEntryType;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.state.OpenFileState;
+import org.crosswire.jsword.index.IndexPolicyAdapter;
+import org.crosswire.jsword.index.IndexStorage;
+import org.crosswire.jsword.index.StrongsConcordance;
+import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
+import org.crosswire.jsword.index.search.DefaultSearchModifier;
+import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class LuceneSearcherTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+
+        configFile = File.createTempFile("searchtest", ".conf");
+        ConfigEntryTable table = new ConfigEntryTable("SearchTest");
+        table.add(ConfigEntryType.LANG, "en");
+        table.add(ConfigEntryType.INITIALS, "SearchTest");
+        table.add(ConfigEntryType.DESCRIPTION, "Search Test");
+        table.add(ConfigEntryType.MOD_DRV, "RawText");
+        table.save(configFile);
+        book = new SwordBook(new SwordBookMetaData(configFile, "SearchTest", new URI("")), null);
+
+        indexDir = new File(configFile.getPath() + ".index");
+        IndexWriter writer = new IndexWriter(FSDirectory.open(indexDir), new LuceneAnalyzer(book), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        addVerse(writer, "Gen.1.3", "Let there be light and there was light");
+        addVerse(writer, "Gen.1.5", "God called the light Day");
+        addVerse(writer, "Gen.1.16", "the greater light to rule the day");
+        addVerse(writer, "Exod.10.23", "all the children of Israel had light");
+        writer.close();
+
+        index = new LuceneIndex(book, indexDir.toURI());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        index.close();
+        FileUtil.delete(indexDir);
+        configFile.delete();
+    }
+
+    public void testModifierIsPerSearch() throws Exception {
+        LuceneSearcher searcher = new LuceneSearcher();
+        searcher.init(index);
+
+        Key ranked = searcher.search(new DefaultSearchRequest("light", ranked(2)));
+        assertTrue(ranked instanceof PassageTally);
+        assertEquals(2, ranked.getCardinality());
+        assertNull(index.getSearchModifier());
+
+        Key unranked = searcher.search(new DefaultSearchRequest("light"));
+        assertFalse(unranked instanceof PassageTally);
+        assertEquals(4, unranked.getCardinality());
+    }
+
+    public void testRange() throws Exception {
+        LuceneSearcher searcher = new LuceneSearcher();
+        searcher.init(index);
+
+        assertEquals("Gen.1.3 Gen.1.5 Gen.1.16", searcher.search(new DefaultSearchRequest("+[Gen] light")).getOsisID());
+        assertEquals("Gen.1.3 Gen.1.5 Gen.1.16", searcher.search(new DefaultSearchRequest("[Gen] light")).getOsisID());
+        assertEquals("Exod.10.23", searcher.search(new DefaultSearchRequest("-[Gen] light")).getOsisID());
+        assertEquals("", searcher.search(new DefaultSearchRequest("+[Lev] light")).getOsisID());
+
+        // The best within the range, not the best of all that are in the range
+        Key ranked = searcher.search(new DefaultSearchRequest("+[Exod] light", ranked(1)));
+        assertTrue(ranked instanceof PassageTally);
+        assertEquals("Exod.10.23", ranked.getOsisID());
+
+        // Only what is kept of the blur is restricted
+        assertEquals("Gen.1.5 Gen.1.16", searcher.search(new DefaultSearchRequest("light ~1 day")).getOsisID());
+        assertEquals("Gen.1.5", searcher.search(new DefaultSearchRequest("+[Gen.1.1-Gen.1.10] light ~1 day")).getOsisID());
+        assertEquals("Gen.1.16", searcher.search(new DefaultSearchRequest("-[Gen.1.1-Gen.1.10] light ~1 day")).getOsisID());
+    }
+
+    public void testEstimateCount() throws Exception {
+        assertEquals(4, index.estimateCount("light"));
+        assertEquals(2, index.estimateCount("day"));
+        assertEquals(1, index.estimateCount("+light +israel"));
+        assertEquals(2, index.estimateCount("light AND day AND NOT israel"));
+        // Never more than there are verses
+        assertEquals(4, index.estimateCount("light OR day"));
+        assertEquals(4, index.estimateCount("lig*"));
+        assertEquals(0, index.estimateCount(null));
+        assertEquals(-1, index.estimateCount("light AND ("));
+    }
+
+    public void testStorage() throws Exception {
+        long size = 0;
+        for (File file : indexDir.listFiles()) {
+            size += file.length();
+        }
+
+        for (IndexStorage storage : IndexStorage.values()) {
+            LuceneIndex other = LuceneIndex.open(book, indexDir.toURI(), new StoragePolicy(storage, size));
+            assertEquals(storage, other.getStorage());
+            assertEquals(4, other.find("light").getCardinality());
+            other.close();
+        }
+
+        // Only one fits in memory at a time, whether it is opened that way or
+        // the policy is changed afterwards
+        LuceneIndex first = LuceneIndex.open(book, indexDir.toURI(), new StoragePolicy(IndexStorage.MEMORY, size + size / 2));
+        assertEquals(IndexStorage.MEMORY, first.getStorage());
+        LuceneIndex second = new LuceneIndex(book, indexDir.toURI());
+        second.setIndexPolicy(new StoragePolicy(IndexStorage.MEMORY, size + size / 2));
+        assertEquals(IndexStorage.MAPPED, second.getStorage());
+        assertEquals(4, second.find("light").getCardinality());
+
+        first.close();
+        second.reopen();
+        assertEquals(IndexStorage.MEMORY, second.getStorage());
+        second.close();
+    }
+
+    public void testSuggestions() throws Exception {
+        LuceneSearcher searcher = new LuceneSearcher();
+        searcher.init(index);
+
+        assertEquals(Arrays.asList("light", "the", "day"), searcher.getSuggestions(null, "", 3));
+        assertEquals(Arrays.asList("light"), searcher.getSuggestions(null, "li", 5));
+        // The most frequent first, then in order
+        assertEquals(Arrays.asList("the", "there"), index.getSuggestions(LuceneIndex.FIELD_BODY, "t", 2));
+        assertEquals(Arrays.asList("the", "there", "to"), index.getSuggestions(LuceneIndex.FIELD_BODY, "t", 5));
+        assertTrue(index.getSuggestions(null, "zz", 5).isEmpty());
+        assertTrue(index.getSuggestions(LuceneIndex.FIELD_STRONG, "", 5).isEmpty());
+
+        // The terms are lower cased
+        assertEquals(Arrays.asList("light"), index.getSuggestions(null, "Li", 5));
+        assertEquals(Arrays.asList("light"), index.getSuggestions(LuceneIndex.FIELD_BODY, "LIGHT", 5));
+    }
+
+    public void testStrongsSuggestions() throws Exception {
+        IndexWriter writer = new IndexWriter(FSDirectory.open(indexDir), new LuceneAnalyzer(book), false, IndexWriter.MaxFieldLength.UNLIMITED);
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, "Gen.1.1", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new Field(LuceneIndex.FIELD_STRONG, "G26 G260 G2600 H26", Field.Store.NO, Field.Index.ANALYZED));
+        writer.addDocument(doc);
+        writer.close();
+        index.reopen();
+
+        // The numbers are indexed with leading zeros, so what is typed may be
+        // the end of a number or the start of a longer one
+        assertEquals(Arrays.asList("G0026", "G0260", "G2600"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "G26", 5));
+        assertEquals(Arrays.asList("G0026", "G0260", "G2600"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "g26", 5));
+        assertEquals(Arrays.asList("G0026", "G0260"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "G26", 2));
+        assertEquals(Arrays.asList("G0260", "G2600"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "G260", 5));
+        assertEquals(Arrays.asList("G0260"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "G0260", 5));
+        assertEquals(Arrays.asList("G0026", "G0260", "G2600"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "g", 5));
+        assertEquals(Arrays.asList("H0026"), index.getSuggestions(LuceneIndex.FIELD_STRONG, "H2", 5));
+    }
+
+    public void testConcordance() throws Exception {
+        assertNull(index.getStrongsConcordance());
+
+        // The index itself has no Strong's Numbers, so only the concordance can find them
+        SortedMap<String, int[]> verses = new TreeMap<String, int[]>();
+        verses.put("G0026", new int[] {
+                VerseFactory.fromString(v11n, "Gen.1.5").getOrdinal(), VerseFactory.fromString(v11n, "Exod.10.23").getOrdinal()
+        });
+        StrongsConcordance.write(new File(indexDir, StrongsConcordance.FILE_NAME), v11n, verses);
+        index.reopen();
+
+        assertEquals(2, index.getStrongsConcordance().getCount("G26"));
+        assertEquals("Gen.1.5 Exod.10.23", index.find("strong:G26").getOsisID());
+        assertEquals("Exod.10.23", index.find("strong:G26", null, index.getKey("Exod"), false).getOsisID());
+        assertEquals("", index.find("strong:G27").getOsisID());
+    }
+
+    public void testConcordanceOfNewIndex() throws Exception {
+        File strongsConfig = File.createTempFile("strongstest", ".conf");
+        ConfigEntryTable table = new ConfigEntryTable("StrongsTest");
+        table.add(ConfigEntryType.LANG, "en");
+        table.add(ConfigEntryType.INITIALS, "StrongsTest");
+        table.add(ConfigEntryType.DESCRIPTION, "Strongs Test");
+        table.add(ConfigEntryType.MOD_DRV, "RawText");
+        table.add(ConfigEntryType.SOURCE_TYPE, "OSIS");
+        table.add(ConfigEntryType.FEATURE, "StrongsNumbers");
+        table.save(strongsConfig);
+        SwordBookMetaData bmd = new SwordBookMetaData(strongsConfig, "StrongsTest", new URI(""));
+
+        TextBackend backend = new TextBackend(bmd);
+        backend.put("Gen.1.1", "In the beginning <w lemma=\"strong:H430\">God</w> created");
+        backend.put("Gen.1.5", "<w lemma=\"strong:H430\">God</w> called the <w lemma=\"strong:H216\">light</w> Day");
+        backend.put("John.3.16", "For God so <w lemma=\"strong:G25\">loved</w> the world");
+        backend.put("Exod.10.23", "all the children of Israel had light");
+        Book strongsBook = new SwordBook(bmd, backend);
+
+        File strongsDir = new File(strongsConfig.getPath() + ".index");
+        LuceneIndex created = null;
+        try {
+            created = new LuceneIndex(strongsBook, strongsDir.toURI(), new IndexPolicyAdapter());
+            assertTrue(new File(strongsDir, StrongsConcordance.FILE_NAME).isFile());
+
+            // Read back from the file that indexing wrote
+            LuceneIndex reopened = new LuceneIndex(strongsBook, strongsDir.toURI());
+            StrongsConcordance concordance = reopened.getStrongsConcordance();
+            reopened.close();
+            assertEquals(v11n, concordance.getVersification());
+            assertEquals(2, concordance.getCount("H430"));
+            assertEquals("Gen.1.1 Gen.1.5", concordance.getPassage("H430").getOsisID());
+            assertEquals("Gen.1.5", concordance.getPassage("H216").getOsisID());
+            assertEquals("John.3.16", concordance.getPassage("G25").getOsisID());
+            assertEquals(0, concordance.getCount("G26"));
+
+            assertEquals("Gen.1.1 Gen.1.5", created.find("strong:H430").getOsisID());
+        } finally {
+            if (created != null) {
+                created.close();
+            }
+            FileUtil.delete(strongsDir);
+            strongsConfig.delete();
+        }
+    }
+
+    public void testConcurrentSearches() throws Exception {
+        final LuceneSearcher searcher = new LuceneSearcher();
+        searcher.init(index);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final boolean isRanked = i % 2 == 0;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < SEARCHES; j++) {
+                            if (isRanked) {
+                                Key results = searcher.search(new DefaultSearchRequest("light", ranked(1)));
+                                assertTrue(results instanceof PassageTally);
+                                assertEquals(1, results.getCardinality());
+                            } else {
+                                Key results = searcher.search(new DefaultSearchRequest("day"));
+                                assertFalse(results instanceof PassageTally);
+                                assertEquals("Gen.1.5 Gen.1.16", results.getOsisID());
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+        }
+
+        // Replace the searcher while the searches are under way
+        threads.add(new Thread() {
+            @Override
+            public void run() {
+                for (int j = 0; j < SEARCHES / 10; j++) {
+                    index.reopen();
+                }
+            }
+        });
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " searches failed");
+            error.initCause(failures.get(0));
+            throw error;
+        }
+    }
+
+    private static DefaultSearchModifier ranked(int maxResults) {
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        modifier.setMaxResults(maxResults);
+        return modifier;
+    }
+
+    private void addVerse(IndexWriter writer, String osisID, String text) throws Exception {
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, osisID, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new Field(LuceneIndex.FIELD_ORDINAL, Integer.toString(VerseFactory.fromString(v11n, osisID).getOrdinal()), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        doc.add(new Field(LuceneIndex.FIELD_BODY, text, Field.Store.NO, Field.Index.ANALYZED));
+        writer.addDocument(doc);
+    }
+
+    /**
+     * The raw text of a few verses, kept in memory.
+     */
+    private class TextBackend extends AbstractBackend<OpenFileState> {
+        TextBackend(SwordBookMetaData bmd) {
+            super(bmd);
+        }
+
+        void put(String osisID, String text) throws Exception {
+            texts.put(VerseFactory.fromString(v11n, osisID), text);
+        }
+
+        @Override
+        public boolean contains(Key key) {
+            return texts.containsKey(key);
+        }
+
+        @Override
+        public Key getGlobalKeyList() {
+            Key keys = PassageKeyFactory.instance().createEmptyKeyList(v11n);
+            for (Key key : texts.keySet()) {
+                keys.addAll(key);
+            }
+            return keys;
+        }
+
+        public OpenFileState initState() {
+            return null;
+        }
+
+        public String readRawContent(OpenFileState state, Key key) {
+            String text = texts.get(key);
+            return text == null ? "" : text;
+        }
+
+        public void setRawText(OpenFileState state, Key key, String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void setAliasKey(OpenFileState state, Key alias, Key source) {
+            throw new UnsupportedOperationException();
+        }
+
+        private Map<Key, String> texts = new HashMap<Key, String>();
+    }
+
+    /**
+     * A policy that holds every index the same way.
+     */
+    private static class StoragePolicy extends IndexPolicyAdapter {
+        StoragePolicy(IndexStorage storage, long memoryLimit) {
+            this.storage = storage;
+            this.memoryLimit = memoryLimit;
+        }
+
+        @Override
+        public IndexStorage getStorage(Book book, long size) {
+            return storage;
+        }
+
+        @Override
+        public long getMemoryLimit() {
+            return memoryLimit;
+        }
+
+        private IndexStorage storage;
+        private long memoryLimit;
+    }
+
+    private static final int THREADS = 8;
+    private static final int SEARCHES = 200;
+
+    private Versification v11n;
+    private File configFile;
+    private File indexDir;
+    private Book book;
+    private LuceneIndex index;
+}
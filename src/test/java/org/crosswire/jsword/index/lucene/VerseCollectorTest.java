@@ -0,0 +1,102 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class VerseCollectorTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+    }
+
+    public void testOrdinals() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(createIndex(true), true);
+        Key results = PassageKeyFactory.instance().createEmptyKeyList(v11n);
+        searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_BODY, "light")), new VerseCollector(v11n, searcher, results));
+        assertEquals("Gen.1.3 Gen.1.5 Exod.10.23", results.getOsisID());
+
+        // Not a BitwisePassage
+        PassageTally tally = new PassageTally(v11n);
+        searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_BODY, "light")), new VerseCollector(v11n, searcher, tally));
+        assertEquals(3, tally.getCardinality());
+        searcher.close();
+    }
+
+    public void testWithoutOrdinals() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(createIndex(false), true);
+        Key results = PassageKeyFactory.instance().createEmptyKeyList(v11n);
+        searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_BODY, "light")), new VerseCollector(v11n, searcher, results));
+        assertEquals("Gen.1.3 Gen.1.5 Exod.10.23", results.getOsisID());
+        searcher.close();
+    }
+
+    /**
+     * Create an index of a few verses, in two segments.
+     */
+    private Directory createIndex(boolean withOrdinals) throws Exception {
+        Directory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        addVerse(writer, "Gen.1.1", "In the beginning", withOrdinals);
+        addVerse(writer, "Gen.1.3", "Let there be light", withOrdinals);
+        writer.commit();
+        addVerse(writer, "Gen.1.5", "God called the light Day", withOrdinals);
+        addVerse(writer, "Exod.10.23", "all the children of Israel had light", withOrdinals);
+        writer.close();
+        return directory;
+    }
+
+    private void addVerse(IndexWriter writer, String osisID, String text, boolean withOrdinal) throws Exception {
+        Verse verse = VerseFactory.fromString(v11n, osisID);
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, osisID, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        if (withOrdinal) {
+            doc.add(new Field(LuceneIndex.FIELD_ORDINAL, Integer.toString(verse.getOrdinal()), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+        doc.add(new Field(LuceneIndex.FIELD_BODY, text, Field.Store.NO, Field.Index.ANALYZED));
+        writer.addDocument(doc);
+    }
+
+    private Versification v11n;
+}
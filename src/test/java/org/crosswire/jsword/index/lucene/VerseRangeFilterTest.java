@@ -0,0 +1,116 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *       http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * Copyright: 2013
+ *     The copyright to this program is held by it's authors.
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.crosswire.jsword.passage.DefaultKeyList;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class VerseRangeFilterTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        keyf = PassageKeyFactory.instance();
+    }
+
+    public void testFilter() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(createIndex(true), true);
+        assertTrue(VerseRangeFilter.canFilter(searcher.getIndexReader()));
+
+        Key range = keyf.getKey(v11n, "Gen.1.4-Exod.1.1");
+        assertEquals("Gen.1.5", search(searcher, new VerseRangeFilter(range, false)));
+        assertEquals("Gen.1.3 Exod.10.23", search(searcher, new VerseRangeFilter(range, true)));
+        searcher.close();
+    }
+
+    public void testOtherKey() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(createIndex(true), true);
+
+        // A Key that is not a VerseKey is walked for its verses
+        Key range = new DefaultKeyList();
+        range.addAll(VerseFactory.fromString(v11n, "Gen.1.5"));
+        range.addAll(VerseFactory.fromString(v11n, "Exod.10.23"));
+        assertEquals("Gen.1.5 Exod.10.23", search(searcher, new VerseRangeFilter(range, false)));
+        assertEquals("Gen.1.3", search(searcher, new VerseRangeFilter(range, true)));
+        searcher.close();
+    }
+
+    public void testWithoutOrdinals() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(createIndex(false), true);
+        assertFalse(VerseRangeFilter.canFilter(searcher.getIndexReader()));
+        searcher.close();
+    }
+
+    private String search(IndexSearcher searcher, VerseRangeFilter filter) throws Exception {
+        Key results = keyf.createEmptyKeyList(v11n);
+        searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_BODY, "light")), filter, new VerseCollector(v11n, searcher, results));
+        return results.getOsisID();
+    }
+
+    /**
+     * Create an index of a few verses, in two segments.
+     */
+    private Directory createIndex(boolean withOrdinals) throws Exception {
+        Directory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        addVerse(writer, "Gen.1.1", "In the beginning", withOrdinals);
+        addVerse(writer, "Gen.1.3", "Let there be light", withOrdinals);
+        writer.commit();
+        addVerse(writer, "Gen.1.5", "God called the light Day", withOrdinals);
+        addVerse(writer, "Exod.10.23", "all the children of Israel had light", withOrdinals);
+        writer.close();
+        return directory;
+    }
+
+    private void addVerse(IndexWriter writer, String osisID, String text, boolean withOrdinal) throws Exception {
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, osisID, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        if (withOrdinal) {
+            int ordinal = VerseFactory.fromString(v11n, osisID).getOrdinal();
+            doc.add(new Field(LuceneIndex.FIELD_ORDINAL, Integer.toString(ordinal), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+        doc.add(new Field(LuceneIndex.FIELD_BODY, text, Field.Store.NO, Field.Index.ANALYZED));
+        writer.addDocument(doc);
+    }
+
+    private Versification v11n;
+    private PassageKeyFactory keyf;
+}
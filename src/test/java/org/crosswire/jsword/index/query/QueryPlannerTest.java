@@ -0,0 +1,165 @@
+package org.crosswire.jsword.index.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.StrongsConcordance;
+import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.RestrictionType;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class QueryPlannerTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        index = new FakeIndex();
+        index.add("light", "Gen.1.3 Gen.1.5 Gen.1.16 Exod.10.23");
+        index.add("day", "Gen.1.5 Gen.1.14 Gen.1.16");
+        index.add("israel", "Exod.10.23");
+        index.add("nothing", "");
+        index.add("verses", "Gen-Rev");
+        index.add("chapters", "Gen.1.1-Gen.50.26");
+    }
+
+    public void testEstimate() throws Exception {
+        assertEquals(4, QueryPlanner.estimate(new BaseQuery("light"), index));
+        assertEquals(QueryPlanner.UNKNOWN, QueryPlanner.estimate(new BaseQuery("unknown"), index));
+        assertEquals(3, QueryPlanner.estimate(new RangeQuery("Gen.1.1-Gen.1.3"), index));
+        assertEquals(1, QueryPlanner.estimate(new AndQuery(new BaseQuery("light"), new BaseQuery("israel")), index));
+        assertEquals(7, QueryPlanner.estimate(new OrQuery(new BaseQuery("light"), new BaseQuery("day")), index));
+        assertEquals(4, QueryPlanner.estimate(new AndNotQuery(new BaseQuery("light"), new BaseQuery("day")), index));
+        assertEquals(3, QueryPlanner.estimate(new BlurQuery(new BaseQuery("light"), new BaseQuery("israel"), 1), index));
+        assertEquals(3, QueryPlanner.estimate(new RestrictedQuery(new RangeQuery("Gen.1.1-Gen.1.3"), new BaseQuery("light"), false), index));
+        assertEquals(4, QueryPlanner.estimate(new RestrictedQuery(new RangeQuery("Gen.1.1-Gen.1.3"), new BaseQuery("light"), true), index));
+    }
+
+    public void testAndShortCircuit() throws Exception {
+        Key results = new AndQuery(new BaseQuery("light"), new BaseQuery("nothing")).find(index);
+        assertTrue(results.isEmpty());
+        // The side expected to find nothing was searched first, and alone
+        assertEquals(Collections.singletonList("nothing"), index.searched);
+
+        index.searched.clear();
+        assertEquals("Exod.10.23", new AndQuery(new BaseQuery("light"), new BaseQuery("israel")).find(index).getOsisID());
+        assertEquals(2, index.searched.size());
+        assertEquals("israel", index.searched.get(0));
+    }
+
+    public void testAndNotShortCircuit() throws Exception {
+        Key results = new AndNotQuery(new BaseQuery("nothing"), new BaseQuery("light")).find(index);
+        assertTrue(results.isEmpty());
+        assertEquals(Collections.singletonList("nothing"), index.searched);
+
+        // What is taken away is always searched second
+        index.searched.clear();
+        assertEquals("Gen.1.3 Gen.1.5 Gen.1.16", new AndNotQuery(new BaseQuery("light"), new BaseQuery("israel")).find(index).getOsisID());
+        assertEquals("light", index.searched.get(0));
+    }
+
+    public void testParallel() throws Exception {
+        // Both sides expect to find too much for either to be skipped
+        String verses = index.find("verses").getOsisID();
+        String chapters = index.find("chapters").getOsisID();
+        index.searched.clear();
+        assertEquals(verses, new OrQuery(new BaseQuery("chapters"), new BaseQuery("verses")).find(index).getOsisID());
+        assertEquals(chapters, new AndQuery(new BaseQuery("chapters"), new BaseQuery("verses")).find(index).getOsisID());
+        assertEquals(4, index.searched.size());
+    }
+
+    public void testBlur() throws Exception {
+        String[][] queries = {
+                {"light", "day"}, {"day", "light"}, {"israel", "light"}, {"light", "israel"}, {"verses", "israel"}, {"israel", "verses"},
+        };
+        for (int factor = 0; factor < 3; factor++) {
+            for (String[] query : queries) {
+                // Blurring all of the right side is what the query means
+                Key expected = index.find(query[0]);
+                Key right = index.find(query[1]);
+                right.blur(factor, RestrictionType.getDefaultBlurRestriction());
+                expected.retainAll(right);
+
+                Key results = new BlurQuery(new BaseQuery(query[0]), new BaseQuery(query[1]), factor).find(index);
+                assertEquals(query[0] + " ~" + factor + " " + query[1], expected.getOsisID(), results.getOsisID());
+            }
+        }
+    }
+
+    /**
+     * An index that knows the results of a few searches and remembers the
+     * order in which they were asked for.
+     */
+    private class FakeIndex implements Index {
+        void add(String query, String osisRef) throws NoSuchKeyException {
+            answers.put(query, PassageKeyFactory.instance().getKey(v11n, osisRef));
+        }
+
+        public Key find(String query) {
+            searched.add(query);
+            Key answer = answers.get(query);
+            return answer == null ? PassageKeyFactory.instance().createEmptyKeyList(v11n) : answer.clone();
+        }
+
+        public Key find(String query, SearchModifier modifier) {
+            return find(query);
+        }
+
+        public Key find(String query, SearchModifier modifier, Key range, boolean exclude) {
+            Key results = find(query);
+            if (exclude) {
+                results.removeAll(range);
+            } else {
+                results.retainAll(range);
+            }
+            return results;
+        }
+
+        public int estimateCount(String query) {
+            Key answer = answers.get(query);
+            return answer == null ? -1 : answer.getCardinality();
+        }
+
+        public List<String> getSuggestions(String field, String prefix, int count) {
+            return Collections.emptyList();
+        }
+
+        public StrongsConcordance getStrongsConcordance() {
+            return null;
+        }
+
+        public Key getKey(String name) throws NoSuchKeyException {
+            return PassageKeyFactory.instance().getKey(v11n, name);
+        }
+
+        public void setSearchModifier(SearchModifier modifier) {
+        }
+
+        public SearchModifier getSearchModifier() {
+            return null;
+        }
+
+        public void close() {
+        }
+
+        private Map<String, Key> answers = new HashMap<String, Key>();
+        private List<String> searched = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    private Versification v11n;
+    private FakeIndex index;
+}
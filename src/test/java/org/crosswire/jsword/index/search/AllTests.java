@@ -0,0 +1,20 @@
+package org.crosswire.jsword.index.search;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class AllTests {
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for org.crosswire.jsword.index.search");
+        // $JUnit-BEGIN$
+        suite.addTestSuite(MultiBookSearcherTest.class);
+        // $JUnit-END$
+        return suite;
+    }
+}
@@ -0,0 +1,151 @@
+package org.crosswire.jsword.index.search;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.crosswire.common.util.WorkerPool;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.ConfigEntryTable;
+import org.crosswire.jsword.book.sword.ConfigEntryType;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ *
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class MultiBookSearcherTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        configFiles = new ArrayList<File>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File configFile : configFiles) {
+            configFile.delete();
+        }
+    }
+
+    public void testConcurrent() throws Exception {
+        List<Book> books = new ArrayList<Book>();
+        for (int i = 0; i < 4; i++) {
+            books.add(createBook("Book" + i, "Gen.1." + (i + 1), 200, null));
+        }
+
+        long start = System.currentTimeMillis();
+        MultiBookResults results = new MultiBookSearcher(new WorkerPool("test", 4), 0).search(books, new DefaultSearchRequest("light"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(results.isComplete());
+        assertEquals(books, results.getBooks());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("Gen.1." + (i + 1), results.getResults(books.get(i)).getOsisID());
+        }
+        // Close to one search, not to all of them
+        assertTrue("took " + elapsed, elapsed < 700);
+    }
+
+    public void testFailureAndTimeout() throws Exception {
+        Book good = createBook("Good", "Gen.1.1", 0, null);
+        Book bad = createBook("Bad", "Gen.1.1", 0, new BookException("broken"));
+        Book slow = createBook("Slow", "Gen.1.1", 2000, null);
+
+        MultiBookResults results = new MultiBookSearcher(new WorkerPool("test", 3), 200).search(Arrays.asList(good, bad, slow), new DefaultSearchRequest("light"));
+
+        assertFalse(results.isComplete());
+        assertEquals(Arrays.asList(good), results.getBooks());
+        assertEquals("broken", results.getFailure(bad).getMessage());
+        assertEquals(Arrays.asList(bad), results.getFailedBooks());
+        assertEquals(Arrays.asList(slow), results.getTimedOutBooks());
+        assertNull(results.getResults(slow));
+    }
+
+    public void testTimeoutStartsWithSearch() throws Exception {
+        // With one thread the second waits for the first before it starts
+        Book first = createBook("First", "Gen.1.1", 150, null);
+        Book second = createBook("Second", "Gen.1.2", 150, null);
+
+        MultiBookResults results = new MultiBookSearcher(new WorkerPool("test", 1), 1000).search(Arrays.asList(first, second), new DefaultSearchRequest("light"));
+        assertTrue(results.isComplete());
+    }
+
+    public void testRankedHits() throws Exception {
+        Book one = createBook("One", "Gen.1.1:10 Gen.1.2:30", 0, null);
+        Book two = createBook("Two", "Gen.1.3:20 Gen.1.4:5", 0, null);
+
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        modifier.setMaxResults(3);
+        MultiBookResults results = new MultiBookSearcher(new WorkerPool("test", 2), 0).search(Arrays.asList(one, two), new DefaultSearchRequest("light", modifier));
+
+        List<MultiBookResults.Hit> hits = results.getRankedHits();
+        assertEquals(3, hits.size());
+        assertEquals(one, hits.get(0).getBook());
+        assertEquals("Gen.1.2", hits.get(0).getVerse().getOsisID());
+        assertEquals(30, hits.get(0).getScore());
+        assertEquals(two, hits.get(1).getBook());
+        assertEquals("Gen.1.3", hits.get(1).getVerse().getOsisID());
+        assertEquals("Gen.1.1", hits.get(2).getVerse().getOsisID());
+    }
+
+    /**
+     * Create a book whose searches take a while and then find the verses, or
+     * fail. Verses written as osisID:score make a ranked result.
+     */
+    private Book createBook(String initials, final String found, final long delay, final BookException failure) throws Exception {
+        File configFile = File.createTempFile("multitest", ".conf");
+        configFiles.add(configFile);
+        ConfigEntryTable table = new ConfigEntryTable(initials);
+        table.add(ConfigEntryType.INITIALS, initials);
+        table.add(ConfigEntryType.MOD_DRV, "RawText");
+        table.save(configFile);
+
+        return new SwordBook(new SwordBookMetaData(configFile, initials, new URI("")), null) {
+            @Override
+            public Key find(SearchRequest request) throws BookException {
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    Thread.sleep(delay);
+                    return found(found);
+                } catch (InterruptedException e) {
+                    throw new BookException("interrupted", e);
+                } catch (NoSuchVerseException e) {
+                    throw new BookException("bad test", e);
+                }
+            }
+        };
+    }
+
+    private Key found(String found) throws NoSuchVerseException {
+        if (found.indexOf(':') < 0) {
+            return VerseFactory.fromString(v11n, found);
+        }
+        PassageTally tally = new PassageTally(v11n);
+        for (String hit : found.split(" ")) {
+            String[] parts = hit.split(":");
+            tally.add(VerseFactory.fromString(v11n, parts[0]), Integer.parseInt(parts[1]));
+        }
+        return tally;
+    }
+
+    private Versification v11n;
+    private List<File> configFiles;
+}
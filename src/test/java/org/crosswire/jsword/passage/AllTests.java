@@ -15,6 +15,11 @@ public class AllTests {
         TestSuite suite = new TestSuite("Test for org.crosswire.jsword.passage");
         // $JUnit-BEGIN$
         suite.addTestSuite(AccuracyTypeTest.class);
+        suite.addTestSuite(FrozenPassageTest.class);
+        suite.addTestSuite(OrdinalBitmapTest.class);
+        suite.addTestSuite(OsisParserTest.class);
+        suite.addTestSuite(PassageCompressedTest.class);
+        suite.addTestSuite(PassageCodecTest.class);
         suite.addTestSuite(PassageConstantsTest.class);
         suite.addTestSuite(PassageMixTest.class);
         suite.addTestSuite(PassageSizeTest.class);
@@ -23,6 +28,7 @@ public class AllTests {
         suite.addTestSuite(PassageSpeedTest.class);
         suite.addTestSuite(PassageTallyTest.class);
         suite.addTestSuite(PassageTally2Test.class);
+        suite.addTestSuite(TallyBoardTest.class);
         suite.addTestSuite(PassageUtilTest.class);
         suite.addTestSuite(PassageWriteSpeedTest.class);
         suite.addTestSuite(VerseTest.class);
@@ -0,0 +1,285 @@
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.book.CaseType;
+import org.crosswire.jsword.versification.BookName;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class FrozenPassageTest extends TestCase {
+    public FrozenPassageTest(String s) {
+        super(s);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        keyf = PassageKeyFactory.instance();
+        storedCase = BookName.getDefaultCase();
+        fullName = BookName.isFullBookName();
+        BookName.setCase(CaseType.SENTENCE);
+        BookName.setFullBookName(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BookName.setCase(storedCase);
+        BookName.setFullBookName(fullName);
+    }
+
+    public void testSameAsOriginal() throws Exception {
+        String[] refs = {
+                "", "Gen 1:1", "Gen 1:1, Gen 1:3, Gen 1:5", "Exo 2:1-10, Exo 3:1-11", "Gen-Rev", "Matt 5:3-7:29, Rev 22:21", "Jude", "Ruth 4:22-1Sam 1:3, 1Sam 2"
+        };
+        for (int i = 0; i < refs.length; i++) {
+            assertSame((Passage) keyf.getKey(v11n, refs[i]));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            Passage ref = (Passage) keyf.createEmptyKeyList(v11n);
+            for (int j = 0; j < 200; j++) {
+                int start = random.nextInt(v11n.maximumOrdinal() + 1);
+                int end = Math.min(start + random.nextInt(5), v11n.maximumOrdinal());
+                ref.add(new VerseRange(v11n, v11n.decodeOrdinal(start), v11n.decodeOrdinal(end)));
+            }
+            assertSame(ref);
+        }
+    }
+
+    public void testRangeOutOfBounds() throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage((Passage) keyf.getKey(v11n, "Gen 1:1-5, Exo 2:1"));
+        try {
+            frozen.getRangeAt(2, RestrictionType.NONE);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            // The most is the number of ranges, not of verses
+            assertTrue(ex.getMessage(), ex.getMessage().indexOf("Max 2") >= 0);
+        }
+    }
+
+    public void testFreezeOnce() throws Exception {
+        Passage ref = (Passage) keyf.getKey(v11n, "Gen 1:1-5");
+        Passage frozen = PassageKeyFactory.getFrozenPassage(ref);
+        assertTrue(frozen == PassageKeyFactory.getFrozenPassage(frozen));
+
+        // Changes to the original are not seen
+        ref.add(keyf.getKey(v11n, "Exo 1:1"));
+        assertEquals("Gen 1:1-5", frozen.getName());
+
+        Key all = keyf.getGlobalKeyList(v11n);
+        assertTrue(all == keyf.getGlobalKeyList(v11n));
+        assertEquals(v11n.maximumOrdinal() + 1, all.getCardinality());
+    }
+
+    public void testCannotChange() throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage((Passage) keyf.getKey(v11n, "Gen 1:1-5, Exo 2"));
+        Key verse = keyf.getKey(v11n, "Gen 1:1");
+        try {
+            frozen.add(verse);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.remove(verse);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.addAll(verse);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.removeAll(verse);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.retainAll(verse);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.clear();
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.blur(1, RestrictionType.NONE);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.trimVerses(1);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.trimRanges(1, RestrictionType.NONE);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.readDescription(new StringReader("KJV\nGen 2\n"));
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            frozen.iterator().remove();
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        assertEquals("Gen 1:1-5, Exo 2", frozen.getName());
+
+        // A clone can be changed
+        Passage copy = (Passage) frozen.clone();
+        copy.add(keyf.getKey(v11n, "Rev 1:1"));
+        assertEquals("Gen 1:1-5, Exo 2, Rev 1:1", copy.getName());
+        assertEquals("Gen 1:1-5, Exo 2", frozen.getName());
+    }
+
+    public void testNaming() throws Exception {
+        Passage ref = (Passage) keyf.getKey(v11n, "Gen 1:1-5, Exo 2");
+        Passage frozen = PassageKeyFactory.getFrozenPassage(ref);
+        assertEquals(ref.getName(), frozen.getName());
+
+        // The name follows the way that book names are reported
+        BookName.setCase(CaseType.UPPER);
+        assertEquals(ref.getName(), frozen.getName());
+        assertEquals(ref.hashCode(), frozen.hashCode());
+        BookName.setFullBookName(true);
+        assertEquals(ref.getName(), frozen.getName());
+        assertEquals(ref.hashCode(), frozen.hashCode());
+        assertEquals(ref, frozen);
+    }
+
+    public void testSerialization() throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage((Passage) keyf.getKey(v11n, "Gen 1:1-5, Exo 2"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(frozen);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Passage copy = (Passage) in.readObject();
+        in.close();
+        assertEquals(frozen, copy);
+        assertEquals(v11n, copy.getVersification());
+    }
+
+    public void testConcurrentReads() throws Exception {
+        Passage ref = (Passage) keyf.getKey(v11n, "Gen 1:1-5, Exo 2, Ps 119, Matt 5:3-7:29, Rev");
+        final Passage frozen = PassageKeyFactory.getFrozenPassage(ref);
+        final String name = ref.getName();
+        final int count = ref.countVerses();
+        final Verse last = ref.getVerseAt(count - 1);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            int verses = 0;
+                            for (Iterator<Key> it = frozen.iterator(); it.hasNext(); it.next()) {
+                                verses++;
+                            }
+                            assertEquals(count, verses);
+                            assertEquals(name, frozen.getName());
+                            assertEquals(count - 1, frozen.indexOf(last));
+                            assertTrue(frozen.contains(last));
+                        }
+                    } catch (Throwable ex) {
+                        synchronized (failures) {
+                            failures.add(ex);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    private void assertSame(Passage ref) {
+        Passage frozen = PassageKeyFactory.getFrozenPassage(ref);
+        assertEquals(ref, frozen);
+        assertEquals(frozen, ref);
+        assertEquals(ref.hashCode(), frozen.hashCode());
+        assertEquals(ref.getName(), frozen.getName());
+        assertEquals(ref.getOsisRef(), frozen.getOsisRef());
+        assertEquals(ref.getOsisID(), frozen.getOsisID());
+        assertEquals(ref.countVerses(), frozen.countVerses());
+        assertEquals(ref.isEmpty(), frozen.isEmpty());
+        assertEquals(ref.booksInPassage(), frozen.booksInPassage());
+        assertEquals(ref.countRanges(RestrictionType.NONE), frozen.countRanges(RestrictionType.NONE));
+        assertEquals(ref.countRanges(RestrictionType.CHAPTER), frozen.countRanges(RestrictionType.CHAPTER));
+        assertEquals(ref.hasRanges(RestrictionType.NONE), frozen.hasRanges(RestrictionType.NONE));
+        for (int i = 0; i < ref.countRanges(RestrictionType.NONE); i++) {
+            assertEquals(ref.getRangeAt(i, RestrictionType.NONE), frozen.getRangeAt(i, RestrictionType.NONE));
+        }
+
+        Iterator<Key> it = frozen.iterator();
+        int i = 0;
+        for (Key verse : ref) {
+            assertEquals(verse, it.next());
+            assertEquals(verse, frozen.getVerseAt(i));
+            assertEquals(i, frozen.indexOf(verse));
+            assertTrue(frozen.contains(verse));
+            i++;
+        }
+        assertFalse(it.hasNext());
+
+        // Every ordinal, in or out
+        for (int ord = 0; ord <= v11n.maximumOrdinal(); ord += 97) {
+            Verse verse = v11n.decodeOrdinal(ord);
+            assertEquals(ref.contains(verse), frozen.contains(verse));
+        }
+
+        // Cursors that begin and end part way
+        int[] bounds = {
+                0, 5, 1000, 23145, v11n.maximumOrdinal()
+        };
+        for (int s = 0; s < bounds.length; s++) {
+            for (int e = s; e < bounds.length; e++) {
+                OrdinalCursor want = ref.ordinalCursor(bounds[s], bounds[e]);
+                OrdinalCursor got = frozen.ordinalCursor(bounds[s], bounds[e]);
+                int ord = want.nextOrdinal();
+                while (ord >= 0) {
+                    assertEquals(ord, got.nextOrdinal());
+                    ord = want.nextOrdinal();
+                }
+                assertEquals(-1, got.nextOrdinal());
+                assertEquals(-1, got.nextOrdinal());
+            }
+        }
+    }
+
+    private Versification v11n;
+    private PassageKeyFactory keyf;
+    private CaseType storedCase;
+    private boolean fullName;
+}
@@ -0,0 +1,135 @@
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class OrdinalBitmapTest extends TestCase {
+    public OrdinalBitmapTest(String s) {
+        super(s);
+    }
+
+    public void testAddRemove() {
+        OrdinalBitmap bitmap = new OrdinalBitmap(MAX);
+        BitSet expected = new BitSet();
+        Random random = new Random(42);
+        // Enough to go from arrays to bitmaps and back
+        for (int i = 0; i < 5000; i++) {
+            int ordinal = random.nextInt(MAX + 1);
+            bitmap.add(ordinal);
+            expected.set(ordinal);
+        }
+        assertSameOrdinals(expected, bitmap);
+        for (int i = 0; i < 5000; i++) {
+            int ordinal = random.nextInt(MAX + 1);
+            bitmap.remove(ordinal);
+            expected.clear(ordinal);
+        }
+        assertSameOrdinals(expected, bitmap);
+    }
+
+    public void testRanges() {
+        OrdinalBitmap bitmap = new OrdinalBitmap(MAX);
+        BitSet expected = new BitSet();
+        bitmap.addRange(10, 9000);
+        expected.set(10, 9001);
+        bitmap.addRange(20000, 20000);
+        expected.set(20000);
+        assertSameOrdinals(expected, bitmap);
+
+        // Punch a hole in a run
+        bitmap.remove(4096);
+        expected.clear(4096);
+        assertSameOrdinals(expected, bitmap);
+        assertEquals(10, bitmap.nextSetBit(0));
+        assertEquals(4097, bitmap.nextSetBit(4096));
+        assertEquals(20000, bitmap.nextSetBit(9001));
+        assertEquals(-1, bitmap.nextSetBit(20001));
+    }
+
+    public void testSetOperations() {
+        Random random = new Random(7);
+        OrdinalBitmap left = new OrdinalBitmap(MAX);
+        OrdinalBitmap right = new OrdinalBitmap(MAX);
+        BitSet leftBits = new BitSet();
+        BitSet rightBits = new BitSet();
+        left.addRange(100, 12000);
+        leftBits.set(100, 12001);
+        for (int i = 0; i < 3000; i++) {
+            int ordinal = random.nextInt(MAX + 1);
+            right.add(ordinal);
+            rightBits.set(ordinal);
+        }
+
+        OrdinalBitmap or = left.copy();
+        or.or(right);
+        BitSet orBits = (BitSet) leftBits.clone();
+        orBits.or(rightBits);
+        assertSameOrdinals(orBits, or);
+        assertTrue(or.containsAll(left));
+        assertTrue(or.containsAll(right));
+
+        OrdinalBitmap and = left.copy();
+        and.and(right);
+        BitSet andBits = (BitSet) leftBits.clone();
+        andBits.and(rightBits);
+        assertSameOrdinals(andBits, and);
+        assertFalse(and.containsAll(left));
+
+        OrdinalBitmap andNot = left.copy();
+        andNot.andNot(right);
+        BitSet andNotBits = (BitSet) leftBits.clone();
+        andNotBits.andNot(rightBits);
+        assertSameOrdinals(andNotBits, andNot);
+
+        // The copies did not change the original
+        assertSameOrdinals(leftBits, left);
+    }
+
+    public void testWriteRead() throws Exception {
+        OrdinalBitmap bitmap = new OrdinalBitmap(MAX);
+        BitSet expected = new BitSet();
+        bitmap.addRange(0, 5000);
+        expected.set(0, 5001);
+        for (int i = 8192; i < 12288; i += 3) {
+            bitmap.add(i);
+            expected.set(i);
+        }
+        bitmap.add(MAX);
+        expected.set(MAX);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        // A run, a bitmap and an array are far smaller than the whole
+        assertTrue(bytes.size() < 700);
+
+        OrdinalBitmap copy = OrdinalBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), MAX);
+        assertSameOrdinals(expected, copy);
+    }
+
+    private static void assertSameOrdinals(BitSet expected, OrdinalBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        int index = 0;
+        int ordinal = actual.nextSetBit(0);
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+            assertEquals(i, ordinal);
+            assertTrue(actual.contains(i));
+            assertEquals(i, actual.select(index++));
+            ordinal = actual.nextSetBit(ordinal + 1);
+        }
+        assertEquals(-1, ordinal);
+    }
+
+    private static final int MAX = 31102;
+}
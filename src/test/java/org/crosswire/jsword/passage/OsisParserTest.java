@@ -0,0 +1,156 @@
+package org.crosswire.jsword.passage;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class OsisParserTest extends TestCase {
+    public OsisParserTest(String s) {
+        super(s);
+    }
+
+    /**
+     * Every book, chapter and verse must give what the general parser gives.
+     * The general parser knows the OSIS codes in any case, but the strict
+     * parser does not, so the lower case forms are left to it.
+     */
+    public void testAgainstGeneral() throws Exception {
+        checkAgainstGeneral(Versifications.instance().getVersification("KJV"));
+        checkAgainstGeneral(Versifications.instance().getVersification("Vulg"));
+    }
+
+    public void testRanges() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        checkRange(v11n, "Matt.5.3-Matt.7.29");
+        checkRange(v11n, "Gen.1-Gen.3");
+        checkRange(v11n, "Gen.1.5-Gen.2");
+        checkRange(v11n, "Gen-Exod.2.4");
+        checkRange(v11n, "Gen.3-Gen.1.2");
+        checkRange(v11n, "Gen.0.0-Gen.1.1");
+        assertEquals("Gen.1-Gen.3", OsisParser.parseVerseRange(v11n, "Gen.1-Gen.3").getOsisRef());
+        assertEquals("Matt.5.3-Matt.7", VerseRangeFactory.fromString(v11n, "Matt.5.3-Matt.7.29").getOsisRef());
+    }
+
+    public void testPassage() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        String osisRefs = "Gen.1.1 Gen.1.3-Gen.2 Exod.2 Matt.5.3-Matt.7.29 Rev.22.21";
+        for (PassageType type : PassageType.values()) {
+            Passage strict = OsisParser.parsePassage(type, v11n, osisRefs);
+            Passage general = type.createPassage(v11n, osisRefs.toLowerCase().replace(' ', ';'), null);
+            assertEquals(type.name(), general.getClass(), strict.getClass());
+            assertEquals(type.name(), general, strict);
+            assertEquals(type.name(), general.countVerses(), strict.countVerses());
+        }
+
+        Passage passage = (Passage) PassageKeyFactory.instance().getKey(v11n, "Jude.1.3 Jude.1.1-Jude.1.25");
+        assertEquals("Jude", passage.getOsisRef());
+    }
+
+    /**
+     * A list must give what the general parser gives for it, even where that
+     * is not what OSIS means by it.
+     */
+    public void testListAgainstGeneral() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        String[] lists = {
+                "Gen Exod", "Exod Gen.1", "Gen.1 Exod", "Jude.1.3 Jude", "Gen-Exod Obad.1.2", "Gen.1 Gen-Exod.2",
+                "Gen.1.1 Gen.1.3", "Matt.5 Matt.6.1-Matt.6.4", "Rev.22.21 Gen.1.1", "Gen.50-Exod.1 Gen.1.0"
+        };
+        for (int i = 0; i < lists.length; i++) {
+            Passage general;
+            try {
+                general = PassageKeyFactory.getDefaultType().createPassage(v11n, lists[i], null);
+            } catch (NoSuchKeyException ex) {
+                general = PassageKeyFactory.getDefaultType().createPassage(v11n, lists[i].replace(' ', ';'), null);
+            }
+            Passage passage = (Passage) PassageKeyFactory.instance().getKey(v11n, lists[i]);
+            assertEquals(lists[i], general.getOsisRef(), passage.getOsisRef());
+            assertEquals(lists[i], general.countVerses(), passage.countVerses());
+        }
+    }
+
+    public void testOriginalName() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        boolean persistentNaming = PassageUtil.isPersistentNaming();
+        try {
+            PassageUtil.setPersistentNaming(true);
+            String osisRefs = "Gen.1.1 Gen.1.2";
+            assertEquals(osisRefs, OsisParser.parsePassage(PassageType.SPEED, v11n, osisRefs).getName());
+            assertEquals(osisRefs, PassageKeyFactory.instance().getKey(v11n, osisRefs).getName());
+        } finally {
+            PassageUtil.setPersistentNaming(persistentNaming);
+        }
+    }
+
+    public void testNotStrict() {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        String[] refs = {
+                "", "Gen 1:1", "gen.1.1", "Gen.1.1!a", "KJV:Gen.1.1", "Gen..1", "Gen.1.", "Gen.1.1.1", "Gen.1.1-", "-Gen.1.1",
+                "Gen.51", "Gen.1.32", "Gen.00001", "Gen.1.ff", "Gen.1.$", "Jude.1", "Jude.1-Jude.1.5", "Tob.1.1", "Intro.OT"
+        };
+        for (int i = 0; i < refs.length; i++) {
+            assertNull(refs[i], OsisParser.parseVerse(v11n, refs[i]));
+            assertNull(refs[i], OsisParser.parseVerseRange(v11n, refs[i]));
+            assertNull(refs[i], OsisParser.parsePassage(PassageType.SPEED, v11n, refs[i]));
+        }
+
+        String[] lists = {
+                "Gen.1.1 ", " Gen.1.1", "Gen.1.1  Gen.1.2", "Gen.1.1,Gen.1.2", "Gen.1.1 2", "Gen Exod", "Exod Gen.1", "Gen.1 Gen-Exod.2"
+        };
+        for (int i = 0; i < lists.length; i++) {
+            assertNull(lists[i], OsisParser.parsePassage(PassageType.SPEED, v11n, lists[i]));
+        }
+
+        // A verse of a book of one chapter is fine
+        assertEquals("Jude.1.3", OsisParser.parseVerse(v11n, "Jude.1.3").getOsisRef());
+    }
+
+    private void checkAgainstGeneral(Versification v11n) throws Exception {
+        Iterator<BibleBook> books = v11n.getBookIterator();
+        while (books.hasNext()) {
+            BibleBook book = books.next();
+            if (book.getOSIS().indexOf('.') != -1) {
+                continue;
+            }
+
+            checkVerse(v11n, book.getOSIS());
+            checkRange(v11n, book.getOSIS());
+            int lastChapter = v11n.getLastChapter(book);
+            for (int chapter = 0; chapter <= lastChapter; chapter++) {
+                String chapterRef = book.getOSIS() + '.' + chapter;
+                if (lastChapter != 1) {
+                    checkVerse(v11n, chapterRef);
+                    checkRange(v11n, chapterRef);
+                }
+                int lastVerse = v11n.getLastVerse(book, chapter);
+                for (int verse = 0; verse <= lastVerse; verse++) {
+                    checkVerse(v11n, chapterRef + '.' + verse);
+                }
+            }
+        }
+    }
+
+    private void checkVerse(Versification v11n, String osisID) throws Exception {
+        Verse strict = OsisParser.parseVerse(v11n, osisID);
+        assertNotNull(osisID, strict);
+        assertEquals(osisID, VerseFactory.fromString(v11n, osisID.toLowerCase()), strict);
+    }
+
+    private void checkRange(Versification v11n, String osisRef) throws Exception {
+        VerseRange strict = OsisParser.parseVerseRange(v11n, osisRef);
+        assertNotNull(osisRef, strict);
+        VerseRange general = VerseRangeFactory.fromString(v11n, osisRef.toLowerCase());
+        assertEquals(osisRef, general, strict);
+        assertEquals(osisRef, general.getEnd(), strict.getEnd());
+    }
+}
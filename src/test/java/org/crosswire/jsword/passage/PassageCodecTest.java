@@ -0,0 +1,214 @@
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class PassageCodecTest extends TestCase {
+    public PassageCodecTest(String s) {
+        super(s);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        keyf = PassageKeyFactory.instance();
+    }
+
+    public void testRoundTrip() throws Exception {
+        String[] refs = {
+                "", "Gen 1:1", "Gen 1:1, Gen 1:3, Gen 1:5", "Exo 2:1-10, Exo 3:1-11", "Gen-Rev", "Matt 5:3-7:29, Rev 22:21", "Jude"
+        };
+        for (int i = 0; i < refs.length; i++) {
+            Passage ref = (Passage) keyf.getKey(v11n, refs[i]);
+            assertRoundTrip(ref);
+        }
+
+        // Ordinal 0 and the introductions are verses too
+        Passage ref = (Passage) keyf.createEmptyKeyList(v11n);
+        ref.add(v11n.decodeOrdinal(0));
+        ref.add(v11n.decodeOrdinal(v11n.maximumOrdinal()));
+        assertRoundTrip(ref);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            ref = (Passage) keyf.createEmptyKeyList(v11n);
+            for (int j = 0; j < 200; j++) {
+                int start = random.nextInt(v11n.maximumOrdinal() + 1);
+                int end = Math.min(start + random.nextInt(5), v11n.maximumOrdinal());
+                ref.add(new VerseRange(v11n, v11n.decodeOrdinal(start), v11n.decodeOrdinal(end)));
+            }
+            assertRoundTrip(ref);
+        }
+    }
+
+    public void testOtherVersification() throws Exception {
+        Versification vulg = Versifications.instance().getVersification("Vulg");
+        Passage ref = (Passage) keyf.getKey(vulg, "Tob 1:1-5, Ps 150");
+        Passage copy = PassageCodec.read(ByteBuffer.wrap(PassageCodec.toByteArray(ref)));
+        assertEquals(vulg, copy.getVersification());
+        assertEquals(ref.getOsisRef(), copy.getOsisRef());
+    }
+
+    public void testCompact() throws Exception {
+        // The header is 7 bytes for KJV, then a byte for the number of runs
+        // and one for each verse that is near the one before
+        assertEquals(9, PassageCodec.toByteArray((Passage) keyf.getKey(v11n, "Gen 1:1")).length);
+        assertEquals(10, PassageCodec.toByteArray((Passage) keyf.getKey(v11n, "Gen 1:1, Gen 1:3")).length);
+        // A whole chapter is a single run
+        assertTrue(PassageCodec.toByteArray((Passage) keyf.getKey(v11n, "Ps 119")).length <= 13);
+    }
+
+    public void testTally() throws Exception {
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(keyf.getKey(v11n, "Gen 1:1-5, John 3:16"));
+        tally.add(keyf.getKey(v11n, "Gen 1:3, John 3:16"), 300);
+        tally.setOrdering(PassageTally.Order.TALLY);
+        tally.setTotal(17);
+
+        Passage copy = PassageCodec.read(ByteBuffer.wrap(PassageCodec.toByteArray(tally)));
+        assertTrue(copy instanceof PassageTally);
+        PassageTally tallyCopy = (PassageTally) copy;
+        assertEquals(PassageTally.Order.TALLY, tallyCopy.getOrdering());
+        assertEquals(17, tallyCopy.getTotal());
+        assertEquals(tally.getNameAndTally(), tallyCopy.getNameAndTally());
+        assertEquals(301, tallyCopy.getTallyOf((Verse) keyf.getKey(v11n, "Gen 1:3").iterator().next()));
+        assertEquals(1, tallyCopy.getTallyOf((Verse) keyf.getKey(v11n, "Gen 1:4").iterator().next()));
+    }
+
+    public void testStream() throws Exception {
+        // Many Passages one after another, read back in turn
+        Passage first = (Passage) keyf.getKey(v11n, "Gen 1");
+        Passage second = (Passage) keyf.getKey(v11n, "Rom 8:28");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        PassageCodec.write(first, out);
+        PassageCodec.write(second, out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(first, PassageCodec.read(in));
+        assertEquals(second, PassageCodec.read(in));
+        assertEquals(-1, in.read());
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        PassageCodec.write(first, buffer);
+        PassageCodec.write(second, buffer);
+        buffer.flip();
+        assertEquals(first, PassageCodec.read(buffer));
+        assertEquals(second, PassageCodec.read(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    public void testBadData() throws Exception {
+        byte[] good = PassageCodec.toByteArray((Passage) keyf.getKey(v11n, "Gen 1:1-5"));
+
+        byte[] bad = good.clone();
+        bad[0] = 99;
+        assertBad(bad);
+
+        // Cut short
+        bad = new byte[good.length - 1];
+        System.arraycopy(good, 0, bad, 0, bad.length);
+        assertBad(bad);
+
+        // A run past the end of the Bible
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(good, 0, 7);
+        PassageCodec.writeVarint(out, 1);
+        PassageCodec.writeVarint(out, 3);
+        PassageCodec.writeVarint(out, v11n.maximumOrdinal());
+        assertBad(bytes.toByteArray());
+    }
+
+    public void testArchive() throws Exception {
+        File file = File.createTempFile("passages", ".jspa");
+        try {
+            Random random = new Random(7);
+            Passage[] refs = new Passage[500];
+            PassageArchiveWriter writer = new PassageArchiveWriter(file);
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = (Passage) keyf.createEmptyKeyList(v11n);
+                for (int j = random.nextInt(20); j > 0; j--) {
+                    refs[i].add(v11n.decodeOrdinal(random.nextInt(v11n.maximumOrdinal() + 1)));
+                }
+                // Leave gaps between the ids
+                writer.add(i * 3L + 1000000000L, refs[i]);
+            }
+
+            try {
+                writer.add(5, refs[0]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // They must be in order
+            }
+            writer.close();
+
+            PassageArchive archive = PassageArchive.open(file);
+            try {
+                assertEquals(refs.length, archive.size());
+                for (int i = refs.length - 1; i >= 0; i -= 7) {
+                    long id = i * 3L + 1000000000L;
+                    assertTrue(archive.contains(id));
+                    assertEquals(refs[i], archive.get(id));
+                }
+                assertFalse(archive.contains(1000000001L));
+                assertNull(archive.get(1000000001L));
+                assertNull(archive.get(0));
+            } finally {
+                archive.close();
+            }
+
+            // Anything else is not an archive
+            FileOutputStream junk = new FileOutputStream(file);
+            junk.write(new byte[] {
+                    1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18
+            });
+            junk.close();
+            try {
+                PassageArchive.open(file);
+                fail();
+            } catch (IOException expected) {
+                // As expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertRoundTrip(Passage ref) throws Exception {
+        byte[] bytes = PassageCodec.toByteArray(ref);
+        Passage copy = PassageCodec.read(ByteBuffer.wrap(bytes));
+        assertEquals(ref.getOsisRef(), copy.getOsisRef());
+        assertEquals(ref.countVerses(), copy.countVerses());
+    }
+
+    private void assertBad(byte[] bytes) {
+        try {
+            PassageCodec.read(ByteBuffer.wrap(bytes));
+            fail();
+        } catch (IOException expected) {
+            // As expected
+        }
+    }
+
+    private Versification v11n;
+    private PassageKeyFactory keyf;
+}
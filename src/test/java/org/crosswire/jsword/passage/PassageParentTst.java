@@ -260,6 +260,52 @@ public class PassageParentTst extends TestCase {
         }
     }
 
+    public void testReadParseCache() throws Exception {
+        Passage first = (Passage) keyf.getKey(v11n, "Gen 1:1, Gen 1:3, Gen 1:5");
+        Passage second = (Passage) keyf.getKey(v11n, "Gen 1:1, Gen 1:3, Gen 1:5");
+        assertNotSame(first, second);
+        assertEquals(gen1_135, second);
+
+        // Changing one does not change what is remembered
+        first.add(exo21);
+        assertEquals(gen1_135, keyf.getKey(v11n, "Gen 1:1, Gen 1:3, Gen 1:5"));
+
+        // Nor is a reference with a basis remembered as one without
+        assertEquals(keyf.getKey(v11n, "Exo 2:3"), keyf.getKey(v11n, "3", exo21));
+    }
+
+    public void testReadOrdinalCursor() throws Exception {
+        OrdinalCursor cursor = gen1_135.ordinalCursor();
+        assertEquals(gen11.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(gen13.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(gen15.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(-1, cursor.nextOrdinal());
+        assertEquals(-1, empty.ordinalCursor().nextOrdinal());
+
+        // Only those in the range
+        cursor = exo2a_3b.ordinalCursor(exo22.getOrdinal(), exo23.getOrdinal());
+        assertEquals(exo22.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(exo23.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(-1, cursor.nextOrdinal());
+
+        // The same verses as the iterator
+        int count = 0;
+        cursor = grace.ordinalCursor();
+        for (Key key : grace) {
+            assertEquals(((Verse) key).getOrdinal(), cursor.nextOrdinal());
+            count++;
+        }
+        assertEquals(-1, cursor.nextOrdinal());
+        assertEquals(grace.countVerses(), count);
+
+        count = 0;
+        cursor = gen_rev.ordinalCursor();
+        while (cursor.nextOrdinal() >= 0) {
+            count++;
+        }
+        assertEquals(gen_rev.countVerses(), count);
+    }
+
     public void testReadIsEmpty() {
         // for (int i=0; i<20; i++)
         {
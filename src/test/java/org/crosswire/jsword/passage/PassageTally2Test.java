@@ -24,6 +24,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.util.Iterator;
 
 import junit.framework.TestCase;
@@ -299,12 +300,59 @@ public class PassageTally2Test extends TestCase {
                 temp.getNameAndTally());
     }
 
+    public void testBlurChapter() throws Exception {
+        temp = tally.clone();
+        temp.blur(2, RestrictionType.CHAPTER);
+        PassageTally unrestricted = tally.clone();
+        unrestricted.blur(2, RestrictionType.NONE);
+        assertTrue(unrestricted.contains(VerseFactory.fromString(v11n, "Gen 1:31")));
+        assertFalse(temp.contains(VerseFactory.fromString(v11n, "Gen 1:31")));
+        assertEquals(unrestricted.getTallyOf(gen11), temp.getTallyOf(gen11));
+        assertEquals(unrestricted.getTallyOf(gen13), temp.getTallyOf(gen13));
+        temp.setOrdering(PassageTally.Order.BIBLICAL);
+        assertEquals("Gen 1:0-9, 2:0-3, 3:0-3", temp.getName());
+    }
+
     public void testFlatten() {
         temp = tally.clone();
         temp.flatten();
         assertEquals(temp.getName(), "Gen 1:1, 3, 5, 7, 2:1, 3:1");
     }
 
+    public void testTrimVerses() throws Exception {
+        temp = tally.clone();
+        Passage remainder = temp.trimVerses(3);
+        assertEquals("Gen 1:1, 5, 3", temp.getName());
+        assertEquals(3, temp.countVerses());
+        assertEquals(2, temp.getTallyOf(gen15));
+        assertEquals(keyf.getKey(v11n, "Gen 1:7, Gen 2:1, Gen 3:1"), remainder);
+        assertNull(temp.trimVerses(3));
+
+        temp = tally.clone();
+        temp.setOrdering(PassageTally.Order.BIBLICAL);
+        remainder = temp.trimVerses(2);
+        assertEquals(keyf.getKey(v11n, "Gen 1:1, Gen 1:3"), temp);
+        assertEquals(keyf.getKey(v11n, "Gen 1:5, Gen 1:7, Gen 2:1, Gen 3:1"), remainder);
+    }
+
+    public void testDense() throws Exception {
+        temp = tally.clone();
+        assertFalse(temp.isDense());
+        temp.addAll(keyf.getKey(v11n, "Gen-Deu"));
+        assertTrue(temp.isDense());
+        assertEquals(keyf.getKey(v11n, "Gen-Deu").getCardinality(), temp.countVerses());
+        assertEquals("Gen 1:1 (100%), Gen 1:5 (75%)", temp.getNameAndTally(2));
+        assertEquals(2, temp.getTallyOf(gen13));
+
+        temp.removeAll(keyf.getKey(v11n, "Gen 1:2-Deu 34:12"));
+        assertEquals(3, temp.countVerses());
+        assertTrue(temp.contains(keyf.getKey(v11n, "Gen 0:0-1:1")));
+        assertEquals("Gen 1:1", temp.getName(1));
+        temp.clear();
+        assertFalse(temp.isDense());
+        assertTrue(temp.isEmpty());
+    }
+
     public void testObject() throws Exception {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         ObjectOutputStream obj_out = new ObjectOutputStream(bout);
@@ -319,5 +367,9 @@ public class PassageTally2Test extends TestCase {
         obj_in.close();
         assertEquals(tally, gen1_135_copy);
         assertEquals(empty, exo2a_3b_copy);
+
+        // The board is written as the array of ranks that it once was
+        assertEquals(int[].class, ObjectStreamClass.lookup(PassageTally.class).getField("board").getType());
+        assertEquals(tally.getTotal(), ((PassageTally) gen1_135_copy).getTotal());
     }
 }
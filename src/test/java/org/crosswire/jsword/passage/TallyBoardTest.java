@@ -0,0 +1,100 @@
+package org.crosswire.jsword.passage;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class TallyBoardTest extends TestCase {
+    public TallyBoardTest(String s) {
+        super(s);
+    }
+
+    public void testAgainstArray() {
+        Random random = new Random(31);
+        int[] expected = new int[MAXIMUM_ORDINAL + 1];
+        TallyBoard board = new TallyBoard(MAXIMUM_ORDINAL);
+        for (int i = 0; i < 3000; i++) {
+            int ordinal = random.nextInt(MAXIMUM_ORDINAL + 1);
+            int tally = random.nextInt(4) == 0 ? 0 : random.nextInt(50) + 1;
+            expected[ordinal] = tally;
+            board.set(ordinal, tally);
+            if (i % 100 == 0) {
+                check(expected, board);
+            }
+        }
+        check(expected, board);
+    }
+
+    public void testSparseUntilFull() {
+        TallyBoard board = new TallyBoard(MAXIMUM_ORDINAL);
+        for (int ordinal = 0; ordinal < MAXIMUM_ORDINAL / 8; ordinal++) {
+            board.set(ordinal, 1);
+        }
+        assertFalse(board.isDense());
+        board.set(MAXIMUM_ORDINAL, 1);
+        assertTrue(board.isDense());
+        assertEquals(MAXIMUM_ORDINAL / 8 + 1, board.size());
+        board.clear();
+        assertFalse(board.isDense());
+        assertEquals(0, board.size());
+        assertEquals(-1, board.nextOrdinal(0));
+    }
+
+    public void testRank() {
+        TallyBoard board = new TallyBoard(MAXIMUM_ORDINAL);
+        board.set(40, 3);
+        board.set(10, 3);
+        board.set(20, 7);
+        board.set(30, 1);
+        assertRanked(board.rank(10), 20, 10, 40, 30);
+        assertRanked(board.rank(4), 20, 10, 40, 30);
+        assertRanked(board.rank(2), 20, 10);
+        assertRanked(board.rank(0));
+        assertEquals(7, TallyBoard.tallyOf(board.rank(1)[0]));
+        assertEquals(7, board.max());
+    }
+
+    private void assertRanked(long[] ranked, int... ordinals) {
+        assertEquals(ordinals.length, ranked.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            assertEquals(ordinals[i], TallyBoard.ordinalOf(ranked[i]));
+        }
+    }
+
+    private void check(int[] expected, TallyBoard board) {
+        int size = 0;
+        int max = 0;
+        int next = board.nextOrdinal(0);
+        for (int ordinal = 0; ordinal < expected.length; ordinal++) {
+            assertEquals(expected[ordinal], board.get(ordinal));
+            if (expected[ordinal] != 0) {
+                size++;
+                max = Math.max(max, expected[ordinal]);
+                assertEquals(ordinal, next);
+                next = board.nextOrdinal(ordinal + 1);
+            }
+        }
+        assertEquals(-1, next);
+        assertEquals(size, board.size());
+        assertEquals(max, board.max());
+
+        long[] ranked = board.rank(size);
+        for (int i = 1; i < ranked.length; i++) {
+            int before = TallyBoard.tallyOf(ranked[i - 1]);
+            int after = TallyBoard.tallyOf(ranked[i]);
+            assertTrue(before > after || before == after && TallyBoard.ordinalOf(ranked[i - 1]) < TallyBoard.ordinalOf(ranked[i]));
+        }
+        long[] best = board.rank(10);
+        for (int i = 0; i < best.length; i++) {
+            assertEquals(ranked[i], best[i]);
+        }
+    }
+
+    private static final int MAXIMUM_ORDINAL = 2000;
+}
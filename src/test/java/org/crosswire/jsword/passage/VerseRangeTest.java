@@ -125,6 +125,22 @@ public class VerseRangeTest extends TestCase {
         BookName.setFullBookName(fullName);
     }
 
+    public void testOrdinalCursor() {
+        OrdinalCursor cursor = gen11_2.ordinalCursor();
+        assertEquals(gen11.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(gen12.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(-1, cursor.nextOrdinal());
+
+        cursor = gen11_2.ordinalCursor(gen12.getOrdinal(), Integer.MAX_VALUE);
+        assertEquals(gen12.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(-1, cursor.nextOrdinal());
+
+        cursor = gen11.ordinalCursor();
+        assertEquals(gen11.getOrdinal(), cursor.nextOrdinal());
+        assertEquals(-1, cursor.nextOrdinal());
+        assertEquals(-1, gen11.ordinalCursor(gen12.getOrdinal(), gen12.getOrdinal()).nextOrdinal());
+    }
+
     public void testNewViaString() throws Exception {
         assertEquals(gen11_1, VerseRangeFactory.fromString(v11n, "Gen 1:1-1"));
         assertEquals(gen11_2, VerseRangeFactory.fromString(v11n, "Gen 1:1-2"));
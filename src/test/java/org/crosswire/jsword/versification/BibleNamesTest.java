@@ -20,8 +20,12 @@
  */
 package org.crosswire.jsword.versification;
 
+import java.util.Locale;
+
 import junit.framework.TestCase;
 
+import org.crosswire.jsword.versification.system.Versifications;
+
 /**
  *
  *
@@ -51,4 +55,26 @@ public class BibleNamesTest extends TestCase {
     public void testNothing() {
         // probably should test something....
     }
+
+    public void testExactNames() {
+        BibleNames names = new BibleNames(Versifications.instance().getVersification("KJV"), Locale.ENGLISH);
+        assertEquals(BibleBook.GEN, names.getBook("Genesis"));
+        assertEquals(BibleBook.GEN, names.getBook("Gen."));
+        assertEquals(BibleBook.JOHN1, names.getBook("1 Jo"));
+        // An alternate name is preferred to the beginning of another name
+        assertEquals(BibleBook.JUDG, names.getBook("jud"));
+        assertEquals(BibleBook.JOHN, names.getBook("jn"));
+    }
+
+    public void testPartialNames() {
+        BibleNames names = new BibleNames(Versifications.instance().getVersification("KJV"), Locale.ENGLISH);
+        assertEquals(BibleBook.GEN, names.getBook("gene"));
+        // The New Testament comes first
+        assertEquals(BibleBook.JUDE, names.getBook("ju"));
+        assertEquals(BibleBook.JOHN, names.getBook("jo"));
+        assertEquals(BibleBook.PHIL, names.getBook("phil"));
+        // Names that begin with a short name
+        assertEquals(BibleBook.JOHN, names.getBook("johnny"));
+        assertNull(names.getBook("xyz"));
+    }
 }
@@ -105,6 +105,46 @@ public class VersificationParentTst extends TestCase {
         }
     }
 
+    public void testSharedVerses() throws Exception {
+        int last = v11n.maximumOrdinal();
+        assertSame(v11n.decodeOrdinal(last), v11n.decodeOrdinal(last));
+        boolean sharing = Versification.isVerseSharing();
+        try {
+            Versification.setVerseSharing(false);
+            Verse verse = v11n.decodeOrdinal(last);
+            assertNotSame(verse, v11n.decodeOrdinal(last));
+            assertEquals(verse, v11n.decodeOrdinal(last));
+        } finally {
+            Versification.setVerseSharing(sharing);
+        }
+    }
+
+    public void testChapterOrdinals() {
+        int last = v11n.maximumOrdinal();
+        for (int ord = 0; ord <= last; ord++) {
+            Verse verse = v11n.decodeOrdinal(ord);
+            int start = v11n.getChapterStartOrdinal(ord);
+            int end = v11n.getChapterEndOrdinal(ord);
+            assertEquals(new Verse(v11n, verse.getBook(), verse.getChapter(), 0).getOrdinal(), start);
+            assertEquals(new Verse(v11n, verse.getBook(), verse.getChapter(), v11n.getLastVerse(verse.getBook(), verse.getChapter())).getOrdinal(), end);
+        }
+    }
+
+    public void testVerseArithmetic() throws Exception {
+        Verse verse = v11n.decodeOrdinal(0);
+        for (int ordinal = 1; ordinal <= v11n.maximumOrdinal(); ordinal++) {
+            Verse next = v11n.next(verse);
+            assertEquals(next.getOsisID(), ordinal, next.getOrdinal());
+            assertEquals(next, v11n.add(verse, 1));
+            assertEquals(verse, v11n.subtract(next, 1));
+            assertEquals(1, v11n.distance(verse, next));
+            verse = next;
+        }
+        assertNull(v11n.next(verse));
+        assertEquals(verse, v11n.add(verse, 1));
+        assertEquals(v11n.decodeOrdinal(0), v11n.subtract(verse, v11n.maximumOrdinal() + 1));
+    }
+
     public void testValidate() throws Exception {
         for (BibleBook b = v11n.getFirstBook(); b != null; b = v11n.getNextBook(b)) {
             // Test that negative chapters are invalid
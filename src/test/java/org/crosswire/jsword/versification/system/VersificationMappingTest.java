@@ -0,0 +1,140 @@
+package org.crosswire.jsword.versification.system;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's authors.
+ */
+public class VersificationMappingTest extends TestCase {
+    public VersificationMappingTest(String s) {
+        super(s);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mappings = VersificationMappings.instance();
+        kjv = Versifications.instance().getVersification("KJV");
+        synodal = Versifications.instance().getVersification("Synodal");
+    }
+
+    public void testSame() {
+        Iterator<String> iter = Versifications.instance().iterator();
+        while (iter.hasNext()) {
+            Versification v11n = Versifications.instance().getVersification(iter.next());
+            VersificationMapping mapping = mappings.getMapping(v11n, v11n);
+            for (int ord = 0; ord <= v11n.maximumOrdinal(); ord++) {
+                assertEquals(v11n.getName(), 1, mapping.mapAll(ord).length);
+                assertEquals(v11n.getName(), ord, mapping.map(ord));
+            }
+        }
+        assertSame(mappings.getMapping(kjv, synodal), mappings.getMapping(kjv, synodal));
+    }
+
+    public void testSameReference() {
+        Versification nrsv = Versifications.instance().getVersification("NRSV");
+        assertEquals(verse(nrsv, BibleBook.GEN, 1, 1), mappings.map(verse(kjv, BibleBook.GEN, 1, 1), nrsv));
+        assertEquals(verse(synodal, BibleBook.JOHN, 3, 16), mappings.map(verse(kjv, BibleBook.JOHN, 3, 16), synodal));
+
+        // A book that is not in the target
+        Versification kjva = Versifications.instance().getVersification("KJVA");
+        assertNull(mappings.map(verse(synodal, BibleBook.TOB, 1, 1), kjv));
+        assertEquals(verse(kjva, BibleBook.TOB, 1, 1), mappings.map(verse(synodal, BibleBook.TOB, 1, 1), kjva));
+    }
+
+    public void testExact() {
+        Versification kjva = Versifications.instance().getVersification("KJVA");
+        Versification synodalP = Versifications.instance().getVersification("SynodalP");
+        Versification vulg = Versifications.instance().getVersification("Vulg");
+        Versification nrsv = Versifications.instance().getVersification("NRSV");
+        assertTrue(mappings.getMapping(kjv, kjva).isExact());
+        assertTrue(mappings.getMapping(synodal, kjv).isExact());
+        assertTrue(mappings.getMapping(kjva, synodal).isExact());
+        assertTrue(mappings.getMapping(synodalP, synodal).isExact());
+        assertTrue(mappings.getMapping(vulg, vulg).isExact());
+
+        // Nothing is known of how the Vulgate and the NRSV differ
+        assertFalse(mappings.getMapping(vulg, kjv).isExact());
+        assertFalse(mappings.getMapping(kjv, vulg).isExact());
+        assertFalse(mappings.getMapping(synodal, vulg).isExact());
+        assertFalse(mappings.getMapping(nrsv, vulg).isExact());
+        assertFalse(mappings.getMapping(kjv, nrsv).isExact());
+    }
+
+    public void testSynodal() {
+        // Titles that are verses
+        assertEquals(verse(kjv, BibleBook.PS, 51, 0), mappings.map(verse(synodal, BibleBook.PS, 50, 1), kjv));
+        assertEquals(verse(kjv, BibleBook.PS, 51, 1), mappings.map(verse(synodal, BibleBook.PS, 50, 3), kjv));
+        assertEquals(verse(synodal, BibleBook.PS, 50, 3), mappings.map(verse(kjv, BibleBook.PS, 51, 1), synodal));
+
+        // One psalm that is two
+        assertEquals(verse(kjv, BibleBook.PS, 10, 1), mappings.map(verse(synodal, BibleBook.PS, 9, 22), kjv));
+        assertEquals(verse(synodal, BibleBook.PS, 115, 1), mappings.map(verse(kjv, BibleBook.PS, 116, 10), synodal));
+        assertNull(mappings.map(verse(synodal, BibleBook.PS, 151, 1), kjv));
+
+        // One verse that is several
+        VersificationMapping mapping = mappings.getMapping(kjv, synodal);
+        int[] ordinals = mapping.mapAll(verse(kjv, BibleBook.PS, 3, 0).getOrdinal());
+        assertEquals(2, ordinals.length);
+        assertEquals(verse(synodal, BibleBook.PS, 3, 0).getOrdinal(), ordinals[0]);
+        assertEquals(verse(synodal, BibleBook.PS, 3, 1).getOrdinal(), ordinals[1]);
+        assertEquals(2, mapping.mapAll(verse(kjv, BibleBook.JOHN3, 1, 14).getOrdinal()).length);
+
+        assertEquals(verse(synodal, BibleBook.JONAH, 2, 1), mappings.map(verse(kjv, BibleBook.JONAH, 1, 17), synodal));
+        assertEquals(verse(synodal, BibleBook.ROM, 14, 24), mappings.map(verse(kjv, BibleBook.ROM, 16, 25), synodal));
+
+        // SynodalP shares the Synodal Psalms
+        Versification synodalP = Versifications.instance().getVersification("SynodalP");
+        assertEquals(verse(kjv, BibleBook.PS, 51, 1), mappings.map(verse(synodalP, BibleBook.PS, 50, 3), kjv));
+    }
+
+    public void testThereAndBack() {
+        VersificationMapping there = mappings.getMapping(synodal, kjv);
+        VersificationMapping back = mappings.getMapping(kjv, synodal);
+        for (int ord = 0; ord <= synodal.maximumOrdinal(); ord++) {
+            int[] ordinals = there.mapAll(ord);
+            for (int i = 0; i < ordinals.length; i++) {
+                int[] returned = back.mapAll(ordinals[i]);
+                boolean found = false;
+                for (int j = 0; j < returned.length; j++) {
+                    found |= returned[j] == ord;
+                }
+                assertTrue(synodal.decodeOrdinal(ord).getOsisID(), found);
+            }
+        }
+    }
+
+    public void testPassage() throws Exception {
+        PassageKeyFactory keyf = PassageKeyFactory.instance();
+        Passage ref = (Passage) keyf.getKey(kjv, "Ps 23, Ps 51:1-3, Ps 116:1-19, Rom 16:25-27");
+        Passage mapped = mappings.map(ref, synodal);
+        assertEquals(synodal, mapped.getVersification());
+        assertEquals(keyf.getKey(synodal, "Ps 22, Ps 50:3-5, Ps 114:1-115:10, Rom 14:24-26"), mapped);
+
+        assertTrue(mappings.map((Passage) keyf.createEmptyKeyList(kjv), synodal).isEmpty());
+
+        try {
+            mappings.getMapping(synodal, kjv).map(ref);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    private static Verse verse(Versification v11n, BibleBook book, int chapter, int verse) {
+        return new Verse(v11n, book, chapter, verse);
+    }
+
+    private VersificationMappings mappings;
+    private Versification kjv;
+    private Versification synodal;
+}